@@ -0,0 +1,73 @@
+package com.nice.travel.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files ({@code -rf json}) benchmark by benchmark, including the
+ * secondary {@code gc.alloc.rate.norm} metric when both runs used {@code -prof gc}.
+ *
+ * <pre>java -cp target/benchmarks.jar com.nice.travel.benchmark.BaselineComparison baseline.json current.json</pre>
+ */
+public final class BaselineComparison {
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BaselineComparison baseline.json current.json");
+            System.exit(1);
+        }
+        Map<String, double[]> baseline = read(args[0]);
+        Map<String, double[]> current = read(args[1]);
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, double[]> entry : current.entrySet()) {
+            double[] before = baseline.get(entry.getKey());
+            double now = entry.getValue()[0];
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", now, "new");
+            } else {
+                System.out.printf("%-70s %14.3f %14.3f %+8.1f%%%n", entry.getKey(), before[0], now,
+                    (now - before[0]) / before[0] * 100);
+            }
+        }
+    }
+
+    private static Map<String, double[]> read(String file) throws IOException {
+        Map<String, double[]> scores = new LinkedHashMap<>();
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            JsonArray runs = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : runs) {
+                JsonObject run = element.getAsJsonObject();
+                StringBuilder key = new StringBuilder(run.get("benchmark").getAsString()
+                    .replace("com.nice.travel.benchmark.", ""));
+                if (run.has("params")) {
+                    for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+                        key.append(' ').append(param.getKey()).append('=').append(param.getValue().getAsString());
+                    }
+                }
+                JsonObject primary = run.getAsJsonObject("primaryMetric");
+                scores.put(key + " [" + primary.get("scoreUnit").getAsString() + "]",
+                    new double[] {primary.get("score").getAsDouble()});
+                JsonObject secondary = run.getAsJsonObject("secondaryMetrics");
+                if (secondary != null && secondary.has("gc.alloc.rate.norm")) {
+                    JsonObject alloc = secondary.getAsJsonObject("gc.alloc.rate.norm");
+                    scores.put(key + " [" + alloc.get("scoreUnit").getAsString() + "]",
+                        new double[] {alloc.get("score").getAsDouble()});
+                }
+            }
+        }
+        return scores;
+    }
+}
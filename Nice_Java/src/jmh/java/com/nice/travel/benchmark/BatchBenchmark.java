@@ -0,0 +1,51 @@
+package com.nice.travel.benchmark;
+
+import com.nice.travel.cache.RouteResultCache;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Route;
+import com.nice.travel.model.TravelRequest;
+import com.nice.travel.service.BatchQueryPlanner;
+import com.nice.travel.service.TravelOptimizerService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Request throughput of the grouped batch planner, sequential and on the common pool. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+    private static final int REQUESTS = 2000;
+
+    @Param({"5000"})
+    public int cities;
+
+    @Param({"8"})
+    public int routesPerCity;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private TimetableGraph graph;
+    private BatchQueryPlanner planner;
+    private List<TravelRequest> requests;
+
+    @Setup
+    public void setUp() {
+        SyntheticTimetable timetable = new SyntheticTimetable(42, cities, Math.max(2, cities / 50), routesPerCity,
+            SyntheticTimetable.TimeDistribution.PEAKED);
+        graph = timetable.build();
+        planner = new BatchQueryPlanner(new TravelOptimizerService((RouteResultCache) null));
+        requests = timetable.requests(11, REQUESTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public List<List<Route>> plan() {
+        return planner.plan(graph, requests, parallel);
+    }
+}
@@ -0,0 +1,66 @@
+package com.nice.travel.benchmark;
+
+import com.google.gson.JsonObject;
+import com.nice.travel.Main;
+import com.nice.travel.cache.RouteResultCache;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.service.TravelOptimizerService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/** JSON ingest and graph compilation for a whole timetable. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestBenchmark {
+
+    @Param({"2000", "10000"})
+    public int cities;
+
+    @Param({"8"})
+    public int routesPerCity;
+
+    private SyntheticTimetable timetable;
+    private Path routesFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        timetable = new SyntheticTimetable(42, cities, Math.max(2, cities / 50), routesPerCity,
+            SyntheticTimetable.TimeDistribution.PEAKED);
+        routesFile = Files.createTempFile("timetable", ".json");
+        timetable.writeJson(routesFile, Collections.emptyList());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(routesFile);
+    }
+
+    /** Streams the routes file into a compiled graph, as every CLI run does. */
+    @Benchmark
+    public TimetableGraph loadGraph() throws IOException {
+        return Main.loadGraph(routesFile.toString());
+    }
+
+    /** Interning, time parsing and CSR/connection compilation without JSON. */
+    @Benchmark
+    public TimetableGraph buildGraph() {
+        return timetable.addTo(new TimetableGraphBuilder()).build();
+    }
+
+    /** The full CLI pipeline for a routes-only document. */
+    @Benchmark
+    public JsonObject optimizeTravel() throws IOException {
+        return new Main(new TravelOptimizerService((RouteResultCache) null))
+            .optimizeTravel(routesFile.toString(), false);
+    }
+}
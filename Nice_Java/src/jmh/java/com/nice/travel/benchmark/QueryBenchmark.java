@@ -0,0 +1,53 @@
+package com.nice.travel.benchmark;
+
+import com.nice.travel.cache.RouteResultCache;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Route;
+import com.nice.travel.model.TravelRequest;
+import com.nice.travel.service.TravelOptimizerService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single uncached queries per criterion on a warm graph. Run with {@code -prof gc} to see the
+ * allocation rate per query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({"5000"})
+    public int cities;
+
+    @Param({"8"})
+    public int routesPerCity;
+
+    @Param({"Time", "Cost", "Hops"})
+    public String criteria;
+
+    private TimetableGraph graph;
+    private TravelOptimizerService service;
+    private List<TravelRequest> requests;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SyntheticTimetable timetable = new SyntheticTimetable(42, cities, Math.max(2, cities / 50), routesPerCity,
+            SyntheticTimetable.TimeDistribution.PEAKED);
+        graph = timetable.build();
+        service = new TravelOptimizerService((RouteResultCache) null);
+        requests = timetable.requests(7, 1024);
+    }
+
+    @Benchmark
+    public List<Route> findOptimalPath() {
+        TravelRequest request = requests.get(next++ & 1023);
+        return service.findOptimalPath(graph, request.getSource(), request.getDestination(), criteria);
+    }
+}
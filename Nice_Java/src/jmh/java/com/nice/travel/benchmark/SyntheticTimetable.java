@@ -0,0 +1,190 @@
+package com.nice.travel.benchmark;
+
+import com.google.gson.stream.JsonWriter;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.TravelRequest;
+import com.nice.travel.util.TimeUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded generator for large timetables shaped like a real network: hubs ({@code H0..}) are
+ * densely linked by flights and trains, and every other city ({@code C0..}) belongs to one hub's
+ * region, with routes to its hub and to nearby cities of the same region. The same seed always
+ * yields the same routes in the same order.
+ */
+public final class SyntheticTimetable {
+
+    public enum TimeDistribution {
+        /** Departures every 15 minutes around the clock. */
+        UNIFORM,
+        /** Most departures around the 07:30 and 17:30 peaks, the rest spread over the day. */
+        PEAKED
+    }
+
+    private static final String[] HUB_MODES = {"Flight", "Train"};
+    private static final String[] REGIONAL_MODES = {"Bus", "Train"};
+
+    private final String[] cityNames;
+    private final int size;
+    private final int[] sources;
+    private final int[] targets;
+    private final String[] modes;
+    private final int[] departures;
+    private final int[] arrivals;
+    private final int[] costs;
+
+    public SyntheticTimetable(long seed, int cities, int hubs, int routesPerCity, TimeDistribution distribution) {
+        if (hubs <= 0 || hubs >= cities || routesPerCity <= 0) {
+            throw new IllegalArgumentException("Need 0 < hubs < cities and routesPerCity > 0");
+        }
+        Random random = new Random(seed);
+        cityNames = new String[cities];
+        for (int c = 0; c < cities; c++) {
+            cityNames[c] = c < hubs ? "H" + c : "C" + (c - hubs);
+        }
+        int capacity = hubs * routesPerCity * 3 + (cities - hubs) * routesPerCity;
+        sources = new int[capacity];
+        targets = new int[capacity];
+        modes = new String[capacity];
+        departures = new int[capacity];
+        arrivals = new int[capacity];
+        costs = new int[capacity];
+
+        int spokes = cities - hubs;
+        int count = 0;
+        for (int hub = 0; hub < hubs; hub++) {
+            for (int r = 0; r < routesPerCity * 3; r++) {
+                boolean trunk = r % 2 == 0;
+                int target = trunk ? random.nextInt(hubs) : hubs + regionMember(random, hub, hubs, spokes);
+                if (target == hub) {
+                    target = (hub + 1) % hubs;
+                }
+                String mode = trunk ? HUB_MODES[random.nextInt(HUB_MODES.length)] : "Train";
+                int duration = trunk ? 60 + random.nextInt(240) : 20 + random.nextInt(120);
+                int cost = trunk ? 100 + random.nextInt(500) : 10 + random.nextInt(140);
+                count = add(count, hub, target, mode, departure(random, distribution), duration, cost);
+            }
+        }
+        for (int s = 0; s < spokes; s++) {
+            int city = hubs + s;
+            int hub = s % hubs;
+            for (int r = 0; r < routesPerCity; r++) {
+                int target;
+                if (random.nextInt(5) < 2) {
+                    target = hub;
+                } else {
+                    int neighbour = s + hubs * (1 + random.nextInt(8)) * (random.nextBoolean() ? 1 : -1);
+                    target = hubs + Math.floorMod(neighbour, spokes);
+                    if (target == city) {
+                        target = hub;
+                    }
+                }
+                String mode = REGIONAL_MODES[random.nextInt(REGIONAL_MODES.length)];
+                count = add(count, city, target, mode, departure(random, distribution),
+                    20 + random.nextInt(160), 10 + random.nextInt(140));
+            }
+        }
+        size = count;
+    }
+
+    private int add(int index, int source, int target, String mode, int departure, int duration, int cost) {
+        sources[index] = source;
+        targets[index] = target;
+        modes[index] = mode;
+        departures[index] = departure;
+        arrivals[index] = (departure + duration) % TimeUtil.MINUTES_PER_DAY;
+        costs[index] = cost;
+        return index + 1;
+    }
+
+    private static int regionMember(Random random, int hub, int hubs, int spokes) {
+        int members = (spokes - hub + hubs - 1) / hubs;
+        return members == 0 ? 0 : hub + hubs * random.nextInt(members);
+    }
+
+    private static int departure(Random random, TimeDistribution distribution) {
+        if (distribution == TimeDistribution.UNIFORM || random.nextInt(10) < 3) {
+            return random.nextInt(96) * 15;
+        }
+        double peak = random.nextBoolean() ? 450 : 1_050;
+        int minute = (int) Math.round(peak + random.nextGaussian() * 90) / 5 * 5;
+        return Math.floorMod(minute, TimeUtil.MINUTES_PER_DAY);
+    }
+
+    public int routeCount() {
+        return size;
+    }
+
+    public int cityCount() {
+        return cityNames.length;
+    }
+
+    public String cityName(int city) {
+        return cityNames[city];
+    }
+
+    /** Adds every route to {@code builder}, passing times as "HH:mm" like the JSON input does. */
+    public TimetableGraphBuilder addTo(TimetableGraphBuilder builder) {
+        for (int i = 0; i < size; i++) {
+            builder.addRoute(cityNames[sources[i]], cityNames[targets[i]], modes[i],
+                TimeUtil.minutesToTime(departures[i]), TimeUtil.minutesToTime(arrivals[i]), costs[i]);
+        }
+        return builder;
+    }
+
+    public TimetableGraph build() {
+        return addTo(new TimetableGraphBuilder()).build();
+    }
+
+    /** {@code count} requests between random cities, cycling through Time, Cost and Hops. */
+    public List<TravelRequest> requests(long seed, int count) {
+        Random random = new Random(seed);
+        String[] criteria = {"Time", "Cost", "Hops"};
+        List<TravelRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int source = random.nextInt(cityNames.length);
+            int target = (source + 1 + random.nextInt(cityNames.length - 1)) % cityNames.length;
+            requests.add(new TravelRequest("request_" + (i + 1), cityNames[source], cityNames[target],
+                criteria[i % criteria.length]));
+        }
+        return requests;
+    }
+
+    /** Writes an input document in the CLI schema: all routes followed by {@code requests}. */
+    public void writeJson(Path file, List<TravelRequest> requests) throws IOException {
+        try (JsonWriter writer = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            writer.name("routes").beginArray();
+            for (int i = 0; i < size; i++) {
+                writer.beginObject()
+                    .name("source").value(cityNames[sources[i]])
+                    .name("destination").value(cityNames[targets[i]])
+                    .name("mode").value(modes[i])
+                    .name("departureTime").value(TimeUtil.minutesToTime(departures[i]))
+                    .name("arrivalTime").value(TimeUtil.minutesToTime(arrivals[i]))
+                    .name("cost").value(costs[i])
+                    .endObject();
+            }
+            writer.endArray();
+            writer.name("requests").beginArray();
+            for (TravelRequest request : requests) {
+                writer.beginObject()
+                    .name("request_id").value(request.getRequestId())
+                    .name("source").value(request.getSource())
+                    .name("destination").value(request.getDestination())
+                    .name("criteria").value(request.getCriteria())
+                    .endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+}
@@ -1,122 +1,824 @@
 package com.nice.travel;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.nice.travel.api.HuggingFaceClient;
+import com.nice.travel.cache.FileSummaryCache;
+import com.nice.travel.cache.LruRouteResultCache;
+import com.nice.travel.cache.RouteResultCache;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.graph.TimetableSnapshot;
+import com.nice.travel.io.TimetableJson;
+import com.nice.travel.metrics.Metrics;
+import com.nice.travel.model.Criteria;
 import com.nice.travel.model.Route;
+import com.nice.travel.model.RouteConstraints;
 import com.nice.travel.model.TravelRequest;
+import com.nice.travel.search.CancellationToken;
+import com.nice.travel.search.ContractionHierarchy;
+import com.nice.travel.search.ContractionHierarchyBuilder;
+import com.nice.travel.search.DistanceOracle;
+import com.nice.travel.search.Landmarks;
+import com.nice.travel.search.SearchBudget;
+import com.nice.travel.search.SearchStatus;
+import com.nice.travel.server.NdjsonRequestStream;
+import com.nice.travel.server.TravelQueryServer;
+import com.nice.travel.service.BatchQueryPlanner;
 import com.nice.travel.service.TravelOptimizerService;
+import com.nice.travel.shard.LocalShard;
+import com.nice.travel.shard.PartitionedRouter;
+import com.nice.travel.shard.RemoteShard;
+import com.nice.travel.shard.Shard;
+import com.nice.travel.shard.ShardPlan;
+import com.nice.travel.shard.ShardServer;
 import com.nice.travel.util.TimeUtil;
 
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.stream.IntStream;
 
 public class Main {
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    private final TravelOptimizerService optimizerService = new TravelOptimizerService();
+    private static final Gson compactGson = new Gson();
+    private static final int REQUEST_CHUNK_SIZE = 4096;
+    private static final int MAX_ALTERNATIVES = 100;
+    private static final Criteria[] HIERARCHY_CRITERIA = {Criteria.COST, Criteria.HOPS};
+    private final TravelOptimizerService optimizerService;
+    private final BatchQueryPlanner batchPlanner;
+    private final long summaryDeadlineMillis;
+    private final CancellationToken cancellation = new CancellationToken();
+
+    public Main() {
+        this(new TravelOptimizerService());
+    }
+
+    public Main(TravelOptimizerService optimizerService) {
+        this(optimizerService, 0);
+    }
+
+    /** {@code summaryDeadlineMillis} bounds all summary calls of one run; 0 means no overall deadline. */
+    public Main(TravelOptimizerService optimizerService, long summaryDeadlineMillis) {
+        this.optimizerService = optimizerService;
+        this.batchPlanner = new BatchQueryPlanner(optimizerService).withBudget(new SearchBudget(0, 0, 0, cancellation));
+        this.summaryDeadlineMillis = summaryDeadlineMillis;
+    }
+
+    /**
+     * Default limits for every request's search: {@code deadlineMillis} of wall-clock time and
+     * {@code maxSettled} units of work, 0 for none. A request's own {@code budget} overrides them.
+     */
+    public Main withSearchBudget(long deadlineMillis, int maxSettled) {
+        batchPlanner.withBudget(new SearchBudget(deadlineMillis, maxSettled, 0, cancellation));
+        return this;
+    }
+
+    /** Stops every running and future search of this instance; their requests report {@code cancelled}. */
+    public void cancelSearches() {
+        cancellation.cancel();
+    }
 
     public static void main(String[] args) {
-        if (args.length != 4 || !args[0].equals("--gen_trip_summary") || !args[2].equals("--input")) {
-            System.err.println("Usage: java Main --gen_trip_summary true/false --input routes.json");
+        Map<String, String> options = parseOptions(args);
+        boolean serve = options != null && options.containsKey("--serve");
+        boolean stream = options != null && options.containsKey("--ndjson");
+        if (options == null || !(options.containsKey("--input") || (serve || stream) && options.containsKey("--snapshot"))
+                || !(options.containsKey("--gen_trip_summary") || options.containsKey("--compile") || serve || stream
+                    || options.containsKey("--partition") || options.containsKey("--shard_worker"))) {
+            System.err.println("Usage: java Main --gen_trip_summary true/false --input routes.json "
+                + "[--snapshot timetable.bin] [--parallelism N] [--cache_size N] [--pretty true/false] "
+                + "[--summary_concurrency N] [--summary_timeout_ms N] [--summary_deadline_ms N] "
+                + "[--summary_cache_dir DIR] [--summary_cache_ttl_hours N] [--summary_cache_size N] "
+                + "[--landmarks N] [--landmark_strategy avoid|farthest] [--bidirectional true/false] "
+                + "[--hierarchies true/false] [--oracle_max_cities N] [--oracle_max_mb N] "
+                + "[--search_deadline_ms N] [--max_settled N] [--metrics FILE|-]");
+            System.err.println("       java Main --input routes.json --compile timetable.bin [--hierarchies true/false]");
+            System.err.println("       java Main --serve PORT (--input routes.json | --snapshot timetable.bin) "
+                + "[--gen_trip_summary true/false] [--serve_threads N] [--serve_queue N] [--metrics FILE|-]");
+            System.err.println("       java Main --ndjson FILE|- (--input routes.json | --snapshot timetable.bin) "
+                + "[--gen_trip_summary true/false] [--parallelism N] [--max_in_flight N] [--ordered true/false] "
+                + "[--metrics FILE|-]");
+            System.err.println("       java Main --input routes.json --partition N --partition_file plan.json");
+            System.err.println("       java Main --shard_worker PORT --shard I --partition_file plan.json --input routes.json "
+                + "[--serve_threads N]");
+            System.err.println("       java Main --gen_trip_summary true/false --input routes.json --partition_file plan.json "
+                + "--shards URL,URL,... [--shard_timeout_ms N]");
             System.exit(1);
         }
 
-        boolean genSummary = Boolean.parseBoolean(args[1]);
-        String inputFile = args[3];
+        boolean genSummary = Boolean.parseBoolean(options.get("--gen_trip_summary"));
+        String inputFile = options.get("--input");
+        if (options.containsKey("--metrics")) {
+            Metrics.enable();
+        }
 
         try {
-            Main main = new Main();
-            JsonObject result = main.optimizeTravel(inputFile, genSummary);
-            System.out.println(gson.toJson(result));
+            if (options.containsKey("--compile")) {
+                TimetableGraph graph = loadGraph(inputFile);
+                TimetableSnapshot.write(graph, Paths.get(options.get("--compile")));
+                System.err.println("Compiled " + graph.cityCount() + " cities and " + graph.edgeCount()
+                    + " routes into " + options.get("--compile"));
+                if (Boolean.parseBoolean(options.get("--hierarchies"))) {
+                    writeHierarchies(graph, Paths.get(options.get("--compile")));
+                }
+                return;
+            }
+            if (options.containsKey("--partition")) {
+                partition(inputFile, Integer.parseInt(options.get("--partition")),
+                    Paths.get(options.get("--partition_file")));
+                return;
+            }
+            if (options.containsKey("--shard_worker")) {
+                serveShard(inputFile, options);
+                return;
+            }
+            TimetableGraph snapshot = options.containsKey("--snapshot")
+                ? TimetableSnapshot.load(Paths.get(options.get("--snapshot")), true) : null;
+            TravelOptimizerService service = createService(options);
+            if (snapshot != null) {
+                readHierarchies(service, snapshot, Paths.get(options.get("--snapshot")));
+                prepareOracle(service, snapshot);
+            }
+            Main main = new Main(service, Long.parseLong(options.getOrDefault("--summary_deadline_ms", "0")))
+                .withSearchBudget(Long.parseLong(options.getOrDefault("--search_deadline_ms", "0")),
+                    Integer.parseInt(options.getOrDefault("--max_settled", "0")));
+            if (serve || stream) {
+                TimetableGraph graph = snapshot != null ? snapshot : loadGraph(inputFile);
+                if (snapshot == null) {
+                    prepareOracle(service, graph);
+                }
+                if (serve) {
+                    serve(main, graph, genSummary, options);
+                } else {
+                    stream(main, graph, genSummary, options);
+                }
+                return;
+            }
+            int parallelism = Integer.parseInt(options.getOrDefault("--parallelism", "1"));
+            boolean pretty = Boolean.parseBoolean(options.getOrDefault("--pretty", "true"));
+
+            PartitionedRouter router = options.containsKey("--shards") ? connectShards(inputFile, options) : null;
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            JsonWriter writer = (pretty ? gson : compactGson).newJsonWriter(out);
+            writer.beginObject();
+            BiConsumer<String, JsonObject> sink = (requestId, result) -> {
+                try {
+                    writer.name(requestId);
+                    gson.toJson(result, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            if (router != null) {
+                main.optimizePartitioned(inputFile, router, genSummary, sink);
+            } else {
+                main.optimizeTravel(inputFile, genSummary, parallelism, snapshot, sink);
+            }
+            writer.endObject();
+            out.write(System.lineSeparator());
+            out.flush();
+            if (options.containsKey("--metrics")) {
+                writeMetrics(options.get("--metrics"));
+            }
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             System.exit(1);
         }
     }
 
+    private static TravelOptimizerService createService(Map<String, String> options) throws IOException {
+        int cacheSize = Integer.parseInt(options.getOrDefault("--cache_size", "0"));
+        HuggingFaceClient.Builder summaryClient = new HuggingFaceClient.Builder()
+            .maxConcurrentCalls(Integer.parseInt(options.getOrDefault("--summary_concurrency", "16")))
+            .callTimeoutMillis(Long.parseLong(options.getOrDefault("--summary_timeout_ms", "10000")));
+        if (options.containsKey("--summary_cache_dir")) {
+            summaryClient.summaryCache(new FileSummaryCache(Paths.get(options.get("--summary_cache_dir")),
+                Long.parseLong(options.getOrDefault("--summary_cache_ttl_hours", "168")) * 3_600_000L,
+                Integer.parseInt(options.getOrDefault("--summary_cache_size", "10000"))));
+        }
+        RouteResultCache routeCache = cacheSize > 0 ? new LruRouteResultCache(cacheSize) : null;
+        HuggingFaceClient client = summaryClient.build();
+        if (Metrics.enabled()) {
+            if (routeCache != null) {
+                Metrics.gauge("route_cache_hit_ratio", "Route cache hits over lookups",
+                    () -> routeCache.stats().getHitRate());
+                Metrics.gauge("route_cache_entries", "Routes held in the route cache",
+                    () -> routeCache.stats().getSize());
+                Metrics.gauge("route_cache_evictions", "Routes evicted from the route cache",
+                    () -> routeCache.stats().getEvictions());
+            }
+            Metrics.gauge("summary_circuit_open", "1 while the summary circuit breaker is open",
+                () -> client.getCircuitBreaker().isOpen() ? 1 : 0);
+        }
+        TravelOptimizerService service = new TravelOptimizerService(routeCache, client,
+            System.getenv("HUGGINGFACE_API_KEY")).withLandmarks(
+            Integer.parseInt(options.getOrDefault("--landmarks", "0")),
+            Landmarks.Strategy.valueOf(options.getOrDefault("--landmark_strategy", "avoid").toUpperCase(Locale.ROOT)),
+            Boolean.parseBoolean(options.getOrDefault("--bidirectional", "false")))
+            .withHierarchies(Boolean.parseBoolean(options.getOrDefault("--hierarchies", "false")))
+            .withOracle(Integer.parseInt(options.getOrDefault("--oracle_max_cities", "300")),
+                Long.parseLong(options.getOrDefault("--oracle_max_mb", "64")) << 20);
+        if (Metrics.enabled()) {
+            Metrics.gauge("oracle_bytes", "Bytes held by the all-pairs distance oracle", service::oracleBytes);
+        }
+        return service;
+    }
+
+    /** Builds the oracle for a graph known before the first query and reports its footprint. */
+    private static void prepareOracle(TravelOptimizerService service, TimetableGraph graph) {
+        long started = System.nanoTime();
+        DistanceOracle oracle = service.oracleFor(graph);
+        if (oracle != null) {
+            System.err.printf(Locale.ROOT, "Oracle for %d cities built in %d ms, %.1f MB%n", graph.cityCount(),
+                (System.nanoTime() - started) / 1_000_000, oracle.memoryBytes() / (1024.0 * 1024.0));
+        }
+    }
+
+    /** Builds the Cost and Hops hierarchies of a freshly compiled snapshot and stores them beside it. */
+    private static void writeHierarchies(TimetableGraph graph, Path snapshot) throws IOException {
+        for (Criteria criteria : HIERARCHY_CRITERIA) {
+            ContractionHierarchy hierarchy = new ContractionHierarchyBuilder(graph, criteria).build();
+            Path file = ContractionHierarchy.fileFor(snapshot, criteria);
+            hierarchy.write(file);
+            System.err.println("Contracted " + criteria.getLabel() + " hierarchy with "
+                + hierarchy.shortcutCount() + " shortcuts into " + file);
+        }
+    }
+
+    /** Registers the hierarchies stored beside {@code snapshot}; a stale or damaged file is skipped with a warning. */
+    private static void readHierarchies(TravelOptimizerService service, TimetableGraph graph, Path snapshot) {
+        for (Criteria criteria : HIERARCHY_CRITERIA) {
+            Path file = ContractionHierarchy.fileFor(snapshot, criteria);
+            if (!Files.exists(file)) {
+                continue;
+            }
+            try {
+                service.addHierarchy(ContractionHierarchy.read(file, graph));
+            } catch (IOException e) {
+                System.err.println("Warning: ignoring " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Writes the metrics exposition to {@code target}, a file path or {@code -} for stderr. */
+    private static void writeMetrics(String target) throws IOException {
+        if (target.equals("-")) {
+            StringBuilder text = new StringBuilder();
+            Metrics.writeText(text);
+            System.err.print(text);
+            return;
+        }
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(target), StandardCharsets.UTF_8))) {
+            Metrics.writeText(out);
+        }
+    }
+
+    /** Splits the timetable into {@code shards} and writes the plan the workers and the coordinator share. */
+    private static void partition(String inputFile, int shards, Path planFile) throws IOException {
+        TimetableGraph graph = loadGraph(inputFile);
+        ShardPlan plan = ShardPlan.create(graph, shards);
+        plan.write(planFile);
+        int crossing = 0;
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            if (plan.crosses(graph.cityName(graph.source(edge)), graph.cityName(graph.target(edge)))) {
+                crossing++;
+            }
+        }
+        System.err.println("Partitioned " + graph.cityCount() + " cities into " + shards + " shards; " + crossing
+            + " of " + graph.edgeCount() + " routes cross shards. Plan written to " + planFile);
+    }
+
+    /** Loads only the routes inside one shard and answers the coordinator's shard calls until the JVM exits. */
+    private static void serveShard(String inputFile, Map<String, String> options) throws IOException {
+        ShardPlan plan = ShardPlan.read(Paths.get(options.get("--partition_file")));
+        int shard = Integer.parseInt(options.get("--shard"));
+        TimetableGraph graph = loadGraph(inputFile, (source, destination) -> plan.inside(shard, source, destination));
+        ShardServer server = new ShardServer(new LocalShard(graph), Integer.parseInt(options.get("--shard_worker")),
+            Integer.parseInt(options.getOrDefault("--serve_threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors()))));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "shard-server-shutdown"));
+        server.start();
+        System.err.println("Shard " + shard + " serving " + graph.cityCount() + " cities and " + graph.edgeCount()
+            + " routes on http://127.0.0.1:" + server.getPort());
+    }
+
+    /** Loads the routes between shards and fetches the boundary tables from the workers. */
+    private static PartitionedRouter connectShards(String inputFile, Map<String, String> options) throws IOException {
+        ShardPlan plan = ShardPlan.read(Paths.get(options.get("--partition_file")));
+        long timeout = Long.parseLong(options.getOrDefault("--shard_timeout_ms", "30000"));
+        List<Shard> shards = new ArrayList<>();
+        for (String url : options.get("--shards").split(",")) {
+            shards.add(new RemoteShard(url.trim(), timeout));
+        }
+        return new PartitionedRouter(plan, loadGraph(inputFile, plan::crosses), shards);
+    }
+
+    /** Keeps {@code graph} loaded and answers HTTP queries until the JVM is asked to exit. */
+    private static void serve(Main main, TimetableGraph graph, boolean genSummary, Map<String, String> options)
+            throws IOException {
+        TravelQueryServer server = new TravelQueryServer(main, graph, genSummary,
+            Integer.parseInt(options.get("--serve")),
+            Integer.parseInt(options.getOrDefault("--serve_threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors()))),
+            Integer.parseInt(options.getOrDefault("--serve_queue", "1024")));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(10_000);
+            if (options.containsKey("--metrics")) {
+                try {
+                    writeMetrics(options.get("--metrics"));
+                } catch (IOException e) {
+                    System.err.println("Error: " + e.getMessage());
+                }
+            }
+        }, "query-server-shutdown"));
+        server.start();
+        System.err.println("Serving " + graph.cityCount() + " cities and " + graph.edgeCount()
+            + " routes on http://127.0.0.1:" + server.getPort() + "/optimize");
+    }
+
+    /** Answers the NDJSON requests of {@code --ndjson} (a file, or {@code -} for stdin) one result line each on stdout. */
+    private static void stream(Main main, TimetableGraph graph, boolean genSummary, Map<String, String> options)
+            throws IOException {
+        NdjsonRequestStream requestStream = new NdjsonRequestStream(main, graph, genSummary,
+            Integer.parseInt(options.getOrDefault("--parallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors()))),
+            Integer.parseInt(options.getOrDefault("--max_in_flight", "1024")),
+            Boolean.parseBoolean(options.getOrDefault("--ordered", "true")));
+        String source = options.get("--ndjson");
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(source.equals("-")
+                ? System.in : new FileInputStream(source), StandardCharsets.UTF_8))) {
+            long answered = requestStream.run(in, out);
+            System.err.println("Answered " + answered + " streamed requests");
+        }
+        if (options.containsKey("--metrics")) {
+            writeMetrics(options.get("--metrics"));
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        if (args.length % 2 != 0) {
+            return null;
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                return null;
+            }
+            options.put(args[i], args[i + 1]);
+        }
+        return options;
+    }
+
     public JsonObject optimizeTravel(String inputFile, boolean genSummary) throws IOException {
-        JsonObject input = gson.fromJson(new FileReader(inputFile), JsonObject.class);
+        return optimizeTravel(inputFile, genSummary, 1);
+    }
+
+    public JsonObject optimizeTravel(String inputFile, boolean genSummary, int parallelism) throws IOException {
         JsonObject result = new JsonObject();
+        optimizeTravel(inputFile, genSummary, parallelism, null, result::add);
+        return result;
+    }
+
+    /** Reads only the {@code routes} of {@code inputFile} into a compiled graph. */
+    public static TimetableGraph loadGraph(String inputFile) throws IOException {
+        TimetableGraphBuilder builder = new TimetableGraphBuilder();
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(inputFile)))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("routes")) {
+                    TimetableJson.readRoutes(reader, builder);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return builder.build();
+    }
+
+    /** Reads the {@code routes} of {@code inputFile} that {@code accept} approves by endpoint names. */
+    public static TimetableGraph loadGraph(String inputFile, BiPredicate<String, String> accept) throws IOException {
+        TimetableGraphBuilder builder = new TimetableGraphBuilder();
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(inputFile)))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("routes")) {
+                    TimetableJson.readRoutes(reader, builder, accept);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Answers the requests of {@code inputFile} through a partitioned timetable, one request at a
+     * time, handing each result to {@code sink} in order. The document's routes are skipped.
+     */
+    public void optimizePartitioned(String inputFile, PartitionedRouter router, boolean genSummary,
+                                    BiConsumer<String, JsonObject> sink) throws IOException {
+        long summaryDeadline = summaryDeadlineMillis > 0
+            ? System.nanoTime() + summaryDeadlineMillis * 1_000_000L : Long.MAX_VALUE;
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(inputFile)))) {
+            reader.beginObject();
+            int number = 0;
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("requests")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String[] requestId = new String[1];
+                    JsonObject[] result = new JsonObject[1];
+                    TravelRequest request = parseRequest(parseElement(reader), number++, requestId, result, 0);
+                    if (request != null && request.hasDepartureWindow()) {
+                        result[0] = errorResult("Departure windows are not supported in partitioned mode");
+                    } else if (request != null && request.getConstraints() != null) {
+                        result[0] = errorResult("Constraints are not supported in partitioned mode");
+                    } else if (request != null) {
+                        try {
+                            List<Route> path = router.findOptimalPath(request.getSource(), request.getDestination(),
+                                request.getCriteria());
+                            result[0] = processRequest(request, path);
+                            result[0].addProperty("status",
+                                (path.isEmpty() ? SearchStatus.NO_ROUTE : SearchStatus.OK).getLabel());
+                            result[0].addProperty("travelSummary", optimizerService.generateTravelSummaryAsync(
+                                path, optimizerService.calculateTotalTime(path), genSummary, summaryDeadline).join());
+                        } catch (IOException e) {
+                            result[0] = errorResult("Route search failed: " + e.getMessage());
+                        }
+                    }
+                    sink.accept(requestId[0], result[0]);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+    }
+
+    /**
+     * Streams the input document: routes go straight into the graph builder and requests are
+     * answered in chunks as they are read, each result handed to {@code sink} in input order.
+     * Requests that appear before {@code routes} are buffered until the graph is built. When
+     * {@code prebuilt} is given (e.g. a loaded snapshot) the document's routes are skipped.
+     */
+    public void optimizeTravel(String inputFile, boolean genSummary, int parallelism, TimetableGraph prebuilt,
+                               BiConsumer<String, JsonObject> sink) throws IOException {
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        long summaryDeadline = summaryDeadlineMillis > 0
+            ? System.nanoTime() + summaryDeadlineMillis * 1_000_000L : Long.MAX_VALUE;
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(inputFile)))) {
+            TimetableGraphBuilder builder = new TimetableGraphBuilder();
+            TimetableGraph graph = prebuilt;
+            List<JsonElement> pending = new ArrayList<>();
+            Runnable emitPrevious = null;
+            int processed = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("routes") && graph == null) {
+                    TimetableJson.readRoutes(reader, builder);
+                    graph = builder.build();
+                } else if (name.equals("requests")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        pending.add(parseElement(reader));
+                        if (graph != null && pending.size() == REQUEST_CHUNK_SIZE) {
+                            Runnable emit = processChunk(pending, processed, graph, genSummary, summaryDeadline, pool, sink);
+                            if (emitPrevious != null) {
+                                emitPrevious.run();
+                            }
+                            emitPrevious = emit;
+                            processed += pending.size();
+                            pending = new ArrayList<>();
+                        }
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (graph == null) {
+                graph = builder.build();
+            }
+            for (int from = 0; from < pending.size(); from += REQUEST_CHUNK_SIZE) {
+                List<JsonElement> chunk = pending.subList(from, Math.min(pending.size(), from + REQUEST_CHUNK_SIZE));
+                Runnable emit = processChunk(chunk, processed, graph, genSummary, summaryDeadline, pool, sink);
+                if (emitPrevious != null) {
+                    emitPrevious.run();
+                }
+                emitPrevious = emit;
+                processed += chunk.size();
+            }
+            if (emitPrevious != null) {
+                emitPrevious.run();
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Answers already-parsed requests against a loaded graph, handing each result to {@code sink}
+     * in order. Used by the query server, which keeps one graph warm across many calls.
+     */
+    public void optimizeRequests(TimetableGraph graph, List<JsonElement> requests, boolean genSummary,
+                                 BiConsumer<String, JsonObject> sink) throws IOException {
+        optimizeRequests(graph, requests, 0, genSummary, sink);
+    }
 
-        JsonArray requests = input.getAsJsonArray("requests");
-        JsonArray routes = input.getAsJsonArray("routes");
+    /** {@code firstIndex} numbers the default ids ({@code request_N}) of requests without one. */
+    public void optimizeRequests(TimetableGraph graph, List<JsonElement> requests, int firstIndex, boolean genSummary,
+                                 BiConsumer<String, JsonObject> sink) throws IOException {
+        long summaryDeadline = summaryDeadlineMillis > 0
+            ? System.nanoTime() + summaryDeadlineMillis * 1_000_000L : Long.MAX_VALUE;
+        processChunk(requests, firstIndex, graph, genSummary, summaryDeadline, null, sink).run();
+    }
+
+    /**
+     * Computes the routes of one chunk and starts its summary calls. The returned action waits for
+     * the summaries and emits the results; callers run it after computing the next chunk so remote
+     * summary latency overlaps with route search.
+     */
+    private Runnable processChunk(List<JsonElement> requests, int firstIndex, TimetableGraph graph, boolean genSummary,
+                                  long summaryDeadline, ForkJoinPool pool, BiConsumer<String, JsonObject> sink)
+            throws IOException {
+        String[] requestIds = new String[requests.size()];
+        JsonObject[] results = new JsonObject[requests.size()];
+        List<TravelRequest> parsed = new ArrayList<>(requests.size());
+        List<Integer> parsedIndexes = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            TravelRequest request = parseRequest(requests.get(i), firstIndex + i, requestIds, results, i);
+            if (request != null) {
+                parsed.add(request);
+                parsedIndexes.add(i);
+            }
+        }
+
+        boolean parallel = pool != null;
+        List<CompletableFuture<String>> summaries = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        SearchStatus[] statuses = new SearchStatus[parsed.size()];
+        Runnable work = () -> {
+            List<List<List<Route>>> schedules = batchPlanner.planSchedules(graph, parsed, parallel, statuses);
+            IntStream indexes = IntStream.range(0, parsed.size());
+            (parallel ? indexes.parallel() : indexes).forEach(i -> {
+                int index = parsedIndexes.get(i);
+                if (schedules.get(i) == null) {
+                    results[index] = errorResult("Route search failed");
+                } else {
+                    results[index] = processSchedules(parsed.get(i), schedules.get(i));
+                    results[index].addProperty("status", statuses[i].getLabel());
+                    List<Route> path = schedules.get(i).isEmpty() ? new ArrayList<>() : schedules.get(i).get(0);
+                    int totalTime = optimizerService.calculateTotalTime(path, minConnection(parsed.get(i)));
+                    summaries.set(index, optimizerService.generateTravelSummaryAsync(
+                        path, totalTime, genSummary, summaryDeadline));
+                }
+            });
+        };
+
+        long searchStarted = Metrics.enabled() ? System.nanoTime() : 0;
+        if (!parallel) {
+            work.run();
+        } else {
+            try {
+                pool.submit(work).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while processing requests", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to process requests", e.getCause());
+            }
+        }
 
-        Map<String, List<Route>> graph = buildGraph(routes);
+        if (Metrics.enabled()) {
+            Metrics.CHUNK_SEARCH.recordSince(searchStarted);
+        }
+
+        return () -> {
+            long emitStarted = Metrics.enabled() ? System.nanoTime() : 0;
+            for (int i = 0; i < results.length; i++) {
+                if (summaries.get(i) != null) {
+                    results[i].addProperty("travelSummary", summaries.get(i).join());
+                }
+                sink.accept(requestIds[i], results[i]);
+            }
+            if (Metrics.enabled()) {
+                Metrics.CHUNK_EMIT.recordSince(emitStarted);
+            }
+        };
+    }
 
-        for (JsonElement requestElement : requests) {
+    private static JsonElement parseElement(JsonReader reader) {
+        if (!Metrics.enabled()) {
+            return JsonParser.parseReader(reader);
+        }
+        long started = System.nanoTime();
+        JsonElement element = JsonParser.parseReader(reader);
+        Metrics.REQUEST_PARSE.recordSince(started);
+        return element;
+    }
+
+    private TravelRequest parseRequest(JsonElement requestElement, int requestNumber, String[] requestIds,
+                                       JsonObject[] results, int index) {
+        requestIds[index] = "request_" + (requestNumber + 1);
+        try {
             JsonObject requestObj = requestElement.getAsJsonObject();
+            JsonElement requestId = requestObj.get("request_id");
+            if (requestId != null && !requestId.isJsonNull()) {
+                requestIds[index] = requestId.getAsString();
+            }
+            JsonElement k = requestObj.get("k");
+            int alternatives = k == null || k.isJsonNull() ? 1 : k.getAsInt();
+            if (alternatives < 1 || alternatives > MAX_ALTERNATIVES) {
+                throw new IllegalArgumentException("k must be between 1 and " + MAX_ALTERNATIVES);
+            }
+            String criteria = requestObj.get("criteria").getAsString();
+            int earliest = departureMinute(requestObj.get("earliestDeparture"));
+            int latest = departureMinute(requestObj.get("latestDeparture"));
+            if ((earliest < 0) != (latest < 0)) {
+                throw new IllegalArgumentException("earliestDeparture and latestDeparture must be given together");
+            }
+            if (earliest >= 0 && (Criteria.parse(criteria) != Criteria.TIME || alternatives > 1)) {
+                throw new IllegalArgumentException("A departure window needs the Time criteria and k of 1");
+            }
             TravelRequest request = new TravelRequest(
-                requestObj.get("request_id").getAsString(),
+                requestIds[index],
                 requestObj.get("source").getAsString(),
                 requestObj.get("destination").getAsString(),
-                requestObj.get("criteria").getAsString()
+                criteria,
+                alternatives,
+                earliest,
+                latest
             );
-
-            JsonObject requestResult = processRequest(request, graph, genSummary);
-            result.add(request.getRequestId(), requestResult);
+            JsonElement budget = requestObj.get("budget");
+            if (budget != null && !budget.isJsonNull()) {
+                JsonObject limits = budget.getAsJsonObject();
+                request.withBudget(budgetLimit(limits, "deadlineMs"), (int) budgetLimit(limits, "maxSettled"),
+                    (int) budgetLimit(limits, "maxHops"));
+            }
+            JsonElement constraints = requestObj.get("constraints");
+            if (constraints != null && !constraints.isJsonNull()) {
+                if (earliest >= 0 || alternatives > 1) {
+                    throw new IllegalArgumentException("Constraints are not supported with k > 1 or a departure window");
+                }
+                request.withConstraints(parseConstraints(constraints.getAsJsonObject()));
+            }
+            return request;
+        } catch (RuntimeException e) {
+            results[index] = errorResult(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            return null;
         }
+    }
 
-        return result;
+    /** Minute of the day of an {@code HH:MM} field, or -1 if it is absent. */
+    private static int departureMinute(JsonElement time) {
+        if (time == null || time.isJsonNull()) {
+            return -1;
+        }
+        String text = time.getAsString();
+        if (!text.matches("([01]\\d|2[0-3]):[0-5]\\d")) {
+            throw new IllegalArgumentException("Departure times must be HH:MM, got " + text);
+        }
+        return TimeUtil.timeToMinutes(text);
     }
 
-    private Map<String, List<Route>> buildGraph(JsonArray routes) {
-        Map<String, List<Route>> graph = new HashMap<>();
+    private static RouteConstraints parseConstraints(JsonObject constraints) {
+        return new RouteConstraints(modes(constraints.get("allowedModes")), modes(constraints.get("excludedModes")),
+            (int) budgetLimit(constraints, "maxHops"), (int) budgetLimit(constraints, "maxCost"),
+            (int) budgetLimit(constraints, "minConnectionMinutes"));
+    }
 
-        for (JsonElement routeElement : routes) {
-            JsonObject routeObj = routeElement.getAsJsonObject();
-            String source = routeObj.get("source").getAsString();
-            String destination = routeObj.get("destination").getAsString();
-            String mode = routeObj.get("mode").getAsString();
-            String departureTime = routeObj.get("departureTime").getAsString();
-            String arrivalTime = routeObj.get("arrivalTime").getAsString();
-            int cost = routeObj.get("cost").getAsInt();
+    private static List<String> modes(JsonElement modes) {
+        List<String> names = new ArrayList<>();
+        if (modes != null && !modes.isJsonNull()) {
+            for (JsonElement mode : modes.getAsJsonArray()) {
+                names.add(mode.getAsString());
+            }
+        }
+        return names;
+    }
 
-            int duration = TimeUtil.calculateDuration(departureTime, arrivalTime);
-            Route route = new Route(source, destination, mode, departureTime, arrivalTime, cost, duration);
+    private static int minConnection(TravelRequest request) {
+        return request.getConstraints() != null ? request.getConstraints().getMinConnectionMinutes() : 0;
+    }
 
-            graph.computeIfAbsent(source, k -> new ArrayList<>()).add(route);
+    /** A non-negative limit of a request's {@code budget} or {@code constraints} object, 0 if it is absent. */
+    private static long budgetLimit(JsonObject budget, String name) {
+        JsonElement limit = budget.get(name);
+        if (limit == null || limit.isJsonNull()) {
+            return 0;
         }
+        long value = limit.getAsLong();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(name + " must be between 0 and " + Integer.MAX_VALUE);
+        }
+        return value;
+    }
 
-        return graph;
+    private static JsonObject errorResult(String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        return error;
     }
 
-    private JsonObject processRequest(TravelRequest request, Map<String, List<Route>> graph, boolean genSummary) {
-        JsonObject result = new JsonObject();
+    private JsonObject processSchedules(TravelRequest request, List<List<Route>> schedules) {
+        if (Criteria.parse(request.getCriteria()) == Criteria.PARETO) {
+            JsonObject result = new JsonObject();
+            JsonArray options = new JsonArray();
+            for (List<Route> schedule : schedules) {
+                JsonObject option = new JsonObject();
+                option.add("schedule", scheduleJson(schedule));
+                option.addProperty("time", optimizerService.calculateTotalTime(schedule, minConnection(request)));
+                option.addProperty("cost", optimizerService.calculateTotalCost(schedule));
+                option.addProperty("hops", schedule.size());
+                options.add(option);
+            }
+            result.add("schedules", options);
+            result.addProperty("criteria", request.getCriteria());
+            return result;
+        }
+        if (request.hasDepartureWindow()) {
+            JsonObject result = new JsonObject();
+            JsonArray options = new JsonArray();
+            for (List<Route> schedule : schedules) {
+                JsonObject option = new JsonObject();
+                option.add("schedule", scheduleJson(schedule));
+                option.addProperty("departureTime", schedule.get(0).getDepartureTime());
+                option.addProperty("arrivalTime", schedule.get(schedule.size() - 1).getArrivalTime());
+                option.addProperty("value", optimizerService.calculateTotalTime(schedule));
+                options.add(option);
+            }
+            result.add("schedules", options);
+            result.addProperty("criteria", request.getCriteria());
+            return result;
+        }
+        if (request.getK() > 1) {
+            JsonObject result = new JsonObject();
+            JsonArray options = new JsonArray();
+            for (List<Route> schedule : schedules) {
+                JsonObject option = new JsonObject();
+                option.add("schedule", scheduleJson(schedule));
+                option.addProperty("value", optimizerService.calculateValue(schedule, request.getCriteria()));
+                options.add(option);
+            }
+            result.add("schedules", options);
+            result.addProperty("criteria", request.getCriteria());
+            return result;
+        }
+        return processRequest(request, schedules.get(0));
+    }
 
-        List<Route> optimalPath = optimizerService.findOptimalPath(
-            graph, request.getSource(), request.getDestination(), request.getCriteria()
-        );
+    private JsonObject processRequest(TravelRequest request, List<Route> optimalPath) {
+        JsonObject result = new JsonObject();
 
         if (optimalPath.isEmpty()) {
             result.add("schedule", new JsonArray());
             result.addProperty("criteria", request.getCriteria());
             result.addProperty("value", 0);
-            result.addProperty("travelSummary", genSummary ? "No routes available" : "Not generated");
         } else {
-            JsonArray schedule = new JsonArray();
-            for (Route route : optimalPath) {
-                JsonObject routeObj = new JsonObject();
-                routeObj.addProperty("source", route.getSource());
-                routeObj.addProperty("destination", route.getDestination());
-                routeObj.addProperty("mode", route.getMode());
-                routeObj.addProperty("departureTime", route.getDepartureTime());
-                routeObj.addProperty("arrivalTime", route.getArrivalTime());
-                routeObj.addProperty("cost", route.getCost());
-                schedule.add(routeObj);
-            }
-
-            int totalTime = optimizerService.calculateTotalTime(optimalPath);
-            int totalCost = optimizerService.calculateTotalCost(optimalPath);
+            int value = optimizerService.calculateValue(optimalPath, request.getCriteria(), minConnection(request));
 
-            int value = request.getCriteria().equals("Time") ? totalTime :
-                       request.getCriteria().equals("Cost") ? totalCost : optimalPath.size();
-
-            result.add("schedule", schedule);
+            result.add("schedule", scheduleJson(optimalPath));
             result.addProperty("criteria", request.getCriteria());
             result.addProperty("value", value);
-            result.addProperty("travelSummary", 
-                optimizerService.generateTravelSummary(optimalPath, totalTime, genSummary));
         }
 
         return result;
     }
-}
\ No newline at end of file
+
+    private static JsonArray scheduleJson(List<Route> path) {
+        JsonArray schedule = new JsonArray();
+        for (Route route : path) {
+            JsonObject routeObj = new JsonObject();
+            routeObj.addProperty("source", route.getSource());
+            routeObj.addProperty("destination", route.getDestination());
+            routeObj.addProperty("mode", route.getMode());
+            routeObj.addProperty("departureTime", route.getDepartureTime());
+            routeObj.addProperty("arrivalTime", route.getArrivalTime());
+            routeObj.addProperty("cost", route.getCost());
+            schedule.add(routeObj);
+        }
+        return schedule;
+    }
+}
@@ -0,0 +1,46 @@
+package com.nice.travel.api;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consecutive-failure circuit breaker. After {@code failureThreshold} failures in a row the
+ * circuit opens and rejects calls for {@code openMillis}; the first call after that is let
+ * through as a probe and either closes the circuit or re-opens it.
+ */
+public class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openUntil = new AtomicLong();
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1_000_000L;
+    }
+
+    public boolean allowRequest() {
+        long until = openUntil.get();
+        if (until == 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        // Only one caller wins the CAS and probes the endpoint once the open period has elapsed
+        return now - until >= 0 && openUntil.compareAndSet(until, now + openNanos);
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        openUntil.set(0);
+    }
+
+    public void recordFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntil.set(System.nanoTime() + openNanos);
+        }
+    }
+
+    public boolean isOpen() {
+        return openUntil.get() != 0;
+    }
+}
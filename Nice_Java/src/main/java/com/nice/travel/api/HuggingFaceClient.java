@@ -3,57 +3,231 @@ package com.nice.travel.api;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.nice.travel.cache.SummaryCache;
+import com.nice.travel.jfr.SummaryCallEvent;
+import com.nice.travel.metrics.Metrics;
 import okhttp3.*;
 
 import java.io.IOException;
+import java.util.concurrent.*;
 
 public class HuggingFaceClient {
     private static final String API_URL = "https://api-inference.huggingface.co/models/facebook/bart-large-cnn";
-    private final OkHttpClient client = new OkHttpClient();
+    private static final String FALLBACK = "Not generated";
+    private static final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "summary-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String apiUrl;
+    private final OkHttpClient client;
+    private final CircuitBreaker circuitBreaker;
+    private final SummaryCache summaryCache;
     private final Gson gson = new Gson();
 
+    public HuggingFaceClient() {
+        this(new Builder());
+    }
+
+    private HuggingFaceClient(Builder builder) {
+        Dispatcher dispatcher = new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+                Thread thread = new Thread(r, "summary-dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            }));
+        dispatcher.setMaxRequests(builder.maxConcurrentCalls);
+        dispatcher.setMaxRequestsPerHost(builder.maxConcurrentCalls);
+        this.apiUrl = builder.apiUrl;
+        this.client = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(builder.maxIdleConnections, 5, TimeUnit.MINUTES))
+            .connectTimeout(builder.callTimeoutMillis, TimeUnit.MILLISECONDS)
+            .readTimeout(builder.callTimeoutMillis, TimeUnit.MILLISECONDS)
+            .callTimeout(builder.callTimeoutMillis, TimeUnit.MILLISECONDS)
+            .build();
+        this.circuitBreaker = new CircuitBreaker(builder.failureThreshold, builder.openMillis);
+        this.summaryCache = builder.summaryCache;
+    }
+
+    public String getApiUrl() { return apiUrl; }
+    public CircuitBreaker getCircuitBreaker() { return circuitBreaker; }
+
     public String generateSummary(String prompt, String apiKey) {
+        return generateSummaryAsync(prompt, apiKey, Long.MAX_VALUE).join();
+    }
+
+    /**
+     * Starts a summary call and returns immediately. The future always completes normally: with
+     * the summary, or with "Not generated" on any failure, when the circuit is open, or when
+     * {@code deadlineNanos} (a {@link System#nanoTime()} instant) passes first.
+     */
+    public CompletableFuture<String> generateSummaryAsync(String prompt, String apiKey, long deadlineNanos) {
         if (apiKey == null || apiKey.isEmpty()) {
-            return "Not generated";
-        }
-
-        try {
-            JsonObject payload = new JsonObject();
-            payload.addProperty("inputs", prompt);
-            
-            JsonObject parameters = new JsonObject();
-            parameters.addProperty("max_length", 60);
-            parameters.addProperty("min_length", 20);
-            payload.add("parameters", parameters);
-
-            RequestBody body = RequestBody.create(
-                MediaType.parse("application/json"), 
-                gson.toJson(payload)
-            );
-
-            Request request = new Request.Builder()
-                .url(API_URL)
-                .addHeader("Authorization", "Bearer " + apiKey)
-                .post(body)
-                .build();
-
-            Response response = client.newCall(request).execute();
-            try {
-                if (response.isSuccessful() && response.body() != null) {
-                    String responseBody = response.body().string();
-                    JsonArray result = gson.fromJson(responseBody, JsonArray.class);
-                    
-                    if (result.size() > 0) {
-                        return result.get(0).getAsJsonObject().get("summary_text").getAsString();
+            return CompletableFuture.completedFuture(FALLBACK);
+        }
+
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("max_length", 60);
+        parameters.addProperty("min_length", 20);
+
+        String cacheKey = summaryCache != null ? SummaryCache.key(apiUrl, prompt, parameters.toString()) : null;
+        if (cacheKey != null) {
+            String cached = summaryCache.get(cacheKey);
+            if (cached != null) {
+                if (Metrics.enabled()) {
+                    Metrics.SUMMARY_CACHE_HITS.increment();
+                }
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        long remainingNanos = deadlineNanos == Long.MAX_VALUE ? Long.MAX_VALUE : deadlineNanos - System.nanoTime();
+        if (remainingNanos <= 0) {
+            if (Metrics.enabled()) {
+                Metrics.SUMMARY_EXPIRED.increment();
+            }
+            return CompletableFuture.completedFuture(FALLBACK);
+        }
+        if (!circuitBreaker.allowRequest()) {
+            if (Metrics.enabled()) {
+                Metrics.SUMMARY_REJECTED.increment();
+            }
+            return CompletableFuture.completedFuture(FALLBACK);
+        }
+
+        JsonObject payload = new JsonObject();
+        payload.addProperty("inputs", prompt);
+        payload.add("parameters", parameters);
+
+        RequestBody body = RequestBody.create(
+            MediaType.parse("application/json"), 
+            gson.toJson(payload)
+        );
+
+        Request request = new Request.Builder()
+            .url(apiUrl)
+            .addHeader("Authorization", "Bearer " + apiKey)
+            .post(body)
+            .build();
+
+        CompletableFuture<String> summary = new CompletableFuture<>();
+        SummaryCallEvent event = new SummaryCallEvent();
+        event.begin();
+        summary.thenAccept(text -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.promptLength = prompt.length();
+                event.commit();
+            }
+        });
+        if (Metrics.enabled()) {
+            long started = System.nanoTime();
+            Metrics.SUMMARY_CALLS.increment();
+            summary.thenAccept(text -> {
+                Metrics.SUMMARY_CALL.recordSince(started);
+                if (FALLBACK.equals(text)) {
+                    Metrics.SUMMARY_FAILURES.increment();
+                }
+            });
+        }
+        Call call = client.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                recordFailure(call, summary);
+                settle(summary, event, "failed", FALLBACK);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                String outcome = "failed";
+                try {
+                    if (response.isSuccessful() && response.body() != null) {
+                        String responseBody = response.body().string();
+                        JsonArray result = gson.fromJson(responseBody, JsonArray.class);
+                        circuitBreaker.recordSuccess();
+
+                        if (result != null && result.size() > 0) {
+                            String text = result.get(0).getAsJsonObject().get("summary_text").getAsString();
+                            if (cacheKey != null) {
+                                summaryCache.put(cacheKey, text);
+                            }
+                            settle(summary, event, "ok", text);
+                            return;
+                        }
+                    } else {
+                        circuitBreaker.recordFailure();
+                        outcome = "http " + response.code();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    recordFailure(call, summary);
+                } finally {
+                    response.close();
+                }
+                settle(summary, event, outcome, FALLBACK);
+            }
+        });
+
+        if (remainingNanos != Long.MAX_VALUE) {
+            ScheduledFuture<?> expiry = deadlines.schedule(() -> {
+                if (settle(summary, event, "expired", FALLBACK)) {
+                    if (Metrics.enabled()) {
+                        Metrics.SUMMARY_EXPIRED.increment();
                     }
+                    call.cancel();
                 }
-            } finally {
-                response.close();
+            }, remainingNanos, TimeUnit.NANOSECONDS);
+            summary.whenComplete((result, error) -> expiry.cancel(false));
+        }
+        return summary;
+    }
+
+    /**
+     * Counts a failed call against the circuit, unless the deadline already settled its summary and
+     * cancelled it: an expired run budget says nothing about the endpoint's health.
+     */
+    private void recordFailure(Call call, CompletableFuture<String> summary) {
+        if (!call.isCanceled() && !summary.isDone()) {
+            circuitBreaker.recordFailure();
+        }
+    }
+
+    public static class Builder {
+        private String apiUrl = API_URL;
+        private int maxIdleConnections = 5;
+        private int maxConcurrentCalls = 16;
+        private long callTimeoutMillis = 10_000;
+        private int failureThreshold = 5;
+        private long openMillis = 30_000;
+        private SummaryCache summaryCache;
+
+        public Builder apiUrl(String apiUrl) { this.apiUrl = apiUrl; return this; }
+        public Builder maxIdleConnections(int maxIdleConnections) { this.maxIdleConnections = maxIdleConnections; return this; }
+        public Builder maxConcurrentCalls(int maxConcurrentCalls) { this.maxConcurrentCalls = maxConcurrentCalls; return this; }
+        public Builder callTimeoutMillis(long callTimeoutMillis) { this.callTimeoutMillis = callTimeoutMillis; return this; }
+        public Builder failureThreshold(int failureThreshold) { this.failureThreshold = failureThreshold; return this; }
+        public Builder openMillis(long openMillis) { this.openMillis = openMillis; return this; }
+        public Builder summaryCache(SummaryCache summaryCache) { this.summaryCache = summaryCache; return this; }
+
+        public HuggingFaceClient build() {
+            return new HuggingFaceClient(this);
+        }
+    }
+
+    /**
+     * Completes {@code summary} unless the response and the deadline already raced it there,
+     * labelling the flight-recorder event with the winner's outcome.
+     */
+    private static boolean settle(CompletableFuture<String> summary, SummaryCallEvent event, String outcome,
+                                  String text) {
+        synchronized (summary) {
+            if (summary.isDone()) {
+                return false;
             }
-        } catch (IOException e) {
-            // Fall back to "Not generated"
+            event.outcome = outcome;
+            return summary.complete(text);
         }
-        
-        return "Not generated";
     }
-}
\ No newline at end of file
+}
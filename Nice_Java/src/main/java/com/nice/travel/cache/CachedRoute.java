@@ -0,0 +1,20 @@
+package com.nice.travel.cache;
+
+import com.nice.travel.model.Route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class CachedRoute {
+    private final List<Route> schedule;
+    private final int value;
+
+    public CachedRoute(List<Route> schedule, int value) {
+        this.schedule = Collections.unmodifiableList(new ArrayList<>(schedule));
+        this.value = value;
+    }
+
+    public List<Route> getSchedule() { return schedule; }
+    public int getValue() { return value; }
+}
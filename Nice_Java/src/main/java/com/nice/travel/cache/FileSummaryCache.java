@@ -0,0 +1,167 @@
+package com.nice.travel.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link SummaryCache} persisted as one small file per entry under a directory, so it survives
+ * restarts and can be shared by several CLI processes. Entries are read lazily on first lookup
+ * and then served from memory, which keeps the {@code maxEntries} most recently used. Writes go to
+ * a temp file that is atomically renamed into place, so readers in other processes never see a
+ * partial entry. Expired entries are ignored and the directory is trimmed back to
+ * {@code maxEntries} (oldest first) every so often.
+ */
+public class FileSummaryCache implements SummaryCache {
+    private static final String SUFFIX = ".summary";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Memory memory;
+    private final AtomicInteger writesSinceTrim = new AtomicInteger();
+
+    public FileSummaryCache(Path directory, long ttlMillis, int maxEntries) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.memory = new Memory(maxEntries);
+    }
+
+    @Override
+    public String get(String key) {
+        long now = System.currentTimeMillis();
+        CachedSummary entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+        }
+        if (entry == null) {
+            entry = read(key);
+            if (entry == null) {
+                return null;
+            }
+            synchronized (memory) {
+                memory.put(key, entry);
+            }
+        }
+        if (entry.expiresAt <= now) {
+            synchronized (memory) {
+                memory.remove(key, entry);
+            }
+            return null;
+        }
+        return entry.summary;
+    }
+
+    @Override
+    public void put(String key, String summary) {
+        CachedSummary entry = new CachedSummary(System.currentTimeMillis() + ttlMillis, summary);
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+
+        Path file = directory.resolve(key + SUFFIX);
+        Path temp = directory.resolve(key + "." + ThreadLocalRandom.current().nextLong() + TEMP_SUFFIX);
+        try {
+            Files.write(temp, (entry.expiresAt + "\n" + summary).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The cache is best effort; a failed write only costs a future remote call
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Trimming removes it once it is older than the TTL
+            }
+        }
+
+        if (writesSinceTrim.incrementAndGet() >= Math.max(16, maxEntries / 10)) {
+            writesSinceTrim.set(0);
+            trim();
+        }
+    }
+
+    private CachedSummary read(String key) {
+        try {
+            String content = new String(Files.readAllBytes(directory.resolve(key + SUFFIX)), StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            return new CachedSummary(Long.parseLong(content.substring(0, newline)), content.substring(newline + 1));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes expired entries and, if still over the cap, the least recently written ones. Temp
+     * files older than the TTL are left over from failed writes and deleted as well; younger ones
+     * may belong to a write still in progress in another process.
+     */
+    void trim() {
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() + Math.max(ttlMillis, 0) <= now) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            // Retried on the next trim
+        }
+        Map<Path, FileTime> live = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (modified.toMillis() + ttlMillis <= now) {
+                    Files.deleteIfExists(file);
+                } else {
+                    live.put(file, modified);
+                }
+            }
+            if (live.size() > maxEntries) {
+                List<Path> oldestFirst = new ArrayList<>(live.keySet());
+                oldestFirst.sort(Comparator.comparing(live::get));
+                for (Path file : oldestFirst.subList(0, live.size() - maxEntries)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            // Another process may be trimming concurrently; try again after later writes
+        }
+    }
+
+    /** Access-ordered in-memory tier that drops its least recently used entry when over the cap. */
+    private static final class Memory extends LinkedHashMap<String, CachedSummary> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Memory(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedSummary> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private static final class CachedSummary {
+        final long expiresAt;
+        final String summary;
+
+        CachedSummary(long expiresAt, String summary) {
+            this.expiresAt = expiresAt;
+            this.summary = summary;
+        }
+    }
+}
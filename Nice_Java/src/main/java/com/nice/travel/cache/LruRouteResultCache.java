@@ -0,0 +1,84 @@
+package com.nice.travel.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded LRU cache split into independently locked segments, so concurrent lookups of
+ * different keys rarely contend. Each segment evicts its own least recently used entry; their
+ * capacities add up to exactly {@code maxSize}, and small caches use fewer segments.
+ */
+public class LruRouteResultCache implements RouteResultCache {
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LruRouteResultCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        segments = new Segment[Math.min(SEGMENTS, Integer.highestOneBit(maxSize))];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(maxSize / segments.length + (i < maxSize % segments.length ? 1 : 0));
+        }
+    }
+
+    @Override
+    public CachedRoute get(RouteCacheKey key) {
+        Segment segment = segmentFor(key);
+        CachedRoute route;
+        synchronized (segment) {
+            route = segment.get(key);
+        }
+        (route != null ? hits : misses).increment();
+        return route;
+    }
+
+    @Override
+    public void put(RouteCacheKey key, CachedRoute route) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, route);
+        }
+    }
+
+    @Override
+    public CacheStats stats() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    private Segment segmentFor(RouteCacheKey key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    private final class Segment extends LinkedHashMap<RouteCacheKey, CachedRoute> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<RouteCacheKey, CachedRoute> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.nice.travel.cache;
+
+import java.util.Objects;
+
+public final class RouteCacheKey {
+    private final String source;
+    private final String destination;
+    private final String criteria;
+    private final long graphFingerprint;
+
+    public RouteCacheKey(String source, String destination, String criteria, long graphFingerprint) {
+        this.source = source;
+        this.destination = destination;
+        this.criteria = criteria;
+        this.graphFingerprint = graphFingerprint;
+    }
+
+    public String getSource() { return source; }
+    public String getDestination() { return destination; }
+    public String getCriteria() { return criteria; }
+    public long getGraphFingerprint() { return graphFingerprint; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RouteCacheKey)) {
+            return false;
+        }
+        RouteCacheKey other = (RouteCacheKey) o;
+        return graphFingerprint == other.graphFingerprint
+            && source.equals(other.source)
+            && destination.equals(other.destination)
+            && criteria.equals(other.criteria);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, destination, criteria, graphFingerprint);
+    }
+}
@@ -0,0 +1,16 @@
+package com.nice.travel.cache;
+
+/**
+ * Cache of computed routes. Implementations must be safe for concurrent use. Keys carry the
+ * graph fingerprint, so entries computed against an older timetable are never returned for a
+ * changed one; they simply age out.
+ */
+public interface RouteResultCache {
+
+    /** Returns the cached route or {@code null}, counting a hit or a miss. */
+    CachedRoute get(RouteCacheKey key);
+
+    void put(RouteCacheKey key, CachedRoute route);
+
+    CacheStats stats();
+}
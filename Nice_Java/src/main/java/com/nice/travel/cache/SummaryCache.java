@@ -0,0 +1,35 @@
+package com.nice.travel.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Cache of generated travel summaries keyed by {@link #key(String, String, String)}.
+ * Implementations must be safe for concurrent use.
+ */
+public interface SummaryCache {
+
+    /** Returns the cached summary or {@code null} if absent or expired. */
+    String get(String key);
+
+    void put(String key, String summary);
+
+    /** SHA-256 over the model URL, prompt and serialized request parameters, as hex. */
+    static String key(String modelUrl, String prompt, String parameters) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[] {modelUrl, prompt, parameters}) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.nice.travel.graph;
+
+import java.util.Map;
+
+final class ArrayTimetableGraph extends TimetableGraph {
+    private final String[] cityNames;
+    private final Map<String, Integer> cityIds;
+    private final String[] modeNames;
+    private final int[] offsets;
+    private final int[] sources;
+    private final int[] targets;
+    private final int[] modes;
+    private final int[] costs;
+    private final int[] durations;
+    private final int[] departures;
+    private final int[] arrivals;
+    private final int[] connections;
+    private final int[] connectionEdges;
+    private final long fingerprint;
+
+    ArrayTimetableGraph(String[] cityNames, Map<String, Integer> cityIds, String[] modeNames, int[] offsets,
+                        int[] sources, int[] targets, int[] modes, int[] costs, int[] durations,
+                        int[] departures, int[] arrivals, int[] connections, int[] connectionEdges,
+                        long fingerprint) {
+        this.cityNames = cityNames;
+        this.cityIds = cityIds;
+        this.modeNames = modeNames;
+        this.offsets = offsets;
+        this.sources = sources;
+        this.targets = targets;
+        this.modes = modes;
+        this.costs = costs;
+        this.durations = durations;
+        this.departures = departures;
+        this.arrivals = arrivals;
+        this.connections = connections;
+        this.connectionEdges = connectionEdges;
+        this.fingerprint = fingerprint;
+    }
+
+    @Override public int cityCount() { return cityNames.length; }
+    @Override public int edgeCount() { return targets.length; }
+    @Override public int modeCount() { return modeNames.length; }
+
+    @Override
+    public int cityId(String name) {
+        Integer id = cityIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    @Override public String cityName(int city) { return cityNames[city]; }
+    @Override public String modeName(int mode) { return modeNames[mode]; }
+
+    @Override public int firstEdge(int city) { return offsets[city]; }
+    @Override public int endEdge(int city) { return offsets[city + 1]; }
+
+    @Override public int source(int edge) { return sources[edge]; }
+    @Override public int target(int edge) { return targets[edge]; }
+    @Override public int mode(int edge) { return modes[edge]; }
+    @Override public int cost(int edge) { return costs[edge]; }
+    @Override public int duration(int edge) { return durations[edge]; }
+    @Override public int departure(int edge) { return departures[edge]; }
+    @Override public int arrival(int edge) { return arrivals[edge]; }
+
+    @Override public int connectionCount() { return connectionEdges.length; }
+    @Override public int connectionDeparture(int connection) { return connections[connection * CONNECTION_STRIDE]; }
+    @Override public int connectionDuration(int connection) { return connections[connection * CONNECTION_STRIDE + 1]; }
+    @Override public int connectionSource(int connection) { return connections[connection * CONNECTION_STRIDE + 2]; }
+    @Override public int connectionTarget(int connection) { return connections[connection * CONNECTION_STRIDE + 3]; }
+    @Override public int connectionEdge(int connection) { return connectionEdges[connection]; }
+
+    @Override public long fingerprint() { return fingerprint; }
+}
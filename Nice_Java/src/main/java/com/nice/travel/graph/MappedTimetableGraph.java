@@ -0,0 +1,138 @@
+package com.nice.travel.graph;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link TimetableGraph} served from a memory-mapped {@link TimetableSnapshot}. Every array is an
+ * {@link IntBuffer} view over the mapping, so nothing is copied onto the heap and processes that
+ * map the same file share its page cache. City names are decoded on demand.
+ */
+final class MappedTimetableGraph extends TimetableGraph {
+    private final ByteBuffer buffer;
+    private final int cityCount;
+    private final int edgeCount;
+    private final int indexSize;
+    private final long fingerprint;
+    private final IntBuffer offsets;
+    private final IntBuffer sources;
+    private final IntBuffer targets;
+    private final IntBuffer modes;
+    private final IntBuffer costs;
+    private final IntBuffer durations;
+    private final IntBuffer departures;
+    private final IntBuffer arrivals;
+    private final IntBuffer connections;
+    private final IntBuffer connectionEdges;
+    private final IntBuffer cityHashes;
+    private final IntBuffer cityIndex;
+    private final IntBuffer cityNameOffsets;
+    private final int namesStart;
+    private final String[] modeNames;
+
+    MappedTimetableGraph(ByteBuffer buffer, int cityCount, int modeCount, int edgeCount, int indexSize, long fingerprint) {
+        this.buffer = buffer;
+        this.cityCount = cityCount;
+        this.edgeCount = edgeCount;
+        this.indexSize = indexSize;
+        this.fingerprint = fingerprint;
+
+        int position = TimetableSnapshot.HEADER_SIZE;
+        offsets = ints(position, cityCount + 1);
+        position += (cityCount + 1) * 4;
+        sources = ints(position, edgeCount);
+        position += edgeCount * 4;
+        targets = ints(position, edgeCount);
+        position += edgeCount * 4;
+        modes = ints(position, edgeCount);
+        position += edgeCount * 4;
+        costs = ints(position, edgeCount);
+        position += edgeCount * 4;
+        durations = ints(position, edgeCount);
+        position += edgeCount * 4;
+        departures = ints(position, edgeCount);
+        position += edgeCount * 4;
+        arrivals = ints(position, edgeCount);
+        position += edgeCount * 4;
+        connections = ints(position, edgeCount * CONNECTION_STRIDE);
+        position += edgeCount * CONNECTION_STRIDE * 4;
+        connectionEdges = ints(position, edgeCount);
+        position += edgeCount * 4;
+        cityHashes = ints(position, cityCount);
+        position += cityCount * 4;
+        cityIndex = ints(position, indexSize);
+        position += indexSize * 4;
+        cityNameOffsets = ints(position, cityCount + 1);
+        position += (cityCount + 1) * 4;
+        IntBuffer modeNameOffsets = ints(position, modeCount + 1);
+        position += (modeCount + 1) * 4;
+        namesStart = position;
+
+        modeNames = new String[modeCount];
+        for (int m = 0; m < modeCount; m++) {
+            modeNames[m] = decode(modeNameOffsets.get(m), modeNameOffsets.get(m + 1));
+        }
+    }
+
+    static int slot(int hash, int indexSize) {
+        return (int) mix(hash) & (indexSize - 1);
+    }
+
+    private IntBuffer ints(int position, int count) {
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).position(position).limit(position + count * 4);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private String decode(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).position(namesStart + from);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override public int cityCount() { return cityCount; }
+    @Override public int edgeCount() { return edgeCount; }
+    @Override public int modeCount() { return modeNames.length; }
+
+    @Override
+    public int cityId(String name) {
+        int hash = name.hashCode();
+        for (int slot = slot(hash, indexSize); ; slot = (slot + 1) & (indexSize - 1)) {
+            int city = cityIndex.get(slot) - 1;
+            if (city < 0) {
+                return -1;
+            }
+            if (cityHashes.get(city) == hash && cityName(city).equals(name)) {
+                return city;
+            }
+        }
+    }
+
+    @Override public String cityName(int city) { return decode(cityNameOffsets.get(city), cityNameOffsets.get(city + 1)); }
+    @Override public String modeName(int mode) { return modeNames[mode]; }
+
+    @Override public int firstEdge(int city) { return offsets.get(city); }
+    @Override public int endEdge(int city) { return offsets.get(city + 1); }
+
+    @Override public int source(int edge) { return sources.get(edge); }
+    @Override public int target(int edge) { return targets.get(edge); }
+    @Override public int mode(int edge) { return modes.get(edge); }
+    @Override public int cost(int edge) { return costs.get(edge); }
+    @Override public int duration(int edge) { return durations.get(edge); }
+    @Override public int departure(int edge) { return departures.get(edge); }
+    @Override public int arrival(int edge) { return arrivals.get(edge); }
+
+    @Override public int connectionCount() { return edgeCount; }
+    @Override public int connectionDeparture(int connection) { return connections.get(connection * CONNECTION_STRIDE); }
+    @Override public int connectionDuration(int connection) { return connections.get(connection * CONNECTION_STRIDE + 1); }
+    @Override public int connectionSource(int connection) { return connections.get(connection * CONNECTION_STRIDE + 2); }
+    @Override public int connectionTarget(int connection) { return connections.get(connection * CONNECTION_STRIDE + 3); }
+    @Override public int connectionEdge(int connection) { return connectionEdges.get(connection); }
+
+    @Override public long fingerprint() { return fingerprint; }
+}
@@ -0,0 +1,552 @@
+package com.nice.travel.graph;
+
+import com.nice.travel.util.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable timetable version layered over a compiled base graph. Every city touched by a delta
+ * gets a fresh copy of its adjacency in an append-only edge log; a persistent trie maps those
+ * cities to their new edge ranges and hides their base edges. The connections of each copied
+ * adjacency are sorted into a parallel connection log at the same offsets, so a delta writes only
+ * the slices of the cities it touches; base connections of rewritten cities report
+ * {@link #connectionLive} false. Versions share the log arrays: a new version only writes past the
+ * lengths older versions can see. Edge IDs are therefore sparse and {@link #edgeCount()} is the
+ * number of live routes.
+ */
+final class OverlayTimetableGraph extends TimetableGraph {
+    private static final int EDGE_STRIDE = 7;
+
+    private final TimetableGraph base;
+    private final int baseCities;
+    private final int baseEdges;
+    private final int baseModes;
+    private final int baseConnections;
+    private final Log log;
+
+    private final int[] edges;
+    private final int appendedEdges;
+    private final String[] cityNames;
+    private final int addedCities;
+    private final String[] modeNames;
+    private final int addedModes;
+    private final RangeTrie ranges;
+    private final int[] connections;
+    private final int[] connectionEdges;
+    private final Rewrite rewrites;
+    private final int routes;
+    private final long fingerprint;
+    private volatile long[] slices;
+
+    OverlayTimetableGraph(TimetableGraph base) {
+        this(base, new Log(), new int[16 * EDGE_STRIDE], 0, new String[4], 0, new String[4], 0,
+            RangeTrie.EMPTY, new int[16 * CONNECTION_STRIDE], new int[16], null, base.edgeCount(),
+            base.fingerprint());
+    }
+
+    private OverlayTimetableGraph(TimetableGraph base, Log log, int[] edges, int appendedEdges,
+                                  String[] cityNames, int addedCities, String[] modeNames, int addedModes,
+                                  RangeTrie ranges, int[] connections, int[] connectionEdges, Rewrite rewrites,
+                                  int routes, long fingerprint) {
+        this.base = base;
+        this.baseCities = base.cityCount();
+        this.baseEdges = base.edgeCount();
+        this.baseModes = base.modeCount();
+        this.baseConnections = base.connectionCount();
+        this.log = log;
+        this.edges = edges;
+        this.appendedEdges = appendedEdges;
+        this.cityNames = cityNames;
+        this.addedCities = addedCities;
+        this.modeNames = modeNames;
+        this.addedModes = addedModes;
+        this.ranges = ranges;
+        this.connections = connections;
+        this.connectionEdges = connectionEdges;
+        this.rewrites = rewrites;
+        this.routes = routes;
+        this.fingerprint = fingerprint;
+    }
+
+    int appendedEdges() {
+        return appendedEdges;
+    }
+
+    /** Returns a graph with this version's changes applied; this version stays valid. */
+    OverlayTimetableGraph apply(TimetableDelta delta) {
+        Map<String, List<TimetableDelta.Change>> bySource = new LinkedHashMap<>();
+        for (TimetableDelta.Change change : delta.changes()) {
+            bySource.computeIfAbsent(change.source, k -> new ArrayList<>()).add(change);
+        }
+
+        // Resolve every removal before touching shared state so a bad delta publishes nothing.
+        // A removal may also cancel a route added earlier in the same delta.
+        Map<String, boolean[]> removedEdges = new LinkedHashMap<>();
+        Set<TimetableDelta.Change> cancelled = new HashSet<>();
+        long nextFingerprint = fingerprint;
+        int nextRoutes = routes;
+        for (Map.Entry<String, List<TimetableDelta.Change>> entry : bySource.entrySet()) {
+            int city = cityId(entry.getKey());
+            int first = city < 0 ? 0 : firstEdge(city);
+            boolean[] removed = new boolean[city < 0 ? 0 : endEdge(city) - first];
+            List<TimetableDelta.Change> changes = entry.getValue();
+            for (int i = 0; i < changes.size(); i++) {
+                TimetableDelta.Change change = changes.get(i);
+                if (change.removal) {
+                    int index = findEdge(first, removed, change);
+                    int addition = index < 0 ? findAddition(changes, i, cancelled, change) : -1;
+                    if (addition >= 0) {
+                        cancelled.add(changes.get(addition));
+                    } else if (index < 0) {
+                        throw new IllegalArgumentException("No such route: " + change.source + " -> "
+                            + change.destination + " " + change.mode + " " + TimeUtil.minutesToTime(change.departure)
+                            + "-" + TimeUtil.minutesToTime(change.arrival) + " cost " + change.cost);
+                    } else {
+                        removed[index] = true;
+                    }
+                    nextFingerprint -= change.hash();
+                    nextRoutes--;
+                } else {
+                    nextFingerprint += change.hash();
+                    nextRoutes++;
+                }
+            }
+            removedEdges.put(entry.getKey(), removed);
+        }
+
+        Log target = log.owns(appendedEdges, addedCities, addedModes) ? log : log.fork(addedCities, addedModes);
+        Builder next = new Builder(target);
+
+        RangeTrie nextRanges = ranges;
+        Rewrite nextRewrites = rewrites;
+        for (Map.Entry<String, List<TimetableDelta.Change>> entry : bySource.entrySet()) {
+            int city = next.intern(entry.getKey());
+            boolean[] removed = removedEdges.get(entry.getKey());
+            int start = next.appendedEdges;
+            if (removed.length > 0) {
+                int first = firstEdge(city);
+                for (int i = 0; i < removed.length; i++) {
+                    if (!removed[i]) {
+                        int e = first + i;
+                        next.append(city, target(e), mode(e), cost(e), departure(e), arrival(e));
+                    }
+                }
+            }
+            for (TimetableDelta.Change change : entry.getValue()) {
+                if (!change.removal && !cancelled.contains(change)) {
+                    next.append(city, next.intern(change.destination), next.internMode(change.mode),
+                        change.cost, change.departure, change.arrival);
+                }
+            }
+            next.sortConnections(start);
+            nextRanges = nextRanges.with(city, ((long) (baseEdges + start) << 32) | (baseEdges + next.appendedEdges));
+            nextRewrites = new Rewrite(city, nextRewrites);
+        }
+
+        target.commit(next.appendedEdges, next.addedCities, next.addedModes);
+        return new OverlayTimetableGraph(base, target, next.edges, next.appendedEdges, next.cityNames,
+            next.addedCities, next.modeNames, next.addedModes, nextRanges, next.connections,
+            next.connectionEdges, nextRewrites, nextRoutes, nextFingerprint);
+    }
+
+    /** Compiles the live routes into a fresh array graph with the same fingerprint. */
+    TimetableGraph compact() {
+        TimetableGraphBuilder builder = new TimetableGraphBuilder();
+        for (int city = 0; city < cityCount(); city++) {
+            for (int e = firstEdge(city); e < endEdge(city); e++) {
+                builder.addRoute(cityName(city), cityName(target(e)), modeName(mode(e)),
+                    departure(e), arrival(e), cost(e));
+            }
+        }
+        return builder.build();
+    }
+
+    private int findEdge(int first, boolean[] removed, TimetableDelta.Change change) {
+        for (int i = 0; i < removed.length; i++) {
+            int e = first + i;
+            if (!removed[i] && departure(e) == change.departure && arrival(e) == change.arrival
+                    && cost(e) == change.cost && cityName(target(e)).equals(change.destination)
+                    && modeName(mode(e)).equals(change.mode)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int findAddition(List<TimetableDelta.Change> changes, int before, Set<TimetableDelta.Change> cancelled,
+                                    TimetableDelta.Change removal) {
+        for (int i = 0; i < before; i++) {
+            TimetableDelta.Change change = changes.get(i);
+            if (!change.removal && !cancelled.contains(change) && change.departure == removal.departure
+                    && change.arrival == removal.arrival && change.cost == removal.cost
+                    && change.destination.equals(removal.destination) && change.mode.equals(removal.mode)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override public int cityCount() { return baseCities + addedCities; }
+    @Override public int edgeCount() { return routes; }
+    @Override public int modeCount() { return baseModes + addedModes; }
+
+    @Override
+    public int cityId(String name) {
+        int id = base.cityId(name);
+        if (id >= 0) {
+            return id;
+        }
+        Integer added = log.cityIds.get(name);
+        return added != null && added < addedCities ? baseCities + added : -1;
+    }
+
+    @Override
+    public String cityName(int city) {
+        return city < baseCities ? base.cityName(city) : cityNames[city - baseCities];
+    }
+
+    @Override
+    public String modeName(int mode) {
+        return mode < baseModes ? base.modeName(mode) : modeNames[mode - baseModes];
+    }
+
+    @Override
+    public int firstEdge(int city) {
+        long range = ranges.get(city);
+        if (range >= 0) {
+            return (int) (range >>> 32);
+        }
+        return city < baseCities ? base.firstEdge(city) : 0;
+    }
+
+    @Override
+    public int endEdge(int city) {
+        long range = ranges.get(city);
+        if (range >= 0) {
+            return (int) range;
+        }
+        return city < baseCities ? base.endEdge(city) : 0;
+    }
+
+    @Override
+    public int source(int edge) {
+        return edge < baseEdges ? base.source(edge) : edges[(edge - baseEdges) * EDGE_STRIDE];
+    }
+
+    @Override
+    public int target(int edge) {
+        return edge < baseEdges ? base.target(edge) : edges[(edge - baseEdges) * EDGE_STRIDE + 1];
+    }
+
+    @Override
+    public int mode(int edge) {
+        return edge < baseEdges ? base.mode(edge) : edges[(edge - baseEdges) * EDGE_STRIDE + 2];
+    }
+
+    @Override
+    public int cost(int edge) {
+        return edge < baseEdges ? base.cost(edge) : edges[(edge - baseEdges) * EDGE_STRIDE + 3];
+    }
+
+    @Override
+    public int duration(int edge) {
+        return edge < baseEdges ? base.duration(edge) : edges[(edge - baseEdges) * EDGE_STRIDE + 4];
+    }
+
+    @Override
+    public int departure(int edge) {
+        return edge < baseEdges ? base.departure(edge) : edges[(edge - baseEdges) * EDGE_STRIDE + 5];
+    }
+
+    @Override
+    public int arrival(int edge) {
+        return edge < baseEdges ? base.arrival(edge) : edges[(edge - baseEdges) * EDGE_STRIDE + 6];
+    }
+
+    @Override public int connectionCount() { return baseConnections; }
+    @Override public boolean incremental() { return true; }
+
+    /** Built once per version from the rewrite list, keeping each city's latest slice. */
+    @Override
+    public long[] addedConnectionSlices() {
+        long[] live = slices;
+        if (live == null) {
+            Set<Integer> seen = new HashSet<>();
+            long[] found = new long[16];
+            int count = 0;
+            for (Rewrite rewrite = rewrites; rewrite != null; rewrite = rewrite.next) {
+                long range = ranges.get(rewrite.city);
+                int first = (int) (range >>> 32);
+                int end = (int) range;
+                if (seen.add(rewrite.city) && first < end) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    int offset = baseConnections - baseEdges;
+                    found[count++] = ((long) (first + offset) << 32) | (end + offset);
+                }
+            }
+            live = Arrays.copyOf(found, count);
+            slices = live;
+        }
+        return live;
+    }
+
+    @Override
+    public int connectionDeparture(int connection) {
+        return connection < baseConnections ? base.connectionDeparture(connection)
+            : connections[(connection - baseConnections) * CONNECTION_STRIDE];
+    }
+
+    @Override
+    public int connectionDuration(int connection) {
+        return connection < baseConnections ? base.connectionDuration(connection)
+            : connections[(connection - baseConnections) * CONNECTION_STRIDE + 1];
+    }
+
+    @Override
+    public int connectionSource(int connection) {
+        return connection < baseConnections ? base.connectionSource(connection)
+            : connections[(connection - baseConnections) * CONNECTION_STRIDE + 2];
+    }
+
+    @Override
+    public int connectionTarget(int connection) {
+        return connection < baseConnections ? base.connectionTarget(connection)
+            : connections[(connection - baseConnections) * CONNECTION_STRIDE + 3];
+    }
+
+    @Override
+    public int connectionEdge(int connection) {
+        return connection < baseConnections ? base.connectionEdge(connection)
+            : connectionEdges[connection - baseConnections];
+    }
+
+    @Override
+    public boolean connectionLive(int connection) {
+        return connection >= baseConnections || ranges.get(base.connectionSource(connection)) < 0;
+    }
+
+    @Override public long fingerprint() { return fingerprint; }
+
+    /**
+     * Interning tables and claimed log lengths shared by a chain of versions. Only the version
+     * whose lengths match may append; applying a delta to an older version forks the log.
+     */
+    private static final class Log {
+        final Map<String, Integer> cityIds;
+        final Map<String, Integer> modeIds;
+        int edges;
+        int cities;
+        int modes;
+
+        Log() {
+            this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+
+        private Log(Map<String, Integer> cityIds, Map<String, Integer> modeIds) {
+            this.cityIds = cityIds;
+            this.modeIds = modeIds;
+        }
+
+        synchronized boolean owns(int edges, int cities, int modes) {
+            return this.edges == edges && this.cities == cities && this.modes == modes;
+        }
+
+        synchronized void commit(int edges, int cities, int modes) {
+            this.edges = edges;
+            this.cities = cities;
+            this.modes = modes;
+        }
+
+        Log fork(int cities, int modes) {
+            Log fork = new Log();
+            cityIds.forEach((name, id) -> {
+                if (id < cities) {
+                    fork.cityIds.put(name, id);
+                }
+            });
+            modeIds.forEach((name, id) -> {
+                if (id < modes) {
+                    fork.modeIds.put(name, id);
+                }
+            });
+            return fork;
+        }
+    }
+
+    /** One city rewritten by a delta; versions share the tails of this list. */
+    private static final class Rewrite {
+        final int city;
+        final Rewrite next;
+
+        Rewrite(int city, Rewrite next) {
+            this.city = city;
+            this.next = next;
+        }
+    }
+
+    /** Mutable view of the log arrays while one delta is being written. */
+    private final class Builder {
+        final Log log;
+        int[] edges = OverlayTimetableGraph.this.edges;
+        int appendedEdges = OverlayTimetableGraph.this.appendedEdges;
+        String[] cityNames = OverlayTimetableGraph.this.cityNames;
+        int addedCities = OverlayTimetableGraph.this.addedCities;
+        String[] modeNames = OverlayTimetableGraph.this.modeNames;
+        int addedModes = OverlayTimetableGraph.this.addedModes;
+        int[] connections = OverlayTimetableGraph.this.connections;
+        int[] connectionEdges = OverlayTimetableGraph.this.connectionEdges;
+
+        Builder(Log log) {
+            this.log = log;
+            if (log != OverlayTimetableGraph.this.log) {
+                edges = edges.clone();
+                cityNames = cityNames.clone();
+                modeNames = modeNames.clone();
+                connections = connections.clone();
+                connectionEdges = connectionEdges.clone();
+            }
+        }
+
+        int intern(String name) {
+            int id = base.cityId(name);
+            if (id >= 0) {
+                return id;
+            }
+            Integer added = log.cityIds.get(name);
+            if (added != null && added < addedCities) {
+                return baseCities + added;
+            }
+            if (addedCities == cityNames.length) {
+                cityNames = Arrays.copyOf(cityNames, cityNames.length * 2);
+            }
+            cityNames[addedCities] = name;
+            log.cityIds.put(name, addedCities);
+            return baseCities + addedCities++;
+        }
+
+        int internMode(String name) {
+            for (int m = 0; m < baseModes; m++) {
+                if (base.modeName(m).equals(name)) {
+                    return m;
+                }
+            }
+            Integer added = log.modeIds.get(name);
+            if (added != null && added < addedModes) {
+                return baseModes + added;
+            }
+            if (addedModes == modeNames.length) {
+                modeNames = Arrays.copyOf(modeNames, modeNames.length * 2);
+            }
+            modeNames[addedModes] = name;
+            log.modeIds.put(name, addedModes);
+            return baseModes + addedModes++;
+        }
+
+        void append(int source, int target, int mode, int cost, int departure, int arrival) {
+            int index = appendedEdges * EDGE_STRIDE;
+            if (index + EDGE_STRIDE > edges.length) {
+                edges = Arrays.copyOf(edges, Math.max(edges.length * 2, index + EDGE_STRIDE));
+            }
+            edges[index] = source;
+            edges[index + 1] = target;
+            edges[index + 2] = mode;
+            edges[index + 3] = cost;
+            edges[index + 4] = TimeUtil.calculateDuration(departure, arrival);
+            edges[index + 5] = departure;
+            edges[index + 6] = arrival;
+            appendedEdges++;
+        }
+
+        /** Writes the connections of the edges appended since {@code start}, in build order, at the same offsets. */
+        void sortConnections(int start) {
+            if (appendedEdges > connectionEdges.length) {
+                int capacity = Math.max(connectionEdges.length * 2, appendedEdges);
+                connectionEdges = Arrays.copyOf(connectionEdges, capacity);
+                connections = Arrays.copyOf(connections, capacity * CONNECTION_STRIDE);
+            }
+            long[] order = new long[appendedEdges - start];
+            for (int slot = start; slot < appendedEdges; slot++) {
+                int index = slot * EDGE_STRIDE;
+                order[slot - start] = ((long) edges[index + 5] << 43) | ((long) edges[index + 4] << 32) | (baseEdges + slot);
+            }
+            Arrays.sort(order);
+            for (int i = 0; i < order.length; i++) {
+                int edge = (int) order[i];
+                int index = (edge - baseEdges) * EDGE_STRIDE;
+                int out = (start + i) * CONNECTION_STRIDE;
+                connections[out] = edges[index + 5];
+                connections[out + 1] = edges[index + 4];
+                connections[out + 2] = edges[index];
+                connections[out + 3] = edges[index + 1];
+                connectionEdges[start + i] = edge;
+            }
+        }
+    }
+
+    /** Persistent 32-way trie from city ID to a packed edge range; an update copies one path. */
+    private static final class RangeTrie {
+        static final RangeTrie EMPTY = new RangeTrie(null, 0);
+
+        private final Object root;
+        private final int shift;
+
+        private RangeTrie(Object root, int shift) {
+            this.root = root;
+            this.shift = shift;
+        }
+
+        /** Returns the packed range of {@code key}, or -1 if it has none. */
+        long get(int key) {
+            if (root == null || (key >>> shift) >= 32) {
+                return -1;
+            }
+            Object node = root;
+            for (int level = shift; level > 0; level -= 5) {
+                node = ((Object[]) node)[(key >>> level) & 31];
+                if (node == null) {
+                    return -1;
+                }
+            }
+            return ((long[]) node)[key & 31];
+        }
+
+        RangeTrie with(int key, long value) {
+            Object grownRoot = root;
+            int grownShift = shift;
+            while ((key >>> grownShift) >= 32) {
+                Object[] parent = new Object[32];
+                parent[0] = grownRoot;
+                grownRoot = parent;
+                grownShift += 5;
+            }
+            return new RangeTrie(with(grownRoot, grownShift, key, value), grownShift);
+        }
+
+        private static Object with(Object node, int level, int key, long value) {
+            if (level == 0) {
+                long[] leaf;
+                if (node == null) {
+                    leaf = new long[32];
+                    Arrays.fill(leaf, -1);
+                } else {
+                    leaf = ((long[]) node).clone();
+                }
+                leaf[key & 31] = value;
+                return leaf;
+            }
+            Object[] inner = node == null ? new Object[32] : ((Object[]) node).clone();
+            int slot = (key >>> level) & 31;
+            inner[slot] = with(inner[slot], level - 5, key, value);
+            return inner;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.nice.travel.graph;
+
+import com.nice.travel.util.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch of route additions and removals applied atomically by {@link TimetableStore}. A removal
+ * names the route by all of its fields; a modification is a removal of the old route plus an
+ * addition of the new one.
+ */
+public final class TimetableDelta {
+    private final List<Change> changes = new ArrayList<>();
+
+    public TimetableDelta addRoute(String source, String destination, String mode,
+                                   String departureTime, String arrivalTime, int cost) {
+        return addRoute(source, destination, mode,
+            TimeUtil.timeToMinutes(departureTime), TimeUtil.timeToMinutes(arrivalTime), cost);
+    }
+
+    public TimetableDelta addRoute(String source, String destination, String mode,
+                                   int departure, int arrival, int cost) {
+        changes.add(new Change(false, source, destination, mode, departure, arrival, cost));
+        return this;
+    }
+
+    public TimetableDelta removeRoute(String source, String destination, String mode,
+                                      String departureTime, String arrivalTime, int cost) {
+        return removeRoute(source, destination, mode,
+            TimeUtil.timeToMinutes(departureTime), TimeUtil.timeToMinutes(arrivalTime), cost);
+    }
+
+    public TimetableDelta removeRoute(String source, String destination, String mode,
+                                      int departure, int arrival, int cost) {
+        changes.add(new Change(true, source, destination, mode, departure, arrival, cost));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    List<Change> changes() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    static final class Change {
+        final boolean removal;
+        final String source;
+        final String destination;
+        final String mode;
+        final int departure;
+        final int arrival;
+        final int cost;
+
+        Change(boolean removal, String source, String destination, String mode, int departure, int arrival, int cost) {
+            this.removal = removal;
+            this.source = source;
+            this.destination = destination;
+            this.mode = mode;
+            this.departure = departure;
+            this.arrival = arrival;
+            this.cost = cost;
+        }
+
+        long hash() {
+            return TimetableGraph.routeHash(source, destination, mode, departure, arrival, cost);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.nice.travel.graph;
+
+import com.nice.travel.model.Route;
+import com.nice.travel.util.TimeUtil;
+
+/**
+ * Immutable timetable compiled into primitive arrays. Cities and modes are interned into dense
+ * int IDs and the outgoing routes of city {@code c} occupy edge IDs {@code [firstEdge(c), endEdge(c))}.
+ * The same routes are also laid out as connections sorted by departure minute for schedule scans.
+ * Storage is either heap arrays ({@link TimetableGraphBuilder}) or a memory-mapped
+ * {@link TimetableSnapshot}.
+ */
+public abstract class TimetableGraph {
+    static final int CONNECTION_STRIDE = 4;
+    private static final long[] NO_SLICES = new long[0];
+
+    public abstract int cityCount();
+    public abstract int edgeCount();
+    public abstract int modeCount();
+
+    /** Returns the dense ID of {@code name}, or -1 if the city has no routes. */
+    public abstract int cityId(String name);
+    public abstract String cityName(int city);
+    public abstract String modeName(int mode);
+
+    public abstract int firstEdge(int city);
+    public abstract int endEdge(int city);
+
+    public abstract int source(int edge);
+    public abstract int target(int edge);
+    public abstract int mode(int edge);
+    public abstract int cost(int edge);
+    public abstract int duration(int edge);
+    public abstract int departure(int edge);
+    public abstract int arrival(int edge);
+
+    /** Number of connections in the compiled, departure-sorted block {@code [0, connectionCount())}. */
+    public abstract int connectionCount();
+    public abstract int connectionDeparture(int connection);
+    public abstract int connectionDuration(int connection);
+    public abstract int connectionSource(int connection);
+    public abstract int connectionTarget(int connection);
+    public abstract int connectionEdge(int connection);
+
+    /**
+     * Connections added by incremental updates, as one departure-sorted slice per rewritten city.
+     * Each entry packs the connection IDs of a slice as {@code first << 32 | end}; all of them lie
+     * at or past {@link #connectionCount()}.
+     */
+    public long[] addedConnectionSlices() {
+        return NO_SLICES;
+    }
+
+    /**
+     * True for a version produced by applying updates rather than compiled or loaded. Indexes
+     * built per graph are worth less for it, as the next update replaces it.
+     */
+    public boolean incremental() {
+        return false;
+    }
+
+    /** False for a compiled connection whose route has since been removed or rewritten. */
+    public boolean connectionLive(int connection) {
+        return true;
+    }
+
+    /**
+     * Order-independent hash of every route in the timetable. Two graphs built from the same
+     * routes share a fingerprint, so results cached against one stay valid for the other.
+     */
+    public abstract long fingerprint();
+
+    /** Index of the first connection departing at or after {@code minute}, or {@link #connectionCount()}. */
+    public int firstConnectionAtOrAfter(int minute) {
+        return firstConnectionAtOrAfter(minute, 0, connectionCount());
+    }
+
+    /** ID of the first connection in the sorted range {@code [first, end)} departing at or after {@code minute}, or {@code end}. */
+    public int firstConnectionAtOrAfter(int minute, int first, int end) {
+        int low = first;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (connectionDeparture(mid) < minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public Route route(int edge) {
+        return new Route(cityName(source(edge)), cityName(target(edge)), modeName(mode(edge)),
+            TimeUtil.minutesToTime(departure(edge)), TimeUtil.minutesToTime(arrival(edge)),
+            cost(edge), duration(edge));
+    }
+
+    static long routeHash(String source, String destination, String mode, int departure, int arrival, int cost) {
+        long h = mix(source.hashCode());
+        h = mix(h * 31 + destination.hashCode());
+        h = mix(h * 31 + mode.hashCode());
+        h = mix(h * 31 + departure);
+        h = mix(h * 31 + arrival);
+        return mix(h * 31 + cost);
+    }
+
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
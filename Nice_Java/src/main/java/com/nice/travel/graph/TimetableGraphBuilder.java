@@ -0,0 +1,150 @@
+package com.nice.travel.graph;
+
+import com.nice.travel.jfr.GraphBuildEvent;
+import com.nice.travel.metrics.Metrics;
+import com.nice.travel.util.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates routes in input order and compiles them into a {@link TimetableGraph}. Edges of the
+ * same source keep their relative input order.
+ */
+public class TimetableGraphBuilder {
+    private final Map<String, Integer> cityIds = new HashMap<>();
+    private final List<String> cityNames = new ArrayList<>();
+    private final Map<String, Integer> modeIds = new HashMap<>();
+    private final List<String> modeNames = new ArrayList<>();
+
+    private int size;
+    private int[] sources = new int[16];
+    private int[] targets = new int[16];
+    private int[] modes = new int[16];
+    private int[] costs = new int[16];
+    private int[] departures = new int[16];
+    private int[] arrivals = new int[16];
+
+    public TimetableGraphBuilder addRoute(String source, String destination, String mode,
+                                          String departureTime, String arrivalTime, int cost) {
+        return addRoute(source, destination, mode,
+            TimeUtil.timeToMinutes(departureTime), TimeUtil.timeToMinutes(arrivalTime), cost);
+    }
+
+    public TimetableGraphBuilder addRoute(String source, String destination, String mode,
+                                          int departure, int arrival, int cost) {
+        if (size == targets.length) {
+            grow();
+        }
+        sources[size] = intern(source, cityIds, cityNames);
+        targets[size] = intern(destination, cityIds, cityNames);
+        modes[size] = intern(mode, modeIds, modeNames);
+        costs[size] = cost;
+        departures[size] = departure;
+        arrivals[size] = arrival;
+        size++;
+        return this;
+    }
+
+    public int cityId(String name) {
+        return intern(name, cityIds, cityNames);
+    }
+
+    public TimetableGraph build() {
+        GraphBuildEvent event = new GraphBuildEvent();
+        event.begin();
+        long started = Metrics.enabled() ? System.nanoTime() : 0;
+        TimetableGraph graph = compile();
+        if (Metrics.enabled()) {
+            Metrics.GRAPH_BUILD.recordSince(started);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.origin = "routes";
+            event.cities = graph.cityCount();
+            event.routes = graph.edgeCount();
+            event.commit();
+        }
+        return graph;
+    }
+
+    private TimetableGraph compile() {
+        int cityCount = cityNames.size();
+        int[] offsets = new int[cityCount + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[sources[i] + 1]++;
+        }
+        for (int c = 0; c < cityCount; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+
+        int[] cursor = Arrays.copyOf(offsets, cityCount);
+        int[] outSources = new int[size];
+        int[] outTargets = new int[size];
+        int[] outModes = new int[size];
+        int[] outCosts = new int[size];
+        int[] outDurations = new int[size];
+        int[] outDepartures = new int[size];
+        int[] outArrivals = new int[size];
+        for (int i = 0; i < size; i++) {
+            int e = cursor[sources[i]]++;
+            outSources[e] = sources[i];
+            outTargets[e] = targets[i];
+            outModes[e] = modes[i];
+            outCosts[e] = costs[i];
+            outDurations[e] = TimeUtil.calculateDuration(departures[i], arrivals[i]);
+            outDepartures[e] = departures[i];
+            outArrivals[e] = arrivals[i];
+        }
+
+        long fingerprint = 0;
+        for (int i = 0; i < size; i++) {
+            fingerprint += TimetableGraph.routeHash(cityNames.get(sources[i]), cityNames.get(targets[i]),
+                modeNames.get(modes[i]), departures[i], arrivals[i], costs[i]);
+        }
+
+        long[] order = new long[size];
+        for (int e = 0; e < size; e++) {
+            order[e] = ((long) outDepartures[e] << 43) | ((long) outDurations[e] << 32) | e;
+        }
+        Arrays.sort(order);
+        int[] connections = new int[size * TimetableGraph.CONNECTION_STRIDE];
+        int[] connectionEdges = new int[size];
+        for (int i = 0; i < size; i++) {
+            int e = (int) order[i];
+            int base = i * TimetableGraph.CONNECTION_STRIDE;
+            connections[base] = outDepartures[e];
+            connections[base + 1] = outDurations[e];
+            connections[base + 2] = outSources[e];
+            connections[base + 3] = outTargets[e];
+            connectionEdges[i] = e;
+        }
+
+        return new ArrayTimetableGraph(cityNames.toArray(new String[0]), new HashMap<>(cityIds),
+            modeNames.toArray(new String[0]), offsets, outSources, outTargets, outModes, outCosts,
+            outDurations, outDepartures, outArrivals, connections, connectionEdges, fingerprint);
+    }
+
+    private void grow() {
+        int capacity = targets.length * 2;
+        sources = Arrays.copyOf(sources, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        modes = Arrays.copyOf(modes, capacity);
+        costs = Arrays.copyOf(costs, capacity);
+        departures = Arrays.copyOf(departures, capacity);
+        arrivals = Arrays.copyOf(arrivals, capacity);
+    }
+
+    private static int intern(String name, Map<String, Integer> ids, List<String> names) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,240 @@
+package com.nice.travel.graph;
+
+import com.nice.travel.jfr.GraphBuildEvent;
+import com.nice.travel.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned, checksummed binary image of a {@link TimetableGraph}. The file holds the CSR
+ * arrays, the departure-sorted connections, an open-addressing city-name index and the UTF-8
+ * name tables, so {@link #load} can serve queries straight from the mapped pages.
+ *
+ * <pre>
+ * header   magic, version, cityCount, modeCount, edgeCount, cityIndexSize, nameBytes, reserved,
+ *          fingerprint, crc32 of everything after the header
+ * int[]    offsets[cityCount + 1], sources, targets, modes, costs, durations, departures,
+ *          arrivals[edgeCount], connections[edgeCount * 4], connectionEdges[edgeCount],
+ *          cityHashes[cityCount], cityIndex[cityIndexSize], cityNameOffsets[cityCount + 1],
+ *          modeNameOffsets[modeCount + 1]
+ * byte[]   names
+ * </pre>
+ */
+public final class TimetableSnapshot {
+    static final int MAGIC = 0x4E545447;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 48;
+
+    private TimetableSnapshot() {
+    }
+
+    public static void write(TimetableGraph graph, Path file) throws IOException {
+        if (graph instanceof OverlayTimetableGraph) {
+            graph = ((OverlayTimetableGraph) graph).compact();
+        }
+        int cityCount = graph.cityCount();
+        int modeCount = graph.modeCount();
+        int edgeCount = graph.edgeCount();
+        int indexSize = Integer.highestOneBit(Math.max(1, cityCount) * 2 - 1) << 1;
+
+        byte[][] names = new byte[cityCount + modeCount][];
+        long nameBytes = 0;
+        for (int c = 0; c < cityCount; c++) {
+            names[c] = graph.cityName(c).getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[c].length;
+        }
+        for (int m = 0; m < modeCount; m++) {
+            names[cityCount + m] = graph.modeName(m).getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[cityCount + m].length;
+        }
+
+        long intCount = (cityCount + 1) + 8L * edgeCount + (long) edgeCount * TimetableGraph.CONNECTION_STRIDE
+            + cityCount + indexSize + (cityCount + 1) + (modeCount + 1);
+        long size = HEADER_SIZE + intCount * 4 + nameBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Timetable too large for a single snapshot: " + size + " bytes");
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Output out = new Output(channel);
+
+                for (int c = 0; c <= cityCount; c++) {
+                    out.putInt(c < cityCount ? graph.firstEdge(c) : edgeCount);
+                }
+                for (int e = 0; e < edgeCount; e++) out.putInt(graph.source(e));
+                for (int e = 0; e < edgeCount; e++) out.putInt(graph.target(e));
+                for (int e = 0; e < edgeCount; e++) out.putInt(graph.mode(e));
+                for (int e = 0; e < edgeCount; e++) out.putInt(graph.cost(e));
+                for (int e = 0; e < edgeCount; e++) out.putInt(graph.duration(e));
+                for (int e = 0; e < edgeCount; e++) out.putInt(graph.departure(e));
+                for (int e = 0; e < edgeCount; e++) out.putInt(graph.arrival(e));
+                for (int i = 0; i < edgeCount; i++) {
+                    out.putInt(graph.connectionDeparture(i));
+                    out.putInt(graph.connectionDuration(i));
+                    out.putInt(graph.connectionSource(i));
+                    out.putInt(graph.connectionTarget(i));
+                }
+                for (int i = 0; i < edgeCount; i++) out.putInt(graph.connectionEdge(i));
+
+                int[] index = new int[indexSize];
+                for (int c = 0; c < cityCount; c++) {
+                    int hash = graph.cityName(c).hashCode();
+                    out.putInt(hash);
+                    int slot = MappedTimetableGraph.slot(hash, indexSize);
+                    while (index[slot] != 0) {
+                        slot = (slot + 1) & (indexSize - 1);
+                    }
+                    index[slot] = c + 1;
+                }
+                for (int slot : index) out.putInt(slot);
+
+                int offset = 0;
+                for (int c = 0; c < cityCount; c++) {
+                    out.putInt(offset);
+                    offset += names[c].length;
+                }
+                out.putInt(offset);
+                for (int m = 0; m < modeCount; m++) {
+                    out.putInt(offset);
+                    offset += names[cityCount + m].length;
+                }
+                out.putInt(offset);
+                for (byte[] name : names) {
+                    out.put(name);
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(cityCount).putInt(modeCount).putInt(edgeCount)
+                    .putInt(indexSize).putInt((int) nameBytes).putInt(0).putLong(graph.fingerprint())
+                    .putLong(out.crc.getValue());
+                ((Buffer) header).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, HEADER_SIZE - header.remaining());
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException | Error e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /** Maps {@code file} read-only; with {@code verify} the CRC of the whole image is checked first. */
+    public static TimetableGraph load(Path file, boolean verify) throws IOException {
+        GraphBuildEvent event = new GraphBuildEvent();
+        event.begin();
+        long started = Metrics.enabled() ? System.nanoTime() : 0;
+        TimetableGraph graph = map(file, verify);
+        if (Metrics.enabled()) {
+            Metrics.SNAPSHOT_LOAD.recordSince(started);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.origin = "snapshot";
+            event.cities = graph.cityCount();
+            event.routes = graph.edgeCount();
+            event.commit();
+        }
+        return graph;
+    }
+
+    private static TimetableGraph map(Path file, boolean verify) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a timetable snapshot: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a timetable snapshot: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + " in " + file);
+        }
+        int cityCount = buffer.getInt(8);
+        int modeCount = buffer.getInt(12);
+        int edgeCount = buffer.getInt(16);
+        int indexSize = buffer.getInt(20);
+        int nameBytes = buffer.getInt(24);
+        long fingerprint = buffer.getLong(32);
+        long intCount = (cityCount + 1) + 8L * edgeCount + (long) edgeCount * TimetableGraph.CONNECTION_STRIDE
+            + cityCount + indexSize + (cityCount + 1) + (modeCount + 1);
+        if (HEADER_SIZE + intCount * 4 + nameBytes != buffer.capacity()) {
+            throw new IOException("Truncated timetable snapshot: " + file);
+        }
+        if (verify && checksum(buffer, buffer.capacity()) != buffer.getLong(40)) {
+            throw new IOException("Checksum mismatch in timetable snapshot: " + file);
+        }
+        return new MappedTimetableGraph(buffer, cityCount, modeCount, edgeCount, indexSize, fingerprint);
+    }
+
+    /** Buffered little-endian writer that checksums everything after the header. */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+
+        Output(FileChannel channel) throws IOException {
+            this.channel = channel;
+            channel.position(HEADER_SIZE);
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int from = 0; from < bytes.length; ) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - from);
+                buffer.put(bytes, from, length);
+                from += length;
+            }
+        }
+
+        void flush() throws IOException {
+            ((Buffer) buffer).flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            ((Buffer) buffer).clear();
+        }
+    }
+
+    private static long checksum(ByteBuffer buffer, int size) {
+        ByteBuffer data = buffer.duplicate();
+        ((Buffer) data).position(HEADER_SIZE).limit(size);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,92 @@
+package com.nice.travel.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the current timetable version and publishes updates atomically. Readers take
+ * {@link #current()} once per query and keep using that immutable graph without locks; writers
+ * are serialized. A delta copies only the adjacency and connection slices of the cities it
+ * touches into an overlay over the last compiled graph, so its cost is proportional to their
+ * degree. Once the overlay grows past a quarter of the timetable it is compiled into a fresh graph
+ * with the same fingerprint in the background; deltas applied meanwhile are replayed onto the
+ * compiled graph before it is swapped in. Every version published after the first delta is
+ * {@linkplain TimetableGraph#incremental() incremental}, the swapped-in one included.
+ */
+public final class TimetableStore {
+    private static final int MIN_COMPACTION_EDGES = 4096;
+    private static final Executor COMPACTION = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "timetable-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Executor compaction;
+    private volatile TimetableGraph current;
+    private volatile long version;
+    /** Deltas applied since the running compaction's snapshot, or null if none is running. */
+    private List<TimetableDelta> pending;
+
+    public TimetableStore(TimetableGraph initial) {
+        this(initial, COMPACTION);
+    }
+
+    TimetableStore(TimetableGraph initial, Executor compaction) {
+        this.current = initial;
+        this.compaction = compaction;
+    }
+
+    public TimetableGraph current() {
+        return current;
+    }
+
+    /** Number of deltas applied so far. Swapping in a compacted graph does not change it. */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Applies {@code delta} to the current version and publishes the result. Throws
+     * {@link IllegalArgumentException} without publishing anything if a removed route does not
+     * exist.
+     */
+    public synchronized TimetableGraph apply(TimetableDelta delta) {
+        OverlayTimetableGraph next = overlay(current).apply(delta);
+        current = next;
+        version++;
+        if (pending != null) {
+            pending.add(delta);
+        } else if (next.appendedEdges() > Math.max(MIN_COMPACTION_EDGES, next.edgeCount() / 4)) {
+            pending = new ArrayList<>();
+            compaction.execute(() -> compact(next));
+        }
+        return current;
+    }
+
+    private void compact(OverlayTimetableGraph snapshot) {
+        TimetableGraph compacted;
+        try {
+            compacted = snapshot.compact();
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                pending = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            OverlayTimetableGraph graph = new OverlayTimetableGraph(compacted);
+            for (TimetableDelta delta : pending) {
+                graph = graph.apply(delta);
+            }
+            pending = null;
+            current = graph;
+        }
+    }
+
+    private static OverlayTimetableGraph overlay(TimetableGraph graph) {
+        return graph instanceof OverlayTimetableGraph
+            ? (OverlayTimetableGraph) graph : new OverlayTimetableGraph(graph);
+    }
+}
@@ -0,0 +1,111 @@
+package com.nice.travel.io;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.nice.travel.graph.TimetableDelta;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.metrics.Metrics;
+
+import java.io.IOException;
+import java.util.function.BiPredicate;
+
+/**
+ * Streams {@code routes} arrays straight into a {@link TimetableGraphBuilder} without building a
+ * DOM for the array, and reads route updates into a {@link TimetableDelta}.
+ */
+public final class TimetableJson {
+
+    private TimetableJson() {
+    }
+
+    /** Reads a {@code [route, ...]} array positioned at its opening bracket. */
+    public static void readRoutes(JsonReader reader, TimetableGraphBuilder builder) throws IOException {
+        long started = Metrics.enabled() ? System.nanoTime() : 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            readRoute(reader, builder);
+        }
+        reader.endArray();
+        if (Metrics.enabled()) {
+            Metrics.ROUTE_INGEST.recordSince(started);
+        }
+    }
+
+    /** Like {@link #readRoutes(JsonReader, TimetableGraphBuilder)} but keeps only routes whose endpoints {@code accept} approves. */
+    public static void readRoutes(JsonReader reader, TimetableGraphBuilder builder, BiPredicate<String, String> accept)
+            throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            readRoute(reader, (source, destination, mode, departureTime, arrivalTime, cost) -> {
+                if (accept.test(source, destination)) {
+                    builder.addRoute(source, destination, mode, departureTime, arrivalTime, cost);
+                }
+            });
+        }
+        reader.endArray();
+    }
+
+    public static void readRoute(JsonReader reader, TimetableGraphBuilder builder) throws IOException {
+        readRoute(reader, builder::addRoute);
+    }
+
+    /** Reads a {@code {"add": [route, ...], "remove": [route, ...]}} update document. */
+    public static TimetableDelta readDelta(JsonReader reader) throws IOException {
+        TimetableDelta delta = new TimetableDelta();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            RouteSink sink = name.equals("add") ? delta::addRoute : name.equals("remove") ? delta::removeRoute : null;
+            if (sink == null) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readRoute(reader, sink);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return delta;
+    }
+
+    private interface RouteSink {
+        void accept(String source, String destination, String mode, String departureTime, String arrivalTime, int cost);
+    }
+
+    private static void readRoute(JsonReader reader, RouteSink sink) throws IOException {
+        String source = null;
+        String destination = null;
+        String mode = null;
+        String departureTime = null;
+        String arrivalTime = null;
+        Integer cost = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "source": source = reader.nextString(); break;
+                case "destination": destination = reader.nextString(); break;
+                case "mode": mode = reader.nextString(); break;
+                case "departureTime": departureTime = reader.nextString(); break;
+                case "arrivalTime": arrivalTime = reader.nextString(); break;
+                case "cost": cost = reader.nextInt(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (source == null || destination == null || mode == null || departureTime == null
+                || arrivalTime == null || cost == null) {
+            throw new JsonParseException("Route is missing a required field at " + reader.getPath());
+        }
+        sink.accept(source, destination, mode, departureTime, arrivalTime, cost);
+    }
+}
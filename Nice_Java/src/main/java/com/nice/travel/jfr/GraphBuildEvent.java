@@ -0,0 +1,21 @@
+package com.nice.travel.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.nice.travel.GraphBuild")
+@Label("Graph Build")
+@Category({"Travel Optimizer", "Ingest"})
+@Description("Compiling parsed routes into a graph or mapping a timetable snapshot")
+@StackTrace(false)
+@Threshold("0 ms")
+public class GraphBuildEvent extends Event {
+    @Label("Origin")
+    @Description("routes or snapshot")
+    public String origin;
+
+    @Label("Cities")
+    public int cities;
+
+    @Label("Routes")
+    public int routes;
+}
@@ -0,0 +1,56 @@
+package com.nice.travel.jfr;
+
+import com.nice.travel.search.SearchScratch;
+import jdk.jfr.*;
+
+/**
+ * One {@code findOptimalPath} or grouped {@code findOptimalPaths} call. Work counters are zero
+ * when every destination came from the route cache.
+ */
+@Name("com.nice.travel.RouteSearch")
+@Label("Route Search")
+@Category({"Travel Optimizer", "Search"})
+@Description("Route search for one request or one (source, criteria) group of requests")
+@StackTrace(false)
+@Threshold("1 ms")
+public class RouteSearchEvent extends Event {
+    @Label("Request IDs")
+    public String requestIds;
+
+    @Label("Source")
+    public String source;
+
+    @Label("Destinations")
+    public String destinations;
+
+    @Label("Criteria")
+    public String criteria;
+
+    @Label("Destination Count")
+    public int destinationCount;
+
+    @Label("Searched")
+    @Description("False when every destination was answered from the route cache")
+    public boolean searched;
+
+    @Label("Nodes Settled")
+    public int nodesSettled;
+
+    @Label("Edges Relaxed")
+    public int edgesRelaxed;
+
+    @Label("Heap Pushes")
+    public int heapPushes;
+
+    @Label("Path Length")
+    @Description("Edges in the returned path; for groups, the longest path")
+    public int pathLength;
+
+    /** Copies the work counters of the search that just ran on {@code scratch}. */
+    public void searched(SearchScratch scratch) {
+        searched = true;
+        nodesSettled = scratch.settled();
+        edgesRelaxed = scratch.relaxed();
+        heapPushes = scratch.pushes();
+    }
+}
@@ -0,0 +1,19 @@
+package com.nice.travel.jfr;
+
+import jdk.jfr.*;
+
+/** One summary request, from enqueue until the summary future completes. */
+@Name("com.nice.travel.SummaryCall")
+@Label("Summary Call")
+@Category({"Travel Optimizer", "Summary"})
+@Description("Remote travel summary generation")
+@StackTrace(false)
+@Threshold("10 ms")
+public class SummaryCallEvent extends Event {
+    @Label("Outcome")
+    @Description("ok, failed, http <status>, or expired")
+    public String outcome;
+
+    @Label("Prompt Length")
+    public int promptLength;
+}
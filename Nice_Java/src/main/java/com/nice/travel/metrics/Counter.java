@@ -0,0 +1,27 @@
+package com.nice.travel.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonic count backed by a {@link LongAdder}. */
+public final class Counter implements CounterMXBean {
+    private final String name;
+    private final String help;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public String getName() { return name; }
+    public String getHelp() { return help; }
+
+    @Override
+    public long getValue() {
+        return value.sum();
+    }
+}
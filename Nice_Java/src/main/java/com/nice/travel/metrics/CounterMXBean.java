@@ -0,0 +1,5 @@
+package com.nice.travel.metrics;
+
+public interface CounterMXBean {
+    long getValue();
+}
@@ -0,0 +1,24 @@
+package com.nice.travel.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/** Value sampled from a callback whenever it is read. */
+public final class Gauge implements GaugeMXBean {
+    private final String name;
+    private final String help;
+    private final DoubleSupplier value;
+
+    Gauge(String name, String help, DoubleSupplier value) {
+        this.name = name;
+        this.help = help;
+        this.value = value;
+    }
+
+    public String getName() { return name; }
+    public String getHelp() { return help; }
+
+    @Override
+    public double getValue() {
+        return value.getAsDouble();
+    }
+}
@@ -0,0 +1,103 @@
+package com.nice.travel.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram in the style of HdrHistogram: values below 16 get exact
+ * buckets and every power of two above is split into 16 sub-buckets, so any recorded value is
+ * reported within about 6% using a fixed 960-slot array. Values are recorded as raw longs
+ * (nanoseconds for latencies) and divided by {@code scale} when exposed.
+ */
+public final class Histogram implements HistogramMXBean {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final String help;
+    private final double scale;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram(String name, String help, double scale) {
+        this.name = name;
+        this.help = help;
+        this.scale = scale;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        long previous = max.get();
+        while (value > previous && !max.compareAndSet(previous, value)) {
+            previous = max.get();
+        }
+    }
+
+    /** Records the nanoseconds elapsed since {@code startNanos}. */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /** Midpoint of the values that fall into {@code bucket}. */
+    static long bucketValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+
+    /** Value at {@code quantile} in [0, 1] in raw units, or 0 when empty. */
+    public long quantile(double quantile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) {
+                return Math.min(bucketValue(b), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public String getName() { return name; }
+    public String getHelp() { return help; }
+    double getScale() { return scale; }
+    long getSum() { return sum.sum(); }
+
+    @Override public long getCount() { return count.sum(); }
+
+    @Override
+    public double getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : sum.sum() / scale / total;
+    }
+
+    @Override public double getMax() { return max.get() / scale; }
+    @Override public double getP50() { return quantile(0.5) / scale; }
+    @Override public double getP90() { return quantile(0.9) / scale; }
+    @Override public double getP99() { return quantile(0.99) / scale; }
+    @Override public double getP999() { return quantile(0.999) / scale; }
+}
@@ -0,0 +1,12 @@
+package com.nice.travel.metrics;
+
+/** JMX view of a {@link Histogram}; values are in the histogram's exposed unit. */
+public interface HistogramMXBean {
+    long getCount();
+    double getMean();
+    double getMax();
+    double getP50();
+    double getP90();
+    double getP99();
+    double getP999();
+}
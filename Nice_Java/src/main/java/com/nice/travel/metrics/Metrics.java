@@ -0,0 +1,150 @@
+package com.nice.travel.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide metrics. Instrumented code checks {@link #enabled()} before reading the clock or
+ * recording anything, so with metrics off the cost is one static field read per call site.
+ * Enable once at startup, before work begins. Metrics are exposed as JMX MXBeans under
+ * {@code com.nice.travel:type=...,name=...} and as Prometheus text via {@link #writeText}.
+ */
+public final class Metrics {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final Map<String, Object> registry = new ConcurrentSkipListMap<>();
+    private static boolean enabled;
+
+    public static final Histogram ROUTE_INGEST = latency("route_ingest_seconds", "Reading the routes array into the graph builder");
+    public static final Histogram GRAPH_BUILD = latency("graph_build_seconds", "Compiling the graph from parsed routes");
+    public static final Histogram INDEX_BUILD = latency("index_build_seconds", "Building one per-graph index: connectivity, oracle, landmarks or a hierarchy");
+    public static final Histogram SNAPSHOT_LOAD = latency("snapshot_load_seconds", "Mapping and verifying a timetable snapshot");
+    public static final Histogram REQUEST_PARSE = latency("request_parse_seconds", "Parsing one request from the input document");
+    public static final Histogram CHUNK_SEARCH = latency("chunk_search_seconds", "Route search for one chunk of requests");
+    public static final Histogram CHUNK_EMIT = latency("chunk_emit_seconds", "Waiting for summaries and writing one chunk of results");
+    public static final Histogram QUERY = latency("query_seconds", "findOptimalPath, including cache lookups");
+    public static final Histogram GROUP_QUERY = latency("group_query_seconds", "findOptimalPaths for one source, including cache lookups");
+    public static final Histogram SUMMARY_CALL = latency("summary_call_seconds", "Remote summary calls that reached the service");
+
+    public static final Histogram SEARCH_SETTLED = count("search_settled_nodes", "Nodes settled (Dijkstra) or labels improved (connection scan) per search");
+    public static final Histogram SEARCH_RELAXED = count("search_relaxed_edges", "Edges relaxed (Dijkstra) or connections scanned (connection scan) per search");
+    public static final Histogram SEARCH_PUSHES = count("search_heap_pushes", "Heap inserts and decrease-keys per search");
+    public static final Histogram PATH_LENGTH = count("path_length_edges", "Edges in each returned path");
+
+    public static final Counter SEARCHES = counter("searches_total", "Searches run (cache misses)");
+    public static final Counter SUMMARY_CALLS = counter("summary_calls_total", "Summary calls sent to the remote service");
+    public static final Counter SUMMARY_FAILURES = counter("summary_failures_total", "Summary calls that failed or returned no summary");
+    public static final Counter SUMMARY_REJECTED = counter("summary_rejected_total", "Summaries skipped because the circuit breaker was open");
+    public static final Counter SUMMARY_EXPIRED = counter("summary_deadline_expired_total", "Summaries that hit the run deadline");
+    public static final Counter SUMMARY_CACHE_HITS = counter("summary_cache_hits_total", "Summaries served from the summary cache");
+
+    private Metrics() {
+    }
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    /** Turns recording on and registers every metric with the platform MBean server. */
+    public static synchronized void enable() {
+        if (enabled) {
+            return;
+        }
+        enabled = true;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Object metric : registry.values()) {
+            register(server, metric);
+        }
+    }
+
+    /** Registers a gauge sampled from {@code value}, replacing any gauge with the same name. */
+    public static synchronized Gauge gauge(String name, String help, DoubleSupplier value) {
+        Gauge gauge = new Gauge(name, help, value);
+        registry.put(name, gauge);
+        if (enabled) {
+            register(ManagementFactory.getPlatformMBeanServer(), gauge);
+        }
+        return gauge;
+    }
+
+    private static Histogram latency(String name, String help) {
+        Histogram histogram = new Histogram(name, help, NANOS_PER_SECOND);
+        registry.put(name, histogram);
+        return histogram;
+    }
+
+    private static Histogram count(String name, String help) {
+        Histogram histogram = new Histogram(name, help, 1);
+        registry.put(name, histogram);
+        return histogram;
+    }
+
+    private static Counter counter(String name, String help) {
+        Counter counter = new Counter(name, help);
+        registry.put(name, counter);
+        return counter;
+    }
+
+    private static void register(MBeanServer server, Object metric) {
+        String type = metric instanceof Histogram ? "Histogram" : metric instanceof Counter ? "Counter" : "Gauge";
+        String name = metric instanceof Histogram ? ((Histogram) metric).getName()
+            : metric instanceof Counter ? ((Counter) metric).getName() : ((Gauge) metric).getName();
+        try {
+            ObjectName objectName = new ObjectName("com.nice.travel:type=" + type + ",name=" + name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(metric, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metric " + name, e);
+        }
+    }
+
+    /** Writes every metric in the Prometheus text exposition format, names prefixed with {@code travel_}. */
+    public static void writeText(Appendable out) throws IOException {
+        for (Object metric : registry.values()) {
+            if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+                String name = "travel_" + histogram.getName();
+                header(out, name, histogram.getHelp(), "summary");
+                quantile(out, name, "0.5", histogram.getP50());
+                quantile(out, name, "0.9", histogram.getP90());
+                quantile(out, name, "0.99", histogram.getP99());
+                quantile(out, name, "0.999", histogram.getP999());
+                out.append(name).append("_sum ").append(format(histogram.getSum() / histogram.getScale())).append('\n');
+                out.append(name).append("_count ").append(Long.toString(histogram.getCount())).append('\n');
+                out.append(name).append("_max ").append(format(histogram.getMax())).append('\n');
+            } else if (metric instanceof Counter) {
+                Counter counter = (Counter) metric;
+                String name = "travel_" + counter.getName();
+                header(out, name, counter.getHelp(), "counter");
+                out.append(name).append(' ').append(Long.toString(counter.getValue())).append('\n');
+            } else {
+                Gauge gauge = (Gauge) metric;
+                String name = "travel_" + gauge.getName();
+                header(out, name, gauge.getHelp(), "gauge");
+                out.append(name).append(' ').append(format(gauge.getValue())).append('\n');
+            }
+        }
+    }
+
+    private static void header(Appendable out, String name, String help, String type) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void quantile(Appendable out, String name, String quantile, double value) throws IOException {
+        out.append(name).append("{quantile=\"").append(quantile).append("\"} ").append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+            ? Long.toString((long) value) : Double.toString(value);
+    }
+}
@@ -0,0 +1,26 @@
+package com.nice.travel.model;
+
+public enum Criteria {
+    TIME("Time"),
+    COST("Cost"),
+    HOPS("Hops"),
+    /** Every non-dominated trade-off between time, cost and hops. */
+    PARETO("Pareto");
+
+    private final String label;
+
+    Criteria(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() { return label; }
+
+    public static Criteria parse(String criteria) {
+        for (Criteria c : values()) {
+            if (c.label.equals(criteria)) {
+                return c;
+            }
+        }
+        return TIME;
+    }
+}
@@ -0,0 +1,45 @@
+package com.nice.travel.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Which journeys a request accepts: only the allowed modes (empty for any), none of the excluded
+ * ones, at most {@code maxHops} routes and {@code maxCost} in total (0 for no limit), and at least
+ * {@code minConnectionMinutes} between arriving in a city and leaving it again.
+ */
+public class RouteConstraints {
+    private final Set<String> allowedModes;
+    private final Set<String> excludedModes;
+    private final int maxHops;
+    private final int maxCost;
+    private final int minConnectionMinutes;
+
+    public RouteConstraints(Collection<String> allowedModes, Collection<String> excludedModes, int maxHops,
+                            int maxCost, int minConnectionMinutes) {
+        if (maxHops < 0 || maxCost < 0 || minConnectionMinutes < 0) {
+            throw new IllegalArgumentException("Constraint limits must not be negative");
+        }
+        this.allowedModes = Collections.unmodifiableSet(new LinkedHashSet<>(allowedModes));
+        this.excludedModes = Collections.unmodifiableSet(new LinkedHashSet<>(excludedModes));
+        this.maxHops = maxHops;
+        this.maxCost = maxCost;
+        this.minConnectionMinutes = minConnectionMinutes;
+    }
+
+    public Set<String> getAllowedModes() { return allowedModes; }
+    public Set<String> getExcludedModes() { return excludedModes; }
+    public int getMaxHops() { return maxHops; }
+    public int getMaxCost() { return maxCost; }
+    public int getMinConnectionMinutes() { return minConnectionMinutes; }
+
+    public boolean allowsMode(String mode) {
+        return (allowedModes.isEmpty() || allowedModes.contains(mode)) && !excludedModes.contains(mode);
+    }
+
+    public boolean limitsModes() {
+        return !allowedModes.isEmpty() || !excludedModes.isEmpty();
+    }
+}
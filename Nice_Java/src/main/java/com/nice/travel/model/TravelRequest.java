@@ -5,16 +5,67 @@ public class TravelRequest {
     private String source;
     private String destination;
     private String criteria;
+    private int k;
+    private int earliestDeparture;
+    private int latestDeparture;
+    private long deadlineMillis;
+    private int maxSettled;
+    private int maxHops;
+    private RouteConstraints constraints;
 
     public TravelRequest(String requestId, String source, String destination, String criteria) {
+        this(requestId, source, destination, criteria, 1);
+    }
+
+    /** {@code k} > 1 asks for that many ranked alternative schedules instead of one. */
+    public TravelRequest(String requestId, String source, String destination, String criteria, int k) {
+        this(requestId, source, destination, criteria, k, -1, -1);
+    }
+
+    /**
+     * A request with a departure window in minutes of the day (-1 for none) asks for the best
+     * journey for every departure time in it; {@code latestDeparture} before
+     * {@code earliestDeparture} wraps past midnight.
+     */
+    public TravelRequest(String requestId, String source, String destination, String criteria, int k,
+                         int earliestDeparture, int latestDeparture) {
         this.requestId = requestId;
         this.source = source;
         this.destination = destination;
         this.criteria = criteria;
+        this.k = k;
+        this.earliestDeparture = earliestDeparture;
+        this.latestDeparture = latestDeparture;
+    }
+
+    /**
+     * Limits this request's search to {@code deadlineMillis} of wall-clock time, {@code maxSettled}
+     * units of work and a hop depth of {@code maxHops}; 0 leaves a limit to the batch default.
+     */
+    public TravelRequest withBudget(long deadlineMillis, int maxSettled, int maxHops) {
+        this.deadlineMillis = deadlineMillis;
+        this.maxSettled = maxSettled;
+        this.maxHops = maxHops;
+        return this;
+    }
+
+    /** Restricts the acceptable journeys; null accepts any. */
+    public TravelRequest withConstraints(RouteConstraints constraints) {
+        this.constraints = constraints;
+        return this;
     }
 
     public String getRequestId() { return requestId; }
     public String getSource() { return source; }
     public String getDestination() { return destination; }
     public String getCriteria() { return criteria; }
+    public int getK() { return k; }
+    public int getEarliestDeparture() { return earliestDeparture; }
+    public int getLatestDeparture() { return latestDeparture; }
+    public boolean hasDepartureWindow() { return earliestDeparture >= 0; }
+    public long getDeadlineMillis() { return deadlineMillis; }
+    public int getMaxSettled() { return maxSettled; }
+    public int getMaxHops() { return maxHops; }
+    public RouteConstraints getConstraints() { return constraints; }
+    public boolean hasBudget() { return deadlineMillis > 0 || maxSettled > 0 || maxHops > 0; }
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+
+/**
+ * Goal-directed point-to-point search for the Cost and Hops criteria: A* with {@link Landmarks}
+ * lower bounds (ALT). The bounds are consistent, so a settled city is final and the distance
+ * equals {@link DijkstraSearch#search}'s while far fewer cities are settled. Equal-weight paths
+ * may be chosen differently.
+ */
+public final class AltSearch {
+
+    private AltSearch() {
+    }
+
+    /** Unidirectional A*; same contract as {@link DijkstraSearch#search}. */
+    public static int search(Landmarks landmarks, int source, int target, Criteria criteria, SearchScratch scratch) {
+        TimetableGraph graph = landmarks.graph();
+        int table = Landmarks.table(criteria);
+        int count = landmarks.count();
+        scratch.reset(graph.cityCount());
+        int bound = landmarks.bound(table, source, target, count);
+        if (bound == Landmarks.INFINITY) {
+            return -1;
+        }
+        IndexedMinHeap heap = scratch.heap;
+        scratch.label(source, 0, -1);
+        heap.offer(source, bound);
+        scratch.pushes++;
+
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            int distance = scratch.distances[current];
+            scratch.settled++;
+
+            if (current == target) {
+                DijkstraSearch.extractPath(graph, scratch, target);
+                return distance;
+            }
+            if (scratch.exhausted()) {
+                return -1;
+            }
+
+            scratch.relaxed += graph.endEdge(current) - graph.firstEdge(current);
+            for (int edge = graph.firstEdge(current), last = graph.endEdge(current); edge < last; edge++) {
+                int next = graph.target(edge);
+                int newDistance = distance + DijkstraSearch.weight(graph, edge, criteria);
+                if (newDistance < scratch.distance(next)) {
+                    int remaining = landmarks.bound(table, next, target, count);
+                    if (remaining != Landmarks.INFINITY) {
+                        scratch.label(next, newDistance, edge);
+                        heap.offer(next, newDistance + remaining);
+                        scratch.pushes++;
+                    }
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Bidirectional A*: a forward search from {@code source} and a backward search from
+     * {@code target} over incoming edges, both guided by the average potential
+     * {@code (bound(v, target) - bound(source, v)) / 2}. Keys are doubled to stay integral. The
+     * searches stop once the two smallest keys together reach twice the best meeting distance.
+     */
+    public static int searchBidirectional(Landmarks landmarks, int source, int target, Criteria criteria,
+                                          SearchScratch scratch) {
+        TimetableGraph graph = landmarks.graph();
+        int table = Landmarks.table(criteria);
+        int count = landmarks.count();
+        SearchScratch backward = scratch.backward();
+        scratch.reset(graph.cityCount());
+        backward.reset(graph.cityCount());
+        if (source == target) {
+            return 0;
+        }
+        int bound = landmarks.bound(table, source, target, count);
+        if (bound == Landmarks.INFINITY) {
+            return -1;
+        }
+        IndexedMinHeap forwardHeap = scratch.heap;
+        IndexedMinHeap backwardHeap = backward.heap;
+        scratch.label(source, 0, -1);
+        forwardHeap.offer(source, bound);
+        backward.label(target, 0, -1);
+        backwardHeap.offer(target, bound);
+        scratch.pushes += 2;
+        int best = Integer.MAX_VALUE;
+        int meeting = -1;
+
+        while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()) {
+            int forwardKey = forwardHeap.peekKey();
+            int backwardKey = backwardHeap.peekKey();
+            if (best != Integer.MAX_VALUE && (long) forwardKey + backwardKey >= 2L * best) {
+                break;
+            }
+            scratch.settled++;
+            if (scratch.exhausted()) {
+                return -1;
+            }
+            if (forwardKey <= backwardKey) {
+                int current = forwardHeap.poll();
+                int distance = scratch.distances[current];
+                scratch.relaxed += graph.endEdge(current) - graph.firstEdge(current);
+                for (int edge = graph.firstEdge(current), last = graph.endEdge(current); edge < last; edge++) {
+                    int next = graph.target(edge);
+                    int newDistance = distance + DijkstraSearch.weight(graph, edge, criteria);
+                    if (newDistance >= scratch.distance(next)) {
+                        continue;
+                    }
+                    int potential = potential(landmarks, table, count, source, target, next);
+                    if (potential == Landmarks.INFINITY) {
+                        continue;
+                    }
+                    scratch.label(next, newDistance, edge);
+                    forwardHeap.offer(next, 2 * newDistance + potential);
+                    scratch.pushes++;
+                    if (backward.visited(next) && newDistance + backward.distances[next] < best) {
+                        best = newDistance + backward.distances[next];
+                        meeting = next;
+                    }
+                }
+            } else {
+                int current = backwardHeap.poll();
+                int distance = backward.distances[current];
+                int first = landmarks.reverseOffsets[current];
+                int last = landmarks.reverseOffsets[current + 1];
+                scratch.relaxed += last - first;
+                for (int i = first; i < last; i++) {
+                    int edge = landmarks.reverseEdges[i];
+                    int next = graph.source(edge);
+                    int newDistance = distance + DijkstraSearch.weight(graph, edge, criteria);
+                    if (newDistance >= backward.distance(next)) {
+                        continue;
+                    }
+                    int potential = potential(landmarks, table, count, source, target, next);
+                    if (potential == Landmarks.INFINITY) {
+                        continue;
+                    }
+                    backward.label(next, newDistance, edge);
+                    backwardHeap.offer(next, 2 * newDistance - potential);
+                    scratch.pushes++;
+                    if (scratch.visited(next) && newDistance + scratch.distances[next] < best) {
+                        best = newDistance + scratch.distances[next];
+                        meeting = next;
+                    }
+                }
+            }
+        }
+
+        if (meeting < 0) {
+            return -1;
+        }
+        int length = DijkstraSearch.extractPath(graph, scratch, meeting);
+        for (int city = meeting; city != target; city = graph.target(backward.parentEdges[city])) {
+            length++;
+        }
+        scratch.ensurePathCapacity(length);
+        for (int city = meeting; city != target; city = graph.target(backward.parentEdges[city])) {
+            scratch.pathEdges[scratch.pathLength++] = backward.parentEdges[city];
+        }
+        return best;
+    }
+
+    /** Twice the average potential of {@code city}, or {@link Landmarks#INFINITY} if no source-target path can use it. */
+    private static int potential(Landmarks landmarks, int table, int count, int source, int target, int city) {
+        int toTarget = landmarks.bound(table, city, target, count);
+        int fromSource = landmarks.bound(table, source, city, count);
+        if (toTarget == Landmarks.INFINITY || fromSource == Landmarks.INFINITY) {
+            return Landmarks.INFINITY;
+        }
+        return toTarget - fromSource;
+    }
+}
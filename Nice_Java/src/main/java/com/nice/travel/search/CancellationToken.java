@@ -0,0 +1,12 @@
+package com.nice.travel.search;
+
+/** Cooperative cancellation shared by any number of searches; they stop at their next budget check. */
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() { return cancelled; }
+}
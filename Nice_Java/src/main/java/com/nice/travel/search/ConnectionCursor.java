@@ -0,0 +1,151 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.util.TimeUtil;
+
+/**
+ * Walks the compiled connections and the per-city slices of added connections in departure
+ * order, forwards from a start minute or backwards from a last one. The slices are merged with a
+ * small heap. Each block wraps into the next (or previous) day independently, so the walk never
+ * ends on its own; scans stop it with their own bound.
+ */
+final class ConnectionCursor {
+    private TimetableGraph graph;
+    private boolean forward;
+    private int count;
+    private int c;
+    private int dayOffset;
+    private long[] slices;
+    private int[] positions = new int[0];
+    private int[] offsets = new int[0];
+    private int[] heap = new int[0];
+    private int heapSize;
+
+    int connection;
+    int departure;
+
+    /** Positions the cursor at {@code start}; returns false if the timetable has no connections. */
+    boolean reset(TimetableGraph graph, int start) {
+        return position(graph, start, true);
+    }
+
+    /**
+     * Positions the cursor to walk back from {@code last}, which may lie in any day, so departures
+     * come out in that day's minutes; returns false if the timetable has no connections.
+     */
+    boolean resetBackward(TimetableGraph graph, int last) {
+        return position(graph, last, false);
+    }
+
+    private boolean position(TimetableGraph graph, int minute, boolean forward) {
+        this.graph = graph;
+        this.forward = forward;
+        count = graph.connectionCount();
+        slices = graph.addedConnectionSlices();
+        int day = minute - minute % TimeUtil.MINUTES_PER_DAY;
+        int from = forward ? minute - day : minute - day + 1;
+        int step = forward ? 0 : -1;
+        dayOffset = day;
+        c = graph.firstConnectionAtOrAfter(from) + step;
+        wrapCompiled();
+        if (positions.length < slices.length) {
+            positions = new int[slices.length];
+            offsets = new int[slices.length];
+            heap = new int[slices.length];
+        }
+        heapSize = 0;
+        for (int s = 0; s < slices.length; s++) {
+            int first = (int) (slices[s] >>> 32);
+            int end = (int) slices[s];
+            positions[s] = graph.firstConnectionAtOrAfter(from, first, end) + step;
+            offsets[s] = day;
+            wrap(s);
+            heap[heapSize++] = s;
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+        return count > 0 || heapSize > 0;
+    }
+
+    /** Moves to the next connection in the walk's direction. */
+    void next() {
+        if (heapSize > 0) {
+            int top = heap[0];
+            int added = positions[top];
+            int addedDeparture = graph.connectionDeparture(added) + offsets[top];
+            if (count == 0 || forward != precedes(c, graph.connectionDeparture(c) + dayOffset, added, addedDeparture)) {
+                connection = added;
+                departure = addedDeparture;
+                positions[top] += forward ? 1 : -1;
+                wrap(top);
+                siftDown(0);
+                return;
+            }
+        }
+        connection = c;
+        departure = graph.connectionDeparture(c) + dayOffset;
+        c += forward ? 1 : -1;
+        wrapCompiled();
+    }
+
+    /** Compiled connections go first on equal departure and duration, matching the build order. */
+    private boolean precedes(int compiled, int compiledDeparture, int added, int addedDeparture) {
+        if (compiledDeparture != addedDeparture) {
+            return compiledDeparture < addedDeparture;
+        }
+        return graph.connectionDuration(compiled) <= graph.connectionDuration(added);
+    }
+
+    private void wrapCompiled() {
+        if (count > 0 && (c == count || c < 0)) {
+            c = forward ? 0 : count - 1;
+            dayOffset += forward ? TimeUtil.MINUTES_PER_DAY : -TimeUtil.MINUTES_PER_DAY;
+        }
+    }
+
+    private void wrap(int slice) {
+        int first = (int) (slices[slice] >>> 32);
+        int end = (int) slices[slice];
+        if (positions[slice] == end || positions[slice] < first) {
+            positions[slice] = forward ? first : end - 1;
+            offsets[slice] += forward ? TimeUtil.MINUTES_PER_DAY : -TimeUtil.MINUTES_PER_DAY;
+        }
+    }
+
+    private void siftDown(int i) {
+        int slice = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && comesFirst(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!comesFirst(heap[child], slice)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = slice;
+    }
+
+    /** Whether slice {@code a}'s current connection is walked before slice {@code b}'s. */
+    private boolean comesFirst(int a, int b) {
+        int connectionA = positions[a];
+        int connectionB = positions[b];
+        int departureA = graph.connectionDeparture(connectionA) + offsets[a];
+        int departureB = graph.connectionDeparture(connectionB) + offsets[b];
+        if (departureA != departureB) {
+            return forward == departureA < departureB;
+        }
+        int durationA = graph.connectionDuration(connectionA);
+        int durationB = graph.connectionDuration(connectionB);
+        if (durationA != durationB) {
+            return forward == durationA < durationB;
+        }
+        return forward == connectionA < connectionB;
+    }
+}
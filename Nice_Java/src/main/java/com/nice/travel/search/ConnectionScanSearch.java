@@ -0,0 +1,278 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.util.TimeUtil;
+
+import java.util.Arrays;
+
+/**
+ * Minimum total travel time (ride plus waiting) over the daily timetable using the Connection
+ * Scan Algorithm. The timetable repeats every day, so a scan that runs off the end of the
+ * departure-sorted connection array continues from the start one day later; waits therefore
+ * wrap past midnight exactly as {@link TimeUtil#calculateWaitingTime(int, int)} does.
+ *
+ * <p>Travel time is measured from the first departure, so {@link #search} and {@link #searchMany}
+ * answer every departure from the source in one forward pass. Each connection out of the source
+ * on the first day starts a journey, and a label remembers when its journey started. Of the
+ * labels in place in a city when a connection leaves, the one that started latest is extended:
+ * the rest of the journey does not depend on how the city was reached, so it gives the shortest
+ * trip. Labels take effect once their arrival (plus the minimum connection time) has passed, in
+ * a small heap ordered by that minute.
+ */
+public final class ConnectionScanSearch {
+    private static final int START = 0;
+    private static final int HOPS = 1;
+    private static final int PARENT = 2;
+    private static final int EDGE = 3;
+    private static final int CITY = 4;
+    private static final int STRIDE = 5;
+
+    private ConnectionScanSearch() {
+    }
+
+    /**
+     * Returns the minimum travel time from {@code source} to {@code target}, or -1 if unreachable or
+     * the scratch's budget ran out. On success the path edges are available from the scratch.
+     */
+    public static int search(TimetableGraph graph, int source, int target, SearchScratch scratch) {
+        scratch.reset(graph.cityCount());
+        if (graph.firstEdge(source) == graph.endEdge(source) || source == target) {
+            return -1;
+        }
+        scanAll(graph, source, target, scratch);
+        if (scratch.stopped() || !scratch.visited(target)) {
+            return -1;
+        }
+        extractPath(scratch, scratch.parentEdge(target));
+        return scratch.distance(target);
+    }
+
+    /**
+     * One-to-many variant of {@link #search}: one pass answers all {@code targets[0, count)}.
+     * {@code values[i]} receives the minimum travel time to {@code targets[i]} (or -1) and
+     * {@code paths[i]} its edges. If the budget runs out every value is -1.
+     */
+    public static void searchMany(TimetableGraph graph, int source, int[] targets, int count,
+                                  SearchScratch scratch, int[] values, int[][] paths) {
+        Arrays.fill(values, 0, count, -1);
+        scratch.reset(graph.cityCount());
+        if (graph.firstEdge(source) == graph.endEdge(source)) {
+            return;
+        }
+        scanAll(graph, source, -1, scratch);
+        if (scratch.stopped()) {
+            return;
+        }
+        for (int t = 0; t < count; t++) {
+            if (targets[t] != source && scratch.visited(targets[t])) {
+                values[t] = scratch.distance(targets[t]);
+                int length = extractPath(scratch, scratch.parentEdge(targets[t]));
+                paths[t] = Arrays.copyOf(scratch.pathEdges, length);
+            }
+        }
+    }
+
+    /**
+     * The single pass behind {@link #search} and {@link #searchMany}. Leaves in the scratch, for
+     * each city reached (only {@code target} if it is not negative), the minimum travel time as its
+     * distance and the label of that journey as its parent edge. The active label of every city
+     * lives in the scratch's second label set: its start as the distance, its index as the parent.
+     * The mode filter, minimum connection time and hop budget apply.
+     */
+    private static void scanAll(TimetableGraph graph, int source, int target, SearchScratch scratch) {
+        ConnectionCursor cursor = scratch.cursor;
+        if (!cursor.reset(graph, 0)) {
+            return;
+        }
+        SearchScratch active = scratch.backward();
+        active.reset(graph.cityCount());
+        scratch.labelCount = 0;
+        long[] pending = new long[16];
+        int pendingCount = 0;
+        int latest = TimeUtil.MINUTES_PER_DAY - 1;
+        int latestStart = 0;
+
+        while (true) {
+            cursor.next();
+            int connection = cursor.connection;
+            int departure = cursor.departure;
+            if (departure - latest > TimeUtil.MINUTES_PER_DAY + scratch.minConnection
+                    || (target >= 0 && scratch.visited(target)
+                        && departure - Math.max(latestStart, Math.min(departure, TimeUtil.MINUTES_PER_DAY - 1))
+                            >= scratch.distance(target))) {
+                break;
+            }
+            scratch.relaxed++;
+            if (scratch.exhausted()) {
+                return;
+            }
+            while (pendingCount > 0 && (int) (pending[0] >>> 32) <= departure) {
+                int label = (int) pending[0];
+                pendingCount = poll(pending, pendingCount);
+                int at = label * STRIDE;
+                int city = scratch.labels[at + CITY];
+                if ((!active.visited(city) || active.distance(city) < scratch.labels[at + START])
+                        && !(scratch.limitsHops() && scratch.tooMany(scratch.labels[at + HOPS]))) {
+                    active.label(city, scratch.labels[at + START], label);
+                }
+            }
+
+            int from = graph.connectionSource(connection);
+            int to = graph.connectionTarget(connection);
+            int edge = graph.connectionEdge(connection);
+            if (to == source || to == from || !graph.connectionLive(connection) || !scratch.allows(graph, edge)) {
+                continue;
+            }
+            int start;
+            int hops;
+            int parent;
+            if (from == source) {
+                if (departure >= TimeUtil.MINUTES_PER_DAY) {
+                    continue;
+                }
+                start = departure;
+                hops = 1;
+                parent = -1;
+            } else if (active.visited(from)) {
+                start = active.distance(from);
+                parent = active.parentEdge(from);
+                hops = scratch.labels[parent * STRIDE + HOPS] + 1;
+            } else {
+                continue;
+            }
+            int arrival = departure + graph.connectionDuration(connection);
+            if (active.visited(to) && active.distance(to) >= start
+                    || target >= 0 && scratch.visited(target) && arrival - start >= scratch.distance(target)) {
+                continue;
+            }
+
+            int label = scratch.labelCount++;
+            int[] labels = scratch.labels;
+            if (labels == null || labels.length < scratch.labelCount * STRIDE) {
+                labels = scratch.labels = labels == null ? new int[64 * STRIDE] : Arrays.copyOf(labels, labels.length * 2);
+            }
+            int at = label * STRIDE;
+            labels[at + START] = start;
+            labels[at + HOPS] = hops;
+            labels[at + PARENT] = parent;
+            labels[at + EDGE] = edge;
+            labels[at + CITY] = to;
+            scratch.settled++;
+            latest = Math.max(latest, arrival);
+            latestStart = Math.max(latestStart, start);
+            if (target < 0 || to == target) {
+                if (!scratch.visited(to) || arrival - start < scratch.distance(to)) {
+                    scratch.label(to, arrival - start, label);
+                }
+                if (to == target) {
+                    continue;
+                }
+            }
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            }
+            pendingCount = offer(pending, pendingCount,
+                (long) (arrival + scratch.transfer(to, source)) << 32 | label);
+        }
+    }
+
+    /** Copies the edges of the journey ending in {@code label} into the scratch's path; returns its length. */
+    private static int extractPath(SearchScratch scratch, int label) {
+        int length = scratch.labels[label * STRIDE + HOPS];
+        scratch.ensurePathCapacity(length);
+        for (int index = length - 1; index >= 0; index--, label = scratch.labels[label * STRIDE + PARENT]) {
+            scratch.pathEdges[index] = scratch.labels[label * STRIDE + EDGE];
+        }
+        scratch.pathLength = length;
+        return length;
+    }
+
+    /** Adds {@code key} to the binary min-heap {@code heap[0, size)}; returns the new size. */
+    private static int offer(long[] heap, int size, long key) {
+        int at = size;
+        while (at > 0 && heap[(at - 1) >>> 1] > key) {
+            heap[at] = heap[(at - 1) >>> 1];
+            at = (at - 1) >>> 1;
+        }
+        heap[at] = key;
+        return size + 1;
+    }
+
+    /** Removes the smallest key of the binary min-heap {@code heap[0, size)}; returns the new size. */
+    private static int poll(long[] heap, int size) {
+        long last = heap[--size];
+        int at = 0;
+        while (2 * at + 1 < size) {
+            int child = 2 * at + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= last) {
+                break;
+            }
+            heap[at] = heap[child];
+            at = child;
+        }
+        heap[at] = last;
+        return size;
+    }
+
+    /**
+     * Labels every city reachable from {@code source} when standing there at minute {@code start}
+     * with its earliest arrival; read them with {@link SearchScratch#distance(int)} and the journeys
+     * with {@link DijkstraSearch#extractPath}.
+     */
+    public static void searchFrom(TimetableGraph graph, int source, int start, SearchScratch scratch) {
+        scratch.reset(graph.cityCount());
+        scan(graph, source, -1, start, Integer.MAX_VALUE, scratch);
+    }
+
+    /**
+     * Earliest arrival at {@code target} when standing at {@code source} at minute {@code start}.
+     * Returns -1 if the target cannot be reached within {@code bound} minutes of the start. A
+     * negative {@code target} scans until no label can improve, labelling every reachable city.
+     * Compiled and incrementally added connections are merged in departure order; each block
+     * wraps into the next day independently. The scratch's mode filter and minimum connection
+     * time apply.
+     */
+    static int scan(TimetableGraph graph, int source, int target, int start, int bound, SearchScratch scratch) {
+        scratch.label(source, start, -1);
+        scratch.deepen(source, -1);
+        ConnectionCursor cursor = scratch.cursor;
+        if (!cursor.reset(graph, start)) {
+            return -1;
+        }
+        int latest = start;
+
+        while (true) {
+            cursor.next();
+            int connection = cursor.connection;
+            int departure = cursor.departure;
+            if (departure - start >= bound || (target >= 0 && departure >= scratch.distance(target))
+                    || departure - latest > TimeUtil.MINUTES_PER_DAY + scratch.minConnection) {
+                break;
+            }
+            scratch.relaxed++;
+            if (scratch.exhausted()) {
+                return -1;
+            }
+            int from = graph.connectionSource(connection);
+            if (scratch.distance(from) <= departure - scratch.transfer(from, source) && !scratch.tooDeep(from)) {
+                int arrival = departure + graph.connectionDuration(connection);
+                int next = graph.connectionTarget(connection);
+                if (arrival < scratch.distance(next) && graph.connectionLive(connection)
+                        && scratch.allows(graph, graph.connectionEdge(connection))) {
+                    scratch.label(next, arrival, graph.connectionEdge(connection));
+                    scratch.deepen(next, from);
+                    scratch.settled++;
+                    if (arrival > latest) {
+                        latest = arrival;
+                    }
+                }
+            }
+        }
+
+        int arrival = target >= 0 ? scratch.distance(target) : Integer.MAX_VALUE;
+        return arrival == Integer.MAX_VALUE ? -1 : arrival;
+    }
+}
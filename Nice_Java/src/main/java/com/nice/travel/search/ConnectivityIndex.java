@@ -0,0 +1,138 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+
+import java.util.Arrays;
+
+/**
+ * Weakly and strongly connected component IDs of every city, so a search between cities that can
+ * never be connected is rejected in constant time. Strong components are numbered by Tarjan's
+ * algorithm in completion order, which is a reverse topological order of the condensation: a city
+ * can only reach cities whose component number is at most its own. Like {@link Landmarks}, the
+ * index describes one graph instance.
+ */
+public final class ConnectivityIndex {
+    private final TimetableGraph graph;
+    private final int[] weak;
+    private final int[] strong;
+    private final int weakCount;
+    private final int strongCount;
+
+    private ConnectivityIndex(TimetableGraph graph, int[] weak, int weakCount, int[] strong, int strongCount) {
+        this.graph = graph;
+        this.weak = weak;
+        this.weakCount = weakCount;
+        this.strong = strong;
+        this.strongCount = strongCount;
+    }
+
+    public static ConnectivityIndex compute(TimetableGraph graph) {
+        int cities = graph.cityCount();
+        int[] parent = new int[cities];
+        for (int c = 0; c < cities; c++) {
+            parent[c] = c;
+        }
+        for (int c = 0; c < cities; c++) {
+            for (int edge = graph.firstEdge(c), last = graph.endEdge(c); edge < last; edge++) {
+                int a = root(parent, c);
+                int b = root(parent, graph.target(edge));
+                if (a != b) {
+                    parent[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+        int[] weak = new int[cities];
+        int weakCount = 0;
+        for (int c = 0; c < cities; c++) {
+            int r = root(parent, c);
+            weak[c] = r == c ? weakCount++ : weak[r];
+        }
+
+        int[] strong = new int[cities];
+        int strongCount = tarjan(graph, strong);
+        return new ConnectivityIndex(graph, weak, weakCount, strong, strongCount);
+    }
+
+    /**
+     * False only if no journey leads from {@code source} to {@code target}: they lie in different
+     * weak components, or the target's strong component precedes the source's in the condensation.
+     */
+    public boolean mayReach(int source, int target) {
+        return weak[source] == weak[target] && strong[source] >= strong[target];
+    }
+
+    public boolean stronglyConnected(int a, int b) {
+        return strong[a] == strong[b];
+    }
+
+    public TimetableGraph graph() { return graph; }
+    public int weakComponent(int city) { return weak[city]; }
+    public int strongComponent(int city) { return strong[city]; }
+    public int weakCount() { return weakCount; }
+    public int strongCount() { return strongCount; }
+
+    private static int root(int[] parent, int city) {
+        while (parent[city] != city) {
+            parent[city] = parent[parent[city]];
+            city = parent[city];
+        }
+        return city;
+    }
+
+    /** Iterative Tarjan; fills {@code component} and returns the number of strong components. */
+    private static int tarjan(TimetableGraph graph, int[] component) {
+        int cities = graph.cityCount();
+        int[] index = new int[cities];
+        int[] low = new int[cities];
+        int[] nextEdge = new int[cities];
+        int[] calls = new int[cities];
+        int[] stack = new int[cities];
+        boolean[] onStack = new boolean[cities];
+        Arrays.fill(index, -1);
+        int counter = 0;
+        int count = 0;
+        for (int root = 0; root < cities; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            int top = 0;
+            index[root] = low[root] = counter++;
+            nextEdge[root] = graph.firstEdge(root);
+            stack[top++] = root;
+            onStack[root] = true;
+            calls[depth++] = root;
+            while (depth > 0) {
+                int v = calls[depth - 1];
+                if (nextEdge[v] < graph.endEdge(v)) {
+                    int w = graph.target(nextEdge[v]++);
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        nextEdge[w] = graph.firstEdge(w);
+                        stack[top++] = w;
+                        onStack[w] = true;
+                        calls[depth++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--top];
+                        onStack[w] = false;
+                        component[w] = count;
+                    } while (w != v);
+                    count++;
+                }
+                if (depth > 0) {
+                    int u = calls[depth - 1];
+                    low[u] = Math.min(low[u], low[v]);
+                }
+            }
+        }
+        return count;
+    }
+}
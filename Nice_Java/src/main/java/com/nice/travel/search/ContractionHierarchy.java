@@ -0,0 +1,311 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Contraction hierarchy of a {@link TimetableGraph} under the Cost or Hops criterion, built by
+ * {@link ContractionHierarchyBuilder}. A query searches upward from both ends, so it settles a
+ * few hundred cities at most. Shortcut arcs are then unpacked back into the original edges.
+ * Arc {@code a} is an original edge when {@code left[a] < 0}, with {@code right[a]} its edge ID,
+ * and otherwise the concatenation of arcs {@code left[a]} and {@code right[a]}.
+ *
+ * <p>{@link #write} stores the hierarchy next to a timetable snapshot, and {@link #read} accepts
+ * it only for a graph with the same routes and city order.
+ */
+public final class ContractionHierarchy {
+    static final int MAGIC = 0x4E544348;
+    static final int VERSION = 1;
+
+    private final TimetableGraph graph;
+    private final Criteria criteria;
+    private final int[] ranks;
+    /** Arcs from city {@code c} to higher-ranked cities: {@code upArcs[upOffsets[c], upOffsets[c + 1])}. */
+    private final int[] upOffsets;
+    private final int[] upArcs;
+    /** Arcs into city {@code c} from higher-ranked cities, for the backward search. */
+    private final int[] downOffsets;
+    private final int[] downArcs;
+    private final int[] arcSource;
+    private final int[] arcTarget;
+    private final int[] arcWeight;
+    private final int[] arcLeft;
+    private final int[] arcRight;
+
+    private ContractionHierarchy(TimetableGraph graph, Criteria criteria, int[] ranks, int[] upOffsets, int[] upArcs,
+                                 int[] downOffsets, int[] downArcs, int[] arcSource, int[] arcTarget,
+                                 int[] arcWeight, int[] arcLeft, int[] arcRight) {
+        this.graph = graph;
+        this.criteria = criteria;
+        this.ranks = ranks;
+        this.upOffsets = upOffsets;
+        this.upArcs = upArcs;
+        this.downOffsets = downOffsets;
+        this.downArcs = downArcs;
+        this.arcSource = arcSource;
+        this.arcTarget = arcTarget;
+        this.arcWeight = arcWeight;
+        this.arcLeft = arcLeft;
+        this.arcRight = arcRight;
+    }
+
+    public static boolean supports(Criteria criteria) {
+        return criteria == Criteria.COST || criteria == Criteria.HOPS;
+    }
+
+    static ContractionHierarchy assemble(TimetableGraph graph, Criteria criteria, int[] ranks, int[][] outArcs,
+                                         int[] outSize, int[][] inArcs, int[] inSize, int[] arcSource,
+                                         int[] arcTarget, int[] arcWeight, int[] arcLeft, int[] arcRight) {
+        int cities = ranks.length;
+        int[] upOffsets = new int[cities + 1];
+        int[] downOffsets = new int[cities + 1];
+        for (int c = 0; c < cities; c++) {
+            upOffsets[c + 1] = upOffsets[c];
+            for (int i = 0; i < outSize[c]; i++) {
+                upOffsets[c + 1] += ranks[arcTarget[outArcs[c][i]]] > ranks[c] ? 1 : 0;
+            }
+            downOffsets[c + 1] = downOffsets[c];
+            for (int i = 0; i < inSize[c]; i++) {
+                downOffsets[c + 1] += ranks[arcSource[inArcs[c][i]]] > ranks[c] ? 1 : 0;
+            }
+        }
+        int[] upArcs = new int[upOffsets[cities]];
+        int[] downArcs = new int[downOffsets[cities]];
+        for (int c = 0; c < cities; c++) {
+            for (int i = 0, at = upOffsets[c]; i < outSize[c]; i++) {
+                if (ranks[arcTarget[outArcs[c][i]]] > ranks[c]) {
+                    upArcs[at++] = outArcs[c][i];
+                }
+            }
+            for (int i = 0, at = downOffsets[c]; i < inSize[c]; i++) {
+                if (ranks[arcSource[inArcs[c][i]]] > ranks[c]) {
+                    downArcs[at++] = inArcs[c][i];
+                }
+            }
+        }
+        return new ContractionHierarchy(graph, criteria, ranks, upOffsets, upArcs, downOffsets, downArcs,
+            arcSource, arcTarget, arcWeight, arcLeft, arcRight);
+    }
+
+    public TimetableGraph graph() { return graph; }
+    public Criteria criteria() { return criteria; }
+    public int arcCount() { return arcSource.length; }
+    public int shortcutCount() {
+        int shortcuts = 0;
+        for (int left : arcLeft) {
+            shortcuts += left >= 0 ? 1 : 0;
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Returns the distance from {@code source} to {@code target}, or -1 if unreachable; on success
+     * the unpacked path edges are available from the scratch, as with {@link DijkstraSearch#search}.
+     */
+    public int search(int source, int target, SearchScratch scratch) {
+        SearchScratch backward = scratch.backward();
+        scratch.reset(graph.cityCount());
+        backward.reset(graph.cityCount());
+        if (source == target) {
+            return 0;
+        }
+        IndexedMinHeap forwardHeap = scratch.heap;
+        IndexedMinHeap backwardHeap = backward.heap;
+        scratch.label(source, 0, -1);
+        forwardHeap.offer(source, 0);
+        backward.label(target, 0, -1);
+        backwardHeap.offer(target, 0);
+        scratch.pushes += 2;
+        int best = Integer.MAX_VALUE;
+        int meeting = -1;
+
+        while (!forwardHeap.isEmpty() || !backwardHeap.isEmpty()) {
+            boolean forward = !forwardHeap.isEmpty()
+                && (backwardHeap.isEmpty() || forwardHeap.peekKey() <= backwardHeap.peekKey());
+            SearchScratch side = forward ? scratch : backward;
+            SearchScratch other = forward ? backward : scratch;
+            if (side.heap.peekKey() >= best) {
+                break;
+            }
+            int current = side.heap.poll();
+            int distance = side.distances[current];
+            scratch.settled++;
+            if (other.visited(current) && distance + other.distances[current] < best) {
+                best = distance + other.distances[current];
+                meeting = current;
+            }
+            if (stalled(current, distance, forward, side)) {
+                continue;
+            }
+            int[] offsets = forward ? upOffsets : downOffsets;
+            int[] arcs = forward ? upArcs : downArcs;
+            scratch.relaxed += offsets[current + 1] - offsets[current];
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int arc = arcs[i];
+                int next = forward ? arcTarget[arc] : arcSource[arc];
+                int newDistance = distance + arcWeight[arc];
+                if (newDistance < side.distance(next)) {
+                    side.label(next, newDistance, arc);
+                    side.heap.offer(next, newDistance);
+                    scratch.pushes++;
+                }
+            }
+        }
+
+        if (meeting < 0) {
+            return -1;
+        }
+        int upward = 0;
+        for (int city = meeting; scratch.parentEdges[city] >= 0; city = arcSource[scratch.parentEdges[city]]) {
+            upward++;
+        }
+        int[] stack = scratch.buffer(upward + 1);
+        int top = 0;
+        for (int city = meeting; scratch.parentEdges[city] >= 0; city = arcSource[scratch.parentEdges[city]]) {
+            stack[top++] = scratch.parentEdges[city];
+        }
+        while (top > 0) {
+            unpack(stack[--top], scratch);
+        }
+        for (int city = meeting; backward.parentEdges[city] >= 0; city = arcTarget[backward.parentEdges[city]]) {
+            unpack(backward.parentEdges[city], scratch);
+        }
+        return best;
+    }
+
+    /**
+     * Stall-on-demand: a city that the same search reaches more cheaply through a higher-ranked
+     * neighbour is not on a shortest up-down path, so its arcs need not be relaxed.
+     */
+    private boolean stalled(int city, int distance, boolean forward, SearchScratch side) {
+        int[] offsets = forward ? downOffsets : upOffsets;
+        int[] arcs = forward ? downArcs : upArcs;
+        for (int i = offsets[city]; i < offsets[city + 1]; i++) {
+            int arc = arcs[i];
+            int neighbour = forward ? arcSource[arc] : arcTarget[arc];
+            int reached = side.distance(neighbour);
+            if (reached != Integer.MAX_VALUE && reached + arcWeight[arc] < distance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Appends the original edges of {@code arc} to the scratch path. */
+    private void unpack(int arc, SearchScratch scratch) {
+        while (arcLeft[arc] >= 0) {
+            unpack(arcLeft[arc], scratch);
+            arc = arcRight[arc];
+        }
+        scratch.ensurePathCapacity(scratch.pathLength + 1);
+        scratch.pathEdges[scratch.pathLength++] = arcRight[arc];
+    }
+
+    public void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(criteria.getLabel());
+            out.writeLong(graph.fingerprint());
+            out.writeLong(cityOrderHash(graph));
+            out.writeInt(ranks.length);
+            out.writeInt(arcSource.length);
+            DataOutputStream body = new DataOutputStream(new CheckedOutputStream(out, crc));
+            for (int[] array : new int[][] {ranks, upOffsets, downOffsets}) {
+                writeInts(body, array);
+            }
+            writeInts(body, upArcs);
+            writeInts(body, downArcs);
+            for (int[] array : new int[][] {arcSource, arcTarget, arcWeight, arcLeft, arcRight}) {
+                writeInts(body, array);
+            }
+            body.flush();
+            out.writeLong(crc.getValue());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Reads a hierarchy written by {@link #write} for {@code graph}; fails if it belongs to another timetable. */
+    public static ContractionHierarchy read(Path file, TimetableGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a contraction hierarchy: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported hierarchy version " + version + " in " + file);
+            }
+            Criteria criteria = Criteria.parse(in.readUTF());
+            if (in.readLong() != graph.fingerprint() || in.readLong() != cityOrderHash(graph)) {
+                throw new IOException("Contraction hierarchy " + file + " was built for a different timetable");
+            }
+            int cities = in.readInt();
+            int arcs = in.readInt();
+            if (cities != graph.cityCount() || arcs < 0) {
+                throw new IOException("Contraction hierarchy " + file + " was built for a different timetable");
+            }
+            CRC32 crc = new CRC32();
+            DataInputStream body = new DataInputStream(new CheckedInputStream(in, crc));
+            int[] ranks = readInts(body, cities);
+            int[] upOffsets = readInts(body, cities + 1);
+            int[] downOffsets = readInts(body, cities + 1);
+            int[] upArcs = readInts(body, upOffsets[cities]);
+            int[] downArcs = readInts(body, downOffsets[cities]);
+            int[] arcSource = readInts(body, arcs);
+            int[] arcTarget = readInts(body, arcs);
+            int[] arcWeight = readInts(body, arcs);
+            int[] arcLeft = readInts(body, arcs);
+            int[] arcRight = readInts(body, arcs);
+            if (in.readLong() != crc.getValue()) {
+                throw new IOException("Checksum mismatch in contraction hierarchy: " + file);
+            }
+            return new ContractionHierarchy(graph, criteria, ranks, upOffsets, upArcs, downOffsets, downArcs,
+                arcSource, arcTarget, arcWeight, arcLeft, arcRight);
+        }
+    }
+
+    /** Hierarchy file kept next to {@code snapshot} for {@code criteria}, e.g. {@code timetable.bin.cost.ch}. */
+    public static Path fileFor(Path snapshot, Criteria criteria) {
+        return snapshot.resolveSibling(snapshot.getFileName() + "." + criteria.getLabel().toLowerCase(Locale.ROOT) + ".ch");
+    }
+
+    private static long cityOrderHash(TimetableGraph graph) {
+        long hash = graph.cityCount();
+        for (int c = 0; c < graph.cityCount(); c++) {
+            hash = hash * 31 + graph.cityName(c).hashCode();
+        }
+        return hash;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Corrupt contraction hierarchy");
+        }
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,379 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Contracts a {@link TimetableGraph} under a static criterion (Cost or Hops) into a
+ * {@link ContractionHierarchy}. Cities are ordered by edge difference (shortcuts added minus arcs
+ * removed), plus contracted neighbours and hierarchy depth. Each round contracts every remaining
+ * city whose priority is lowest within two hops. Those cities are pairwise non-adjacent, so their
+ * witness searches run in parallel against the graph without the whole round. Witness searches give up after
+ * {@link #WITNESS_SETTLE_LIMIT} cities and add the shortcut instead, which is always safe;
+ * priority estimates use a tighter limit.
+ */
+public final class ContractionHierarchyBuilder {
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int ESTIMATE_SETTLE_LIMIT = 50;
+
+    private final TimetableGraph graph;
+    private final Criteria criteria;
+    private boolean parallel = true;
+
+    private int[][] outArcs;
+    private int[][] inArcs;
+    private int[] outSize;
+    private int[] inSize;
+    private int[] arcSource;
+    private int[] arcTarget;
+    private int[] arcWeight;
+    private int[] arcLeft;
+    private int[] arcRight;
+    private int arcCount;
+    private boolean[] contracted;
+    private boolean[] inRound;
+    private int[] priorities;
+    private int[] deletedNeighbours;
+    private int[] levels;
+
+    public ContractionHierarchyBuilder(TimetableGraph graph, Criteria criteria) {
+        if (!ContractionHierarchy.supports(criteria)) {
+            throw new IllegalArgumentException("Contraction hierarchies need a static criterion, not " + criteria);
+        }
+        this.graph = graph;
+        this.criteria = criteria;
+    }
+
+    /** Runs witness searches and priority updates on the common fork-join pool (default true). */
+    public ContractionHierarchyBuilder parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    public ContractionHierarchy build() {
+        int cities = graph.cityCount();
+        initialize(cities);
+        int[] ranks = new int[cities];
+        int[] remaining = new int[cities];
+        for (int c = 0; c < cities; c++) {
+            remaining[c] = c;
+        }
+        int remainingCount = cities;
+        stream(remaining, remainingCount).forEach(v -> priorities[v] = priority(v));
+
+        int nextRank = 0;
+        boolean[] touched = new boolean[cities];
+        int[] updates = new int[cities];
+        while (remainingCount > 0) {
+            int[] round = stream(remaining, remainingCount).filter(this::lowestNearby).toArray();
+            for (int v : round) {
+                inRound[v] = true;
+            }
+            int[][] shortcuts = new int[round.length][];
+            IntStream indexes = IntStream.range(0, round.length);
+            (parallel ? indexes.parallel() : indexes).forEach(i -> shortcuts[i] = shortcuts(round[i], true, WITNESS_SETTLE_LIMIT));
+
+            int updateCount = 0;
+            for (int i = 0; i < round.length; i++) {
+                int v = round[i];
+                ranks[v] = nextRank++;
+                contracted[v] = true;
+                inRound[v] = false;
+                int[] added = shortcuts[i];
+                for (int s = 0; s < added.length; s += 2) {
+                    addShortcut(added[s], added[s + 1]);
+                }
+                updateCount = touchNeighbours(v, touched, updates, updateCount);
+                detach(v);
+            }
+            int[] changed = Arrays.copyOf(updates, updateCount);
+            stream(changed, updateCount).forEach(v -> {
+                touched[v] = false;
+                priorities[v] = priority(v);
+            });
+
+            int kept = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                if (!contracted[remaining[i]]) {
+                    remaining[kept++] = remaining[i];
+                }
+            }
+            remainingCount = kept;
+        }
+
+        return ContractionHierarchy.assemble(graph, criteria, ranks, outArcs, outSize, inArcs, inSize,
+            Arrays.copyOf(arcSource, arcCount), Arrays.copyOf(arcTarget, arcCount), Arrays.copyOf(arcWeight, arcCount),
+            Arrays.copyOf(arcLeft, arcCount), Arrays.copyOf(arcRight, arcCount));
+    }
+
+    /** Copies the graph into adjacency lists, keeping the lightest edge of each city pair. */
+    private void initialize(int cities) {
+        outArcs = new int[cities][];
+        inArcs = new int[cities][];
+        outSize = new int[cities];
+        inSize = new int[cities];
+        int capacity = Math.max(16, graph.edgeCount() * 2);
+        arcSource = new int[capacity];
+        arcTarget = new int[capacity];
+        arcWeight = new int[capacity];
+        arcLeft = new int[capacity];
+        arcRight = new int[capacity];
+        contracted = new boolean[cities];
+        inRound = new boolean[cities];
+        priorities = new int[cities];
+        deletedNeighbours = new int[cities];
+        levels = new int[cities];
+        for (int c = 0; c < cities; c++) {
+            outArcs[c] = new int[4];
+            inArcs[c] = new int[4];
+        }
+        int[] lightest = new int[cities];
+        int[] stamps = new int[cities];
+        for (int c = 0; c < cities; c++) {
+            for (int edge = graph.firstEdge(c), last = graph.endEdge(c); edge < last; edge++) {
+                int target = graph.target(edge);
+                if (target == c) {
+                    continue;
+                }
+                int weight = DijkstraSearch.weight(graph, edge, criteria);
+                if (stamps[target] == c + 1) {
+                    int arc = lightest[target];
+                    if (weight < arcWeight[arc]) {
+                        arcWeight[arc] = weight;
+                        arcRight[arc] = edge;
+                    }
+                    continue;
+                }
+                stamps[target] = c + 1;
+                lightest[target] = addArc(c, target, weight, -1, edge);
+            }
+        }
+    }
+
+    private int addArc(int source, int target, int weight, int left, int right) {
+        if (arcCount == arcSource.length) {
+            int capacity = arcCount * 2;
+            arcSource = Arrays.copyOf(arcSource, capacity);
+            arcTarget = Arrays.copyOf(arcTarget, capacity);
+            arcWeight = Arrays.copyOf(arcWeight, capacity);
+            arcLeft = Arrays.copyOf(arcLeft, capacity);
+            arcRight = Arrays.copyOf(arcRight, capacity);
+        }
+        int arc = arcCount++;
+        arcSource[arc] = source;
+        arcTarget[arc] = target;
+        arcWeight[arc] = weight;
+        arcLeft[arc] = left;
+        arcRight[arc] = right;
+        outSize[source] = append(outArcs, outSize[source], source, arc);
+        inSize[target] = append(inArcs, inSize[target], target, arc);
+        return arc;
+    }
+
+    private static int append(int[][] lists, int size, int node, int arc) {
+        if (size == lists[node].length) {
+            lists[node] = Arrays.copyOf(lists[node], size * 2);
+        }
+        lists[node][size] = arc;
+        return size + 1;
+    }
+
+    /** Adds the shortcut {@code in + out}, or lowers an existing arc between the same cities. */
+    private void addShortcut(int in, int out) {
+        int source = arcSource[in];
+        int target = arcTarget[out];
+        int weight = arcWeight[in] + arcWeight[out];
+        for (int i = 0; i < outSize[source]; i++) {
+            int arc = outArcs[source][i];
+            if (arcTarget[arc] == target) {
+                if (weight < arcWeight[arc]) {
+                    int shortcut = arcCount;
+                    addArc(source, target, weight, in, out);
+                    outSize[source]--;
+                    inSize[target]--;
+                    outArcs[source][i] = shortcut;
+                    replace(inArcs[target], inSize[target], arc, shortcut);
+                }
+                return;
+            }
+        }
+        addArc(source, target, weight, in, out);
+    }
+
+    /**
+     * Drops the arcs of a contracted city from its neighbours' lists. The city keeps its own
+     * lists, which hold exactly its arcs to higher-ranked cities.
+     */
+    private void detach(int v) {
+        for (int i = 0; i < outSize[v]; i++) {
+            int target = arcTarget[outArcs[v][i]];
+            if (!contracted[target]) {
+                inSize[target] = remove(inArcs[target], inSize[target], outArcs[v][i]);
+            }
+        }
+        for (int i = 0; i < inSize[v]; i++) {
+            int source = arcSource[inArcs[v][i]];
+            if (!contracted[source]) {
+                outSize[source] = remove(outArcs[source], outSize[source], inArcs[v][i]);
+            }
+        }
+    }
+
+    private static int remove(int[] list, int size, int arc) {
+        for (int i = 0; i < size; i++) {
+            if (list[i] == arc) {
+                list[i] = list[size - 1];
+                return size - 1;
+            }
+        }
+        return size;
+    }
+
+    private static void replace(int[] list, int size, int arc, int replacement) {
+        for (int i = 0; i < size; i++) {
+            if (list[i] == arc) {
+                list[i] = replacement;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Shortcuts needed to contract {@code v}, as (in arc, out arc) pairs. With {@code excludeRound}
+     * the witness searches also avoid the other cities contracted in this round.
+     */
+    private int[] shortcuts(int v, boolean excludeRound, int settleLimit) {
+        int[] found = new int[8];
+        int count = 0;
+        SearchScratch scratch = SearchScratch.current();
+        int[] targets = new int[outSize[v]];
+        int targetCount = 0;
+        int maxOut = 0;
+        for (int j = 0; j < outSize[v]; j++) {
+            int out = outArcs[v][j];
+            if (!contracted[arcTarget[out]]) {
+                targets[targetCount++] = arcTarget[out];
+                maxOut = Math.max(maxOut, arcWeight[out]);
+            }
+        }
+        Arrays.sort(targets, 0, targetCount);
+        for (int i = 0; i < inSize[v] && targetCount > 0; i++) {
+            int in = inArcs[v][i];
+            int u = arcSource[in];
+            if (contracted[u]) {
+                continue;
+            }
+            witnessSearch(u, v, arcWeight[in] + maxOut, targets, targetCount, excludeRound, settleLimit, scratch);
+            for (int j = 0; j < outSize[v]; j++) {
+                int out = outArcs[v][j];
+                int x = arcTarget[out];
+                if (x == u || contracted[x]) {
+                    continue;
+                }
+                if (scratch.distance(x) > arcWeight[in] + arcWeight[out]) {
+                    if (count + 2 > found.length) {
+                        found = Arrays.copyOf(found, found.length * 2);
+                    }
+                    found[count++] = in;
+                    found[count++] = out;
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Dijkstra from {@code source} avoiding {@code via}, until every target is settled or the
+     * distance exceeds {@code bound}.
+     */
+    private void witnessSearch(int source, int via, int bound, int[] targets, int targetCount, boolean excludeRound,
+                               int settleLimit, SearchScratch scratch) {
+        scratch.reset(graph.cityCount());
+        IndexedMinHeap heap = scratch.heap;
+        scratch.label(source, 0, -1);
+        heap.offer(source, 0);
+        int settled = 0;
+        int pending = targetCount;
+        while (!heap.isEmpty() && heap.peekKey() <= bound && settled++ < settleLimit) {
+            int current = heap.poll();
+            if (Arrays.binarySearch(targets, 0, targetCount, current) >= 0 && --pending == 0) {
+                return;
+            }
+            int distance = scratch.distances[current];
+            for (int i = 0; i < outSize[current]; i++) {
+                int arc = outArcs[current][i];
+                int next = arcTarget[arc];
+                if (next == via || contracted[next] || excludeRound && inRound[next]) {
+                    continue;
+                }
+                int newDistance = distance + arcWeight[arc];
+                if (newDistance < scratch.distance(next) && newDistance <= bound) {
+                    scratch.label(next, newDistance, arc);
+                    heap.offer(next, newDistance);
+                }
+            }
+        }
+    }
+
+    private int priority(int v) {
+        int degree = 0;
+        for (int i = 0; i < inSize[v]; i++) {
+            degree += contracted[arcSource[inArcs[v][i]]] ? 0 : 1;
+        }
+        for (int i = 0; i < outSize[v]; i++) {
+            degree += contracted[arcTarget[outArcs[v][i]]] ? 0 : 1;
+        }
+        return 2 * (shortcuts(v, false, ESTIMATE_SETTLE_LIMIT).length / 2 - degree) + deletedNeighbours[v] + levels[v];
+    }
+
+    /** True if {@code v} comes first, by (priority, ID), among the remaining cities within two hops. */
+    private boolean lowestNearby(int v) {
+        for (int i = 0; i < outSize[v] + inSize[v]; i++) {
+            int w = neighbour(v, i);
+            if (contracted[w]) {
+                continue;
+            }
+            if (before(w, v)) {
+                return false;
+            }
+            for (int j = 0; j < outSize[w] + inSize[w]; j++) {
+                int x = neighbour(w, j);
+                if (x != v && !contracted[x] && before(x, v)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int neighbour(int v, int i) {
+        return i < outSize[v] ? arcTarget[outArcs[v][i]] : arcSource[inArcs[v][i - outSize[v]]];
+    }
+
+    private boolean before(int a, int b) {
+        return priorities[a] < priorities[b] || priorities[a] == priorities[b] && a < b;
+    }
+
+    private int touchNeighbours(int v, boolean[] touched, int[] updates, int count) {
+        for (int i = 0; i < outSize[v] + inSize[v]; i++) {
+            int w = neighbour(v, i);
+            if (!contracted[w]) {
+                deletedNeighbours[w]++;
+                levels[w] = Math.max(levels[w], levels[v] + 1);
+                if (!touched[w]) {
+                    touched[w] = true;
+                    updates[count++] = w;
+                }
+            }
+        }
+        return count;
+    }
+
+    private IntStream stream(int[] values, int count) {
+        IntStream stream = IntStream.range(0, count).map(i -> values[i]);
+        return parallel ? stream.parallel() : stream;
+    }
+}
@@ -0,0 +1,133 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+
+import java.util.Arrays;
+
+/**
+ * Single-source shortest path over a {@link TimetableGraph}. All state lives in a caller-supplied
+ * {@link SearchScratch}; a steady-state query allocates nothing. Edges whose mode the scratch's
+ * constraints exclude are skipped.
+ */
+public final class DijkstraSearch {
+
+    private DijkstraSearch() {
+    }
+
+    public static int weight(TimetableGraph graph, int edge, Criteria criteria) {
+        switch (criteria) {
+            case COST: return graph.cost(edge);
+            case HOPS: return 1;
+            default: return graph.duration(edge);
+        }
+    }
+
+    /**
+     * Runs Dijkstra from {@code source} until {@code target} is settled. Returns the target distance,
+     * or -1 if it is unreachable or the scratch's budget ran out; on success the path edges are
+     * available from the scratch.
+     */
+    public static int search(TimetableGraph graph, int source, int target, Criteria criteria, SearchScratch scratch) {
+        scratch.reset(graph.cityCount());
+        IndexedMinHeap heap = scratch.heap;
+        scratch.label(source, 0, -1);
+        scratch.deepen(source, -1);
+        heap.offer(source, 0);
+        scratch.pushes++;
+
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            int distance = scratch.distances[current];
+            scratch.settled++;
+
+            if (current == target) {
+                extractPath(graph, scratch, target);
+                return distance;
+            }
+            if (scratch.exhausted()) {
+                return -1;
+            }
+            if (scratch.tooDeep(current)) {
+                continue;
+            }
+
+            scratch.relaxed += graph.endEdge(current) - graph.firstEdge(current);
+            for (int edge = graph.firstEdge(current), last = graph.endEdge(current); edge < last; edge++) {
+                if (!scratch.allows(graph, edge)) {
+                    continue;
+                }
+                int next = graph.target(edge);
+                int newDistance = distance + weight(graph, edge, criteria);
+                if (newDistance < scratch.distance(next)) {
+                    scratch.label(next, newDistance, edge);
+                    scratch.deepen(next, current);
+                    heap.offer(next, newDistance);
+                    scratch.pushes++;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Runs Dijkstra from {@code source} until every city in {@code targets[0, count)} is settled or
+     * the graph is exhausted. {@code targets} must be sorted and distinct. Afterwards
+     * {@link SearchScratch#distance(int)} and {@link #extractPath} answer for every target, unless
+     * {@link SearchScratch#status()} reports that the budget ran out.
+     */
+    public static void searchMany(TimetableGraph graph, int source, int[] targets, int count,
+                                  Criteria criteria, SearchScratch scratch) {
+        scratch.reset(graph.cityCount());
+        IndexedMinHeap heap = scratch.heap;
+        scratch.label(source, 0, -1);
+        scratch.deepen(source, -1);
+        heap.offer(source, 0);
+        scratch.pushes++;
+        int pending = count;
+
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            int distance = scratch.distances[current];
+            scratch.settled++;
+
+            if (Arrays.binarySearch(targets, 0, count, current) >= 0 && --pending == 0 || scratch.exhausted()) {
+                return;
+            }
+            if (scratch.tooDeep(current)) {
+                continue;
+            }
+
+            scratch.relaxed += graph.endEdge(current) - graph.firstEdge(current);
+            for (int edge = graph.firstEdge(current), last = graph.endEdge(current); edge < last; edge++) {
+                if (!scratch.allows(graph, edge)) {
+                    continue;
+                }
+                int next = graph.target(edge);
+                int newDistance = distance + weight(graph, edge, criteria);
+                if (newDistance < scratch.distance(next)) {
+                    scratch.label(next, newDistance, edge);
+                    scratch.deepen(next, current);
+                    heap.offer(next, newDistance);
+                    scratch.pushes++;
+                }
+            }
+        }
+    }
+
+    /** Writes the edges from the search source to {@code target} into the scratch path buffer. */
+    public static int extractPath(TimetableGraph graph, SearchScratch scratch, int target) {
+        int length = 0;
+        for (int edge = scratch.parentEdge(target); edge >= 0; edge = scratch.parentEdge(graph.source(edge))) {
+            length++;
+        }
+        scratch.ensurePathCapacity(length);
+        int index = length;
+        for (int edge = scratch.parentEdge(target); edge >= 0; edge = scratch.parentEdge(graph.source(edge))) {
+            scratch.pathEdges[--index] = edge;
+        }
+        scratch.pathLength = length;
+        return length;
+    }
+}
@@ -0,0 +1,145 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+
+import java.util.stream.IntStream;
+
+/**
+ * All-pairs answers for small networks, computed once per graph instance so that a query is a
+ * lookup proportional to the path length. Cost and Hops keep an {@code n * n} distance matrix and
+ * the shortest path tree of every source as a predecessor-edge matrix. Time journeys from one
+ * source do not form a tree (each may start at a different minute), so Time keeps its travel
+ * times plus every journey's edges in one flat pool indexed by pair.
+ */
+public final class DistanceOracle {
+    private static final int UNREACHABLE = -1;
+
+    private final TimetableGraph graph;
+    private final int cities;
+    /** {@code distances[t][s * n + v]} under Cost ({@code t = 0}) or Hops; -1 if unreachable. */
+    private final int[][] distances = new int[2][];
+    /** {@code parents[t][s * n + v]} is the last edge of the path from {@code s} to {@code v}. */
+    private final int[][] parents = new int[2][];
+    private final int[] times;
+    /** Edges of the Time journey from {@code s} to {@code v} are {@code pool[offsets[p], offsets[p + 1])}, {@code p = s * n + v}. */
+    private final int[] offsets;
+    private final int[] pool;
+
+    private DistanceOracle(TimetableGraph graph, int[] times, int[] offsets, int[] pool) {
+        this.graph = graph;
+        this.cities = graph.cityCount();
+        this.times = times;
+        this.offsets = offsets;
+        this.pool = pool;
+    }
+
+    /** Bytes held by the matrices of a network with {@code cities} cities, excluding the Time journey pool. */
+    public static long estimateBytes(int cities) {
+        return 24L * cities * cities;
+    }
+
+    /** Runs every single-source search over {@code graph}, spread over the fork-join common pool when {@code parallel}. */
+    public static DistanceOracle build(TimetableGraph graph, boolean parallel) {
+        int n = graph.cityCount();
+        int[] all = new int[n];
+        for (int c = 0; c < n; c++) {
+            all[c] = c;
+        }
+
+        int[] times = new int[n * n];
+        int[][][] journeys = new int[n][][];
+        IntStream sources = IntStream.range(0, n);
+        (parallel ? sources.parallel() : sources).forEach(s -> {
+            journeys[s] = new int[n][];
+            int[] values = new int[n];
+            ConnectionScanSearch.searchMany(graph, s, all, n, SearchScratch.current(), values, journeys[s]);
+            System.arraycopy(values, 0, times, s * n, n);
+        });
+        int[] offsets = new int[n * n + 1];
+        for (int p = 0; p < n * n; p++) {
+            int[] journey = journeys[p / n][p % n];
+            offsets[p + 1] = offsets[p] + (journey == null || times[p] < 0 ? 0 : journey.length);
+        }
+        int[] pool = new int[offsets[n * n]];
+        for (int p = 0; p < n * n; p++) {
+            int[] journey = journeys[p / n][p % n];
+            if (offsets[p + 1] > offsets[p]) {
+                System.arraycopy(journey, 0, pool, offsets[p], journey.length);
+            }
+        }
+
+        DistanceOracle oracle = new DistanceOracle(graph, times, offsets, pool);
+        Criteria[] criteria = {Criteria.COST, Criteria.HOPS};
+        for (int t = 0; t < criteria.length; t++) {
+            int[] distances = new int[n * n];
+            int[] parents = new int[n * n];
+            Criteria weight = criteria[t];
+            IntStream rows = IntStream.range(0, n);
+            (parallel ? rows.parallel() : rows).forEach(s -> {
+                SearchScratch scratch = SearchScratch.current();
+                DijkstraSearch.searchMany(graph, s, all, n, weight, scratch);
+                for (int v = 0, p = s * n; v < n; v++, p++) {
+                    int distance = scratch.distance(v);
+                    distances[p] = distance == Integer.MAX_VALUE ? UNREACHABLE : distance;
+                    parents[p] = scratch.parentEdge(v);
+                }
+            });
+            oracle.distances[t] = distances;
+            oracle.parents[t] = parents;
+        }
+        return oracle;
+    }
+
+    public TimetableGraph graph() { return graph; }
+
+    /** Bytes held by all matrices and the Time journey pool. */
+    public long memoryBytes() {
+        return estimateBytes(cities) + 4L * (offsets.length - (long) cities * cities + pool.length);
+    }
+
+    /** True for every criterion a single path can be optimal under. */
+    public static boolean supports(Criteria criteria) {
+        return criteria != Criteria.PARETO;
+    }
+
+    /**
+     * Same contract as {@link DijkstraSearch#search} (and {@link ConnectionScanSearch#search} for
+     * Time): the optimal value, or -1 if unreachable, with the path edges left in the scratch.
+     */
+    public int search(int source, int target, Criteria criteria, SearchScratch scratch) {
+        scratch.reset(cities);
+        int pair = source * cities + target;
+        if (source == target) {
+            return UNREACHABLE;
+        }
+        if (criteria == Criteria.TIME) {
+            if (times[pair] < 0) {
+                return UNREACHABLE;
+            }
+            int length = offsets[pair + 1] - offsets[pair];
+            scratch.ensurePathCapacity(length);
+            System.arraycopy(pool, offsets[pair], scratch.pathEdges, 0, length);
+            scratch.pathLength = length;
+            return times[pair];
+        }
+        int table = criteria == Criteria.COST ? 0 : 1;
+        int distance = distances[table][pair];
+        if (distance < 0) {
+            return UNREACHABLE;
+        }
+        int[] tree = parents[table];
+        int row = source * cities;
+        int length = 0;
+        for (int edge = tree[pair]; edge >= 0; edge = tree[row + graph.source(edge)]) {
+            length++;
+        }
+        scratch.ensurePathCapacity(length);
+        int index = length;
+        for (int edge = tree[pair]; edge >= 0; edge = tree[row + graph.source(edge)]) {
+            scratch.pathEdges[--index] = edge;
+        }
+        scratch.pathLength = length;
+        return distance;
+    }
+}
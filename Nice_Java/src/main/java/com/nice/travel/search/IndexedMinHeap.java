@@ -0,0 +1,117 @@
+package com.nice.travel.search;
+
+import java.util.Arrays;
+
+/**
+ * 4-ary min-heap over dense node IDs with decrease-key. Positions of nodes that are not queued
+ * are -1, so clearing only touches the entries still in the heap.
+ */
+public class IndexedMinHeap {
+    private static final int ARITY = 4;
+
+    private int[] heap;
+    private int[] keys;
+    private int[] positions;
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > positions.length) {
+            int old = positions.length;
+            heap = Arrays.copyOf(heap, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            Arrays.fill(positions, old, capacity, -1);
+        }
+    }
+
+    public boolean isEmpty() { return size == 0; }
+    public int size() { return size; }
+    public boolean contains(int node) { return positions[node] >= 0; }
+    public int peekKey() { return keys[heap[0]]; }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /** Inserts {@code node} or lowers its key; returns false if the existing key is not larger. */
+    public boolean offer(int node, int key) {
+        int pos = positions[node];
+        if (pos < 0) {
+            pos = size++;
+            heap[pos] = node;
+            positions[node] = pos;
+        } else if (key >= keys[node]) {
+            return false;
+        }
+        keys[node] = key;
+        siftUp(pos);
+        return true;
+    }
+
+    public int poll() {
+        int top = heap[0];
+        positions[top] = -1;
+        int last = heap[--size];
+        if (size > 0) {
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int pos) {
+        int node = heap[pos];
+        int key = keys[node];
+        while (pos > 0) {
+            int parent = (pos - 1) / ARITY;
+            int parentNode = heap[parent];
+            if (keys[parentNode] <= key) {
+                break;
+            }
+            heap[pos] = parentNode;
+            positions[parentNode] = pos;
+            pos = parent;
+        }
+        heap[pos] = node;
+        positions[node] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int node = heap[pos];
+        int key = keys[node];
+        while (true) {
+            int first = pos * ARITY + 1;
+            if (first >= size) {
+                break;
+            }
+            int best = first;
+            int bestKey = keys[heap[first]];
+            for (int child = first + 1, last = Math.min(first + ARITY, size); child < last; child++) {
+                int childKey = keys[heap[child]];
+                if (childKey < bestKey) {
+                    best = child;
+                    bestKey = childKey;
+                }
+            }
+            if (bestKey >= key) {
+                break;
+            }
+            heap[pos] = heap[best];
+            positions[heap[pos]] = pos;
+            pos = best;
+        }
+        heap[pos] = node;
+        positions[node] = pos;
+    }
+}
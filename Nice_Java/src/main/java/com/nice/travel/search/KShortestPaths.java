@@ -0,0 +1,325 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+import com.nice.travel.util.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The {@code k} best loopless journeys between two cities under one criterion, by Yen's
+ * algorithm with Lawler's rule: a journey only spurs from its own deviation point onwards, since
+ * earlier spurs were already tried from its parent. A single backward sweep from the target gives
+ * every city its remaining distance, which guides every spur search as an A* potential; where the
+ * spur rejoins the shortest path tree the search settles little more than the path itself.
+ * <p>
+ * Time is time-dependent: a spur search starts from the minute at which its root journey reaches
+ * the spur city and pays the waits, and the potential (ride time alone) stays a lower bound.
+ */
+public final class KShortestPaths {
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final TimetableGraph graph;
+    private final int source;
+    private final int target;
+    private final Criteria criteria;
+    private final SearchScratch scratch;
+    private final int[] remaining;
+    private final int[] blocked;
+    private int mark;
+    private int[] blockedEdges = new int[4];
+    private int blockedCount;
+    private final List<Candidate> accepted = new ArrayList<>();
+    private int pushes;
+    private int settled;
+    private int relaxed;
+
+    private KShortestPaths(TimetableGraph graph, int source, int target, Criteria criteria, SearchScratch scratch) {
+        this.graph = graph;
+        this.source = source;
+        this.target = target;
+        this.criteria = criteria;
+        this.scratch = scratch;
+        this.remaining = remaining(graph, target, criteria, scratch);
+        this.blocked = new int[graph.cityCount()];
+    }
+
+    /**
+     * Edge IDs of up to {@code k} journeys from {@code source} to {@code target}, best first, ties
+     * broken by fewer hops. Empty if the target is unreachable, and the journeys accepted so far
+     * if the scratch's budget runs out. The scratch counters afterwards
+     * hold the work of all spur searches together.
+     */
+    public static int[][] search(TimetableGraph graph, int source, int target, Criteria criteria, int k,
+                                 SearchScratch scratch) {
+        if (k <= 0 || source == target) {
+            scratch.reset(graph.cityCount());
+            return new int[0][];
+        }
+        KShortestPaths search = new KShortestPaths(graph, source, target, criteria, scratch);
+        int[][] paths = search.run(k);
+        scratch.pushes = search.pushes;
+        scratch.settled = search.settled;
+        scratch.relaxed = search.relaxed;
+        return paths;
+    }
+
+    private int[][] run(int k) {
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        Set<Candidate> seen = new HashSet<>();
+        Candidate first = spur(null, 0);
+        if (first != null) {
+            candidates.add(first);
+            seen.add(first);
+        }
+        while (accepted.size() < k && !candidates.isEmpty() && !scratch.stopped()) {
+            Candidate next = candidates.poll();
+            accepted.add(next);
+            if (accepted.size() == k) {
+                break;
+            }
+            for (int i = next.deviation; i < next.edges.length; i++) {
+                Candidate candidate = spur(next.edges, i);
+                if (candidate != null && seen.add(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+        int[][] paths = new int[accepted.size()][];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = accepted.get(i).edges;
+        }
+        return paths;
+    }
+
+    /**
+     * Best journey that follows {@code root[0, index)} and then leaves the spur city by an edge no
+     * accepted journey with the same root took, without revisiting a root city; null if none.
+     */
+    private Candidate spur(int[] root, int index) {
+        if (++mark == Integer.MAX_VALUE) {
+            Arrays.fill(blocked, 0);
+            mark = 1;
+        }
+        blockedCount = 0;
+        for (Candidate path : accepted) {
+            if (path.edges.length > index && sharesRoot(path.edges, root, index)) {
+                if (blockedCount == blockedEdges.length) {
+                    blockedEdges = Arrays.copyOf(blockedEdges, blockedCount * 2);
+                }
+                blockedEdges[blockedCount++] = path.edges[index];
+            }
+        }
+        int spurCity = source;
+        int rootValue = 0;
+        int clock = 0;
+        for (int i = 0; i < index; i++) {
+            blocked[spurCity] = mark;
+            int edge = root[i];
+            if (criteria == Criteria.TIME) {
+                clock = i == 0 ? graph.departure(edge) + graph.duration(edge) : arrive(clock, edge);
+                rootValue = clock - graph.departure(root[0]);
+            } else {
+                rootValue += DijkstraSearch.weight(graph, edge, criteria);
+            }
+            spurCity = graph.target(edge);
+        }
+
+        if (criteria == Criteria.TIME && index == 0) {
+            return departures();
+        }
+        int value = route(spurCity, clock, INFINITY);
+        if (value < 0) {
+            return null;
+        }
+        int[] edges = Arrays.copyOf(root == null ? new int[0] : root, index + scratch.pathLength);
+        System.arraycopy(scratch.pathEdges, 0, edges, index, scratch.pathLength);
+        return new Candidate(edges, rootValue + value, index);
+    }
+
+    /**
+     * Time spur at the source: the journey's start minute is free, so each first edge is searched
+     * separately, pruned by the best total found so far.
+     */
+    private Candidate departures() {
+        blocked[source] = mark;
+        int best = INFINITY;
+        int[] bestEdges = null;
+        for (int edge = graph.firstEdge(source), last = graph.endEdge(source); edge < last; edge++) {
+            int next = graph.target(edge);
+            int duration = graph.duration(edge);
+            if (isBlockedEdge(edge) || remaining[next] == INFINITY || duration + remaining[next] >= best) {
+                continue;
+            }
+            int value = route(next, graph.departure(edge) + duration, best - duration);
+            if (value >= 0 && duration + value < best) {
+                best = duration + value;
+                bestEdges = new int[1 + scratch.pathLength];
+                bestEdges[0] = edge;
+                System.arraycopy(scratch.pathEdges, 0, bestEdges, 1, scratch.pathLength);
+            }
+        }
+        return bestEdges == null ? null : new Candidate(bestEdges, best, 0);
+    }
+
+    /**
+     * A* from {@code from} to the target, avoiding blocked cities and, at {@code from}, blocked
+     * edges. For Time the search starts at absolute minute {@code clock}. Returns the distance if
+     * it is below {@code bound}, leaving the edges in the scratch path buffer, and -1 otherwise.
+     */
+    private int route(int from, int clock, int bound) {
+        scratch.reset(graph.cityCount());
+        if (remaining[from] == INFINITY) {
+            return -1;
+        }
+        IndexedMinHeap heap = scratch.heap;
+        scratch.label(from, 0, -1);
+        heap.offer(from, remaining[from]);
+        pushes++;
+        boolean time = criteria == Criteria.TIME;
+
+        while (!heap.isEmpty()) {
+            if (heap.peekKey() >= bound) {
+                return -1;
+            }
+            int current = heap.poll();
+            int distance = scratch.distances[current];
+            settled++;
+            if (scratch.exhausted()) {
+                return -1;
+            }
+            if (current == target) {
+                DijkstraSearch.extractPath(graph, scratch, target);
+                return distance;
+            }
+            relaxed += graph.endEdge(current) - graph.firstEdge(current);
+            for (int edge = graph.firstEdge(current), last = graph.endEdge(current); edge < last; edge++) {
+                int next = graph.target(edge);
+                if (blocked[next] == mark || remaining[next] == INFINITY
+                        || current == from && isBlockedEdge(edge)) {
+                    continue;
+                }
+                int newDistance = time ? arrive(clock + distance, edge) - clock
+                    : distance + DijkstraSearch.weight(graph, edge, criteria);
+                if (newDistance < scratch.distance(next)) {
+                    scratch.label(next, newDistance, edge);
+                    heap.offer(next, newDistance + remaining[next]);
+                    pushes++;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Absolute arrival minute when standing at the edge's source at absolute minute {@code clock}. */
+    private int arrive(int clock, int edge) {
+        return clock + TimeUtil.calculateWaitingTime(clock % TimeUtil.MINUTES_PER_DAY, graph.departure(edge))
+            + graph.duration(edge);
+    }
+
+    private boolean isBlockedEdge(int edge) {
+        for (int i = 0; i < blockedCount; i++) {
+            if (blockedEdges[i] == edge) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sharesRoot(int[] path, int[] root, int length) {
+        for (int i = 0; i < length; i++) {
+            if (path[i] != root[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Distance from every city to {@code target} over incoming edges; ride time alone for Time. */
+    private static int[] remaining(TimetableGraph graph, int target, Criteria criteria, SearchScratch scratch) {
+        int cities = graph.cityCount();
+        int[] offsets = new int[cities + 1];
+        for (int c = 0; c < cities; c++) {
+            for (int edge = graph.firstEdge(c), last = graph.endEdge(c); edge < last; edge++) {
+                offsets[graph.target(edge) + 1]++;
+            }
+        }
+        for (int c = 0; c < cities; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        int[] incoming = new int[offsets[cities]];
+        int[] fill = new int[cities];
+        for (int c = 0; c < cities; c++) {
+            for (int edge = graph.firstEdge(c), last = graph.endEdge(c); edge < last; edge++) {
+                int to = graph.target(edge);
+                incoming[offsets[to] + fill[to]++] = edge;
+            }
+        }
+
+        scratch.reset(cities);
+        IndexedMinHeap heap = scratch.heap;
+        scratch.label(target, 0, -1);
+        heap.offer(target, 0);
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            int distance = scratch.distances[current];
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int edge = incoming[i];
+                int next = graph.source(edge);
+                int newDistance = distance + DijkstraSearch.weight(graph, edge, criteria);
+                if (newDistance < scratch.distance(next)) {
+                    scratch.label(next, newDistance, edge);
+                    heap.offer(next, newDistance);
+                }
+            }
+        }
+        int[] remaining = new int[cities];
+        for (int c = 0; c < cities; c++) {
+            remaining[c] = scratch.distance(c);
+        }
+        return remaining;
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        final int[] edges;
+        final int value;
+        final int deviation;
+
+        Candidate(int[] edges, int value, int deviation) {
+            this.edges = edges;
+            this.value = value;
+            this.deviation = deviation;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (value != other.value) {
+                return Integer.compare(value, other.value);
+            }
+            if (edges.length != other.edges.length) {
+                return Integer.compare(edges.length, other.edges.length);
+            }
+            for (int i = 0; i < edges.length; i++) {
+                if (edges[i] != other.edges[i]) {
+                    return Integer.compare(edges[i], other.edges[i]);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Candidate && Arrays.equals(edges, ((Candidate) o).edges);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(edges);
+        }
+    }
+}
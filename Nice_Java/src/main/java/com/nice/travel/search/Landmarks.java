@@ -0,0 +1,249 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+
+import java.util.Random;
+
+/**
+ * ALT preprocessing: shortest distances from and to a few landmark cities under the Cost and Hops
+ * criteria. By the triangle inequality they give {@link AltSearch} a lower bound on the distance
+ * between any two cities. The tables describe one graph instance, so a new timetable version
+ * needs new landmarks.
+ */
+public final class Landmarks {
+
+    /** How landmarks are placed: far apart from each other, or where the current bounds are weakest. */
+    public enum Strategy { FARTHEST, AVOID }
+
+    static final int INFINITY = Integer.MAX_VALUE;
+    private static final Criteria[] CRITERIA = {Criteria.COST, Criteria.HOPS};
+
+    private final TimetableGraph graph;
+    private final int count;
+    private final int[][] landmarks = new int[CRITERIA.length][];
+    /** {@code from[t][v * count + i]} is the distance from landmark {@code i} to city {@code v}; {@code to} the reverse. */
+    private final int[][] from = new int[CRITERIA.length][];
+    private final int[][] to = new int[CRITERIA.length][];
+    /** Incoming edges of city {@code c} are {@code reverseEdges[reverseOffsets[c], reverseOffsets[c + 1])}. */
+    final int[] reverseOffsets;
+    final int[] reverseEdges;
+
+    private Landmarks(TimetableGraph graph, int count) {
+        this.graph = graph;
+        this.count = count;
+        int cities = graph.cityCount();
+        reverseOffsets = new int[cities + 1];
+        int edges = 0;
+        for (int c = 0; c < cities; c++) {
+            for (int edge = graph.firstEdge(c), last = graph.endEdge(c); edge < last; edge++) {
+                reverseOffsets[graph.target(edge) + 1]++;
+                edges++;
+            }
+        }
+        for (int c = 0; c < cities; c++) {
+            reverseOffsets[c + 1] += reverseOffsets[c];
+        }
+        reverseEdges = new int[edges];
+        int[] fill = new int[cities];
+        for (int c = 0; c < cities; c++) {
+            for (int edge = graph.firstEdge(c), last = graph.endEdge(c); edge < last; edge++) {
+                int target = graph.target(edge);
+                reverseEdges[reverseOffsets[target] + fill[target]++] = edge;
+            }
+        }
+    }
+
+    /** Picks up to {@code count} landmarks per criterion; {@code seed} fixes the random starting cities. */
+    public static Landmarks compute(TimetableGraph graph, int count, Strategy strategy, long seed) {
+        Landmarks landmarks = new Landmarks(graph, Math.max(1, Math.min(count, graph.cityCount())));
+        SearchScratch scratch = new SearchScratch(Math.max(1, graph.cityCount()));
+        for (int t = 0; t < CRITERIA.length && graph.cityCount() > 0; t++) {
+            landmarks.select(t, strategy, new Random(seed), scratch);
+        }
+        return landmarks;
+    }
+
+    public TimetableGraph graph() { return graph; }
+    public int count() { return count; }
+
+    public static boolean supports(Criteria criteria) {
+        return table(criteria) >= 0;
+    }
+
+    /** Lower bound on the {@code criteria} distance from {@code v} to {@code w}; {@link #INFINITY} if unreachable. */
+    public int lowerBound(int v, int w, Criteria criteria) {
+        return bound(table(criteria), v, w, count);
+    }
+
+    static int table(Criteria criteria) {
+        return criteria == Criteria.COST ? 0 : criteria == Criteria.HOPS ? 1 : -1;
+    }
+
+    /** Bound from the first {@code limit} landmarks; unreachability is detected whenever a landmark proves it. */
+    int bound(int table, int v, int w, int limit) {
+        int[] f = from[table];
+        int[] t = to[table];
+        int best = 0;
+        for (int i = 0, vi = v * count, wi = w * count; i < limit; i++, vi++, wi++) {
+            int fv = f[vi];
+            int fw = f[wi];
+            if (fw == INFINITY) {
+                if (fv != INFINITY) {
+                    return INFINITY;
+                }
+            } else if (fv != INFINITY && fw - fv > best) {
+                best = fw - fv;
+            }
+            int tv = t[vi];
+            int tw = t[wi];
+            if (tv == INFINITY) {
+                if (tw != INFINITY) {
+                    return INFINITY;
+                }
+            } else if (tw != INFINITY && tv - tw > best) {
+                best = tv - tw;
+            }
+        }
+        return best;
+    }
+
+    private void select(int table, Strategy strategy, Random random, SearchScratch scratch) {
+        int cities = graph.cityCount();
+        landmarks[table] = new int[count];
+        from[table] = new int[cities * count];
+        to[table] = new int[cities * count];
+        int[] distances = new int[cities];
+        int[] parents = new int[cities];
+        int[] order = new int[cities];
+        for (int i = 0; i < count; i++) {
+            int landmark = strategy == Strategy.AVOID
+                ? avoid(table, i, random.nextInt(cities), scratch, distances, parents, order)
+                : farthest(table, i, random.nextInt(cities), scratch, distances, parents, order);
+            landmarks[table][i] = landmark;
+            sweep(table, landmark, false, scratch, distances, parents, order);
+            for (int v = 0; v < cities; v++) {
+                from[table][v * count + i] = distances[v];
+            }
+            sweep(table, landmark, true, scratch, distances, parents, order);
+            for (int v = 0; v < cities; v++) {
+                to[table][v * count + i] = distances[v];
+            }
+        }
+    }
+
+    /** The first landmark is the city farthest from {@code root}; later ones maximize the distance to the closest landmark. */
+    private int farthest(int table, int chosen, int root, SearchScratch scratch, int[] distances, int[] parents,
+                         int[] order) {
+        int best = root;
+        long bestScore = -1;
+        if (chosen == 0) {
+            int settled = sweep(table, root, false, scratch, distances, parents, order);
+            for (int i = 0; i < settled; i++) {
+                if (distances[order[i]] > bestScore) {
+                    bestScore = distances[order[i]];
+                    best = order[i];
+                }
+            }
+            return best;
+        }
+        for (int v = 0; v < graph.cityCount(); v++) {
+            long score = Long.MAX_VALUE;
+            for (int i = 0; i < chosen; i++) {
+                int d = from[table][v * count + i];
+                if (d != INFINITY) {
+                    score = Math.min(score, d);
+                }
+            }
+            if (score != Long.MAX_VALUE && score > bestScore) {
+                bestScore = score;
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The avoid heuristic: in the shortest path tree from {@code root}, weigh
+     * each city by how much the current bounds underestimate its distance, then descend into the
+     * heaviest subtree that holds no landmark and take the leaf.
+     */
+    private int avoid(int table, int chosen, int root, SearchScratch scratch, int[] distances, int[] parents,
+                      int[] order) {
+        int settled = sweep(table, root, false, scratch, distances, parents, order);
+        long[] sizes = new long[graph.cityCount()];
+        int[] heaviest = new int[graph.cityCount()];
+        boolean[] covered = new boolean[graph.cityCount()];
+        for (int i = 0; i < chosen; i++) {
+            covered[landmarks[table][i]] = true;
+        }
+        for (int i = 0; i < settled; i++) {
+            heaviest[order[i]] = -1;
+        }
+        for (int i = settled - 1; i >= 0; i--) {
+            int v = order[i];
+            if (covered[v]) {
+                sizes[v] = 0;
+            } else {
+                int bound = chosen == 0 ? 0 : bound(table, root, v, chosen);
+                sizes[v] += distances[v] - (bound == INFINITY ? 0 : bound);
+            }
+            int parent = parents[v];
+            if (parent >= 0) {
+                int p = graph.source(parent);
+                if (covered[v]) {
+                    covered[p] = true;
+                } else {
+                    sizes[p] += sizes[v];
+                    if (heaviest[p] < 0 || sizes[v] > sizes[heaviest[p]]) {
+                        heaviest[p] = v;
+                    }
+                }
+            }
+        }
+        if (covered[root]) {
+            return farthest(table, chosen, root, scratch, distances, parents, order);
+        }
+        int leaf = root;
+        while (heaviest[leaf] >= 0 && !covered[heaviest[leaf]]) {
+            leaf = heaviest[leaf];
+        }
+        return leaf;
+    }
+
+    /**
+     * Full Dijkstra from {@code root} over outgoing or, with {@code reverse}, incoming edges.
+     * Fills {@code distances} (with {@link #INFINITY} for unreachable cities), the tree edges and
+     * the settle order, and returns the number of settled cities.
+     */
+    private int sweep(int table, int root, boolean reverse, SearchScratch scratch, int[] distances, int[] parents,
+                      int[] order) {
+        Criteria criteria = CRITERIA[table];
+        scratch.reset(graph.cityCount());
+        IndexedMinHeap heap = scratch.heap;
+        scratch.label(root, 0, -1);
+        heap.offer(root, 0);
+        int settled = 0;
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            int distance = scratch.distances[current];
+            order[settled++] = current;
+            int first = reverse ? reverseOffsets[current] : graph.firstEdge(current);
+            int last = reverse ? reverseOffsets[current + 1] : graph.endEdge(current);
+            for (int i = first; i < last; i++) {
+                int edge = reverse ? reverseEdges[i] : i;
+                int next = reverse ? graph.source(edge) : graph.target(edge);
+                int newDistance = distance + DijkstraSearch.weight(graph, edge, criteria);
+                if (newDistance < scratch.distance(next)) {
+                    scratch.label(next, newDistance, edge);
+                    heap.offer(next, newDistance);
+                }
+            }
+        }
+        for (int v = 0; v < graph.cityCount(); v++) {
+            distances[v] = scratch.distance(v);
+            parents[v] = scratch.parentEdge(v);
+        }
+        return settled;
+    }
+}
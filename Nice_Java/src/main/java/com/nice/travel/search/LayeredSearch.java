@@ -0,0 +1,111 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exact Cost and Hops search under the hop and cost limits of the scratch's constraints, which
+ * plain Dijkstra cannot honour because the cheapest journey may use too many routes. Layer
+ * {@code h} holds the cheapest cost of reaching every city with at most {@code h} routes and is
+ * computed from layer {@code h - 1} only, Bellman-Ford style, so the graph itself is never copied
+ * or expanded. Only cities that improved in one layer are relaxed in the next.
+ *
+ * <p>Cost takes the target's cost in the last layer. Hops stops at the first layer that reaches
+ * the target within the cost limit, and picks the cheapest journey of that length.
+ */
+public final class LayeredSearch {
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private LayeredSearch() {
+    }
+
+    /**
+     * Returns the cost or hop count of the best journey meeting the limits, or -1 if there is none
+     * or the scratch's budget ran out; on success the path edges are available from the scratch.
+     */
+    public static int search(TimetableGraph graph, int source, int target, Criteria criteria, SearchScratch scratch) {
+        int cities = graph.cityCount();
+        scratch.reset(cities);
+        int[] previous = new int[cities];
+        Arrays.fill(previous, INFINITY);
+        previous[source] = 0;
+        int[] current = previous.clone();
+        int[] active = new int[cities];
+        int[] improved = new int[cities];
+        int[] marks = new int[cities];
+        active[0] = source;
+        int activeCount = 1;
+        // parents.get(h - 1)[v] is the edge that improved v in layer h, -1 if none did
+        List<int[]> parents = new ArrayList<>();
+        int bestLayer = -1;
+
+        for (int layer = 1; layer <= scratch.hopCap && activeCount > 0; layer++) {
+            int[] parent = new int[cities];
+            Arrays.fill(parent, -1);
+            int improvedCount = 0;
+            for (int i = 0; i < activeCount; i++) {
+                int city = active[i];
+                scratch.settled++;
+                if (scratch.exhausted()) {
+                    return -1;
+                }
+                scratch.relaxed += graph.endEdge(city) - graph.firstEdge(city);
+                for (int edge = graph.firstEdge(city), last = graph.endEdge(city); edge < last; edge++) {
+                    int next = graph.target(edge);
+                    if (next == source || !scratch.allows(graph, edge)) {
+                        continue;
+                    }
+                    long cost = (long) previous[city] + graph.cost(edge);
+                    if (cost < current[next] && cost <= scratch.costCap) {
+                        current[next] = (int) cost;
+                        parent[next] = edge;
+                        if (marks[next] != layer) {
+                            marks[next] = layer;
+                            improved[improvedCount++] = next;
+                        }
+                    }
+                }
+            }
+            parents.add(parent);
+            if (parent[target] >= 0) {
+                bestLayer = layer;
+                if (criteria == Criteria.HOPS) {
+                    break;
+                }
+            }
+            for (int i = 0; i < improvedCount; i++) {
+                previous[improved[i]] = current[improved[i]];
+            }
+            int[] swap = active;
+            active = improved;
+            improved = swap;
+            activeCount = improvedCount;
+        }
+        if (bestLayer < 0) {
+            return -1;
+        }
+
+        int length = 0;
+        for (int city = target, layer = bestLayer; layer > 0; layer--) {
+            int edge = parents.get(layer - 1)[city];
+            if (edge >= 0) {
+                length++;
+                city = graph.source(edge);
+            }
+        }
+        scratch.ensurePathCapacity(length);
+        scratch.pathLength = length;
+        for (int city = target, layer = bestLayer, index = length; layer > 0; layer--) {
+            int edge = parents.get(layer - 1)[city];
+            if (edge >= 0) {
+                scratch.pathEdges[--index] = edge;
+                city = graph.source(edge);
+            }
+        }
+        return criteria == Criteria.HOPS ? length : current[target];
+    }
+}
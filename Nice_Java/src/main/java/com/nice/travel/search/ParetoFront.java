@@ -0,0 +1,86 @@
+package com.nice.travel.search;
+
+import java.util.Arrays;
+
+/**
+ * Non-dominated journeys between two cities under (total time, total cost, hops), ordered by time,
+ * then cost, then hops. Every single-criterion optimum is one of the options.
+ */
+public final class ParetoFront {
+    private static final int TIME = 0;
+    private static final int COST = 1;
+    private static final int HOPS = 2;
+    private static final int STRIDE = 3;
+
+    private int[] values = new int[4 * STRIDE];
+    private int[][] paths = new int[4][];
+    private int size;
+
+    public int size() { return size; }
+    public int time(int option) { return values[option * STRIDE + TIME]; }
+    public int cost(int option) { return values[option * STRIDE + COST]; }
+    public int hops(int option) { return values[option * STRIDE + HOPS]; }
+
+    /** Edge IDs of the option's journey in travel order. */
+    public int[] path(int option) { return paths[option]; }
+
+    /** True if some option is no worse than the given values in every criterion. */
+    boolean dominates(int time, int cost, int hops) {
+        for (int i = 0, at = 0; i < size; i++, at += STRIDE) {
+            if (values[at + TIME] <= time && values[at + COST] <= cost && values[at + HOPS] <= hops) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Adds a journey the front does not dominate and drops the options it dominates. */
+    void add(int time, int cost, int hops, int[] path) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int at = i * STRIDE;
+            if (values[at + TIME] >= time && values[at + COST] >= cost && values[at + HOPS] >= hops) {
+                continue;
+            }
+            System.arraycopy(values, at, values, kept * STRIDE, STRIDE);
+            paths[kept++] = paths[i];
+        }
+        Arrays.fill(paths, kept, size, null);
+        size = kept;
+        if (size == paths.length) {
+            values = Arrays.copyOf(values, size * 2 * STRIDE);
+            paths = Arrays.copyOf(paths, size * 2);
+        }
+        values[size * STRIDE + TIME] = time;
+        values[size * STRIDE + COST] = cost;
+        values[size * STRIDE + HOPS] = hops;
+        paths[size++] = path;
+    }
+
+    void sort() {
+        for (int i = 1; i < size; i++) {
+            for (int j = i; j > 0 && compare(j, j - 1) < 0; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private int compare(int a, int b) {
+        int result = 0;
+        for (int k = TIME; result == 0 && k <= HOPS; k++) {
+            result = Integer.compare(values[a * STRIDE + k], values[b * STRIDE + k]);
+        }
+        return result;
+    }
+
+    private void swap(int a, int b) {
+        for (int k = 0; k < STRIDE; k++) {
+            int value = values[a * STRIDE + k];
+            values[a * STRIDE + k] = values[b * STRIDE + k];
+            values[b * STRIDE + k] = value;
+        }
+        int[] path = paths[a];
+        paths[a] = paths[b];
+        paths[b] = path;
+    }
+}
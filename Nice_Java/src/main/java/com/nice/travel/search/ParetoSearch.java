@@ -0,0 +1,179 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.util.TimeUtil;
+
+import java.util.Arrays;
+
+/**
+ * Multi-criteria connection scan: one run yields every non-dominated journey under (total time,
+ * total cost, hops). Each city keeps a bag of Pareto-optimal labels (arrival, cost, hops); a
+ * connection extends every label that is in place before it departs.
+ *
+ * <p>Unlike {@link ConnectionScanSearch}, which keeps only the latest-starting label per city,
+ * the scan is repeated for each distinct departure from the source: a later start does not make
+ * up for higher cost or more hops. A scan only leaves the source at its own start minute. Every
+ * journey is therefore found exactly once with its real travel time, and labels can be pruned
+ * against the options the earlier scans already found.
+ *
+ * <p>The scratch's constraints prune labels as they are created. Cost and hops only grow along a
+ * journey, so dropping labels over the cost or hop limit keeps the front exact for the journeys
+ * that satisfy them.
+ */
+public final class ParetoSearch {
+    private static final int ARRIVAL = 0;
+    private static final int COST = 1;
+    private static final int HOPS = 2;
+    private static final int PARENT = 3;
+    private static final int EDGE = 4;
+    private static final int NEXT = 5;
+    private static final int STRIDE = 6;
+
+    private ParetoSearch() {
+    }
+
+    /**
+     * Returns the Pareto front of journeys from {@code source} to {@code target}; empty if
+     * unreachable or if the scratch's budget ran out.
+     */
+    public static ParetoFront search(TimetableGraph graph, int source, int target, SearchScratch scratch) {
+        scratch.reset(graph.cityCount());
+        ParetoFront front = new ParetoFront();
+        int degree = graph.endEdge(source) - graph.firstEdge(source);
+        if (degree == 0 || source == target) {
+            return front;
+        }
+
+        int[] starts = scratch.buffer(degree);
+        for (int i = 0; i < degree; i++) {
+            starts[i] = graph.departure(graph.firstEdge(source) + i);
+        }
+        Arrays.sort(starts, 0, degree);
+
+        for (int i = 0; i < degree; i++) {
+            if (i == 0 || starts[i] != starts[i - 1]) {
+                scratch.nextEpoch();
+                scan(graph, source, target, starts[i], scratch, front);
+                if (scratch.stopped()) {
+                    return new ParetoFront();
+                }
+            }
+        }
+        front.sort();
+        return front;
+    }
+
+    private static void scan(TimetableGraph graph, int source, int target, int start, SearchScratch scratch,
+                             ParetoFront front) {
+        ConnectionCursor cursor = scratch.cursor;
+        if (!cursor.reset(graph, start)) {
+            return;
+        }
+        scratch.labelCount = 0;
+        int latest = start;
+
+        while (true) {
+            cursor.next();
+            int connection = cursor.connection;
+            int departure = cursor.departure;
+            if (departure - latest > TimeUtil.MINUTES_PER_DAY + scratch.minConnection) {
+                break;
+            }
+            scratch.relaxed++;
+            if (scratch.exhausted()) {
+                return;
+            }
+            int from = graph.connectionSource(connection);
+            int to = graph.connectionTarget(connection);
+            if (to == source || to == from || !graph.connectionLive(connection)) {
+                continue;
+            }
+            int edge = graph.connectionEdge(connection);
+            if (!scratch.allows(graph, edge)) {
+                continue;
+            }
+            int arrival = departure + graph.connectionDuration(connection);
+            int cost = graph.cost(edge);
+
+            if (from == source) {
+                if (departure == start && extend(scratch, front, to, target, start, arrival, cost, 1, -1, edge)) {
+                    latest = Math.max(latest, arrival);
+                }
+                continue;
+            }
+            for (int label = head(scratch, from); label >= 0; label = scratch.labels[label * STRIDE + NEXT]) {
+                int at = label * STRIDE;
+                if (scratch.labels[at + ARRIVAL] <= departure - scratch.minConnection
+                        && !scratch.tooMany(scratch.labels[at + HOPS])
+                        && extend(scratch, front, to, target, start, arrival, scratch.labels[at + COST] + cost,
+                            scratch.labels[at + HOPS] + 1, label, edge)) {
+                    latest = Math.max(latest, arrival);
+                }
+            }
+        }
+    }
+
+    /**
+     * Offers a label at {@code node}. Labels reaching the target go to the front; others join the
+     * city's bag unless dominated there or by the front. Returns true if the label can be extended.
+     */
+    private static boolean extend(SearchScratch scratch, ParetoFront front, int node, int target, int start,
+                                  int arrival, int cost, int hops, int parent, int edge) {
+        if (hops > scratch.hopCap || cost > scratch.costCap || front.dominates(arrival - start, cost, hops)) {
+            return false;
+        }
+        if (node == target) {
+            front.add(arrival - start, cost, hops, path(scratch, parent, edge, hops));
+            return false;
+        }
+
+        int[] labels = scratch.labels;
+        int previous = -1;
+        for (int label = head(scratch, node); label >= 0; ) {
+            int at = label * STRIDE;
+            int next = labels[at + NEXT];
+            if (labels[at + ARRIVAL] <= arrival && labels[at + COST] <= cost && labels[at + HOPS] <= hops) {
+                return false;
+            }
+            if (labels[at + ARRIVAL] >= arrival && labels[at + COST] >= cost && labels[at + HOPS] >= hops) {
+                if (previous < 0) {
+                    scratch.label(node, next, -1);
+                } else {
+                    labels[previous * STRIDE + NEXT] = next;
+                }
+            } else {
+                previous = label;
+            }
+            label = next;
+        }
+
+        int label = scratch.labelCount++;
+        if (labels == null || labels.length < scratch.labelCount * STRIDE) {
+            labels = scratch.labels = labels == null ? new int[64 * STRIDE] : Arrays.copyOf(labels, labels.length * 2);
+        }
+        int at = label * STRIDE;
+        labels[at + ARRIVAL] = arrival;
+        labels[at + COST] = cost;
+        labels[at + HOPS] = hops;
+        labels[at + PARENT] = parent;
+        labels[at + EDGE] = edge;
+        labels[at + NEXT] = head(scratch, node);
+        scratch.label(node, label, -1);
+        scratch.settled++;
+        return true;
+    }
+
+    /** The bag of a city is a linked list of labels whose head lives in the city's distance slot. */
+    private static int head(SearchScratch scratch, int node) {
+        return scratch.visited(node) ? scratch.distances[node] : -1;
+    }
+
+    private static int[] path(SearchScratch scratch, int parent, int edge, int hops) {
+        int[] path = new int[hops];
+        path[hops - 1] = edge;
+        for (int i = hops - 2, label = parent; i >= 0; i--, label = scratch.labels[label * STRIDE + PARENT]) {
+            path[i] = scratch.labels[label * STRIDE + EDGE];
+        }
+        return path;
+    }
+}
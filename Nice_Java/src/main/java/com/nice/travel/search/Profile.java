@@ -0,0 +1,34 @@
+package com.nice.travel.search;
+
+import java.util.Arrays;
+
+/**
+ * Journeys between two cities for a window of departure times, ordered by departure. Arrivals
+ * increase with departures: each option is the earliest arrival of any journey leaving at or after
+ * its departure within the window. Minutes are absolute, counted from the window's first day.
+ */
+public final class Profile {
+    private int[] departures = new int[4];
+    private int[] arrivals = new int[4];
+    private int[][] paths = new int[4][];
+    private int size;
+
+    public int size() { return size; }
+    public int departure(int option) { return departures[option]; }
+    public int arrival(int option) { return arrivals[option]; }
+    public int time(int option) { return arrivals[option] - departures[option]; }
+
+    /** Edge IDs of the option's journey in travel order. */
+    public int[] path(int option) { return paths[option]; }
+
+    void add(int departure, int arrival, int[] path) {
+        if (size == paths.length) {
+            departures = Arrays.copyOf(departures, size * 2);
+            arrivals = Arrays.copyOf(arrivals, size * 2);
+            paths = Arrays.copyOf(paths, size * 2);
+        }
+        departures[size] = departure;
+        arrivals[size] = arrival;
+        paths[size++] = path;
+    }
+}
@@ -0,0 +1,193 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.util.TimeUtil;
+
+import java.util.Arrays;
+
+/**
+ * Profile connection scan: every journey from a source to a target that departs within a window
+ * and is not beaten by a later departure arriving no earlier, from one backward sweep over the
+ * departure-sorted connections. Each city keeps a profile of (departure, arrival at target)
+ * entries, both decreasing as the sweep moves back in time, so a connection is evaluated with a
+ * binary search in its arrival city's profile.
+ *
+ * <p>The journey leaving at the window's last departure is found first by a forward scan. Every
+ * other journey in the result arrives before it, so its arrival bounds the sweep. As in
+ * {@link ParetoSearch}, journeys leave the source only at their own departure and never return.
+ */
+public final class ProfileSearch {
+    private static final int DEPARTURE = 0;
+    private static final int ARRIVAL = 1;
+    private static final int EDGE = 2;
+    private static final int NEXT = 3;
+    private static final int STRIDE = 4;
+
+    private ProfileSearch() {
+    }
+
+    /**
+     * Returns the journeys leaving {@code source} at minutes in {@code [earliest, latest]}, where
+     * {@code earliest} lies in the first day and {@code latest} at most a day later; empty if none
+     * reaches {@code target} or the scratch's budget ran out.
+     */
+    public static Profile search(TimetableGraph graph, int source, int target, int earliest, int latest,
+                                 SearchScratch scratch) {
+        scratch.reset(graph.cityCount());
+        Profile profile = new Profile();
+        int last = lastDeparture(graph, source, earliest, latest);
+        if (source == target || last < 0) {
+            return profile;
+        }
+        int day = last - last % TimeUtil.MINUTES_PER_DAY;
+        int horizon = arrivalLeavingAt(graph, source, target, last - day, scratch);
+        if (horizon < 0) {
+            return profile;
+        }
+        horizon += day;
+
+        int cities = graph.cityCount();
+        int[][] profiles = new int[cities][];
+        int[] sizes = new int[cities];
+        int[] entries = new int[64 * STRIDE];
+        int entryCount = 0;
+        int[] journeys = new int[8];
+        int journeyCount = 0;
+        ConnectionCursor cursor = scratch.cursor;
+        cursor.resetBackward(graph, horizon);
+        while (true) {
+            cursor.next();
+            int connection = cursor.connection;
+            int departure = cursor.departure;
+            if (departure < earliest) {
+                break;
+            }
+            scratch.relaxed++;
+            if (scratch.exhausted()) {
+                return profile;
+            }
+            int from = graph.connectionSource(connection);
+            int to = graph.connectionTarget(connection);
+            if (from == target || to == source || to == from || !graph.connectionLive(connection)
+                    || from == source && departure > latest) {
+                continue;
+            }
+            int arrival = departure + graph.connectionDuration(connection);
+            int next = -1;
+            if (to != target) {
+                next = find(entries, profiles[to], sizes[to], arrival);
+                if (next < 0) {
+                    continue;
+                }
+                arrival = entries[next * STRIDE + ARRIVAL];
+            }
+            int[] list = from == source ? journeys : profiles[from];
+            int size = from == source ? journeyCount : sizes[from];
+            if (arrival > horizon || size > 0 && entries[list[size - 1] * STRIDE + ARRIVAL] <= arrival) {
+                continue;
+            }
+
+            if ((entryCount + 1) * STRIDE > entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            int at = entryCount * STRIDE;
+            entries[at + DEPARTURE] = departure;
+            entries[at + ARRIVAL] = arrival;
+            entries[at + EDGE] = graph.connectionEdge(connection);
+            entries[at + NEXT] = next;
+            scratch.settled++;
+            if (size > 0 && entries[list[size - 1] * STRIDE + DEPARTURE] == departure) {
+                list[size - 1] = entryCount++;
+                continue;
+            }
+            if (list == null || size == list.length) {
+                list = list == null ? new int[4] : Arrays.copyOf(list, size * 2);
+            }
+            list[size++] = entryCount++;
+            if (from == source) {
+                journeys = list;
+                journeyCount = size;
+            } else {
+                profiles[from] = list;
+                sizes[from] = size;
+            }
+        }
+
+        for (int i = journeyCount - 1; i >= 0; i--) {
+            int hops = 0;
+            for (int entry = journeys[i]; entry >= 0; entry = entries[entry * STRIDE + NEXT]) {
+                hops++;
+            }
+            int[] path = new int[hops];
+            int entry = journeys[i];
+            for (int h = 0; h < hops; h++, entry = entries[entry * STRIDE + NEXT]) {
+                path[h] = entries[entry * STRIDE + EDGE];
+            }
+            profile.add(entries[journeys[i] * STRIDE + DEPARTURE], entries[journeys[i] * STRIDE + ARRIVAL], path);
+        }
+        return profile;
+    }
+
+    /** Latest departure from {@code source} in {@code [earliest, latest]}, or -1 if there is none. */
+    private static int lastDeparture(TimetableGraph graph, int source, int earliest, int latest) {
+        int last = -1;
+        for (int edge = graph.firstEdge(source); edge < graph.endEdge(source); edge++) {
+            for (int minute = graph.departure(edge); minute <= latest; minute += TimeUtil.MINUTES_PER_DAY) {
+                if (minute >= earliest) {
+                    last = Math.max(last, minute);
+                }
+            }
+        }
+        return last;
+    }
+
+    /** Earliest arrival at {@code target} of a journey leaving {@code source} at exactly {@code start}, or -1. */
+    private static int arrivalLeavingAt(TimetableGraph graph, int source, int target, int start,
+                                        SearchScratch scratch) {
+        ConnectionCursor cursor = scratch.cursor;
+        if (!cursor.reset(graph, start)) {
+            return -1;
+        }
+        int latest = start;
+        while (true) {
+            cursor.next();
+            int connection = cursor.connection;
+            int departure = cursor.departure;
+            if (departure >= scratch.distance(target) || departure - latest > TimeUtil.MINUTES_PER_DAY) {
+                break;
+            }
+            scratch.relaxed++;
+            if (scratch.exhausted()) {
+                return -1;
+            }
+            int from = graph.connectionSource(connection);
+            int to = graph.connectionTarget(connection);
+            if (to == source || !graph.connectionLive(connection)
+                    || (from == source ? departure != start : scratch.distance(from) > departure)) {
+                continue;
+            }
+            int arrival = departure + graph.connectionDuration(connection);
+            if (arrival < scratch.distance(to)) {
+                scratch.label(to, arrival, graph.connectionEdge(connection));
+                latest = Math.max(latest, arrival);
+            }
+        }
+        int arrival = scratch.distance(target);
+        return arrival == Integer.MAX_VALUE ? -1 : arrival;
+    }
+
+    /** Entry of {@code profile} with the earliest arrival among those departing at or after {@code minute}, or -1. */
+    private static int find(int[] entries, int[] profile, int size, int minute) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[profile[mid] * STRIDE + DEPARTURE] >= minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == 0 ? -1 : profile[low - 1];
+    }
+}
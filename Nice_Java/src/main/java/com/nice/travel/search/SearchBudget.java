@@ -0,0 +1,40 @@
+package com.nice.travel.search;
+
+/**
+ * Limits on one search: a wall-clock deadline counted from {@link SearchScratch#limit}, a number
+ * of units of work (cities settled by Dijkstra-style searches, connections scanned by connection
+ * scans), a hop depth beyond which labels are not extended, and a cancellation token. Zero or null
+ * means no limit.
+ */
+public final class SearchBudget {
+    private final long deadlineMillis;
+    private final int maxSettled;
+    private final int maxHops;
+    private final CancellationToken token;
+
+    public SearchBudget(long deadlineMillis, int maxSettled, int maxHops, CancellationToken token) {
+        if (deadlineMillis < 0 || maxSettled < 0 || maxHops < 0) {
+            throw new IllegalArgumentException("Search budgets must not be negative");
+        }
+        this.deadlineMillis = deadlineMillis;
+        this.maxSettled = maxSettled;
+        this.maxHops = maxHops;
+        this.token = token;
+    }
+
+    public long deadlineMillis() { return deadlineMillis; }
+    public int maxSettled() { return maxSettled; }
+    public int maxHops() { return maxHops; }
+    public CancellationToken token() { return token; }
+
+    /** This budget with each unset limit taken from {@code defaults}, which may be null. */
+    public SearchBudget orElse(SearchBudget defaults) {
+        if (defaults == null) {
+            return this;
+        }
+        return new SearchBudget(deadlineMillis > 0 ? deadlineMillis : defaults.deadlineMillis,
+            maxSettled > 0 ? maxSettled : defaults.maxSettled,
+            maxHops > 0 ? maxHops : defaults.maxHops,
+            token != null ? token : defaults.token);
+    }
+}
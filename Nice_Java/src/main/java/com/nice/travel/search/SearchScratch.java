@@ -0,0 +1,251 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.RouteConstraints;
+
+import java.util.Arrays;
+
+/**
+ * Reusable per-thread search state. Distances and parent edges are only valid for nodes whose
+ * stamp equals the current epoch, so starting a new query is O(1) instead of O(cities).
+ */
+public class SearchScratch {
+    private static final ThreadLocal<SearchScratch> CURRENT = ThreadLocal.withInitial(() -> new SearchScratch(16));
+
+    final IndexedMinHeap heap;
+    final ConnectionCursor cursor = new ConnectionCursor();
+    int[] distances;
+    int[] parentEdges;
+    int[] stamps;
+    int epoch;
+    int[] pathEdges;
+    int pathLength;
+    int[] buffer;
+    int[] labels;
+    int labelCount;
+    private SearchScratch backward;
+    int pushes;
+    int settled;
+    int relaxed;
+    private SearchBudget budget;
+    private long deadline;
+    private int work;
+    private SearchStatus stop;
+    int maxHops = Integer.MAX_VALUE;
+    int[] depths = new int[0];
+    private boolean cutShort;
+    /** Bit {@code m} is set if mode ID {@code m} may be used; all bits when modes are unconstrained. */
+    long modes = -1L;
+    int minConnection;
+    int hopCap = Integer.MAX_VALUE;
+    int costCap = Integer.MAX_VALUE;
+
+    public SearchScratch(int capacity) {
+        heap = new IndexedMinHeap(capacity);
+        distances = new int[capacity];
+        parentEdges = new int[capacity];
+        stamps = new int[capacity];
+        pathEdges = new int[capacity];
+        buffer = new int[capacity];
+    }
+
+    public static SearchScratch current() {
+        return CURRENT.get();
+    }
+
+    /** Starts a new query over {@code nodeCount} nodes, invalidating all labels from the previous one. */
+    public void reset(int nodeCount) {
+        if (nodeCount > stamps.length) {
+            int capacity = Math.max(nodeCount, stamps.length * 2);
+            distances = Arrays.copyOf(distances, capacity);
+            parentEdges = Arrays.copyOf(parentEdges, capacity);
+            stamps = Arrays.copyOf(stamps, capacity);
+            pathEdges = Arrays.copyOf(pathEdges, capacity);
+            heap.ensureCapacity(capacity);
+            if (maxHops != Integer.MAX_VALUE) {
+                depths = Arrays.copyOf(depths, capacity);
+            }
+        }
+        heap.clear();
+        pathLength = 0;
+        pushes = 0;
+        settled = 0;
+        relaxed = 0;
+        nextEpoch();
+    }
+
+    /**
+     * Applies {@code budget} to every search run on this scratch until the next call, starting its
+     * deadline now; null lifts all limits. Also clears {@link #status()}.
+     */
+    public void limit(SearchBudget budget) {
+        this.budget = budget;
+        deadline = budget != null && budget.deadlineMillis() > 0
+            ? System.nanoTime() + budget.deadlineMillis() * 1_000_000L : 0;
+        work = 0;
+        stop = null;
+        cutShort = false;
+        maxHops = budget != null && budget.maxHops() > 0 ? budget.maxHops() : Integer.MAX_VALUE;
+        if (maxHops != Integer.MAX_VALUE && depths.length < stamps.length) {
+            depths = new int[stamps.length];
+        }
+    }
+
+    /**
+     * Why the searches since {@link #limit} returned nothing, or null if no limit got in the way:
+     * the budget ran out, or {@link SearchStatus#HOP_LIMIT_EXCEEDED} if labels were cut at the hop
+     * depth (which only matters if nothing was found).
+     */
+    public SearchStatus status() {
+        return stop != null ? stop : cutShort ? SearchStatus.HOP_LIMIT_EXCEEDED : null;
+    }
+
+    /**
+     * Restricts every search run on this scratch until the next call to journeys meeting
+     * {@code constraints}, with mode names resolved against {@code graph}; null lifts them. Mode
+     * filters, the minimum connection time and, in {@link ParetoSearch} and {@link LayeredSearch},
+     * the hop and cost limits are honoured.
+     */
+    public void constrain(RouteConstraints constraints, TimetableGraph graph) {
+        modes = -1L;
+        minConnection = 0;
+        hopCap = Integer.MAX_VALUE;
+        costCap = Integer.MAX_VALUE;
+        if (constraints == null) {
+            return;
+        }
+        if (constraints.limitsModes()) {
+            if (graph.modeCount() > Long.SIZE) {
+                throw new IllegalArgumentException("Mode constraints support at most " + Long.SIZE + " modes");
+            }
+            modes = 0;
+            for (int mode = 0; mode < graph.modeCount(); mode++) {
+                if (constraints.allowsMode(graph.modeName(mode))) {
+                    modes |= 1L << mode;
+                }
+            }
+        }
+        minConnection = constraints.getMinConnectionMinutes();
+        hopCap = constraints.getMaxHops() > 0 ? constraints.getMaxHops() : Integer.MAX_VALUE;
+        costCap = constraints.getMaxCost() > 0 ? constraints.getMaxCost() : Integer.MAX_VALUE;
+    }
+
+    /** True if {@code edge}'s mode passes the mode filter: a single AND with its mode bit. */
+    boolean allows(TimetableGraph graph, int edge) {
+        return modes == -1L || (modes & 1L << graph.mode(edge)) != 0;
+    }
+
+    /** Minutes a journey must stay in {@code city} before leaving it again; none at its source. */
+    int transfer(int city, int source) {
+        return city == source ? 0 : minConnection;
+    }
+
+    /** True if the budget ran out or was cancelled; searches call this once per unit of work and give up. */
+    boolean exhausted() {
+        if (budget == null) {
+            return false;
+        }
+        if (stop == null) {
+            work++;
+            if (budget.maxSettled() > 0 && work > budget.maxSettled()) {
+                stop = SearchStatus.SETTLED_LIMIT_EXCEEDED;
+            } else if ((work & 255) == 0) {
+                if (budget.token() != null && budget.token().isCancelled()) {
+                    stop = SearchStatus.CANCELLED;
+                } else if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                    stop = SearchStatus.DEADLINE_EXCEEDED;
+                }
+            }
+        }
+        return stop != null;
+    }
+
+    /** True if the budget ran out or was cancelled since the last {@link #limit}. */
+    public boolean stopped() {
+        return stop != null;
+    }
+
+    /** True if the current budget bounds the hop depth, which only plain searches honour. */
+    public boolean limitsHops() {
+        return maxHops != Integer.MAX_VALUE;
+    }
+
+    /** True if labels extended from {@code node} would exceed the hop depth; records the cut. */
+    boolean tooDeep(int node) {
+        return maxHops != Integer.MAX_VALUE && tooMany(depths[node]);
+    }
+
+    /** True if a journey of {@code hops} edges may not be extended under the hop budget. */
+    boolean tooMany(int hops) {
+        if (hops < maxHops) {
+            return false;
+        }
+        cutShort = true;
+        return true;
+    }
+
+    /** Records the hop depth of a label at {@code node} reached from {@code from} (-1 for the source). */
+    void deepen(int node, int from) {
+        if (maxHops != Integer.MAX_VALUE) {
+            depths[node] = from < 0 ? 0 : depths[from] + 1;
+        }
+    }
+
+    /** Invalidates all labels while keeping the current path buffer. */
+    void nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+    }
+
+    public boolean visited(int node) {
+        return stamps[node] == epoch;
+    }
+
+    public int distance(int node) {
+        return stamps[node] == epoch ? distances[node] : Integer.MAX_VALUE;
+    }
+
+    public int parentEdge(int node) {
+        return stamps[node] == epoch ? parentEdges[node] : -1;
+    }
+
+    public void label(int node, int distance, int parentEdge) {
+        stamps[node] = epoch;
+        distances[node] = distance;
+        parentEdges[node] = parentEdge;
+    }
+
+    public int pathLength() { return pathLength; }
+    public int pathEdge(int index) { return pathEdges[index]; }
+
+    /**
+     * Work done since the last {@link #reset}: heap pushes, nodes settled and edges relaxed for
+     * Dijkstra; labels improved and connections scanned for the connection scan.
+     */
+    public int pushes() { return pushes; }
+    public int settled() { return settled; }
+    public int relaxed() { return relaxed; }
+
+    /** Second set of labels, for the backward half of a bidirectional search or the connection scan's active labels. */
+    SearchScratch backward() {
+        if (backward == null) {
+            backward = new SearchScratch(stamps.length);
+        }
+        return backward;
+    }
+
+    int[] buffer(int length) {
+        if (length > buffer.length) {
+            buffer = new int[Math.max(length, buffer.length * 2)];
+        }
+        return buffer;
+    }
+
+    void ensurePathCapacity(int length) {
+        if (length > pathEdges.length) {
+            pathEdges = Arrays.copyOf(pathEdges, Math.max(length, pathEdges.length * 2));
+        }
+    }
+}
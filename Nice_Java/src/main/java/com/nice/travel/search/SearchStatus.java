@@ -0,0 +1,21 @@
+package com.nice.travel.search;
+
+/** How a search ended. Every outcome but {@link #OK} comes with an empty result. */
+public enum SearchStatus {
+    OK("ok"),
+    /** The search completed and the destination is unreachable. */
+    NO_ROUTE("no_route"),
+    DEADLINE_EXCEEDED("deadline_exceeded"),
+    SETTLED_LIMIT_EXCEEDED("settled_limit_exceeded"),
+    /** Nothing was found within the hop depth; a longer journey may exist. */
+    HOP_LIMIT_EXCEEDED("hop_limit_exceeded"),
+    CANCELLED("cancelled");
+
+    private final String label;
+
+    SearchStatus(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() { return label; }
+}
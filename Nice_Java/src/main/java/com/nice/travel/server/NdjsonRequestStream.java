@@ -0,0 +1,180 @@
+package com.nice.travel.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.nice.travel.Main;
+import com.nice.travel.graph.TimetableGraph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers newline-delimited JSON requests against one loaded graph and writes one result line per
+ * request, tagged with its {@code request_id}, as soon as it may be written. Requests run on a
+ * fixed worker pool. At most {@code maxInFlight} requests are read ahead of the output, so memory
+ * stays flat however long the stream is. Ordered output holds a finished result until every
+ * earlier line is written; unordered output writes results as they complete.
+ */
+public class NdjsonRequestStream {
+    private static final Gson gson = new Gson();
+
+    private final Main main;
+    private final TimetableGraph graph;
+    private final boolean genSummary;
+    private final int workers;
+    private final int maxInFlight;
+    private final boolean ordered;
+
+    public NdjsonRequestStream(Main main, TimetableGraph graph, boolean genSummary, int workers, int maxInFlight,
+                               boolean ordered) {
+        if (workers <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("workers and maxInFlight must be positive");
+        }
+        this.main = main;
+        this.graph = graph;
+        this.genSummary = genSummary;
+        this.workers = workers;
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+    }
+
+    /** Answers every non-blank line of {@code in} until it ends; returns the number of requests. */
+    public long run(BufferedReader in, Writer out) throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "stream-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore slots = new Semaphore(maxInFlight);
+        Output output = new Output(out, slots);
+        long count = 0;
+        try {
+            for (String line; (line = in.readLine()) != null; ) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                slots.acquire();
+                output.check();
+                long sequence = count++;
+                String request = line;
+                pool.execute(() -> {
+                    String result;
+                    try {
+                        result = answer(request, sequence);
+                    } catch (Throwable e) {
+                        // Every line must be written, or its read-ahead slot never comes back.
+                        result = tag("request_" + (sequence + 1), errorResult("Route search failed: " + e));
+                    }
+                    output.write(sequence, result);
+                });
+            }
+            slots.acquire(maxInFlight);
+            output.check();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while streaming requests");
+        } finally {
+            pool.shutdownNow();
+        }
+        return count;
+    }
+
+    private String answer(String line, long sequence) {
+        String[] requestId = {"request_" + (sequence + 1)};
+        JsonObject[] result = new JsonObject[1];
+        try {
+            JsonElement request = JsonParser.parseString(line);
+            main.optimizeRequests(graph, Collections.singletonList(request), (int) sequence, genSummary, (id, value) -> {
+                requestId[0] = id;
+                result[0] = value;
+            });
+        } catch (JsonParseException e) {
+            result[0] = errorResult("Malformed request: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            result[0] = errorResult("Route search failed: " + e.getMessage());
+        }
+        return tag(requestId[0], result[0]);
+    }
+
+    private static String tag(String requestId, JsonObject result) {
+        JsonObject tagged = new JsonObject();
+        tagged.addProperty("request_id", requestId);
+        for (Map.Entry<String, JsonElement> field : result.entrySet()) {
+            tagged.add(field.getKey(), field.getValue());
+        }
+        return gson.toJson(tagged);
+    }
+
+    private static JsonObject errorResult(String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        return error;
+    }
+
+    /** Writes result lines, in input order if requested, and frees a read-ahead slot per line written. */
+    private final class Output {
+        private final Writer out;
+        private final Semaphore slots;
+        private final Map<Long, String> held = new HashMap<>();
+        private long next;
+        private IOException failure;
+
+        Output(Writer out, Semaphore slots) {
+            this.out = out;
+            this.slots = slots;
+        }
+
+        synchronized void write(long sequence, String line) {
+            int written = 0;
+            if (!ordered) {
+                emit(line);
+                written++;
+            } else {
+                held.put(sequence, line);
+                for (String ready; (ready = held.remove(next)) != null; next++) {
+                    emit(ready);
+                    written++;
+                }
+            }
+            if (written > 0) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    failure = failure != null ? failure : e;
+                }
+                slots.release(written);
+            }
+        }
+
+        private void emit(String line) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                out.write(line);
+                out.write('\n');
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        synchronized void check() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.nice.travel.server;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.nice.travel.Main;
+import com.nice.travel.graph.TimetableDelta;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableStore;
+import com.nice.travel.io.TimetableJson;
+import com.nice.travel.metrics.Metrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-running HTTP front end that keeps one graph loaded and answers requests in the batch
+ * input schema. {@code POST /optimize} takes a single request object, an array of requests or
+ * {@code {"requests": [...]}} and returns results keyed by request id. Work runs on a fixed
+ * worker pool behind a bounded queue; when the queue is full the server answers 503.
+ * {@code POST /routes} applies a {@code {"add": [...], "remove": [...]}} update to the
+ * {@link TimetableStore}; queries already running finish on the version they started with.
+ * With metrics enabled, {@code GET /metrics} serves the Prometheus text exposition.
+ */
+public class TravelQueryServer {
+    private static final Gson gson = new Gson();
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    private final Main main;
+    private final TimetableStore timetable;
+    private final boolean genSummary;
+
+    public TravelQueryServer(Main main, TimetableGraph graph, boolean genSummary, int port, int threads,
+                             int queueCapacity) throws IOException {
+        this(main, new TimetableStore(graph), genSummary, port, threads, queueCapacity);
+    }
+
+    public TravelQueryServer(Main main, TimetableStore timetable, boolean genSummary, int port, int threads,
+                             int queueCapacity) throws IOException {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("threads and queueCapacity must be positive");
+        }
+        this.main = main;
+        this.timetable = timetable;
+        this.genSummary = genSummary;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "query-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/optimize", exchange -> dispatch(exchange, () -> handleQuery(exchange)));
+        server.createContext("/routes", exchange -> dispatch(exchange, () -> handleUpdate(exchange)));
+        server.createContext("/health", exchange -> respond(exchange, 200, healthResult()));
+        if (Metrics.enabled()) {
+            server.createContext("/metrics", TravelQueryServer::respondMetrics);
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Number of requests waiting for a worker. */
+    public int queuedRequests() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Stops accepting work, lets queued and running requests finish for up to {@code graceMillis},
+     * then cancels the searches still running and closes the listener.
+     */
+    public void stop(long graceMillis) {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(graceMillis, TimeUnit.MILLISECONDS)) {
+                main.cancelSearches();
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            main.cancelSearches();
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        server.stop(0);
+    }
+
+    /** Runs on the listener thread: hands the exchange to a worker or sheds it immediately. */
+    private void dispatch(HttpExchange exchange, Runnable handler) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, errorResult("Use POST"));
+            return;
+        }
+        try {
+            workers.execute(handler);
+        } catch (RejectedExecutionException e) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, errorResult(workers.isShutdown() ? "Server is shutting down" : "Server is busy"));
+        }
+    }
+
+    private void handleQuery(HttpExchange exchange) {
+        try {
+            List<JsonElement> requests;
+            try {
+                requests = readRequests(exchange.getRequestBody());
+            } catch (JsonParseException | IllegalStateException e) {
+                respond(exchange, 400, errorResult("Malformed request body: " + e.getMessage()));
+                return;
+            }
+            JsonObject results = new JsonObject();
+            main.optimizeRequests(timetable.current(), requests, genSummary, results::add);
+            respond(exchange, 200, results);
+        } catch (Exception e) {
+            fail(exchange, e);
+        }
+    }
+
+    private void handleUpdate(HttpExchange exchange) {
+        try {
+            TimetableDelta delta;
+            try (JsonReader reader = new JsonReader(new BufferedReader(
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)))) {
+                delta = TimetableJson.readDelta(reader);
+            } catch (JsonParseException | IllegalStateException | IllegalArgumentException e) {
+                respond(exchange, 400, errorResult("Malformed update: " + e.getMessage()));
+                return;
+            }
+            TimetableGraph graph;
+            try {
+                graph = timetable.apply(delta);
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 409, errorResult(e.getMessage()));
+                return;
+            }
+            JsonObject status = new JsonObject();
+            status.addProperty("version", timetable.version());
+            status.addProperty("routes", graph.edgeCount());
+            respond(exchange, 200, status);
+        } catch (Exception e) {
+            fail(exchange, e);
+        }
+    }
+
+    private static void fail(HttpExchange exchange, Exception e) {
+        try {
+            respond(exchange, 500, errorResult(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        } catch (IOException ignored) {
+            exchange.close();
+        }
+    }
+
+    static List<JsonElement> readRequests(InputStream body) {
+        JsonElement document = JsonParser.parseReader(new JsonReader(new BufferedReader(
+            new InputStreamReader(body, StandardCharsets.UTF_8))));
+        if (!document.isJsonObject() && !document.isJsonArray()) {
+            throw new JsonParseException("Body must be a request, an array of requests or {\"requests\": [...]}");
+        }
+        JsonArray array;
+        if (document.isJsonArray()) {
+            array = document.getAsJsonArray();
+        } else if (document.isJsonObject() && document.getAsJsonObject().has("requests")) {
+            JsonElement listed = document.getAsJsonObject().get("requests");
+            if (!listed.isJsonArray()) {
+                throw new JsonParseException("\"requests\" must be an array");
+            }
+            array = listed.getAsJsonArray();
+        } else {
+            array = new JsonArray();
+            array.add(document);
+        }
+        List<JsonElement> requests = new ArrayList<>(array.size());
+        for (JsonElement request : array) {
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    private JsonObject healthResult() {
+        TimetableGraph graph = timetable.current();
+        JsonObject health = new JsonObject();
+        health.addProperty("cities", graph.cityCount());
+        health.addProperty("routes", graph.edgeCount());
+        health.addProperty("version", timetable.version());
+        health.addProperty("queued", queuedRequests());
+        health.addProperty("active", workers.getActiveCount());
+        return health;
+    }
+
+    private static JsonObject errorResult(String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        return error;
+    }
+
+    private static void respondMetrics(HttpExchange exchange) throws IOException {
+        StringBuilder text = new StringBuilder(4096);
+        Metrics.writeText(text);
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        try (JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8))) {
+            gson.toJson(body, writer);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, buffer.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            buffer.writeTo(out);
+        }
+    }
+}
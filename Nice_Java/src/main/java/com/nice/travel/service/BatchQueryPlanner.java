@@ -0,0 +1,276 @@
+package com.nice.travel.service;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+import com.nice.travel.model.Route;
+import com.nice.travel.model.TravelRequest;
+import com.nice.travel.search.SearchBudget;
+import com.nice.travel.search.SearchScratch;
+import com.nice.travel.search.SearchStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Groups requests by (source, criteria) so each group costs one single-source search instead of
+ * one search per destination. A {@code Pareto} request costs one multi-criteria search for its
+ * (source, destination) pair, which also answers every single-criterion request for that pair.
+ * Requests for {@code k} > 1 alternatives on the same pair and criteria share one k-shortest-paths
+ * search for the largest {@code k}, since each ranking is a prefix of the longer one. Requests with
+ * the same pair and departure window share one profile search. A request with its own budget or
+ * with constraints is searched alone so its limits apply to its search only.
+ */
+public class BatchQueryPlanner {
+    private final TravelOptimizerService optimizerService;
+    private SearchBudget budget;
+
+    public BatchQueryPlanner(TravelOptimizerService optimizerService) {
+        this.optimizerService = optimizerService;
+    }
+
+    /** Applies {@code budget} to every search of a plan, and its unset limits to requests with their own. */
+    public BatchQueryPlanner withBudget(SearchBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * Returns the optimal path for each request, in request order. A group whose search fails
+     * leaves {@code null} for its requests so the rest of the batch is unaffected. Pareto requests
+     * get their fastest schedule.
+     */
+    public List<List<Route>> plan(TimetableGraph graph, List<TravelRequest> requests, boolean parallel) {
+        List<List<List<Route>>> schedules = planSchedules(graph, requests, parallel);
+        List<List<Route>> paths = new ArrayList<>(schedules.size());
+        for (List<List<Route>> options : schedules) {
+            paths.add(options == null ? null : options.isEmpty() ? new ArrayList<>() : options.get(0));
+        }
+        return paths;
+    }
+
+    /**
+     * Like {@link #plan} but returns every schedule of each request: the non-dominated schedules,
+     * fastest first, for a Pareto request, up to {@code k} ranked schedules for a request with
+     * {@code k} > 1, the fastest schedule per departure, earliest first, for a request with a
+     * departure window, and exactly one (possibly empty) path otherwise.
+     */
+    public List<List<List<Route>>> planSchedules(TimetableGraph graph, List<TravelRequest> requests,
+                                                 boolean parallel) {
+        return planSchedules(graph, requests, parallel, null);
+    }
+
+    /**
+     * Like {@link #planSchedules(TimetableGraph, List, boolean)}, also filling {@code statuses}
+     * (parallel to {@code requests}, or null) with how each request's search ended. Failed
+     * requests keep a null status.
+     */
+    public List<List<List<Route>>> planSchedules(TimetableGraph graph, List<TravelRequest> requests,
+                                                 boolean parallel, SearchStatus[] statuses) {
+        Map<String, List<Integer>> fronts = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TravelRequest request = requests.get(i);
+            if (Criteria.parse(request.getCriteria()) == Criteria.PARETO && !alone(request)) {
+                fronts.computeIfAbsent(pairKey(request), k -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        Map<String, List<Integer>> alternatives = new LinkedHashMap<>();
+        Map<String, List<Integer>> profiles = new LinkedHashMap<>();
+        List<Integer> singles = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TravelRequest request = requests.get(i);
+            List<Integer> front = fronts.get(pairKey(request));
+            if (alone(request)) {
+                singles.add(i);
+            } else if (request.hasDepartureWindow()) {
+                String key = pairKey(request) + '\u0000' + request.getEarliestDeparture() + '\u0000'
+                    + request.getLatestDeparture();
+                profiles.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            } else if (request.getK() > 1 && Criteria.parse(request.getCriteria()) != Criteria.PARETO) {
+                String key = pairKey(request) + '\u0000' + request.getCriteria();
+                alternatives.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            } else if (front != null) {
+                if (Criteria.parse(request.getCriteria()) != Criteria.PARETO) {
+                    front.add(i);
+                }
+            } else {
+                String key = request.getSource() + '\u0000' + request.getCriteria();
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<List<List<Route>>> schedules = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            schedules.add(null);
+        }
+
+        List<Runnable> tasks = new ArrayList<>(fronts.size() + groups.size() + alternatives.size() + profiles.size()
+            + singles.size());
+        for (List<Integer> front : fronts.values()) {
+            tasks.add(limited(budget, front, schedules, statuses, () -> searchFront(graph, requests, front, schedules)));
+        }
+        for (List<Integer> group : alternatives.values()) {
+            tasks.add(limited(budget, group, schedules, statuses,
+                () -> searchAlternatives(graph, requests, group, schedules)));
+        }
+        for (List<Integer> group : profiles.values()) {
+            tasks.add(limited(budget, group, schedules, statuses, () -> searchProfile(graph, requests, group, schedules)));
+        }
+        for (List<Integer> group : groups.values()) {
+            tasks.add(limited(budget, group, schedules, statuses, () -> searchGroup(graph, requests, group, schedules)));
+        }
+        for (int index : singles) {
+            TravelRequest request = requests.get(index);
+            SearchBudget own = new SearchBudget(request.getDeadlineMillis(), request.getMaxSettled(),
+                request.getMaxHops(), null).orElse(budget);
+            List<Integer> single = Collections.singletonList(index);
+            Criteria criteria = Criteria.parse(request.getCriteria());
+            Runnable search = request.getConstraints() != null ? () -> searchConstrained(graph, request, index, schedules)
+                : request.hasDepartureWindow() ? () -> searchProfile(graph, requests, single, schedules)
+                : criteria == Criteria.PARETO ? () -> searchFront(graph, requests, single, schedules)
+                : request.getK() > 1 ? () -> searchAlternatives(graph, requests, single, schedules)
+                : () -> searchGroup(graph, requests, single, schedules);
+            tasks.add(limited(own, single, schedules, statuses, search));
+        }
+        Stream<Runnable> stream = parallel ? tasks.parallelStream() : tasks.stream();
+        stream.forEach(Runnable::run);
+        return schedules;
+    }
+
+    /**
+     * Runs {@code search} under {@code limits} on the worker's scratch and records how it ended
+     * for each request of {@code group}.
+     */
+    private static Runnable limited(SearchBudget limits, List<Integer> group, List<List<List<Route>>> schedules,
+                                    SearchStatus[] statuses, Runnable search) {
+        return () -> {
+            SearchScratch scratch = SearchScratch.current();
+            scratch.limit(limits);
+            try {
+                search.run();
+            } finally {
+                SearchStatus stop = scratch.status();
+                scratch.limit(null);
+                for (int index : group) {
+                    if (statuses != null && schedules.get(index) != null) {
+                        statuses[index] = status(stop, schedules.get(index));
+                    }
+                }
+            }
+        };
+    }
+
+    /** A budget stop wins; the hop limit only explains an empty result. */
+    private static SearchStatus status(SearchStatus stop, List<List<Route>> options) {
+        if (stop != null && stop != SearchStatus.HOP_LIMIT_EXCEEDED) {
+            return stop;
+        }
+        if (!options.isEmpty() && !options.get(0).isEmpty()) {
+            return SearchStatus.OK;
+        }
+        return stop != null ? stop : SearchStatus.NO_ROUTE;
+    }
+
+    private void searchGroup(TimetableGraph graph, List<TravelRequest> requests, List<Integer> group,
+                             List<List<List<Route>>> schedules) {
+        TravelRequest first = requests.get(group.get(0));
+        List<String> destinations = new ArrayList<>(group.size());
+        List<String> requestIds = new ArrayList<>(group.size());
+        for (int index : group) {
+            destinations.add(requests.get(index).getDestination());
+            requestIds.add(requests.get(index).getRequestId());
+        }
+        try {
+            List<List<Route>> groupPaths = optimizerService.findOptimalPaths(
+                graph, first.getSource(), destinations, first.getCriteria(), requestIds);
+            for (int i = 0; i < group.size(); i++) {
+                schedules.set(group.get(i), Collections.singletonList(groupPaths.get(i)));
+            }
+        } catch (RuntimeException e) {
+            // Leave this group's paths null; the caller reports them as failed
+        }
+    }
+
+    private void searchFront(TimetableGraph graph, List<TravelRequest> requests, List<Integer> group,
+                             List<List<List<Route>>> schedules) {
+        TravelRequest first = requests.get(group.get(0));
+        List<String> requestIds = new ArrayList<>(group.size());
+        for (int index : group) {
+            requestIds.add(requests.get(index).getRequestId());
+        }
+        try {
+            List<List<Route>> front = optimizerService.findParetoSchedules(
+                graph, first.getSource(), first.getDestination(), requestIds);
+            for (int index : group) {
+                String criteria = requests.get(index).getCriteria();
+                schedules.set(index, Criteria.parse(criteria) == Criteria.PARETO ? front
+                    : Collections.singletonList(optimizerService.bestSchedule(front, criteria)));
+            }
+        } catch (RuntimeException e) {
+            // Leave this pair's paths null; the caller reports them as failed
+        }
+    }
+
+    private void searchAlternatives(TimetableGraph graph, List<TravelRequest> requests, List<Integer> group,
+                                    List<List<List<Route>>> schedules) {
+        TravelRequest first = requests.get(group.get(0));
+        List<String> requestIds = new ArrayList<>(group.size());
+        int k = 0;
+        for (int index : group) {
+            requestIds.add(requests.get(index).getRequestId());
+            k = Math.max(k, requests.get(index).getK());
+        }
+        try {
+            List<List<Route>> ranked = optimizerService.findAlternativeSchedules(
+                graph, first.getSource(), first.getDestination(), first.getCriteria(), k, requestIds);
+            for (int index : group) {
+                schedules.set(index, ranked.subList(0, Math.min(ranked.size(), requests.get(index).getK())));
+            }
+        } catch (RuntimeException e) {
+            // Leave this pair's paths null; the caller reports them as failed
+        }
+    }
+
+    private void searchProfile(TimetableGraph graph, List<TravelRequest> requests, List<Integer> group,
+                               List<List<List<Route>>> schedules) {
+        TravelRequest first = requests.get(group.get(0));
+        List<String> requestIds = new ArrayList<>(group.size());
+        for (int index : group) {
+            requestIds.add(requests.get(index).getRequestId());
+        }
+        try {
+            List<List<Route>> profile = optimizerService.findProfileSchedules(graph, first.getSource(),
+                first.getDestination(), first.getEarliestDeparture(), first.getLatestDeparture(), requestIds);
+            for (int index : group) {
+                schedules.set(index, profile);
+            }
+        } catch (RuntimeException e) {
+            // Leave this pair's paths null; the caller reports them as failed
+        }
+    }
+
+    private void searchConstrained(TimetableGraph graph, TravelRequest request, int index,
+                                   List<List<List<Route>>> schedules) {
+        try {
+            List<List<Route>> found = optimizerService.findConstrainedSchedules(graph, request.getSource(),
+                request.getDestination(), request.getCriteria(), request.getConstraints(),
+                Collections.singletonList(request.getRequestId()));
+            schedules.set(index, Criteria.parse(request.getCriteria()) == Criteria.PARETO || !found.isEmpty() ? found
+                : Collections.singletonList(new ArrayList<>()));
+        } catch (RuntimeException e) {
+            // Leave this request's paths null; the caller reports it as failed
+        }
+    }
+
+    private static boolean alone(TravelRequest request) {
+        return request.hasBudget() || request.getConstraints() != null;
+    }
+
+    private static String pairKey(TravelRequest request) {
+        return request.getSource() + '\u0000' + request.getDestination();
+    }
+}
@@ -1,104 +1,798 @@
 package com.nice.travel.service;
 
 import com.nice.travel.api.HuggingFaceClient;
+import com.nice.travel.cache.CachedRoute;
+import com.nice.travel.cache.RouteCacheKey;
+import com.nice.travel.cache.RouteResultCache;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.jfr.RouteSearchEvent;
+import com.nice.travel.metrics.Metrics;
+import com.nice.travel.model.Criteria;
 import com.nice.travel.model.Route;
+import com.nice.travel.model.RouteConstraints;
+import com.nice.travel.search.AltSearch;
+import com.nice.travel.search.ConnectionScanSearch;
+import com.nice.travel.search.ConnectivityIndex;
+import com.nice.travel.search.ContractionHierarchy;
+import com.nice.travel.search.ContractionHierarchyBuilder;
+import com.nice.travel.search.DijkstraSearch;
+import com.nice.travel.search.DistanceOracle;
+import com.nice.travel.search.KShortestPaths;
+import com.nice.travel.search.Landmarks;
+import com.nice.travel.search.LayeredSearch;
+import com.nice.travel.search.ParetoFront;
+import com.nice.travel.search.ParetoSearch;
+import com.nice.travel.search.Profile;
+import com.nice.travel.search.ProfileSearch;
+import com.nice.travel.search.SearchScratch;
 import com.nice.travel.util.TimeUtil;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Answers route searches against whichever graph each call passes, keeping one set of per-graph
+ * indexes (connectivity, oracle, landmarks, hierarchies) for the graph seen last. For a compiled
+ * or loaded graph they are built on the first query that needs them. For an
+ * {@linkplain TimetableGraph#incremental() updated version} they are built on a background thread
+ * instead, since the next update replaces that graph; queries against it run unguided until they
+ * land. {@code index_build_seconds} records what each build costs.
+ */
 public class TravelOptimizerService {
-    private final HuggingFaceClient huggingFaceClient = new HuggingFaceClient();
+    private static final Executor INDEX_BUILDS = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "index-build");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    public List<Route> findOptimalPath(Map<String, List<Route>> graph, String start, String end, String criteria) {
-        Map<String, Integer> distances = new HashMap<>();
-        Map<String, List<Route>> paths = new HashMap<>();
-        PriorityQueue<Node> pq = new PriorityQueue<>(Comparator.comparingInt(n -> n.distance));
+    private final HuggingFaceClient huggingFaceClient;
+    private final String apiKey;
+    private final RouteResultCache routeCache;
+    private int landmarkCount;
+    private Landmarks.Strategy landmarkStrategy;
+    private boolean bidirectional;
+    private volatile Landmarks landmarks;
+    private boolean buildHierarchies;
+    private final Map<Criteria, ContractionHierarchy> hierarchies = new ConcurrentHashMap<>();
+    private int oracleMaxCities;
+    private long oracleMaxBytes;
+    private volatile DistanceOracle oracle;
+    private volatile ConnectivityIndex connectivity;
+    private final AtomicReference<TimetableGraph> pendingIndexes = new AtomicReference<>();
 
-        distances.put(start, 0);
-        paths.put(start, new ArrayList<>());
-        pq.offer(new Node(start, 0, new ArrayList<>()));
+    public TravelOptimizerService() {
+        this(null);
+    }
+
+    public TravelOptimizerService(RouteResultCache routeCache) {
+        this(routeCache, new HuggingFaceClient(), System.getenv("HUGGINGFACE_API_KEY"));
+    }
+
+    public TravelOptimizerService(RouteResultCache routeCache, HuggingFaceClient huggingFaceClient, String apiKey) {
+        this.routeCache = routeCache;
+        this.huggingFaceClient = huggingFaceClient;
+        this.apiKey = apiKey;
+    }
+
+    public RouteResultCache getRouteCache() { return routeCache; }
+
+    /**
+     * Answers one-to-one Cost and Hops searches with landmark-guided A* ({@link AltSearch}),
+     * optionally bidirectional. Landmarks are computed on the first such query against each graph
+     * instance. Call before the service is shared between threads.
+     */
+    public TravelOptimizerService withLandmarks(int count, Landmarks.Strategy strategy, boolean bidirectional) {
+        this.landmarkCount = count;
+        this.landmarkStrategy = strategy;
+        this.bidirectional = bidirectional;
+        return this;
+    }
+
+    /**
+     * Answers one-to-one Cost and Hops searches from contraction hierarchies, building them on the
+     * first such query against each graph instance. Call before the service is shared.
+     */
+    public TravelOptimizerService withHierarchies(boolean build) {
+        this.buildHierarchies = build;
+        return this;
+    }
+
+    /** Registers a prebuilt hierarchy, e.g. one read next to a snapshot; it serves only its own graph. */
+    public void addHierarchy(ContractionHierarchy hierarchy) {
+        hierarchies.put(hierarchy.criteria(), hierarchy);
+    }
+
+    /**
+     * Answers every Time, Cost and Hops search from a {@link DistanceOracle} for graphs with at most
+     * {@code maxCities} cities whose matrices fit in {@code maxBytes}. The oracle is built on the
+     * first query against each such graph instance. Call before the service is shared.
+     */
+    public TravelOptimizerService withOracle(int maxCities, long maxBytes) {
+        this.oracleMaxCities = maxCities;
+        this.oracleMaxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * The oracle serving {@code graph}, built now if needed; null if the graph is over the
+     * thresholds or is an updated version whose oracle is still being built.
+     */
+    public DistanceOracle oracleFor(TimetableGraph graph) {
+        if (!oracleFits(graph)) {
+            return null;
+        }
+        DistanceOracle current = oracle;
+        if (current != null && current.graph() == graph) {
+            return current;
+        }
+        return graph.incremental() ? buildLater(graph) : buildOracle(graph);
+    }
+
+    private boolean oracleFits(TimetableGraph graph) {
+        int cities = graph.cityCount();
+        return cities <= oracleMaxCities && DistanceOracle.estimateBytes(cities) <= oracleMaxBytes;
+    }
+
+    private synchronized DistanceOracle buildOracle(TimetableGraph graph) {
+        DistanceOracle current = oracle;
+        if (current == null || current.graph() != graph) {
+            long started = Metrics.enabled() ? System.nanoTime() : 0;
+            current = DistanceOracle.build(graph, true);
+            recordIndexBuild(started);
+            oracle = current;
+        }
+        return current;
+    }
+
+    /** Bytes held by the current oracle, 0 if none has been built. */
+    public long oracleBytes() {
+        DistanceOracle current = oracle;
+        return current != null ? current.memoryBytes() : 0;
+    }
+
+    /**
+     * Component IDs of {@code graph}, computed on first use against each graph instance; null for an
+     * updated version whose index is still being built.
+     */
+    public ConnectivityIndex connectivityFor(TimetableGraph graph) {
+        ConnectivityIndex current = connectivity;
+        if (current != null && current.graph() == graph) {
+            return current;
+        }
+        return graph.incremental() ? buildLater(graph) : buildConnectivity(graph);
+    }
+
+    private synchronized ConnectivityIndex buildConnectivity(TimetableGraph graph) {
+        ConnectivityIndex current = connectivity;
+        if (current == null || current.graph() != graph) {
+            long started = Metrics.enabled() ? System.nanoTime() : 0;
+            current = ConnectivityIndex.compute(graph);
+            recordIndexBuild(started);
+            connectivity = current;
+        }
+        return current;
+    }
+
+    /** False if the cities are unknown, equal or provably disconnected, so no search is needed. */
+    private boolean searchable(TimetableGraph graph, int source, int target) {
+        if (source < 0 || target < 0 || source == target) {
+            return false;
+        }
+        ConnectivityIndex index = connectivityFor(graph);
+        return index == null || index.mayReach(source, target);
+    }
+
+    /**
+     * Queues every enabled index of an updated version for the background builder and returns null
+     * so the caller searches without it. Only the version queued last is built.
+     */
+    private <T> T buildLater(TimetableGraph graph) {
+        if (pendingIndexes.get() != graph && pendingIndexes.getAndSet(graph) != graph) {
+            INDEX_BUILDS.execute(this::buildPendingIndexes);
+        }
+        return null;
+    }
+
+    private void buildPendingIndexes() {
+        TimetableGraph graph = pendingIndexes.get();
+        buildConnectivity(graph);
+        if (oracleFits(graph)) {
+            buildOracle(graph);
+        }
+        if (landmarkCount > 0) {
+            buildLandmarks(graph);
+        }
+        if (buildHierarchies) {
+            for (Criteria criteria : Criteria.values()) {
+                if (ContractionHierarchy.supports(criteria)) {
+                    buildHierarchy(graph, criteria);
+                }
+            }
+        }
+    }
+
+    private static void recordIndexBuild(long started) {
+        if (Metrics.enabled()) {
+            Metrics.INDEX_BUILD.recordSince(started);
+        }
+    }
+
+    private ContractionHierarchy hierarchyFor(TimetableGraph graph, Criteria criteria) {
+        ContractionHierarchy current = hierarchies.get(criteria);
+        if (current != null && current.graph() == graph) {
+            return current;
+        }
+        if (!buildHierarchies || !ContractionHierarchy.supports(criteria)) {
+            return null;
+        }
+        return graph.incremental() ? buildLater(graph) : buildHierarchy(graph, criteria);
+    }
+
+    private ContractionHierarchy buildHierarchy(TimetableGraph graph, Criteria criteria) {
+        synchronized (hierarchies) {
+            ContractionHierarchy current = hierarchies.get(criteria);
+            if (current == null || current.graph() != graph) {
+                long started = Metrics.enabled() ? System.nanoTime() : 0;
+                current = new ContractionHierarchyBuilder(graph, criteria).build();
+                recordIndexBuild(started);
+                hierarchies.put(criteria, current);
+            }
+            return current;
+        }
+    }
+
+    private Landmarks landmarksFor(TimetableGraph graph, Criteria criteria) {
+        if (landmarkCount <= 0 || !Landmarks.supports(criteria)) {
+            return null;
+        }
+        Landmarks current = landmarks;
+        if (current != null && current.graph() == graph) {
+            return current;
+        }
+        return graph.incremental() ? buildLater(graph) : buildLandmarks(graph);
+    }
+
+    private synchronized Landmarks buildLandmarks(TimetableGraph graph) {
+        Landmarks current = landmarks;
+        if (current == null || current.graph() != graph) {
+            long started = Metrics.enabled() ? System.nanoTime() : 0;
+            current = Landmarks.compute(graph, landmarkCount, landmarkStrategy, graph.fingerprint());
+            recordIndexBuild(started);
+            landmarks = current;
+        }
+        return current;
+    }
+
+    /** True if one-to-one searches under {@code criteria} have something faster than plain Dijkstra. */
+    private boolean guided(TimetableGraph graph, Criteria criteria) {
+        return hierarchyFor(graph, criteria) != null || landmarksFor(graph, criteria) != null;
+    }
+
+    private int searchTo(TimetableGraph graph, int source, int target, Criteria criteria, SearchScratch scratch) {
+        if (scratch.limitsHops()) {
+            return DijkstraSearch.search(graph, source, target, criteria, scratch);
+        }
+        ContractionHierarchy hierarchy = hierarchyFor(graph, criteria);
+        if (hierarchy != null) {
+            return hierarchy.search(source, target, scratch);
+        }
+        Landmarks guide = landmarksFor(graph, criteria);
+        if (guide == null) {
+            return DijkstraSearch.search(graph, source, target, criteria, scratch);
+        }
+        return bidirectional
+            ? AltSearch.searchBidirectional(guide, source, target, criteria, scratch)
+            : AltSearch.search(guide, source, target, criteria, scratch);
+    }
+
+    public List<Route> findOptimalPath(TimetableGraph graph, String start, String end, String criteria) {
+        RouteSearchEvent event = new RouteSearchEvent();
+        event.begin();
+        long started = Metrics.enabled() ? System.nanoTime() : 0;
+        List<Route> path = lookupPath(graph, start, end, criteria, event);
+        if (Metrics.enabled()) {
+            Metrics.QUERY.recordSince(started);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = start;
+            event.destinations = end;
+            event.destinationCount = 1;
+            event.criteria = criteria;
+            event.pathLength = path.size();
+            event.commit();
+        }
+        return path;
+    }
+
+    private List<Route> lookupPath(TimetableGraph graph, String start, String end, String criteria,
+                                   RouteSearchEvent event) {
+        if (routeCache == null || SearchScratch.current().limitsHops()) {
+            return searchPath(graph, start, end, criteria, event);
+        }
+        RouteCacheKey key = new RouteCacheKey(start, end, criteria, graph.fingerprint());
+        CachedRoute cached = routeCache.get(key);
+        if (cached != null) {
+            return new ArrayList<>(cached.getSchedule());
+        }
+        List<Route> path = searchPath(graph, start, end, criteria, event);
+        if (SearchScratch.current().status() == null) {
+            routeCache.put(key, new CachedRoute(path, calculateValue(path, criteria)));
+        }
+        return path;
+    }
+
+    private List<Route> searchPath(TimetableGraph graph, String start, String end, String criteria,
+                                   RouteSearchEvent event) {
+        int source = graph.cityId(start);
+        int target = graph.cityId(end);
+        if (!searchable(graph, source, target)) {
+            return new ArrayList<>();
+        }
+
+        SearchScratch scratch = SearchScratch.current();
+        Criteria parsed = singleCriteria(criteria);
+        DistanceOracle lookup = scratch.limitsHops() ? null : oracleFor(graph);
+        int value = lookup != null ? lookup.search(source, target, parsed, scratch)
+            : parsed == Criteria.TIME ? ConnectionScanSearch.search(graph, source, target, scratch)
+            : searchTo(graph, source, target, parsed, scratch);
+        event.searched(scratch);
+        if (Metrics.enabled()) {
+            recordSearch(scratch, value < 0 ? 0 : scratch.pathLength());
+        }
+        if (value < 0) {
+            return new ArrayList<>();
+        }
+        return toRoutes(graph, scratch);
+    }
+
+    /**
+     * One-to-many form of {@link #findOptimalPath}: a single search from {@code start} answers every
+     * destination. The returned list is parallel to {@code ends}.
+     */
+    public List<List<Route>> findOptimalPaths(TimetableGraph graph, String start, List<String> ends, String criteria) {
+        return findOptimalPaths(graph, start, ends, criteria, null);
+    }
+
+    /** {@code requestIds}, parallel to {@code ends}, only label the search in flight recordings. */
+    public List<List<Route>> findOptimalPaths(TimetableGraph graph, String start, List<String> ends, String criteria,
+                                              List<String> requestIds) {
+        RouteSearchEvent event = new RouteSearchEvent();
+        event.begin();
+        long started = Metrics.enabled() ? System.nanoTime() : 0;
+        List<List<Route>> paths = lookupPaths(graph, start, ends, criteria, event);
+        if (Metrics.enabled()) {
+            Metrics.GROUP_QUERY.recordSince(started);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.requestIds = requestIds != null ? String.join(",", requestIds) : null;
+            event.source = start;
+            event.destinations = String.join(",", ends);
+            event.destinationCount = ends.size();
+            event.criteria = criteria;
+            for (List<Route> path : paths) {
+                event.pathLength = Math.max(event.pathLength, path.size());
+            }
+            event.commit();
+        }
+        return paths;
+    }
+
+    private List<List<Route>> lookupPaths(TimetableGraph graph, String start, List<String> ends, String criteria,
+                                          RouteSearchEvent event) {
+        if (routeCache == null || SearchScratch.current().limitsHops()) {
+            return searchPaths(graph, start, ends, criteria, event);
+        }
+
+        List<List<Route>> paths = new ArrayList<>(ends.size());
+        List<String> missed = new ArrayList<>();
+        for (String end : ends) {
+            CachedRoute cached = routeCache.get(new RouteCacheKey(start, end, criteria, graph.fingerprint()));
+            if (cached != null) {
+                paths.add(new ArrayList<>(cached.getSchedule()));
+            } else {
+                paths.add(null);
+                missed.add(end);
+            }
+        }
+        if (missed.isEmpty()) {
+            return paths;
+        }
+
+        List<List<Route>> computed = searchPaths(graph, start, missed, criteria, event);
+        boolean complete = SearchScratch.current().status() == null;
+        for (int i = 0, m = 0; i < paths.size(); i++) {
+            if (paths.get(i) == null) {
+                List<Route> path = computed.get(m++);
+                if (complete) {
+                    routeCache.put(new RouteCacheKey(start, ends.get(i), criteria, graph.fingerprint()),
+                        new CachedRoute(path, calculateValue(path, criteria)));
+                }
+                paths.set(i, path);
+            }
+        }
+        return paths;
+    }
+
+    private List<List<Route>> searchPaths(TimetableGraph graph, String start, List<String> ends, String criteria,
+                                          RouteSearchEvent event) {
+        List<List<Route>> paths = new ArrayList<>(ends.size());
+        int source = graph.cityId(start);
+        int[] targets = new int[ends.size()];
+        int count = 0;
+        for (String end : ends) {
+            int target = graph.cityId(end);
+            if (searchable(graph, source, target)) {
+                targets[count++] = target;
+            }
+        }
+        Arrays.sort(targets, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || targets[distinct - 1] != targets[i]) {
+                targets[distinct++] = targets[i];
+            }
+        }
+
+        SearchScratch scratch = SearchScratch.current();
+        Criteria parsed = singleCriteria(criteria);
+        int[][] edgePaths = null;
+        DistanceOracle lookup = distinct > 0 && !scratch.limitsHops() ? oracleFor(graph) : null;
+        if (lookup != null) {
+            edgePaths = new int[distinct][];
+            for (int t = 0; t < distinct; t++) {
+                if (lookup.search(source, targets[t], parsed, scratch) >= 0) {
+                    edgePaths[t] = new int[scratch.pathLength()];
+                    for (int e = 0; e < edgePaths[t].length; e++) {
+                        edgePaths[t][e] = scratch.pathEdge(e);
+                    }
+                }
+            }
+            event.searched(scratch);
+            if (Metrics.enabled()) {
+                recordSearch(scratch, -1);
+            }
+        } else if (distinct > 0) {
+            if (parsed == Criteria.TIME) {
+                edgePaths = new int[distinct][];
+                ConnectionScanSearch.searchMany(graph, source, targets, distinct, scratch, new int[distinct], edgePaths);
+            } else if (distinct == 1 && !scratch.limitsHops() && guided(graph, parsed)) {
+                edgePaths = new int[1][];
+                if (searchTo(graph, source, targets[0], parsed, scratch) >= 0) {
+                    edgePaths[0] = new int[scratch.pathLength()];
+                    for (int e = 0; e < edgePaths[0].length; e++) {
+                        edgePaths[0][e] = scratch.pathEdge(e);
+                    }
+                }
+            } else {
+                DijkstraSearch.searchMany(graph, source, targets, distinct, parsed, scratch);
+            }
+            event.searched(scratch);
+            if (Metrics.enabled()) {
+                recordSearch(scratch, -1);
+            }
+            if (scratch.stopped()) {
+                edgePaths = new int[distinct][];
+            }
+        }
+
+        for (String end : ends) {
+            int target = graph.cityId(end);
+            int index = target < 0 ? -1 : Arrays.binarySearch(targets, 0, distinct, target);
+            if (index < 0) {
+                paths.add(new ArrayList<>());
+            } else if (edgePaths != null) {
+                List<Route> path = new ArrayList<>();
+                if (edgePaths[index] != null) {
+                    for (int edge : edgePaths[index]) {
+                        path.add(graph.route(edge));
+                    }
+                }
+                if (Metrics.enabled()) {
+                    Metrics.PATH_LENGTH.record(path.size());
+                }
+                paths.add(path);
+            } else if (scratch.distance(target) == Integer.MAX_VALUE) {
+                paths.add(new ArrayList<>());
+            } else {
+                DijkstraSearch.extractPath(graph, scratch, target);
+                if (Metrics.enabled()) {
+                    Metrics.PATH_LENGTH.record(scratch.pathLength());
+                }
+                paths.add(toRoutes(graph, scratch));
+            }
+        }
+        return paths;
+    }
 
-        while (!pq.isEmpty()) {
-            Node current = pq.poll();
+    /** A single schedule for {@link Criteria#PARETO} is the fastest option of the front. */
+    private static Criteria singleCriteria(String criteria) {
+        Criteria parsed = Criteria.parse(criteria);
+        return parsed == Criteria.PARETO ? Criteria.TIME : parsed;
+    }
 
-            if (current.city.equals(end)) {
-                return current.path;
+    /**
+     * Every non-dominated schedule from {@code start} to {@code end} under total time, total cost
+     * and hops, fastest first, from a single multi-criteria search. Empty if unreachable.
+     */
+    public List<List<Route>> findParetoSchedules(TimetableGraph graph, String start, String end,
+                                                 List<String> requestIds) {
+        RouteSearchEvent event = new RouteSearchEvent();
+        event.begin();
+        long started = Metrics.enabled() ? System.nanoTime() : 0;
+        List<List<Route>> schedules = new ArrayList<>();
+        int source = graph.cityId(start);
+        int target = graph.cityId(end);
+        if (searchable(graph, source, target)) {
+            SearchScratch scratch = SearchScratch.current();
+            ParetoFront front = ParetoSearch.search(graph, source, target, scratch);
+            event.searched(scratch);
+            if (Metrics.enabled()) {
+                recordSearch(scratch, front.size() == 0 ? 0 : front.hops(0));
+            }
+            for (int i = 0; i < front.size(); i++) {
+                List<Route> schedule = new ArrayList<>(front.hops(i));
+                for (int edge : front.path(i)) {
+                    schedule.add(graph.route(edge));
+                }
+                schedules.add(schedule);
             }
+        }
+        return finishSingle(event, started, requestIds, start, end, Criteria.PARETO.getLabel(), schedules);
+    }
 
-            if (current.distance > distances.getOrDefault(current.city, Integer.MAX_VALUE)) {
-                continue;
+    /**
+     * Up to {@code k} loopless schedules from {@code start} to {@code end}, best first under
+     * {@code criteria}, from one incremental k-shortest-paths search. Empty if unreachable.
+     */
+    public List<List<Route>> findAlternativeSchedules(TimetableGraph graph, String start, String end,
+                                                      String criteria, int k, List<String> requestIds) {
+        RouteSearchEvent event = new RouteSearchEvent();
+        event.begin();
+        long started = Metrics.enabled() ? System.nanoTime() : 0;
+        List<List<Route>> schedules = new ArrayList<>();
+        int source = graph.cityId(start);
+        int target = graph.cityId(end);
+        if (searchable(graph, source, target)) {
+            SearchScratch scratch = SearchScratch.current();
+            int[][] paths = KShortestPaths.search(graph, source, target, singleCriteria(criteria), k, scratch);
+            event.searched(scratch);
+            if (Metrics.enabled()) {
+                recordSearch(scratch, paths.length == 0 ? 0 : paths[0].length);
             }
+            for (int[] path : scratch.stopped() ? new int[0][] : paths) {
+                List<Route> schedule = new ArrayList<>(path.length);
+                for (int edge : path) {
+                    schedule.add(graph.route(edge));
+                }
+                schedules.add(schedule);
+            }
+        }
+        return finishSingle(event, started, requestIds, start, end, criteria, schedules);
+    }
 
-            for (Route route : graph.getOrDefault(current.city, new ArrayList<>())) {
-                int weight = getWeight(route, criteria);
-                int newDistance = current.distance + weight;
+    /**
+     * For every departure time in {@code [earliestDeparture, latestDeparture]} (minutes of the day;
+     * a window ending before it starts wraps past midnight), the fastest schedule leaving then,
+     * keeping only those no later departure matches in arrival. Ordered by departure, from one
+     * profile search. Empty if unreachable.
+     */
+    public List<List<Route>> findProfileSchedules(TimetableGraph graph, String start, String end,
+                                                  int earliestDeparture, int latestDeparture,
+                                                  List<String> requestIds) {
+        RouteSearchEvent event = new RouteSearchEvent();
+        event.begin();
+        long started = Metrics.enabled() ? System.nanoTime() : 0;
+        List<List<Route>> schedules = new ArrayList<>();
+        int source = graph.cityId(start);
+        int target = graph.cityId(end);
+        if (searchable(graph, source, target)) {
+            int latest = latestDeparture < earliestDeparture
+                ? latestDeparture + TimeUtil.MINUTES_PER_DAY : latestDeparture;
+            SearchScratch scratch = SearchScratch.current();
+            Profile profile = ProfileSearch.search(graph, source, target, earliestDeparture, latest, scratch);
+            event.searched(scratch);
+            if (Metrics.enabled()) {
+                recordSearch(scratch, profile.size() == 0 ? 0 : profile.path(0).length);
+            }
+            for (int i = 0; i < profile.size(); i++) {
+                List<Route> schedule = new ArrayList<>(profile.path(i).length);
+                for (int edge : profile.path(i)) {
+                    schedule.add(graph.route(edge));
+                }
+                schedules.add(schedule);
+            }
+        }
+        return finishSingle(event, started, requestIds, start, end, Criteria.TIME.getLabel(), schedules);
+    }
 
-                if (newDistance < distances.getOrDefault(route.getDestination(), Integer.MAX_VALUE)) {
-                    distances.put(route.getDestination(), newDistance);
-                    List<Route> newPath = new ArrayList<>(current.path);
-                    newPath.add(route);
-                    pq.offer(new Node(route.getDestination(), newDistance, newPath));
+    /**
+     * Schedules from {@code start} to {@code end} that meet {@code constraints}: the whole front
+     * for {@code Pareto}, otherwise the single best schedule under {@code criteria}, or none.
+     * Modes are filtered and connection times enforced inside the searches on the unmodified
+     * graph. Hop and cost limits are met exactly by a Pareto scan for Time and by a
+     * {@link LayeredSearch} for Cost and Hops. Results are not cached.
+     */
+    public List<List<Route>> findConstrainedSchedules(TimetableGraph graph, String start, String end,
+                                                      String criteria, RouteConstraints constraints,
+                                                      List<String> requestIds) {
+        RouteSearchEvent event = new RouteSearchEvent();
+        event.begin();
+        long started = Metrics.enabled() ? System.nanoTime() : 0;
+        List<List<Route>> schedules = new ArrayList<>();
+        int source = graph.cityId(start);
+        int target = graph.cityId(end);
+        if (searchable(graph, source, target)) {
+            Criteria parsed = Criteria.parse(criteria);
+            boolean capped = constraints.getMaxHops() > 0 || constraints.getMaxCost() > 0;
+            SearchScratch scratch = SearchScratch.current();
+            scratch.constrain(constraints, graph);
+            try {
+                if (parsed == Criteria.PARETO || parsed == Criteria.TIME && capped) {
+                    ParetoFront front = ParetoSearch.search(graph, source, target, scratch);
+                    int options = parsed == Criteria.PARETO ? front.size() : Math.min(1, front.size());
+                    for (int i = 0; i < options; i++) {
+                        List<Route> schedule = new ArrayList<>(front.hops(i));
+                        for (int edge : front.path(i)) {
+                            schedule.add(graph.route(edge));
+                        }
+                        schedules.add(schedule);
+                    }
+                } else {
+                    int value = parsed == Criteria.TIME ? ConnectionScanSearch.search(graph, source, target, scratch)
+                        : constraints.getMaxHops() > 0 || parsed == Criteria.HOPS && constraints.getMaxCost() > 0
+                        ? LayeredSearch.search(graph, source, target, parsed, scratch)
+                        : DijkstraSearch.search(graph, source, target, parsed, scratch);
+                    if (value >= 0 && (parsed != Criteria.COST || constraints.getMaxCost() == 0
+                            || value <= constraints.getMaxCost())) {
+                        schedules.add(toRoutes(graph, scratch));
+                    }
                 }
+            } finally {
+                scratch.constrain(null, graph);
+            }
+            event.searched(scratch);
+            if (Metrics.enabled()) {
+                recordSearch(scratch, schedules.isEmpty() ? 0 : schedules.get(0).size());
             }
         }
+        return finishSingle(event, started, requestIds, start, end, criteria, schedules);
+    }
 
-        return new ArrayList<>();
+    /** Records the latency of a one-destination schedule search and commits its event. */
+    private static List<List<Route>> finishSingle(RouteSearchEvent event, long started, List<String> requestIds,
+                                                  String start, String end, String criteria,
+                                                  List<List<Route>> schedules) {
+        if (Metrics.enabled()) {
+            Metrics.QUERY.recordSince(started);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.requestIds = requestIds != null ? String.join(",", requestIds) : null;
+            event.source = start;
+            event.destinations = end;
+            event.destinationCount = 1;
+            event.criteria = criteria;
+            event.pathLength = schedules.isEmpty() ? 0 : schedules.get(0).size();
+            event.commit();
+        }
+        return schedules;
     }
 
-    private int getWeight(Route route, String criteria) {
-        switch (criteria) {
-            case "Time": return route.getDuration();
-            case "Cost": return route.getCost();
-            case "Hops": return 1;
-            default: return route.getDuration();
+    /**
+     * The schedule in {@code schedules} that is optimal under {@code criteria}, ties broken by
+     * time, cost and hops; an empty schedule if there are none. Applied to a Pareto front this
+     * answers a single-criterion request without another search.
+     */
+    public List<Route> bestSchedule(List<List<Route>> schedules, String criteria) {
+        Criteria parsed = singleCriteria(criteria);
+        List<Route> best = null;
+        int[] bestKey = null;
+        for (List<Route> schedule : schedules) {
+            int time = calculateTotalTime(schedule);
+            int cost = calculateTotalCost(schedule);
+            int primary = parsed == Criteria.COST ? cost : parsed == Criteria.HOPS ? schedule.size() : time;
+            int[] key = {primary, time, cost, schedule.size()};
+            if (best == null || compareKeys(key, bestKey) < 0) {
+                best = schedule;
+                bestKey = key;
+            }
         }
+        return best != null ? new ArrayList<>(best) : new ArrayList<>();
+    }
+
+    private static int compareKeys(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i], b[i]);
+            }
+        }
+        return 0;
+    }
+
+    /** {@code pathLength} < 0 skips the path length, which one-to-many searches record per target. */
+    private static void recordSearch(SearchScratch scratch, int pathLength) {
+        Metrics.SEARCHES.increment();
+        Metrics.SEARCH_SETTLED.record(scratch.settled());
+        Metrics.SEARCH_RELAXED.record(scratch.relaxed());
+        Metrics.SEARCH_PUSHES.record(scratch.pushes());
+        if (pathLength >= 0) {
+            Metrics.PATH_LENGTH.record(pathLength);
+        }
+    }
+
+    private List<Route> toRoutes(TimetableGraph graph, SearchScratch scratch) {
+        List<Route> path = new ArrayList<>(scratch.pathLength());
+        for (int i = 0; i < scratch.pathLength(); i++) {
+            path.add(graph.route(scratch.pathEdge(i)));
+        }
+        return path;
     }
 
     public String generateTravelSummary(List<Route> path, int totalTime, boolean genSummary) {
+        return generateTravelSummaryAsync(path, totalTime, genSummary, Long.MAX_VALUE).join();
+    }
+
+    /**
+     * Non-blocking form of {@link #generateTravelSummary}; the remote call runs in the background
+     * and falls back to "Not generated" once {@code deadlineNanos} passes.
+     */
+    public CompletableFuture<String> generateTravelSummaryAsync(List<Route> path, int totalTime, boolean genSummary,
+                                                                long deadlineNanos) {
         if (!genSummary) {
-            return "Not generated";
+            return CompletableFuture.completedFuture("Not generated");
         }
 
         if (path.isEmpty()) {
-            return "No routes available";
+            return CompletableFuture.completedFuture("No routes available");
         }
 
-        String apiKey = System.getenv("HUGGINGFACE_API_KEY");
         int hours = totalTime / 60;
         int minutes = totalTime % 60;
         String prompt = String.format("Summarize travel route: %d segments, %dh %dm total", 
                                     path.size(), hours, minutes);
 
-        return huggingFaceClient.generateSummary(prompt, apiKey);
+        return huggingFaceClient.generateSummaryAsync(prompt, apiKey, deadlineNanos);
     }
 
     public int calculateTotalTime(List<Route> path) {
+        return calculateTotalTime(path, 0);
+    }
+
+    /** Total time when every connection must allow at least {@code minConnection} minutes. */
+    public int calculateTotalTime(List<Route> path, int minConnection) {
         int totalTime = 0;
         for (int i = 0; i < path.size(); i++) {
             totalTime += path.get(i).getDuration();
             if (i < path.size() - 1) {
                 totalTime += TimeUtil.calculateWaitingTime(
-                    path.get(i).getArrivalTime(), 
-                    path.get(i + 1).getDepartureTime()
+                    TimeUtil.timeToMinutes(path.get(i).getArrivalTime()),
+                    TimeUtil.timeToMinutes(path.get(i + 1).getDepartureTime()),
+                    minConnection
                 );
             }
         }
         return totalTime;
     }
 
-    public int calculateTotalCost(List<Route> path) {
-        return path.stream().mapToInt(Route::getCost).sum();
+    public int calculateValue(List<Route> path, String criteria) {
+        return calculateValue(path, criteria, 0);
     }
 
-    static class Node {
-        String city;
-        int distance;
-        List<Route> path;
-
-        Node(String city, int distance, List<Route> path) {
-            this.city = city;
-            this.distance = distance;
-            this.path = path;
+    public int calculateValue(List<Route> path, String criteria, int minConnection) {
+        if (path.isEmpty()) {
+            return 0;
         }
+        return criteria.equals("Time") ? calculateTotalTime(path, minConnection) :
+               criteria.equals("Cost") ? calculateTotalCost(path) : path.size();
+    }
+
+    public int calculateTotalCost(List<Route> path) {
+        return path.stream().mapToInt(Route::getCost).sum();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,209 @@
+package com.nice.travel.shard;
+
+import com.nice.travel.graph.TimetableGraph;
+
+import java.util.Arrays;
+
+/**
+ * Balanced partition of the cities into shards with few routes between them. Shards grow by
+ * breadth-first search from seeds that lie far apart, each capped at its share of the cities,
+ * and are then refined by moving single cities to the shard holding most of their routes while
+ * that lowers the cut and keeps every shard within {@link #IMBALANCE} of its share.
+ */
+public final class GraphPartitioner {
+    static final double IMBALANCE = 0.05;
+    private static final int REFINE_PASSES = 20;
+
+    private GraphPartitioner() {
+    }
+
+    /** Shard of every city ID, in {@code [0, shards)}. */
+    public static int[] partition(TimetableGraph graph, int shards) {
+        int cities = graph.cityCount();
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards must be positive");
+        }
+        int[][] neighbours = neighbours(graph);
+        int[] shardOf = new int[cities];
+        Arrays.fill(shardOf, -1);
+        if (cities == 0) {
+            return shardOf;
+        }
+        int share = (cities + shards - 1) / shards;
+        int[] sizes = new int[shards];
+        grow(neighbours, seeds(neighbours, shards), shardOf, sizes, share);
+        for (int c = 0; c < cities; c++) {
+            if (shardOf[c] < 0) {
+                int smallest = 0;
+                for (int s = 1; s < shards; s++) {
+                    if (sizes[s] < sizes[smallest]) {
+                        smallest = s;
+                    }
+                }
+                shardOf[c] = smallest;
+                sizes[smallest]++;
+            }
+        }
+        refine(neighbours, shardOf, sizes, shards, cities);
+        return shardOf;
+    }
+
+    /** Number of routes whose endpoints lie in different shards. */
+    public static int cut(TimetableGraph graph, int[] shardOf) {
+        int cut = 0;
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            if (shardOf[graph.source(edge)] != shardOf[graph.target(edge)]) {
+                cut++;
+            }
+        }
+        return cut;
+    }
+
+    /** Undirected adjacency with one entry per route, so parallel routes weigh more. */
+    private static int[][] neighbours(TimetableGraph graph) {
+        int cities = graph.cityCount();
+        int[] degrees = new int[cities];
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            if (graph.source(edge) != graph.target(edge)) {
+                degrees[graph.source(edge)]++;
+                degrees[graph.target(edge)]++;
+            }
+        }
+        int[][] neighbours = new int[cities][];
+        for (int c = 0; c < cities; c++) {
+            neighbours[c] = new int[degrees[c]];
+        }
+        Arrays.fill(degrees, 0);
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            int source = graph.source(edge);
+            int target = graph.target(edge);
+            if (source != target) {
+                neighbours[source][degrees[source]++] = target;
+                neighbours[target][degrees[target]++] = source;
+            }
+        }
+        return neighbours;
+    }
+
+    /** Farthest-first seeds by hop distance: each maximizes its distance to the seeds before it. */
+    private static int[] seeds(int[][] neighbours, int shards) {
+        int cities = neighbours.length;
+        int[] seeds = new int[Math.min(shards, cities)];
+        int[] nearest = new int[cities];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        int[] hops = new int[cities];
+        int candidate = farthest(neighbours, 0, hops);
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = candidate;
+            farthest(neighbours, candidate, hops);
+            candidate = -1;
+            for (int c = 0; c < cities; c++) {
+                nearest[c] = Math.min(nearest[c], hops[c]);
+                if (nearest[c] > 0 && (candidate < 0 || nearest[c] > nearest[candidate])) {
+                    candidate = c;
+                }
+            }
+            if (candidate < 0) {
+                return Arrays.copyOf(seeds, i + 1);
+            }
+        }
+        return seeds;
+    }
+
+    /** Breadth-first hop counts from {@code root} (unreachable cities get {@code Integer.MAX_VALUE}); returns the last city reached. */
+    private static int farthest(int[][] neighbours, int root, int[] hops) {
+        Arrays.fill(hops, Integer.MAX_VALUE);
+        int[] queue = new int[hops.length];
+        int head = 0;
+        int tail = 0;
+        hops[root] = 0;
+        queue[tail++] = root;
+        while (head < tail) {
+            int city = queue[head++];
+            for (int next : neighbours[city]) {
+                if (hops[next] == Integer.MAX_VALUE) {
+                    hops[next] = hops[city] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return queue[tail - 1];
+    }
+
+    /**
+     * Grows all shards one city at a time in turn until each is full or has no frontier left. A city
+     * joins one frontier once, so the frontiers are FIFO lists threaded through {@code following}.
+     */
+    private static void grow(int[][] neighbours, int[] seeds, int[] shardOf, int[] sizes, int share) {
+        int[] following = new int[shardOf.length];
+        int[] heads = new int[seeds.length];
+        int[] tails = new int[seeds.length];
+        for (int s = 0; s < seeds.length; s++) {
+            shardOf[seeds[s]] = s;
+            sizes[s]++;
+            heads[s] = tails[s] = seeds[s];
+            following[seeds[s]] = -1;
+        }
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (int s = 0; s < seeds.length; s++) {
+                while (sizes[s] < share && heads[s] >= 0) {
+                    int claimed = claim(neighbours, heads[s], shardOf, s);
+                    if (claimed >= 0) {
+                        following[tails[s]] = claimed;
+                        following[claimed] = -1;
+                        tails[s] = claimed;
+                        sizes[s]++;
+                        grew = true;
+                        break;
+                    }
+                    heads[s] = following[heads[s]];
+                }
+            }
+        }
+    }
+
+    /** Assigns the next unassigned neighbour of {@code city} to {@code shard}, or returns -1 if it has none left. */
+    private static int claim(int[][] neighbours, int city, int[] shardOf, int shard) {
+        for (int next : neighbours[city]) {
+            if (shardOf[next] < 0) {
+                shardOf[next] = shard;
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    private static void refine(int[][] neighbours, int[] shardOf, int[] sizes, int shards, int cities) {
+        int share = (cities + shards - 1) / shards;
+        int max = (int) Math.ceil(share * (1 + IMBALANCE));
+        int min = (int) Math.floor(cities / (double) shards * (1 - IMBALANCE));
+        int[] links = new int[shards];
+        for (int pass = 0; pass < REFINE_PASSES; pass++) {
+            boolean moved = false;
+            for (int c = 0; c < cities; c++) {
+                Arrays.fill(links, 0);
+                for (int next : neighbours[c]) {
+                    links[shardOf[next]]++;
+                }
+                int current = shardOf[c];
+                int best = current;
+                for (int s = 0; s < shards; s++) {
+                    if (links[s] > links[best] && sizes[s] < max) {
+                        best = s;
+                    }
+                }
+                if (best != current && sizes[current] > min) {
+                    shardOf[c] = best;
+                    sizes[current]--;
+                    sizes[best]++;
+                    moved = true;
+                }
+            }
+            if (!moved) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.nice.travel.shard;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Criteria;
+import com.nice.travel.model.Route;
+import com.nice.travel.search.ConnectionScanSearch;
+import com.nice.travel.search.DijkstraSearch;
+import com.nice.travel.search.IndexedMinHeap;
+import com.nice.travel.search.SearchScratch;
+import com.nice.travel.util.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A shard held in this JVM as its own compiled graph. Cost and Hops tables with more rows than
+ * columns are searched backwards from each column, so the coordinator's "every boundary city to
+ * the destination" query costs one search.
+ */
+public final class LocalShard implements Shard {
+    private final TimetableGraph graph;
+    private volatile int[][] incoming;
+
+    public LocalShard(TimetableGraph graph) {
+        this.graph = graph;
+    }
+
+    /** The routes of {@code full} inside {@code shard}, compiled on their own. */
+    public static LocalShard of(TimetableGraph full, ShardPlan plan, int shard) {
+        TimetableGraphBuilder builder = new TimetableGraphBuilder();
+        for (int edge = 0; edge < full.edgeCount(); edge++) {
+            String source = full.cityName(full.source(edge));
+            String destination = full.cityName(full.target(edge));
+            if (plan.inside(shard, source, destination)) {
+                builder.addRoute(source, destination, full.modeName(full.mode(edge)),
+                    full.departure(edge), full.arrival(edge), full.cost(edge));
+            }
+        }
+        return new LocalShard(builder.build());
+    }
+
+    public TimetableGraph graph() { return graph; }
+
+    @Override
+    public int[][] distances(List<String> from, List<String> to, Criteria criteria, int start) {
+        int[][] result = new int[from.size()][to.size()];
+        SearchScratch scratch = SearchScratch.current();
+        int[] targets = ids(to);
+        if (criteria != Criteria.TIME && from.size() > to.size()) {
+            int[] sources = ids(from);
+            for (int j = 0; j < to.size(); j++) {
+                if (targets[j] >= 0) {
+                    searchBackward(targets[j], criteria, scratch);
+                }
+                for (int i = 0; i < from.size(); i++) {
+                    result[i][j] = from.get(i).equals(to.get(j)) ? 0
+                        : sources[i] < 0 || targets[j] < 0 ? -1 : value(scratch.distance(sources[i]), 0);
+                }
+            }
+            return result;
+        }
+        int day = start - Math.floorMod(start, TimeUtil.MINUTES_PER_DAY);
+        for (int i = 0; i < from.size(); i++) {
+            int source = graph.cityId(from.get(i));
+            if (source >= 0) {
+                search(source, criteria, start - day, scratch);
+            }
+            for (int j = 0; j < to.size(); j++) {
+                if (from.get(i).equals(to.get(j))) {
+                    result[i][j] = criteria == Criteria.TIME ? start : 0;
+                } else {
+                    result[i][j] = source < 0 || targets[j] < 0 ? -1 : value(scratch.distance(targets[j]), day);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Route> path(String from, String to, Criteria criteria, int start) {
+        List<Route> path = new ArrayList<>();
+        int source = graph.cityId(from);
+        int target = graph.cityId(to);
+        if (source < 0 || target < 0 || source == target) {
+            return path;
+        }
+        SearchScratch scratch = SearchScratch.current();
+        search(source, criteria, Math.floorMod(start, TimeUtil.MINUTES_PER_DAY), scratch);
+        if (scratch.distance(target) == Integer.MAX_VALUE) {
+            return path;
+        }
+        DijkstraSearch.extractPath(graph, scratch, target);
+        for (int i = 0; i < scratch.pathLength(); i++) {
+            path.add(graph.route(scratch.pathEdge(i)));
+        }
+        return path;
+    }
+
+    @Override
+    public int[] departures(String city) {
+        int id = graph.cityId(city);
+        if (id < 0) {
+            return new int[0];
+        }
+        int[] minutes = new int[graph.endEdge(id) - graph.firstEdge(id)];
+        for (int i = 0; i < minutes.length; i++) {
+            minutes[i] = graph.departure(graph.firstEdge(id) + i);
+        }
+        Arrays.sort(minutes);
+        int distinct = 0;
+        for (int i = 0; i < minutes.length; i++) {
+            if (distinct == 0 || minutes[distinct - 1] != minutes[i]) {
+                minutes[distinct++] = minutes[i];
+            }
+        }
+        return Arrays.copyOf(minutes, distinct);
+    }
+
+    private int[] ids(List<String> cities) {
+        int[] ids = new int[cities.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.cityId(cities.get(i));
+        }
+        return ids;
+    }
+
+    private static int value(int distance, int offset) {
+        return distance == Integer.MAX_VALUE ? -1 : distance + offset;
+    }
+
+    /** Labels every city reachable from {@code source}; for Time from minute {@code start} of the first day. */
+    private void search(int source, Criteria criteria, int start, SearchScratch scratch) {
+        if (criteria == Criteria.TIME) {
+            ConnectionScanSearch.searchFrom(graph, source, start, scratch);
+        } else {
+            DijkstraSearch.searchMany(graph, source, new int[0], 0, criteria, scratch);
+        }
+    }
+
+    /** Dijkstra over incoming routes: afterwards {@code scratch.distance(v)} is the distance from {@code v} to {@code target}. */
+    private void searchBackward(int target, Criteria criteria, SearchScratch scratch) {
+        int[][] reverse = reverse();
+        int[] offsets = reverse[0];
+        int[] edges = reverse[1];
+        scratch.reset(graph.cityCount());
+        IndexedMinHeap heap = new IndexedMinHeap(graph.cityCount());
+        scratch.label(target, 0, -1);
+        heap.offer(target, 0);
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            int distance = scratch.distance(current);
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int next = graph.source(edges[i]);
+                int newDistance = distance + DijkstraSearch.weight(graph, edges[i], criteria);
+                if (newDistance < scratch.distance(next)) {
+                    scratch.label(next, newDistance, edges[i]);
+                    heap.offer(next, newDistance);
+                }
+            }
+        }
+    }
+
+    private int[][] reverse() {
+        int[][] current = incoming;
+        if (current != null) {
+            return current;
+        }
+        int cities = graph.cityCount();
+        int[] offsets = new int[cities + 1];
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            offsets[graph.target(edge) + 1]++;
+        }
+        for (int c = 0; c < cities; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        int[] edges = new int[graph.edgeCount()];
+        int[] fill = new int[cities];
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            int target = graph.target(edge);
+            edges[offsets[target] + fill[target]++] = edge;
+        }
+        incoming = new int[][] {offsets, edges};
+        return incoming;
+    }
+}
@@ -0,0 +1,317 @@
+package com.nice.travel.shard;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+import com.nice.travel.model.Route;
+import com.nice.travel.search.IndexedMinHeap;
+import com.nice.travel.util.TimeUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Coordinator of a partitioned timetable. It holds only the routes between shards (the overlay);
+ * their endpoints are the boundary cities. For Cost and Hops the distances between the boundary
+ * cities of each shard are fetched once, so a query is a Dijkstra over the overlay plus one search
+ * in the source's shard and one backward search in the destination's shard. Time depends on the
+ * departure minute, so a Time query runs a time-dependent Dijkstra over the overlay for each start
+ * minute at the source, asking a shard for earliest arrivals each time it settles one of its
+ * cities. Either way the result equals a search over the whole timetable, and the path is stitched
+ * from per-shard paths and overlay routes.
+ * <p>
+ * Cities the plan does not know (added after planning) only appear in the overlay, so they are
+ * still routed through, but only by routes that touch them directly.
+ */
+public class PartitionedRouter {
+    private static final Criteria[] STATIC_CRITERIA = {Criteria.COST, Criteria.HOPS};
+
+    private final ShardPlan plan;
+    private final List<Shard> shards;
+    private final TimetableGraph overlay;
+    private final int[] shardOf;
+    private final int[] memberIndex;
+    private final List<List<String>> members = new ArrayList<>();
+    /** {@code tables[t][x][i][j]}: Cost ({@code t = 0}) or Hops distance between boundary cities {@code i} and {@code j} of shard {@code x}. */
+    private final int[][][][] tables = new int[STATIC_CRITERIA.length][][][];
+
+    /** {@code overlay} holds the routes {@link ShardPlan#crosses} selects; {@code shards} is indexed by shard. */
+    public PartitionedRouter(ShardPlan plan, TimetableGraph overlay, List<Shard> shards) throws IOException {
+        if (shards.size() != plan.shardCount()) {
+            throw new IllegalArgumentException("Plan has " + plan.shardCount() + " shards but " + shards.size()
+                + " were given");
+        }
+        this.plan = plan;
+        this.shards = shards;
+        this.overlay = overlay;
+        int boundary = overlay.cityCount();
+        shardOf = new int[boundary];
+        memberIndex = new int[boundary];
+        for (int x = 0; x < plan.shardCount(); x++) {
+            members.add(new ArrayList<>());
+        }
+        for (int c = 0; c < boundary; c++) {
+            shardOf[c] = plan.shardOf(overlay.cityName(c));
+            if (shardOf[c] >= 0) {
+                memberIndex[c] = members.get(shardOf[c]).size();
+                members.get(shardOf[c]).add(overlay.cityName(c));
+            }
+        }
+        for (int t = 0; t < STATIC_CRITERIA.length; t++) {
+            tables[t] = new int[plan.shardCount()][][];
+            for (int x = 0; x < plan.shardCount(); x++) {
+                tables[t][x] = members.get(x).isEmpty() ? new int[0][]
+                    : shards.get(x).distances(members.get(x), members.get(x), STATIC_CRITERIA[t], 0);
+            }
+        }
+    }
+
+    /** Number of boundary cities, i.e. nodes of the overlay. */
+    public int boundaryCount() {
+        return overlay.cityCount();
+    }
+
+    /** Same contract as {@code TravelOptimizerService.findOptimalPath}; {@code Pareto} gets the fastest schedule. */
+    public List<Route> findOptimalPath(String start, String end, String criteria) throws IOException {
+        Criteria parsed = Criteria.parse(criteria);
+        Query query = new Query(start, end, parsed == Criteria.PARETO ? Criteria.TIME : parsed);
+        if (start.equals(end) || query.sourceShard < 0 && query.source == query.boundary
+                || query.targetShard < 0 && query.target == query.boundary + 1) {
+            return new ArrayList<>();
+        }
+        return query.criteria == Criteria.TIME ? query.fastest() : query.shortest();
+    }
+
+    /** State of one query: overlay nodes are the boundary cities plus the source and target if they are not boundary cities. */
+    private final class Query {
+        final String start;
+        final String end;
+        final Criteria criteria;
+        final int boundary;
+        final int source;
+        final int target;
+        final int sourceShard;
+        final int targetShard;
+        final int[] labels;
+        final int[] parents;
+        final int[] parentEdges;
+        final IndexedMinHeap heap;
+        /** Shard answers for Time by node and arrival minute; start minutes of one query often reach a city at the same minute. */
+        final Map<Long, int[]> arrivals = new HashMap<>();
+
+        Query(String start, String end, Criteria criteria) {
+            this.start = start;
+            this.end = end;
+            this.criteria = criteria;
+            boundary = overlay.cityCount();
+            int s = overlay.cityId(start);
+            int t = overlay.cityId(end);
+            source = s >= 0 ? s : boundary;
+            target = t >= 0 ? t : boundary + 1;
+            sourceShard = plan.shardOf(start);
+            targetShard = plan.shardOf(end);
+            labels = new int[boundary + 2];
+            parents = new int[boundary + 2];
+            parentEdges = new int[boundary + 2];
+            heap = new IndexedMinHeap(boundary + 2);
+        }
+
+        String name(int node) {
+            return node < boundary ? overlay.cityName(node) : node == boundary ? start : end;
+        }
+
+        int shard(int node) {
+            return node < boundary ? shardOf[node] : node == boundary ? sourceShard : targetShard;
+        }
+
+        /** Cities reachable inside {@code shard} from one of its nodes: its boundary cities, and the target if it lives there. */
+        List<String> inside(int shard) {
+            List<String> cities = new ArrayList<>(members.get(shard));
+            if (target == boundary + 1 && targetShard == shard) {
+                cities.add(end);
+            }
+            return cities;
+        }
+
+        int node(int shard, int index) {
+            return index < members.get(shard).size() ? overlay.cityId(members.get(shard).get(index)) : target;
+        }
+
+        void reset() {
+            Arrays.fill(labels, Integer.MAX_VALUE);
+            heap.clear();
+        }
+
+        void relax(int from, int to, int label, int edge) {
+            if (label < labels[to]) {
+                labels[to] = label;
+                parents[to] = from;
+                parentEdges[to] = edge;
+                heap.offer(to, label);
+            }
+        }
+
+        /** Cost or Hops: one Dijkstra over the overlay, boundary tables and the two per-query legs. */
+        List<Route> shortest() throws IOException {
+            int table = criteria == Criteria.COST ? 0 : 1;
+            int[] fromSource = null;
+            if (source == boundary && sourceShard >= 0) {
+                fromSource = shards.get(sourceShard).distances(
+                    singleton(start), inside(sourceShard), criteria, 0)[0];
+            }
+            int[][] toTarget = null;
+            if (target == boundary + 1 && !members.get(targetShard).isEmpty()) {
+                toTarget = shards.get(targetShard).distances(members.get(targetShard), singleton(end), criteria, 0);
+            }
+
+            reset();
+            relax(-1, source, 0, -1);
+            while (!heap.isEmpty()) {
+                int current = heap.poll();
+                int distance = labels[current];
+                if (current == target) {
+                    return unpack(0);
+                }
+                int shard = shard(current);
+                if (current == boundary) {
+                    for (int j = 0; fromSource != null && j < fromSource.length; j++) {
+                        if (fromSource[j] >= 0) {
+                            relax(current, node(shard, j), distance + fromSource[j], -1);
+                        }
+                    }
+                    continue;
+                }
+                if (shard >= 0) {
+                    int[] row = tables[table][shard][memberIndex[current]];
+                    for (int j = 0; j < row.length; j++) {
+                        if (row[j] >= 0) {
+                            relax(current, node(shard, j), distance + row[j], -1);
+                        }
+                    }
+                    if (toTarget != null && shard == targetShard && toTarget[memberIndex[current]][0] >= 0) {
+                        relax(current, target, distance + toTarget[memberIndex[current]][0], -1);
+                    }
+                }
+                relaxRoutes(current, distance);
+            }
+            return new ArrayList<>();
+        }
+
+        /**
+         * Time: for each start minute at the source, a time-dependent Dijkstra whose labels are
+         * absolute arrival minutes. The best journey minimizes arrival minus start, as in the
+         * connection scan over the whole timetable.
+         */
+        List<Route> fastest() throws IOException {
+            TreeSet<Integer> starts = new TreeSet<>();
+            if (sourceShard >= 0) {
+                for (int minute : shards.get(sourceShard).departures(start)) {
+                    starts.add(minute);
+                }
+            }
+            if (source < boundary) {
+                for (int edge = overlay.firstEdge(source); edge < overlay.endEdge(source); edge++) {
+                    starts.add(overlay.departure(edge));
+                }
+            }
+
+            int best = Integer.MAX_VALUE;
+            int[] bestLabels = null;
+            int[] bestParents = null;
+            int[] bestEdges = null;
+            for (int minute : starts) {
+                reset();
+                relax(-1, source, minute, -1);
+                while (!heap.isEmpty() && heap.peekKey() - minute < best) {
+                    int current = heap.poll();
+                    int arrival = labels[current];
+                    if (current == target) {
+                        best = arrival - minute;
+                        bestLabels = labels.clone();
+                        bestParents = parents.clone();
+                        bestEdges = parentEdges.clone();
+                        break;
+                    }
+                    int shard = shard(current);
+                    if (shard >= 0) {
+                        int[] reached = arrivalsFrom(current, shard, arrival);
+                        for (int j = 0; j < reached.length; j++) {
+                            if (reached[j] >= 0) {
+                                relax(current, node(shard, j), reached[j], -1);
+                            }
+                        }
+                    }
+                    relaxRoutes(current, arrival);
+                }
+            }
+            if (bestLabels == null) {
+                return new ArrayList<>();
+            }
+            System.arraycopy(bestLabels, 0, labels, 0, labels.length);
+            System.arraycopy(bestParents, 0, parents, 0, parents.length);
+            System.arraycopy(bestEdges, 0, parentEdges, 0, parentEdges.length);
+            return unpack(1);
+        }
+
+        int[] arrivalsFrom(int node, int shard, int arrival) throws IOException {
+            long key = (long) node << 32 | arrival;
+            int[] reached = arrivals.get(key);
+            if (reached == null) {
+                reached = shards.get(shard).distances(singleton(name(node)), inside(shard), criteria, arrival)[0];
+                arrivals.put(key, reached);
+            }
+            return reached;
+        }
+
+        /** Relaxes the overlay routes leaving {@code current}, which is settled at {@code label}. */
+        void relaxRoutes(int current, int label) {
+            if (current >= boundary) {
+                return;
+            }
+            for (int edge = overlay.firstEdge(current); edge < overlay.endEdge(current); edge++) {
+                int next = overlay.target(edge);
+                if (next == source) {
+                    continue;
+                }
+                int weight;
+                if (criteria == Criteria.TIME) {
+                    weight = TimeUtil.calculateWaitingTime(label % TimeUtil.MINUTES_PER_DAY, overlay.departure(edge))
+                        + overlay.duration(edge);
+                } else {
+                    weight = criteria == Criteria.COST ? overlay.cost(edge) : 1;
+                }
+                relax(current, next, label + weight, edge);
+            }
+        }
+
+        /** Stitches the overlay path ending at the target; {@code timed} passes each hop's departure label to the shard. */
+        List<Route> unpack(int timed) throws IOException {
+            List<Integer> hops = new ArrayList<>();
+            for (int node = target; node != source; node = parents[node]) {
+                hops.add(node);
+            }
+            List<Route> path = new ArrayList<>();
+            for (int i = hops.size() - 1; i >= 0; i--) {
+                int node = hops.get(i);
+                int from = parents[node];
+                if (parentEdges[node] >= 0) {
+                    path.add(overlay.route(parentEdges[node]));
+                } else {
+                    path.addAll(shards.get(shard(from)).path(name(from), name(node), criteria,
+                        timed * labels[from]));
+                }
+            }
+            return path;
+        }
+    }
+
+    private static List<String> singleton(String city) {
+        List<String> cities = new ArrayList<>(1);
+        cities.add(city);
+        return cities;
+    }
+}
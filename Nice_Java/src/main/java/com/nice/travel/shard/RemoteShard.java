@@ -0,0 +1,86 @@
+package com.nice.travel.shard;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.nice.travel.model.Criteria;
+import com.nice.travel.model.Route;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** A shard served by a {@link ShardServer} worker, called over HTTP with JSON bodies. */
+public final class RemoteShard implements Shard {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final Gson gson = new Gson();
+
+    private final String baseUrl;
+    private final OkHttpClient client;
+
+    /** {@code baseUrl} is the worker's root, e.g. {@code http://127.0.0.1:9001}. */
+    public RemoteShard(String baseUrl, long timeoutMillis) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.client = new OkHttpClient.Builder()
+            .connectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .callTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    @Override
+    public int[][] distances(List<String> from, List<String> to, Criteria criteria, int start) throws IOException {
+        JsonObject body = new JsonObject();
+        body.add("from", gson.toJsonTree(from));
+        body.add("to", gson.toJsonTree(to));
+        body.addProperty("criteria", criteria.getLabel());
+        body.addProperty("start", start);
+        return gson.fromJson(call("/shard/distances", body).get("distances"), int[][].class);
+    }
+
+    @Override
+    public List<Route> path(String from, String to, Criteria criteria, int start) throws IOException {
+        JsonObject body = new JsonObject();
+        body.addProperty("from", from);
+        body.addProperty("to", to);
+        body.addProperty("criteria", criteria.getLabel());
+        body.addProperty("start", start);
+        JsonArray routes = call("/shard/path", body).getAsJsonArray("path");
+        List<Route> path = new ArrayList<>(routes.size());
+        for (JsonElement route : routes) {
+            path.add(gson.fromJson(route, Route.class));
+        }
+        return path;
+    }
+
+    @Override
+    public int[] departures(String city) throws IOException {
+        JsonObject body = new JsonObject();
+        body.addProperty("city", city);
+        return gson.fromJson(call("/shard/departures", body).get("departures"), int[].class);
+    }
+
+    private JsonObject call(String path, JsonObject body) throws IOException {
+        Request request = new Request.Builder()
+            .url(baseUrl + path)
+            .post(RequestBody.create(JSON, body.toString()))
+            .build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody responseBody = response.body();
+            String text = responseBody != null ? responseBody.string() : "";
+            if (!response.isSuccessful()) {
+                throw new IOException("Shard " + baseUrl + " answered " + response.code() + ": " + text);
+            }
+            return JsonParser.parseString(text).getAsJsonObject();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.nice.travel.shard;
+
+import com.nice.travel.model.Criteria;
+import com.nice.travel.model.Route;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Searches confined to the routes inside one shard, either in this JVM ({@link LocalShard}) or in
+ * a worker process ({@link RemoteShard}). Cities are named, since shards intern them
+ * independently. For Time, {@code start} and the results are absolute minutes that may run past
+ * the first day; Cost and Hops ignore {@code start}.
+ */
+public interface Shard {
+
+    /**
+     * {@code result[i][j]} is the distance from {@code from[i]} to {@code to[j]} (for Time, the
+     * earliest arrival when leaving {@code from[i]} at {@code start}), or -1 if unreachable
+     * inside the shard.
+     */
+    int[][] distances(List<String> from, List<String> to, Criteria criteria, int start) throws IOException;
+
+    /** A path realizing {@link #distances} for one pair; empty if unreachable or {@code from} equals {@code to}. */
+    List<Route> path(String from, String to, Criteria criteria, int start) throws IOException;
+
+    /** Distinct departure minutes of the routes leaving {@code city} inside the shard, ascending. */
+    int[] departures(String city) throws IOException;
+}
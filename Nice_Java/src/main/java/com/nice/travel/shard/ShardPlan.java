@@ -0,0 +1,109 @@
+package com.nice.travel.shard;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.nice.travel.graph.TimetableGraph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which shard owns each city, shared by the coordinator and the shard workers as a
+ * {@code {"shards": N, "cities": {"name": shard, ...}}} document. A shard holds the routes between
+ * its own cities; routes between shards form the coordinator's overlay.
+ */
+public final class ShardPlan {
+    private final int shardCount;
+    private final Map<String, Integer> shards;
+    private final List<List<String>> members = new ArrayList<>();
+
+    public ShardPlan(int shardCount, Map<String, Integer> shards) {
+        this.shardCount = shardCount;
+        this.shards = shards;
+        for (int s = 0; s < shardCount; s++) {
+            members.add(new ArrayList<>());
+        }
+        for (Map.Entry<String, Integer> entry : shards.entrySet()) {
+            int shard = entry.getValue();
+            if (shard < 0 || shard >= shardCount) {
+                throw new IllegalArgumentException("City " + entry.getKey() + " has no shard " + shard);
+            }
+            members.get(shard).add(entry.getKey());
+        }
+        for (List<String> cities : members) {
+            Collections.sort(cities);
+        }
+    }
+
+    /** Partitions {@code graph} with {@link GraphPartitioner}. */
+    public static ShardPlan create(TimetableGraph graph, int shardCount) {
+        int[] shardOf = GraphPartitioner.partition(graph, shardCount);
+        Map<String, Integer> shards = new HashMap<>();
+        for (int c = 0; c < graph.cityCount(); c++) {
+            shards.put(graph.cityName(c), shardOf[c]);
+        }
+        return new ShardPlan(shardCount, shards);
+    }
+
+    public int shardCount() { return shardCount; }
+
+    /** Shard of {@code city}, or -1 if the plan does not know it. */
+    public int shardOf(String city) {
+        Integer shard = shards.get(city);
+        return shard != null ? shard : -1;
+    }
+
+    /** Cities of {@code shard}, sorted by name. */
+    public List<String> cities(int shard) {
+        return Collections.unmodifiableList(members.get(shard));
+    }
+
+    /** True for a route that stays inside {@code shard}. */
+    public boolean inside(int shard, String source, String destination) {
+        return shardOf(source) == shard && shardOf(destination) == shard;
+    }
+
+    /** True for a route between two shards, or touching a city the plan does not know. */
+    public boolean crosses(String source, String destination) {
+        int from = shardOf(source);
+        return from < 0 || from != shardOf(destination);
+    }
+
+    public void write(Path file) throws IOException {
+        try (JsonWriter writer = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            writer.name("shards").value(shardCount);
+            writer.name("cities").beginObject();
+            for (int s = 0; s < shardCount; s++) {
+                for (String city : members.get(s)) {
+                    writer.name(city).value(s);
+                }
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+    }
+
+    public static ShardPlan read(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonObject document = JsonParser.parseReader(reader).getAsJsonObject();
+            Map<String, Integer> shards = new HashMap<>();
+            for (Map.Entry<String, JsonElement> entry : document.getAsJsonObject("cities").entrySet()) {
+                shards.put(entry.getKey(), entry.getValue().getAsInt());
+            }
+            return new ShardPlan(document.get("shards").getAsInt(), shards);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed shard plan " + file + ": " + e.getMessage(), e);
+        }
+    }
+}
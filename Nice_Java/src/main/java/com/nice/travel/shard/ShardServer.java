@@ -0,0 +1,128 @@
+package com.nice.travel.shard;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.nice.travel.model.Criteria;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker process front end for one {@link LocalShard}: {@code POST /shard/distances},
+ * {@code /shard/path} and {@code /shard/departures} take the {@link Shard} arguments as a JSON
+ * object and answer with {@code {"distances": ...}}, {@code {"path": ...}} or
+ * {@code {"departures": ...}}; {@code GET /health} reports the shard's size.
+ */
+public class ShardServer {
+    private static final Gson gson = new Gson();
+    private static final Type NAMES = new TypeToken<List<String>>() { }.getType();
+
+    static {
+        // Each query makes many small round trips; without TCP_NODELAY every one waits out a delayed ACK.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final LocalShard shard;
+
+    public ShardServer(LocalShard shard, int port, int threads) throws IOException {
+        this.shard = shard;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "shard-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(workers);
+        server.createContext("/shard/", this::handle);
+        server.createContext("/health", exchange -> {
+            JsonObject health = new JsonObject();
+            health.addProperty("cities", shard.graph().cityCount());
+            health.addProperty("routes", shard.graph().edgeCount());
+            respond(exchange, 200, health);
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, errorResult("Use POST"));
+            return;
+        }
+        JsonObject request;
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            request = JsonParser.parseReader(reader).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            respond(exchange, 400, errorResult("Malformed request body: " + e.getMessage()));
+            return;
+        }
+        try {
+            JsonObject result = new JsonObject();
+            switch (exchange.getRequestURI().getPath()) {
+                case "/shard/distances":
+                    List<String> from = gson.fromJson(request.get("from"), NAMES);
+                    List<String> to = gson.fromJson(request.get("to"), NAMES);
+                    result.add("distances", gson.toJsonTree(shard.distances(from, to, criteria(request),
+                        request.get("start").getAsInt())));
+                    break;
+                case "/shard/path":
+                    result.add("path", gson.toJsonTree(shard.path(request.get("from").getAsString(),
+                        request.get("to").getAsString(), criteria(request), request.get("start").getAsInt())));
+                    break;
+                case "/shard/departures":
+                    result.add("departures", gson.toJsonTree(shard.departures(request.get("city").getAsString())));
+                    break;
+                default:
+                    respond(exchange, 404, errorResult("Unknown operation " + exchange.getRequestURI().getPath()));
+                    return;
+            }
+            respond(exchange, 200, result);
+        } catch (RuntimeException e) {
+            respond(exchange, 500, errorResult(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        }
+    }
+
+    private static Criteria criteria(JsonObject request) {
+        return Criteria.parse(request.get("criteria").getAsString());
+    }
+
+    private static JsonObject errorResult(String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        return error;
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -1,21 +1,38 @@
 package com.nice.travel.util;
 
 public class TimeUtil {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
     
     public static int timeToMinutes(String time) {
         String[] parts = time.split(":");
         return Integer.parseInt(parts[0]) * 60 + Integer.parseInt(parts[1]);
     }
+
+    public static String minutesToTime(int minutes) {
+        int hours = minutes / 60;
+        int mins = minutes % 60;
+        return (hours < 10 ? "0" : "") + hours + ":" + (mins < 10 ? "0" : "") + mins;
+    }
     
     public static int calculateDuration(String departureTime, String arrivalTime) {
-        int depMinutes = timeToMinutes(departureTime);
-        int arrMinutes = timeToMinutes(arrivalTime);
-        return arrMinutes >= depMinutes ? arrMinutes - depMinutes : (24 * 60) - depMinutes + arrMinutes;
+        return calculateDuration(timeToMinutes(departureTime), timeToMinutes(arrivalTime));
+    }
+
+    public static int calculateDuration(int depMinutes, int arrMinutes) {
+        return arrMinutes >= depMinutes ? arrMinutes - depMinutes : MINUTES_PER_DAY - depMinutes + arrMinutes;
     }
     
     public static int calculateWaitingTime(String arrivalTime, String departureTime) {
-        int arrMinutes = timeToMinutes(arrivalTime);
-        int depMinutes = timeToMinutes(departureTime);
-        return depMinutes >= arrMinutes ? depMinutes - arrMinutes : (24 * 60) - arrMinutes + depMinutes;
+        return calculateWaitingTime(timeToMinutes(arrivalTime), timeToMinutes(departureTime));
+    }
+
+    public static int calculateWaitingTime(int arrMinutes, int depMinutes) {
+        return depMinutes >= arrMinutes ? depMinutes - arrMinutes : MINUTES_PER_DAY - arrMinutes + depMinutes;
+    }
+
+    /** Waiting time when at least {@code minConnection} minutes must pass before the departure. */
+    public static int calculateWaitingTime(int arrMinutes, int depMinutes, int minConnection) {
+        return minConnection + calculateWaitingTime((arrMinutes + minConnection) % MINUTES_PER_DAY, depMinutes);
     }
-}
\ No newline at end of file
+}
@@ -85,6 +85,7 @@ public class TravelOptimizerTest {
         assertEquals("Time", request1.get("criteria").getAsString());
         assertEquals(0, request1.get("value").getAsInt());
         assertEquals(0, request1.getAsJsonArray("schedule").size());
+        assertEquals("no_route", request1.get("status").getAsString());
         assertEquals("Not generated", request1.get("travelSummary").getAsString());
     }
 
@@ -114,6 +115,85 @@ public class TravelOptimizerTest {
         assertEquals("Not generated", request1.get("travelSummary").getAsString());
     }
 
+    @Test
+    void testParallelMatchesSequential() throws IOException {
+        String inputFile = createTestFile("batch_test.json", createBatchInput(200));
+
+        JsonObject sequential = main.optimizeTravel(inputFile, false, 1);
+        JsonObject parallel = main.optimizeTravel(inputFile, false, 4);
+
+        assertEquals(200, sequential.size());
+        assertEquals(sequential.toString(), parallel.toString());
+    }
+
+    @Test
+    void testMalformedRequestDoesNotFailBatch() throws IOException {
+        String inputFile = createTestFile("malformed_test.json", createMultiHopInput().replace(
+            "  \"requests\": [\n",
+            "  \"requests\": [\n    {\"request_id\": \"broken\", \"source\": \"A\"},\n"));
+
+        JsonObject result = main.optimizeTravel(inputFile, false, 2);
+
+        assertTrue(result.getAsJsonObject("broken").has("error"));
+        assertEquals(270, result.getAsJsonObject("request_id1").get("value").getAsInt());
+    }
+
+    @Test
+    void testRoutesBeforeRequestsAreStreamed() throws IOException {
+        String input = createMultiHopInput();
+        int routesAt = input.indexOf("  \"routes\"");
+        String reordered = "{\n  \"version\": {\"ignored\": [1, 2]},\n" + input.substring(routesAt, input.lastIndexOf("}")).trim()
+            + ",\n" + input.substring(2, routesAt).trim().replaceAll(",$", "") + "\n}";
+        String inputFile = createTestFile("routes_first_test.json", reordered);
+
+        JsonObject result = main.optimizeTravel(inputFile, false);
+
+        assertEquals(270, result.getAsJsonObject("request_id1").get("value").getAsInt());
+    }
+
+    @Test
+    void testRequestBudgetReportsStatus() throws IOException {
+        String inputFile = createTestFile("budget_test.json", createMultiHopInput().replace(
+            "  \"requests\": [\n",
+            "  \"requests\": [\n"
+                + "    {\"request_id\": \"hops\", \"source\": \"A\", \"destination\": \"C\", \"criteria\": \"Cost\","
+                + " \"budget\": {\"maxHops\": 1}},\n"
+                + "    {\"request_id\": \"settled\", \"source\": \"A\", \"destination\": \"C\", \"criteria\": \"Time\","
+                + " \"budget\": {\"maxSettled\": 1}},\n"
+                + "    {\"request_id\": \"negative\", \"source\": \"A\", \"destination\": \"C\", \"criteria\": \"Time\","
+                + " \"budget\": {\"deadlineMs\": -1}},\n"));
+
+        JsonObject result = main.optimizeTravel(inputFile, false);
+
+        assertEquals("hop_limit_exceeded", result.getAsJsonObject("hops").get("status").getAsString());
+        assertEquals("settled_limit_exceeded", result.getAsJsonObject("settled").get("status").getAsString());
+        assertEquals(0, result.getAsJsonObject("settled").getAsJsonArray("schedule").size());
+        assertTrue(result.getAsJsonObject("negative").has("error"));
+        assertEquals("ok", result.getAsJsonObject("request_id1").get("status").getAsString());
+        assertEquals(270, result.getAsJsonObject("request_id1").get("value").getAsInt());
+    }
+
+    @Test
+    void testRequestConstraints() throws IOException {
+        String inputFile = createTestFile("constraints_test.json", createMultiHopInput().replace(
+            "  \"requests\": [\n",
+            "  \"requests\": [\n"
+                + "    {\"request_id\": \"transfer\", \"source\": \"A\", \"destination\": \"C\", \"criteria\": \"Time\","
+                + " \"constraints\": {\"minConnectionMinutes\": 45}},\n"
+                + "    {\"request_id\": \"noBus\", \"source\": \"A\", \"destination\": \"C\", \"criteria\": \"Time\","
+                + " \"constraints\": {\"excludedModes\": [\"Bus\"]}},\n"
+                + "    {\"request_id\": \"ranked\", \"source\": \"A\", \"destination\": \"C\", \"criteria\": \"Time\","
+                + " \"k\": 2, \"constraints\": {\"maxHops\": 1}},\n"));
+
+        JsonObject result = main.optimizeTravel(inputFile, false);
+
+        assertEquals(270 + 1_440, result.getAsJsonObject("transfer").get("value").getAsInt());
+        assertEquals("ok", result.getAsJsonObject("transfer").get("status").getAsString());
+        assertEquals("no_route", result.getAsJsonObject("noBus").get("status").getAsString());
+        assertTrue(result.getAsJsonObject("ranked").has("error"));
+        assertEquals(270, result.getAsJsonObject("request_id1").get("value").getAsInt());
+    }
+
     private String createTestFile(String filename, String content) throws IOException {
         Path file = tempDir.resolve(filename);
         try (FileWriter writer = new FileWriter(file.toFile())) {
@@ -122,6 +202,26 @@ public class TravelOptimizerTest {
         return file.toString();
     }
 
+    private String createBatchInput(int requestCount) {
+        String[] cities = {"A", "B", "C", "D", "E", "F"};
+        String[] criteria = {"Time", "Cost", "Hops"};
+        StringBuilder json = new StringBuilder("{\n  \"requests\": [\n");
+        for (int i = 0; i < requestCount; i++) {
+            json.append(String.format("    {\"request_id\": \"r%d\", \"source\": \"%s\", \"destination\": \"%s\", \"criteria\": \"%s\"}%s\n",
+                i, cities[i % cities.length], cities[(i / cities.length) % cities.length],
+                criteria[i % criteria.length], i + 1 < requestCount ? "," : ""));
+        }
+        json.append("  ],\n  \"routes\": [\n");
+        for (int i = 0; i < cities.length; i++) {
+            for (int j = 1; j <= 2; j++) {
+                json.append(String.format("    {\"source\": \"%s\", \"destination\": \"%s\", \"mode\": \"Bus\", \"departureTime\": \"%02d:00\", \"arrivalTime\": \"%02d:30\", \"cost\": %d}%s\n",
+                    cities[i], cities[(i + j) % cities.length], 6 + i + j, 7 + i + j, 100 * j + i,
+                    i + 1 < cities.length || j < 2 ? "," : ""));
+            }
+        }
+        return json.append("  ]\n}").toString();
+    }
+
     private String createTimeOptimizationInput() {
         return "{\n" +
                "  \"requests\": [\n" +
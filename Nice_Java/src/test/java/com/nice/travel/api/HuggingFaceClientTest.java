@@ -0,0 +1,143 @@
+package com.nice.travel.api;
+
+import com.nice.travel.cache.FileSummaryCache;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HuggingFaceClientTest {
+
+    private HttpServer server;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long delayMillis;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/summarize", exchange -> {
+            calls.incrementAndGet();
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            byte[] body = "[{\"summary_text\": \"A short trip.\"}]".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private HuggingFaceClient.Builder client() {
+        return new HuggingFaceClient.Builder()
+            .apiUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/summarize");
+    }
+
+    @Test
+    void testConcurrentSummaries() {
+        HuggingFaceClient client = client().maxConcurrentCalls(4).build();
+        delayMillis = 50;
+
+        List<CompletableFuture<String>> summaries = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            summaries.add(client.generateSummaryAsync("prompt " + i, "key", Long.MAX_VALUE));
+        }
+        for (CompletableFuture<String> summary : summaries) {
+            assertEquals("A short trip.", summary.join());
+        }
+
+        assertEquals(8, calls.get());
+        assertTrue(peakInFlight.get() > 1, "calls were serialized");
+        assertTrue(peakInFlight.get() <= 4, "concurrency limit exceeded: " + peakInFlight.get());
+    }
+
+    @Test
+    void testDeadlineFallsBackWithoutWaiting() {
+        HuggingFaceClient client = client().build();
+        delayMillis = 2_000;
+
+        long start = System.nanoTime();
+        String summary = client.generateSummaryAsync("prompt", "key", System.nanoTime() + 100_000_000L).join();
+
+        assertEquals("Not generated", summary);
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+    }
+
+    @Test
+    void testExpiredDeadlinesDoNotOpenTheCircuit() throws InterruptedException {
+        HuggingFaceClient client = client().maxConcurrentCalls(1).failureThreshold(1).openMillis(60_000).build();
+        delayMillis = 500;
+
+        long deadline = System.nanoTime() + 100_000_000L;
+        CompletableFuture<String> running = client.generateSummaryAsync("running", "key", deadline);
+        CompletableFuture<String> queued = client.generateSummaryAsync("queued", "key", deadline);
+        assertEquals("Not generated", running.join());
+        assertEquals("Not generated", queued.join());
+        Thread.sleep(700);
+
+        assertFalse(client.getCircuitBreaker().isOpen());
+        delayMillis = 0;
+        assertEquals("A short trip.", client.generateSummary("later", "key"));
+    }
+
+    @Test
+    void testCircuitOpensAfterRepeatedFailures() {
+        HuggingFaceClient client = client().failureThreshold(3).openMillis(60_000).build();
+        status = 503;
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("Not generated", client.generateSummary("prompt", "key"));
+        }
+        assertTrue(client.getCircuitBreaker().isOpen());
+        assertEquals("Not generated", client.generateSummary("prompt", "key"));
+
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void testRepeatPromptsAreServedFromSummaryCache(@TempDir Path cacheDir) throws IOException {
+        HuggingFaceClient client = client().summaryCache(new FileSummaryCache(cacheDir, 60_000, 100)).build();
+        HuggingFaceClient restarted = client().summaryCache(new FileSummaryCache(cacheDir, 60_000, 100)).build();
+
+        assertEquals("A short trip.", client.generateSummary("prompt", "key"));
+        assertEquals("A short trip.", client.generateSummary("prompt", "key"));
+        assertEquals("A short trip.", restarted.generateSummary("prompt", "key"));
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testMissingApiKeySkipsTheCall() {
+        assertEquals("Not generated", client().build().generateSummary("prompt", null));
+        assertEquals(0, calls.get());
+    }
+}
@@ -0,0 +1,82 @@
+package com.nice.travel.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileSummaryCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEntriesSurviveRestart() throws IOException {
+        String key = SummaryCache.key("http://model", "Summarize travel route: 2 segments, 4h 30m total", "{}");
+        new FileSummaryCache(tempDir, 60_000, 100).put(key, "Two buses.");
+
+        FileSummaryCache reopened = new FileSummaryCache(tempDir, 60_000, 100);
+
+        assertEquals("Two buses.", reopened.get(key));
+        assertNull(reopened.get(SummaryCache.key("http://other-model", "Summarize travel route: 2 segments, 4h 30m total", "{}")));
+    }
+
+    @Test
+    void testExpiredEntriesAreIgnored() throws IOException {
+        FileSummaryCache cache = new FileSummaryCache(tempDir, -1, 100);
+        cache.put("expired", "stale");
+
+        assertNull(cache.get("expired"));
+        assertNull(new FileSummaryCache(tempDir, 60_000, 100).get("expired"));
+    }
+
+    @Test
+    void testTrimKeepsDirectoryWithinCap() throws IOException {
+        FileSummaryCache cache = new FileSummaryCache(tempDir, 60_000, 5);
+        for (int i = 0; i < 40; i++) {
+            cache.put("key" + i, "summary " + i);
+        }
+        cache.trim();
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(5, files.filter(f -> f.toString().endsWith(".summary")).count());
+        }
+    }
+
+    @Test
+    void testMemoryKeepsMostRecentlyUsedEntries() throws IOException {
+        FileSummaryCache cache = new FileSummaryCache(tempDir, 60_000, 2);
+        cache.put("first", "one");
+        cache.put("second", "two");
+        assertEquals("one", cache.get("first"));
+        cache.put("third", "three");
+        try (Stream<Path> files = Files.list(tempDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+
+        assertEquals("one", cache.get("first"));
+        assertNull(cache.get("second"));
+        assertEquals("three", cache.get("third"));
+    }
+
+    @Test
+    void testTrimDeletesStaleTempFiles() throws IOException {
+        FileSummaryCache cache = new FileSummaryCache(tempDir, 60_000, 5);
+        Path stale = Files.write(tempDir.resolve("key.42.tmp"), new byte[] {1});
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+        Path fresh = Files.write(tempDir.resolve("key.43.tmp"), new byte[] {1});
+
+        cache.trim();
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(fresh));
+    }
+}
@@ -0,0 +1,80 @@
+package com.nice.travel.cache;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Route;
+import com.nice.travel.service.TravelOptimizerService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LruRouteResultCacheTest {
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        LruRouteResultCache cache = new LruRouteResultCache(16);
+        CachedRoute route = new CachedRoute(Collections.emptyList(), 0);
+        for (int i = 0; i < 200; i++) {
+            cache.put(new RouteCacheKey("A", "B" + i, "Cost", 1L), route);
+        }
+
+        CacheStats stats = cache.stats();
+        assertTrue(stats.getSize() <= 16, "size " + stats.getSize());
+        assertEquals(200 - stats.getSize(), stats.getEvictions());
+        assertNotNull(cache.get(new RouteCacheKey("A", "B199", "Cost", 1L)));
+        assertNull(cache.get(new RouteCacheKey("A", "B0", "Cost", 1L)));
+        assertNull(cache.get(new RouteCacheKey("A", "B199", "Cost", 2L)));
+        assertEquals(1, cache.stats().getHits());
+        assertEquals(2, cache.stats().getMisses());
+    }
+
+    @Test
+    void testNeverHoldsMoreThanMaxSize() {
+        CachedRoute route = new CachedRoute(Collections.emptyList(), 0);
+        for (int maxSize : new int[] {1, 3, 17, 100}) {
+            LruRouteResultCache cache = new LruRouteResultCache(maxSize);
+            for (int i = 0; i < 50 * maxSize; i++) {
+                cache.put(new RouteCacheKey("A", "B" + i, "Cost", 1L), route);
+            }
+            assertTrue(cache.stats().getSize() <= maxSize, maxSize + ": " + cache.stats().getSize());
+        }
+        LruRouteResultCache single = new LruRouteResultCache(1);
+        single.put(new RouteCacheKey("A", "B", "Cost", 1L), route);
+        single.put(new RouteCacheKey("A", "C", "Cost", 1L), route);
+        assertNull(single.get(new RouteCacheKey("A", "B", "Cost", 1L)));
+        assertNotNull(single.get(new RouteCacheKey("A", "C", "Cost", 1L)));
+    }
+
+    @Test
+    void testServiceServesCachedRoutesPerGraphFingerprint() {
+        LruRouteResultCache cache = new LruRouteResultCache(100);
+        TravelOptimizerService service = new TravelOptimizerService(cache);
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "10:00", 150)
+            .addRoute("B", "C", "Bus", "10:30", "12:30", 150)
+            .build();
+        TimetableGraph sameGraph = new TimetableGraphBuilder()
+            .addRoute("B", "C", "Bus", "10:30", "12:30", 150)
+            .addRoute("A", "B", "Bus", "08:00", "10:00", 150)
+            .build();
+        TimetableGraph changedGraph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "10:00", 150)
+            .addRoute("B", "C", "Bus", "10:30", "12:30", 150)
+            .addRoute("A", "C", "Flight", "09:00", "10:00", 100)
+            .build();
+
+        List<Route> first = service.findOptimalPath(graph, "A", "C", "Cost");
+        List<Route> second = service.findOptimalPath(sameGraph, "A", "C", "Cost");
+        List<Route> changed = service.findOptimalPath(changedGraph, "A", "C", "Cost");
+
+        assertEquals(graph.fingerprint(), sameGraph.fingerprint());
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertEquals(1, changed.size());
+        assertEquals(1, cache.stats().getHits());
+        assertEquals(2, cache.stats().getMisses());
+    }
+}
@@ -0,0 +1,31 @@
+package com.nice.travel.graph;
+
+import java.util.Random;
+
+public final class RandomTimetables {
+
+    private RandomTimetables() {
+    }
+
+    public static TimetableGraph generate(long seed, int cities, int routesPerCity) {
+        Random random = new Random(seed);
+        String[] modes = {"Bus", "Train", "Flight"};
+        TimetableGraphBuilder builder = new TimetableGraphBuilder();
+        for (int c = 0; c < cities; c++) {
+            builder.cityId("C" + c);
+        }
+        for (int c = 0; c < cities; c++) {
+            for (int r = 0; r < routesPerCity; r++) {
+                int target = random.nextInt(cities);
+                if (target == c) {
+                    continue;
+                }
+                int departure = random.nextInt(96) * 15;
+                int arrival = (departure + 30 + random.nextInt(240)) % 1_440;
+                builder.addRoute("C" + c, "C" + target, modes[random.nextInt(modes.length)],
+                    departure, arrival, 20 + random.nextInt(400));
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.nice.travel.graph;
+
+import com.nice.travel.model.Route;
+import com.nice.travel.service.TravelOptimizerService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimetableSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMappedSnapshotAnswersLikeTheHeapGraph() throws IOException {
+        TimetableGraph graph = RandomTimetables.generate(7, 80, 4);
+        Path file = tempDir.resolve("timetable.bin");
+
+        TimetableSnapshot.write(graph, file);
+        TimetableGraph mapped = TimetableSnapshot.load(file, true);
+
+        assertEquals(graph.cityCount(), mapped.cityCount());
+        assertEquals(graph.edgeCount(), mapped.edgeCount());
+        assertEquals(graph.fingerprint(), mapped.fingerprint());
+        assertEquals(-1, mapped.cityId("Nowhere"));
+        for (int c = 0; c < graph.cityCount(); c++) {
+            assertEquals(c, mapped.cityId(graph.cityName(c)));
+        }
+
+        TravelOptimizerService service = new TravelOptimizerService();
+        String[] criteria = {"Time", "Cost", "Hops"};
+        for (int i = 0; i < 60; i++) {
+            String source = "C" + i;
+            String destination = "C" + ((i * 13 + 5) % 80);
+            String criterion = criteria[i % 3];
+            List<Route> expected = service.findOptimalPath(graph, source, destination, criterion);
+            List<Route> actual = service.findOptimalPath(mapped, source, destination, criterion);
+            assertEquals(service.calculateValue(expected, criterion), service.calculateValue(actual, criterion));
+            assertEquals(expected.size(), actual.size());
+        }
+    }
+
+    @Test
+    void testCorruptSnapshotIsRejected() throws IOException {
+        Path file = tempDir.resolve("corrupt.bin");
+        TimetableSnapshot.write(RandomTimetables.generate(3, 10, 2), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF);
+        }
+
+        IOException error = assertThrows(IOException.class, () -> TimetableSnapshot.load(file, true));
+        assertTrue(error.getMessage().contains("Checksum"));
+    }
+
+    @Test
+    void testFailedWriteLeavesNoTempFile() throws IOException {
+        Path file = tempDir.resolve("occupied.bin");
+        Files.createDirectory(file);
+        Files.createFile(file.resolve("keep"));
+
+        assertThrows(IOException.class, () -> TimetableSnapshot.write(RandomTimetables.generate(3, 10, 2), file));
+        assertFalse(Files.exists(tempDir.resolve("occupied.bin.tmp")));
+    }
+}
@@ -0,0 +1,237 @@
+package com.nice.travel.graph;
+
+import com.nice.travel.model.Criteria;
+import com.nice.travel.search.ConnectionScanSearch;
+import com.nice.travel.search.DijkstraSearch;
+import com.nice.travel.search.Profile;
+import com.nice.travel.search.ProfileSearch;
+import com.nice.travel.search.SearchScratch;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimetableStoreTest {
+
+    private static final String[] MODES = {"Bus", "Train", "Flight"};
+
+    private static final class Leg {
+        final String source;
+        final String destination;
+        final String mode;
+        final int departure;
+        final int arrival;
+        final int cost;
+
+        Leg(String source, String destination, String mode, int departure, int arrival, int cost) {
+            this.source = source;
+            this.destination = destination;
+            this.mode = mode;
+            this.departure = departure;
+            this.arrival = arrival;
+            this.cost = cost;
+        }
+    }
+
+    private static Leg randomLeg(Random random, int cities) {
+        int source = random.nextInt(cities);
+        int target = (source + 1 + random.nextInt(cities - 1)) % cities;
+        int departure = random.nextInt(96) * 15;
+        return new Leg("C" + source, "C" + target, MODES[random.nextInt(MODES.length)], departure,
+            (departure + 30 + random.nextInt(240)) % 1_440, 20 + random.nextInt(400));
+    }
+
+    private static TimetableGraph build(List<Leg> legs) {
+        TimetableGraphBuilder builder = new TimetableGraphBuilder();
+        for (Leg leg : legs) {
+            builder.addRoute(leg.source, leg.destination, leg.mode, leg.departure, leg.arrival, leg.cost);
+        }
+        return builder.build();
+    }
+
+    private static int value(TimetableGraph graph, String source, String target, Criteria criteria,
+                             SearchScratch scratch) {
+        int s = graph.cityId(source);
+        int t = graph.cityId(target);
+        if (s < 0 || t < 0) {
+            return -1;
+        }
+        return criteria == Criteria.TIME ? ConnectionScanSearch.search(graph, s, t, scratch)
+            : DijkstraSearch.search(graph, s, t, criteria, scratch);
+    }
+
+    /** Departure and arrival of every journey leaving within the first day. */
+    private static List<String> profile(TimetableGraph graph, String source, String target, SearchScratch scratch) {
+        Profile profile = ProfileSearch.search(graph, graph.cityId(source), graph.cityId(target), 0, 1_439, scratch);
+        List<String> journeys = new ArrayList<>();
+        for (int i = 0; i < profile.size(); i++) {
+            journeys.add(profile.departure(i) + "-" + profile.arrival(i));
+        }
+        return journeys;
+    }
+
+    @Test
+    void testDeltasMatchRebuiltGraph() {
+        Random random = new Random(7);
+        int cities = 40;
+        List<Leg> legs = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            legs.add(randomLeg(random, cities - 5));
+        }
+        TimetableStore store = new TimetableStore(build(legs));
+        SearchScratch scratch = new SearchScratch(cities);
+        Criteria[] criteria = Criteria.values();
+
+        for (int round = 0; round < 30; round++) {
+            TimetableDelta delta = new TimetableDelta();
+            for (int i = 0; i < 3; i++) {
+                Leg removed = legs.remove(random.nextInt(legs.size()));
+                delta.removeRoute(removed.source, removed.destination, removed.mode, removed.departure,
+                    removed.arrival, removed.cost);
+                Leg added = randomLeg(random, cities);
+                legs.add(added);
+                delta.addRoute(added.source, added.destination, added.mode, added.departure, added.arrival, added.cost);
+            }
+            TimetableGraph updated = store.apply(delta);
+            TimetableGraph rebuilt = build(legs);
+
+            assertEquals(rebuilt.fingerprint(), updated.fingerprint());
+            assertEquals(legs.size(), updated.edgeCount());
+            for (int q = 0; q < 20; q++) {
+                String source = "C" + random.nextInt(cities);
+                String target = "C" + random.nextInt(cities);
+                if (source.equals(target)) {
+                    continue;
+                }
+                for (Criteria c : criteria) {
+                    assertEquals(value(rebuilt, source, target, c, scratch), value(updated, source, target, c, scratch),
+                        "round " + round + " " + source + " -> " + target + " by " + c);
+                }
+                if (rebuilt.cityId(source) >= 0 && rebuilt.cityId(target) >= 0) {
+                    assertEquals(profile(rebuilt, source, target, scratch), profile(updated, source, target, scratch),
+                        "round " + round + " " + source + " -> " + target + " profile");
+                }
+            }
+        }
+
+        TimetableGraph compacted = ((OverlayTimetableGraph) store.current()).compact();
+        assertEquals(store.current().fingerprint(), compacted.fingerprint());
+        assertEquals(0, compacted.addedConnectionSlices().length);
+    }
+
+    @Test
+    void testDeltaCopiesOnlyTheCitiesItTouches() {
+        TimetableStore store = new TimetableStore(new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 50)
+            .addRoute("A", "C", "Bus", "09:00", "10:00", 50)
+            .addRoute("A", "C", "Train", "07:00", "08:30", 80)
+            .addRoute("B", "C", "Bus", "09:30", "10:00", 50)
+            .build());
+
+        OverlayTimetableGraph first = (OverlayTimetableGraph) store.apply(new TimetableDelta()
+            .addRoute("B", "A", "Bus", "11:00", "12:00", 30));
+        assertEquals(2, first.appendedEdges());
+        assertEquals(1, first.addedConnectionSlices().length);
+
+        OverlayTimetableGraph second = (OverlayTimetableGraph) store.apply(new TimetableDelta()
+            .addRoute("A", "B", "Ferry", "06:00", "06:45", 10));
+        assertEquals(6, second.appendedEdges());
+        assertEquals(2, second.addedConnectionSlices().length);
+
+        OverlayTimetableGraph third = (OverlayTimetableGraph) store.apply(new TimetableDelta()
+            .removeRoute("B", "A", "Bus", "11:00", "12:00", 30));
+        assertEquals(7, third.appendedEdges());
+        assertEquals(2, third.addedConnectionSlices().length);
+
+        long[] slices = second.addedConnectionSlices();
+        int sliceOfA = (int) (slices[0] >>> 32) >= second.connectionCount() + 2 ? 0 : 1;
+        int previous = -1;
+        for (int c = (int) (slices[sliceOfA] >>> 32); c < (int) slices[sliceOfA]; c++) {
+            assertEquals(second.cityId("A"), second.connectionSource(c));
+            assertTrue(second.connectionDeparture(c) >= previous);
+            previous = second.connectionDeparture(c);
+        }
+        assertEquals(6 * 60, second.connectionDeparture((int) (slices[sliceOfA] >>> 32)));
+    }
+
+    @Test
+    void testCompactionRunsInBackgroundAndReplaysLaterDeltas() {
+        List<Leg> legs = new ArrayList<>();
+        legs.add(new Leg("A", "B", "Bus", 480, 540, 50));
+        List<Runnable> compactions = new ArrayList<>();
+        TimetableStore store = new TimetableStore(build(legs), compactions::add);
+
+        TimetableDelta bulk = new TimetableDelta();
+        for (int i = 0; i < 4100; i++) {
+            Leg leg = new Leg("B", "C" + (i % 50), "Train", i % 1_440, (i + 90) % 1_440, 100 + i % 7);
+            legs.add(leg);
+            bulk.addRoute(leg.source, leg.destination, leg.mode, leg.departure, leg.arrival, leg.cost);
+        }
+        OverlayTimetableGraph overlay = (OverlayTimetableGraph) store.apply(bulk);
+        assertSame(overlay, store.current());
+        assertEquals(1, compactions.size());
+
+        legs.remove(0);
+        legs.add(new Leg("A", "B", "Bus", 600, 640, 20));
+        store.apply(new TimetableDelta()
+            .removeRoute("A", "B", "Bus", "08:00", "09:00", 50)
+            .addRoute("A", "B", "Bus", "10:00", "10:40", 20));
+        assertEquals(1, compactions.size());
+
+        compactions.get(0).run();
+        TimetableGraph swapped = store.current();
+        TimetableGraph rebuilt = build(legs);
+        assertEquals(1, ((OverlayTimetableGraph) swapped).appendedEdges());
+        assertEquals(rebuilt.fingerprint(), swapped.fingerprint());
+        assertEquals(legs.size(), swapped.edgeCount());
+        assertEquals(2, store.version());
+        SearchScratch scratch = new SearchScratch(64);
+        for (Criteria c : Criteria.values()) {
+            assertEquals(value(rebuilt, "A", "C7", c, scratch), value(swapped, "A", "C7", c, scratch), c.toString());
+        }
+
+        store.apply(new TimetableDelta().addRoute("C7", "A", "Ferry", "23:00", "01:00", 5));
+        assertEquals(1, compactions.size());
+        assertEquals(3, store.version());
+    }
+
+    @Test
+    void testOldVersionIsUnaffected() {
+        TimetableStore store = new TimetableStore(new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 50)
+            .addRoute("B", "C", "Bus", "09:30", "10:00", 50)
+            .build());
+        SearchScratch scratch = new SearchScratch(4);
+        TimetableGraph before = store.current();
+
+        TimetableGraph after = store.apply(new TimetableDelta()
+            .removeRoute("B", "C", "Bus", "09:30", "10:00", 50)
+            .addRoute("B", "C", "Bus", "12:00", "12:30", 40)
+            .addRoute("C", "D", "Ferry", "13:00", "14:00", 10));
+
+        assertEquals(120, value(before, "A", "C", Criteria.TIME, scratch));
+        assertEquals(-1, value(before, "A", "D", Criteria.COST, scratch));
+        assertEquals(270, value(after, "A", "C", Criteria.TIME, scratch));
+        assertEquals(100, value(after, "A", "D", Criteria.COST, scratch));
+        assertEquals("Ferry", after.modeName(after.mode(after.firstEdge(after.cityId("C")))));
+        assertSame(after, store.current());
+        assertEquals(1, store.version());
+    }
+
+    @Test
+    void testMissingRouteRejectsWholeDelta() {
+        TimetableStore store = new TimetableStore(new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 50)
+            .build());
+        TimetableGraph before = store.current();
+
+        assertThrows(IllegalArgumentException.class, () -> store.apply(new TimetableDelta()
+            .addRoute("B", "C", "Bus", "10:00", "11:00", 10)
+            .removeRoute("A", "B", "Bus", "08:00", "09:00", 49)));
+        assertSame(before, store.current());
+        assertEquals(-1, store.current().cityId("C"));
+    }
+}
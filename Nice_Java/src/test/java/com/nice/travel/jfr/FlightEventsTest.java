@@ -0,0 +1,63 @@
+package com.nice.travel.jfr;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.TravelRequest;
+import com.nice.travel.service.BatchQueryPlanner;
+import com.nice.travel.service.TravelOptimizerService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightEventsTest {
+
+    @Test
+    void testSearchAndBuildEventsAreRecorded(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("run.jfr");
+        TimetableGraph graph;
+        try (Recording recording = new Recording()) {
+            recording.enable(RouteSearchEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(GraphBuildEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+
+            graph = new TimetableGraphBuilder()
+                .addRoute("A", "B", "Bus", "08:00", "09:00", 50)
+                .addRoute("B", "C", "Bus", "09:30", "10:00", 50)
+                .build();
+            new BatchQueryPlanner(new TravelOptimizerService(null)).plan(graph, Arrays.asList(
+                new TravelRequest("r1", "A", "C", "Cost"),
+                new TravelRequest("r2", "A", "B", "Cost")), false);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> builds = events.stream()
+            .filter(e -> e.getEventType().getName().equals("com.nice.travel.GraphBuild")).collect(Collectors.toList());
+        assertEquals(1, builds.size());
+        assertEquals(3, builds.get(0).getInt("cities"));
+
+        List<RecordedEvent> searches = events.stream()
+            .filter(e -> e.getEventType().getName().equals("com.nice.travel.RouteSearch")).collect(Collectors.toList());
+        assertEquals(1, searches.size());
+        RecordedEvent search = searches.get(0);
+        assertEquals("r1,r2", search.getString("requestIds"));
+        assertEquals("A", search.getString("source"));
+        assertEquals(2, search.getInt("destinationCount"));
+        assertTrue(search.getBoolean("searched"));
+        assertTrue(search.getInt("nodesSettled") >= 2);
+        assertEquals(2, search.getInt("pathLength"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.nice.travel.metrics;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.service.TravelOptimizerService;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    void testHistogramQuantilesWithinBucketPrecision() {
+        Histogram histogram = new Histogram("test", "test", 1);
+        Random random = new Random(3);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1 + (long) (Math.exp(random.nextDouble() * 20));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            assertEquals(exact, histogram.quantile(q), Math.max(1, exact * 0.07), "quantile " + q);
+        }
+        assertEquals(values[values.length - 1], (long) histogram.getMax());
+        assertEquals(values.length, histogram.getCount());
+    }
+
+    @Test
+    void testBucketsAreContiguous() {
+        int previous = -1;
+        for (long value = 0; value < 100_000; value++) {
+            int bucket = Histogram.bucket(value);
+            assertTrue(bucket == previous || bucket == previous + 1, "gap at " + value);
+            previous = bucket;
+        }
+        assertTrue(Histogram.bucket(Long.MAX_VALUE) < 960);
+    }
+
+    @Test
+    void testSearchesAreRecordedAndExposed() throws IOException {
+        Metrics.enable();
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 50)
+            .addRoute("B", "C", "Bus", "09:30", "10:00", 50)
+            .build();
+        TravelOptimizerService service = new TravelOptimizerService(null);
+        long searches = Metrics.SEARCHES.getValue();
+        long queries = Metrics.QUERY.getCount();
+
+        service.findOptimalPath(graph, "A", "C", "Cost");
+        service.findOptimalPath(graph, "A", "C", "Time");
+
+        assertEquals(searches + 2, Metrics.SEARCHES.getValue());
+        assertEquals(queries + 2, Metrics.QUERY.getCount());
+        assertTrue(Metrics.SEARCH_SETTLED.getMax() >= 2);
+        assertEquals(2, (long) Metrics.PATH_LENGTH.getMax());
+
+        StringBuilder text = new StringBuilder();
+        Metrics.writeText(text);
+        assertTrue(text.toString().contains("# TYPE travel_query_seconds summary"));
+        assertTrue(text.toString().contains("travel_searches_total "));
+        assertTrue(text.toString().contains("travel_graph_build_seconds_count "));
+    }
+}
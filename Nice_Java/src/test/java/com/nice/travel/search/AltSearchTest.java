@@ -0,0 +1,99 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Criteria;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AltSearchTest {
+
+    @Test
+    void testDistancesMatchDijkstra() {
+        TimetableGraph graph = RandomTimetables.generate(5, 300, 3);
+        SearchScratch scratch = new SearchScratch(16);
+        SearchScratch reference = new SearchScratch(16);
+        Random random = new Random(5);
+        for (Landmarks.Strategy strategy : Landmarks.Strategy.values()) {
+            Landmarks landmarks = Landmarks.compute(graph, 8, strategy, 1);
+            for (int i = 0; i < 400; i++) {
+                int source = random.nextInt(graph.cityCount());
+                int target = random.nextInt(graph.cityCount());
+                Criteria criteria = i % 2 == 0 ? Criteria.COST : Criteria.HOPS;
+                int expected = DijkstraSearch.search(graph, source, target, criteria, reference);
+
+                assertEquals(expected, AltSearch.search(landmarks, source, target, criteria, scratch));
+                assertValidPath(graph, source, target, criteria, expected, scratch);
+                assertEquals(expected, AltSearch.searchBidirectional(landmarks, source, target, criteria, scratch));
+                assertValidPath(graph, source, target, criteria, expected, scratch);
+            }
+        }
+    }
+
+    @Test
+    void testLandmarksSettleFarFewerCities() {
+        TimetableGraph graph = grid(60);
+        Landmarks landmarks = Landmarks.compute(graph, 16, Landmarks.Strategy.AVOID, 1);
+        SearchScratch scratch = new SearchScratch(16);
+        Random random = new Random(3);
+        long dijkstra = 0;
+        long alt = 0;
+        long bidirectional = 0;
+        for (int i = 0; i < 200; i++) {
+            int r = random.nextInt(40);
+            int c = random.nextInt(40);
+            int source = graph.cityId(r + "_" + c);
+            int target = graph.cityId((r + 10 + random.nextInt(10)) + "_" + (c + 10 + random.nextInt(10)));
+            int expected = DijkstraSearch.search(graph, source, target, Criteria.COST, scratch);
+            dijkstra += scratch.settled();
+            assertEquals(expected, AltSearch.search(landmarks, source, target, Criteria.COST, scratch));
+            alt += scratch.settled();
+            assertEquals(expected, AltSearch.searchBidirectional(landmarks, source, target, Criteria.COST, scratch));
+            bidirectional += scratch.settled();
+        }
+
+        assertTrue(alt * 10 <= dijkstra, "A* settled " + alt + " cities, Dijkstra " + dijkstra);
+        assertTrue(bidirectional * 10 <= dijkstra, "bidirectional A* settled " + bidirectional + " cities, Dijkstra " + dijkstra);
+    }
+
+    private static void assertValidPath(TimetableGraph graph, int source, int target, Criteria criteria, int expected,
+                                        SearchScratch scratch) {
+        if (expected < 0) {
+            return;
+        }
+        int city = source;
+        int total = 0;
+        for (int i = 0; i < scratch.pathLength(); i++) {
+            int edge = scratch.pathEdge(i);
+            assertEquals(city, graph.source(edge));
+            total += DijkstraSearch.weight(graph, edge, criteria);
+            city = graph.target(edge);
+        }
+        assertEquals(target, city);
+        assertEquals(expected, total);
+    }
+
+    /** Road-like grid with edges in all four directions and position-dependent costs. */
+    static TimetableGraph grid(int size) {
+        TimetableGraphBuilder builder = new TimetableGraphBuilder();
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                String city = r + "_" + c;
+                int cost = 10 + (r * 31 + c * 17) % 7;
+                if (c + 1 < size) {
+                    builder.addRoute(city, r + "_" + (c + 1), "Bus", "08:00", "09:00", cost);
+                    builder.addRoute(r + "_" + (c + 1), city, "Bus", "08:00", "09:00", cost);
+                }
+                if (r + 1 < size) {
+                    builder.addRoute(city, (r + 1) + "_" + c, "Train", "08:00", "09:00", cost + 3);
+                    builder.addRoute((r + 1) + "_" + c, city, "Train", "08:00", "09:00", cost + 3);
+                }
+            }
+        }
+        return builder.build();
+    }
+}
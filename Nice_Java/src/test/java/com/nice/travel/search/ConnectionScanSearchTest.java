@@ -0,0 +1,119 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.RouteConstraints;
+import com.nice.travel.util.TimeUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionScanSearchTest {
+
+    @Test
+    void testWaitingTimeIsPartOfTheObjective() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 50)
+            .addRoute("B", "C", "Bus", "20:00", "21:00", 50)
+            .addRoute("A", "C", "Train", "10:00", "14:00", 200)
+            .build();
+        SearchScratch scratch = new SearchScratch(4);
+
+        assertEquals(240, ConnectionScanSearch.search(graph, graph.cityId("A"), graph.cityId("C"), scratch));
+        assertEquals(1, scratch.pathLength());
+        assertEquals("Train", graph.modeName(graph.mode(scratch.pathEdge(0))));
+    }
+
+    @Test
+    void testOvernightConnection() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "22:00", "23:30", 50)
+            .addRoute("B", "C", "Bus", "01:00", "02:00", 50)
+            .addRoute("C", "D", "Bus", "23:45", "00:15", 50)
+            .build();
+        SearchScratch scratch = new SearchScratch(4);
+
+        assertEquals(240, ConnectionScanSearch.search(graph, graph.cityId("A"), graph.cityId("C"), scratch));
+        assertEquals(2, scratch.pathLength());
+        assertEquals(240 + 1_305 + 30, ConnectionScanSearch.search(graph, graph.cityId("A"), graph.cityId("D"), scratch));
+        assertEquals(3, scratch.pathLength());
+    }
+
+    @Test
+    void testUnreachableTarget() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "10:00", 150)
+            .addRoute("C", "A", "Bus", "08:00", "10:00", 150)
+            .build();
+
+        assertEquals(-1, ConnectionScanSearch.search(graph, graph.cityId("A"), graph.cityId("C"), new SearchScratch(1)));
+    }
+
+    @Test
+    void testSinglePassMatchesOneScanPerDeparture() {
+        TimetableGraph graph = RandomTimetables.generate(17, 40, 3);
+        SearchScratch scratch = new SearchScratch(16);
+        RouteConstraints[] constraints = {
+            null,
+            new RouteConstraints(Collections.emptyList(), Collections.emptyList(), 0, 0, 45),
+            new RouteConstraints(Collections.emptyList(), Collections.singletonList("Flight"), 0, 0, 20)
+        };
+        int cities = graph.cityCount();
+        int[] all = new int[cities];
+        for (int c = 0; c < cities; c++) {
+            all[c] = c;
+        }
+
+        for (RouteConstraints constraint : constraints) {
+            scratch.constrain(constraint, graph);
+            int minConnection = constraint != null ? constraint.getMinConnectionMinutes() : 0;
+            for (int source = 0; source < cities; source += 3) {
+                int[] values = new int[cities];
+                int[][] paths = new int[cities][];
+                ConnectionScanSearch.searchMany(graph, source, all, cities, scratch, values, paths);
+                for (int target = 0; target < cities; target++) {
+                    int expected = target == source ? -1 : scanPerDeparture(graph, source, target, scratch);
+                    assertEquals(expected, ConnectionScanSearch.search(graph, source, target, scratch),
+                        source + " -> " + target);
+                    assertEquals(expected, values[target], source + " -> " + target);
+                    if (expected >= 0) {
+                        assertEquals(expected, travelTime(graph, paths[target], minConnection));
+                        int[] path = new int[scratch.pathLength()];
+                        for (int e = 0; e < path.length; e++) {
+                            path[e] = scratch.pathEdge(e);
+                        }
+                        assertEquals(expected, travelTime(graph, path, minConnection));
+                    }
+                }
+            }
+        }
+        scratch.constrain(null, graph);
+    }
+
+    /** Reference answer: a separate earliest-arrival scan for each departure minute out of the source. */
+    private static int scanPerDeparture(TimetableGraph graph, int source, int target, SearchScratch scratch) {
+        int best = Integer.MAX_VALUE;
+        for (int edge = graph.firstEdge(source); edge < graph.endEdge(source); edge++) {
+            int start = graph.departure(edge);
+            scratch.reset(graph.cityCount());
+            int arrival = ConnectionScanSearch.scan(graph, source, target, start, Integer.MAX_VALUE, scratch);
+            if (arrival >= 0) {
+                best = Math.min(best, arrival - start);
+            }
+        }
+        return best == Integer.MAX_VALUE ? -1 : best;
+    }
+
+    private static int travelTime(TimetableGraph graph, int[] path, int minConnection) {
+        int time = graph.duration(path[0]);
+        for (int e = 1; e < path.length; e++) {
+            assertEquals(graph.target(path[e - 1]), graph.source(path[e]));
+            time += TimeUtil.calculateWaitingTime(graph.arrival(path[e - 1]), graph.departure(path[e]), minConnection)
+                + graph.duration(path[e]);
+        }
+        return time;
+    }
+}
@@ -0,0 +1,55 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectivityIndexTest {
+
+    @Test
+    void testMatchesBreadthFirstReachability() {
+        TimetableGraph graph = RandomTimetables.generate(17, 120, 1);
+        ConnectivityIndex index = ConnectivityIndex.compute(graph);
+        int cities = graph.cityCount();
+        boolean[][] reaches = new boolean[cities][];
+        for (int c = 0; c < cities; c++) {
+            reaches[c] = reachable(graph, c);
+        }
+
+        int rejected = 0;
+        for (int s = 0; s < cities; s++) {
+            for (int t = 0; t < cities; t++) {
+                if (reaches[s][t]) {
+                    assertTrue(index.mayReach(s, t), s + " -> " + t);
+                    assertEquals(index.weakComponent(s), index.weakComponent(t));
+                } else if (!index.mayReach(s, t)) {
+                    rejected++;
+                }
+                assertEquals(reaches[s][t] && reaches[t][s], index.stronglyConnected(s, t), s + " <-> " + t);
+            }
+        }
+        assertTrue(rejected > cities * cities / 2, "rejected " + rejected);
+        assertTrue(index.weakCount() <= index.strongCount());
+    }
+
+    private static boolean[] reachable(TimetableGraph graph, int source) {
+        boolean[] seen = new boolean[graph.cityCount()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        seen[source] = true;
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int city = queue.poll();
+            for (int edge = graph.firstEdge(city); edge < graph.endEdge(city); edge++) {
+                if (!seen[graph.target(edge)]) {
+                    seen[graph.target(edge)] = true;
+                    queue.add(graph.target(edge));
+                }
+            }
+        }
+        return seen;
+    }
+}
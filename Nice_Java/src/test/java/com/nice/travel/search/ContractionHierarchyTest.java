@@ -0,0 +1,87 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Criteria;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContractionHierarchyTest {
+
+    @Test
+    void testDistancesAndPathsMatchDijkstra() {
+        TimetableGraph graph = RandomTimetables.generate(21, 400, 3);
+        SearchScratch scratch = new SearchScratch(16);
+        SearchScratch reference = new SearchScratch(16);
+        Random random = new Random(21);
+        for (Criteria criteria : new Criteria[] {Criteria.COST, Criteria.HOPS}) {
+            ContractionHierarchy hierarchy = new ContractionHierarchyBuilder(graph, criteria).build();
+            for (int i = 0; i < 500; i++) {
+                int source = random.nextInt(graph.cityCount());
+                int target = random.nextInt(graph.cityCount());
+                int expected = DijkstraSearch.search(graph, source, target, criteria, reference);
+
+                assertEquals(expected, hierarchy.search(source, target, scratch), criteria + " " + source + "->" + target);
+                if (expected >= 0) {
+                    int city = source;
+                    int total = 0;
+                    for (int e = 0; e < scratch.pathLength(); e++) {
+                        assertEquals(city, graph.source(scratch.pathEdge(e)));
+                        total += DijkstraSearch.weight(graph, scratch.pathEdge(e), criteria);
+                        city = graph.target(scratch.pathEdge(e));
+                    }
+                    assertEquals(target, city);
+                    assertEquals(expected, total);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testQueriesSettleFewCities() {
+        TimetableGraph graph = AltSearchTest.grid(60);
+        ContractionHierarchy hierarchy = new ContractionHierarchyBuilder(graph, Criteria.COST).build();
+        SearchScratch scratch = new SearchScratch(16);
+        Random random = new Random(3);
+        long dijkstra = 0;
+        long contracted = 0;
+        for (int i = 0; i < 200; i++) {
+            int source = random.nextInt(graph.cityCount());
+            int target = random.nextInt(graph.cityCount());
+            int expected = DijkstraSearch.search(graph, source, target, Criteria.COST, scratch);
+            dijkstra += scratch.settled();
+            assertEquals(expected, hierarchy.search(source, target, scratch));
+            contracted += scratch.settled();
+        }
+
+        assertTrue(contracted * 5 <= dijkstra, "hierarchy settled " + contracted + " cities, Dijkstra " + dijkstra);
+    }
+
+    @Test
+    void testWriteAndRead(@TempDir Path dir) throws IOException {
+        TimetableGraph graph = RandomTimetables.generate(4, 100, 3);
+        ContractionHierarchy hierarchy = new ContractionHierarchyBuilder(graph, Criteria.HOPS).parallel(false).build();
+        Path file = ContractionHierarchy.fileFor(dir.resolve("timetable.bin"), Criteria.HOPS);
+        hierarchy.write(file);
+
+        ContractionHierarchy loaded = ContractionHierarchy.read(file, RandomTimetables.generate(4, 100, 3));
+        assertEquals(Criteria.HOPS, loaded.criteria());
+        assertEquals(hierarchy.arcCount(), loaded.arcCount());
+        SearchScratch scratch = new SearchScratch(16);
+        for (int source = 0; source < 100; source += 7) {
+            for (int target = 0; target < 100; target += 3) {
+                assertEquals(hierarchy.search(source, target, scratch), loaded.search(source, target, scratch));
+            }
+        }
+
+        TimetableGraph other = new TimetableGraphBuilder().addRoute("A", "B", "Bus", "08:00", "09:00", 10).build();
+        assertThrows(IOException.class, () -> ContractionHierarchy.read(file, other));
+    }
+}
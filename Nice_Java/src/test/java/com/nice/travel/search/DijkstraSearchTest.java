@@ -0,0 +1,83 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Criteria;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DijkstraSearchTest {
+
+    @Test
+    void testShortestPathByCost() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "C", "Flight", "09:00", "11:00", 500)
+            .addRoute("A", "B", "Bus", "08:00", "10:00", 150)
+            .addRoute("B", "C", "Bus", "10:30", "12:30", 150)
+            .build();
+        SearchScratch scratch = new SearchScratch(4);
+
+        int cost = DijkstraSearch.search(graph, graph.cityId("A"), graph.cityId("C"), Criteria.COST, scratch);
+
+        assertEquals(300, cost);
+        assertEquals(2, scratch.pathLength());
+        assertEquals("B", graph.cityName(graph.target(scratch.pathEdge(0))));
+        assertEquals("C", graph.cityName(graph.target(scratch.pathEdge(1))));
+        assertEquals(1, DijkstraSearch.search(graph, graph.cityId("A"), graph.cityId("C"), Criteria.HOPS, scratch));
+        assertEquals(1, scratch.pathLength());
+    }
+
+    @Test
+    void testUnreachableTarget() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "10:00", 150)
+            .addRoute("C", "A", "Bus", "08:00", "10:00", 150)
+            .build();
+
+        assertEquals(-1, DijkstraSearch.search(graph, graph.cityId("A"), graph.cityId("C"), Criteria.TIME, new SearchScratch(1)));
+    }
+
+    @Test
+    void testSteadyStateQueriesDoNotAllocate() {
+        TimetableGraph graph = grid(40);
+        SearchScratch scratch = new SearchScratch(graph.cityCount());
+        int source = graph.cityId("0_0");
+        int target = graph.cityId("39_39");
+        Criteria[] criteria = Criteria.values();
+
+        for (int i = 0; i < 2_000; i++) {
+            DijkstraSearch.search(graph, source, target, criteria[i % criteria.length], scratch);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1_000; i++) {
+            DijkstraSearch.search(graph, source, target, criteria[i % criteria.length], scratch);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated < 1_000, "search allocated " + allocated + " bytes over 1000 queries");
+        assertEquals(78, scratch.pathLength());
+    }
+
+    private static TimetableGraph grid(int size) {
+        TimetableGraphBuilder builder = new TimetableGraphBuilder();
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                String city = r + "_" + c;
+                int departure = (r * 7 + c * 13) % 1_440;
+                if (c + 1 < size) {
+                    builder.addRoute(city, r + "_" + (c + 1), "Bus", departure, (departure + 30 + r) % 1_440, 10 + c);
+                }
+                if (r + 1 < size) {
+                    builder.addRoute(city, (r + 1) + "_" + c, "Train", departure, (departure + 45 + c) % 1_440, 20 + r);
+                }
+            }
+        }
+        return builder.build();
+    }
+}
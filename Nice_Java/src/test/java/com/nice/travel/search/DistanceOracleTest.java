@@ -0,0 +1,81 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableDelta;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableStore;
+import com.nice.travel.model.Criteria;
+import com.nice.travel.model.Route;
+import com.nice.travel.service.TravelOptimizerService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistanceOracleTest {
+
+    @Test
+    void testLookupsMatchSearches() {
+        TimetableGraph graph = RandomTimetables.generate(17, 40, 3);
+        DistanceOracle oracle = DistanceOracle.build(graph, true);
+        TravelOptimizerService service = new TravelOptimizerService();
+        SearchScratch scratch = new SearchScratch(16);
+
+        for (Criteria criteria : new Criteria[] {Criteria.TIME, Criteria.COST, Criteria.HOPS}) {
+            for (int source = 0; source < graph.cityCount(); source++) {
+                for (int target = 0; target < graph.cityCount(); target++) {
+                    int expected = criteria == Criteria.TIME
+                        ? ConnectionScanSearch.search(graph, source, target, scratch)
+                        : source == target ? -1 : DijkstraSearch.search(graph, source, target, criteria, scratch);
+                    int value = oracle.search(source, target, criteria, scratch);
+                    assertEquals(expected, value);
+                    if (value < 0) {
+                        continue;
+                    }
+                    List<Route> path = new ArrayList<>();
+                    int city = source;
+                    for (int i = 0; i < scratch.pathLength(); i++) {
+                        assertEquals(city, graph.source(scratch.pathEdge(i)));
+                        city = graph.target(scratch.pathEdge(i));
+                        path.add(graph.route(scratch.pathEdge(i)));
+                    }
+                    assertEquals(target, city);
+                    assertEquals(value, service.calculateValue(path, criteria.getLabel()));
+                }
+            }
+        }
+        assertTrue(oracle.memoryBytes() > DistanceOracle.estimateBytes(graph.cityCount()));
+    }
+
+    @Test
+    void testServiceUsesOracleOnlyBelowThresholds() {
+        TimetableGraph graph = RandomTimetables.generate(17, 40, 3);
+        assertNull(new TravelOptimizerService().oracleFor(graph));
+        assertNull(new TravelOptimizerService().withOracle(39, Long.MAX_VALUE).oracleFor(graph));
+        assertNull(new TravelOptimizerService().withOracle(40, DistanceOracle.estimateBytes(40) - 1).oracleFor(graph));
+
+        TravelOptimizerService service = new TravelOptimizerService().withOracle(40, 1 << 20);
+        assertSame(service.oracleFor(graph), service.oracleFor(graph));
+        assertEquals(service.oracleFor(graph).memoryBytes(), service.oracleBytes());
+    }
+
+    @Test
+    void testUpdatedVersionsGetTheirIndexesInTheBackground() throws InterruptedException {
+        TimetableGraph graph = RandomTimetables.generate(17, 40, 3);
+        TimetableGraph updated = new TimetableStore(graph).apply(new TimetableDelta()
+            .addRoute(graph.cityName(0), graph.cityName(1), "Bus", "08:00", "09:00", 5));
+        TravelOptimizerService service = new TravelOptimizerService().withOracle(40, 1 << 20);
+
+        assertSame(graph, service.oracleFor(graph).graph());
+        assertNull(service.oracleFor(updated));
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (service.oracleFor(updated) == null || service.connectivityFor(updated) == null) {
+            assertTrue(System.nanoTime() < deadline, "indexes of the updated version never landed");
+            Thread.sleep(10);
+        }
+        assertSame(updated, service.oracleFor(updated).graph());
+        assertSame(updated, service.connectivityFor(updated).graph());
+    }
+}
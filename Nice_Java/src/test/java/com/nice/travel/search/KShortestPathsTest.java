@@ -0,0 +1,117 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Criteria;
+import com.nice.travel.model.Route;
+import com.nice.travel.service.TravelOptimizerService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KShortestPathsTest {
+    private final TravelOptimizerService service = new TravelOptimizerService();
+
+    @Test
+    void testAlternativesAreRankedByTotalTime() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 20)
+            .addRoute("B", "C", "Bus", "09:30", "10:30", 20)
+            .addRoute("B", "C", "Train", "11:00", "11:30", 40)
+            .addRoute("A", "C", "Flight", "08:30", "09:15", 200)
+            .addRoute("A", "C", "Train", "07:00", "12:00", 60)
+            .build();
+
+        int[][] paths = KShortestPaths.search(graph, graph.cityId("A"), graph.cityId("C"), Criteria.TIME, 10,
+            new SearchScratch(4));
+
+        assertEquals(4, paths.length);
+        assertEquals(45, time(graph, paths[0]));
+        assertEquals(150, time(graph, paths[1]));
+        assertEquals(210, time(graph, paths[2]));
+        assertEquals(300, time(graph, paths[3]));
+    }
+
+    @Test
+    void testMatchesExhaustiveEnumeration() {
+        TimetableGraph graph = RandomTimetables.generate(5, 10, 3);
+        SearchScratch scratch = new SearchScratch(16);
+        int k = 12;
+        for (Criteria criteria : new Criteria[] {Criteria.TIME, Criteria.COST, Criteria.HOPS}) {
+            for (int source = 0; source < graph.cityCount(); source += 2) {
+                for (int target = 1; target < graph.cityCount(); target += 2) {
+                    List<Integer> expected = new ArrayList<>();
+                    enumerate(graph, source, target, criteria, new ArrayList<>(), new boolean[graph.cityCount()],
+                        expected);
+                    Collections.sort(expected);
+
+                    int[][] paths = KShortestPaths.search(graph, source, target, criteria, k, scratch);
+                    assertEquals(Math.min(k, expected.size()), paths.length);
+                    Set<List<Integer>> distinct = new HashSet<>();
+                    for (int i = 0; i < paths.length; i++) {
+                        assertEquals(expected.get(i).intValue(), value(graph, paths[i], criteria));
+                        assertTrue(loopless(graph, source, target, paths[i]));
+                        List<Integer> edges = new ArrayList<>();
+                        for (int edge : paths[i]) {
+                            edges.add(edge);
+                        }
+                        assertTrue(distinct.add(edges), "duplicate alternative");
+                    }
+                }
+            }
+        }
+    }
+
+    private void enumerate(TimetableGraph graph, int city, int target, Criteria criteria, List<Integer> path,
+                           boolean[] visited, List<Integer> values) {
+        if (city == target) {
+            int[] edges = new int[path.size()];
+            for (int i = 0; i < edges.length; i++) {
+                edges[i] = path.get(i);
+            }
+            values.add(value(graph, edges, criteria));
+            return;
+        }
+        visited[city] = true;
+        for (int edge = graph.firstEdge(city); edge < graph.endEdge(city); edge++) {
+            if (!visited[graph.target(edge)]) {
+                path.add(edge);
+                enumerate(graph, graph.target(edge), target, criteria, path, visited, values);
+                path.remove(path.size() - 1);
+            }
+        }
+        visited[city] = false;
+    }
+
+    private int value(TimetableGraph graph, int[] edges, Criteria criteria) {
+        List<Route> path = new ArrayList<>();
+        for (int edge : edges) {
+            path.add(graph.route(edge));
+        }
+        return service.calculateValue(path, criteria.getLabel());
+    }
+
+    private int time(TimetableGraph graph, int[] edges) {
+        return value(graph, edges, Criteria.TIME);
+    }
+
+    private static boolean loopless(TimetableGraph graph, int source, int target, int[] edges) {
+        Set<Integer> cities = new HashSet<>();
+        cities.add(source);
+        int city = source;
+        for (int edge : edges) {
+            if (graph.source(edge) != city || !cities.add(graph.target(edge))) {
+                return false;
+            }
+            city = graph.target(edge);
+        }
+        return city == target;
+    }
+}
@@ -0,0 +1,93 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.model.Criteria;
+import com.nice.travel.model.RouteConstraints;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LayeredSearchTest {
+
+    @Test
+    void testMatchesExhaustiveWalks() {
+        TimetableGraph graph = RandomTimetables.generate(23, 25, 3);
+        SearchScratch scratch = new SearchScratch(16);
+        for (int maxHops = 1; maxHops <= 4; maxHops++) {
+            for (int maxCost : new int[] {0, 300, 700}) {
+                scratch.constrain(new RouteConstraints(Collections.<String>emptyList(),
+                    Collections.singletonList("Flight"), maxHops, maxCost, 0), graph);
+                for (int source = 0; source < graph.cityCount(); source += 4) {
+                    for (int target = 0; target < graph.cityCount(); target++) {
+                        if (source == target) {
+                            continue;
+                        }
+                        int[] best = new int[maxHops + 1];
+                        Arrays.fill(best, Integer.MAX_VALUE);
+                        walk(graph, source, target, source, 0, 0, maxHops, best);
+                        int expectedCost = Integer.MAX_VALUE;
+                        int expectedHops = -1;
+                        for (int h = maxHops; h >= 1; h--) {
+                            if (best[h] != Integer.MAX_VALUE && (maxCost == 0 || best[h] <= maxCost)) {
+                                expectedCost = Math.min(expectedCost, best[h]);
+                                expectedHops = h;
+                            }
+                        }
+
+                        int cost = LayeredSearch.search(graph, source, target, Criteria.COST, scratch);
+                        assertEquals(expectedCost == Integer.MAX_VALUE ? -1 : expectedCost, cost);
+                        if (cost >= 0) {
+                            assertPath(graph, scratch, source, target, maxHops, cost);
+                        }
+                        int hops = LayeredSearch.search(graph, source, target, Criteria.HOPS, scratch);
+                        assertEquals(expectedHops, hops);
+                        if (hops >= 0) {
+                            assertEquals(best[hops], pathCost(graph, scratch));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** {@code best[h]} becomes the cheapest walk of exactly {@code h} non-flight routes that never returns to the source. */
+    private static void walk(TimetableGraph graph, int source, int target, int city, int hops, int cost, int maxHops,
+                             int[] best) {
+        if (city == target && hops > 0) {
+            best[hops] = Math.min(best[hops], cost);
+        }
+        if (hops == maxHops) {
+            return;
+        }
+        for (int edge = graph.firstEdge(city); edge < graph.endEdge(city); edge++) {
+            if (graph.target(edge) != source && !graph.modeName(graph.mode(edge)).equals("Flight")) {
+                walk(graph, source, target, graph.target(edge), hops + 1, cost + graph.cost(edge), maxHops, best);
+            }
+        }
+    }
+
+    private static void assertPath(TimetableGraph graph, SearchScratch scratch, int source, int target, int maxHops,
+                                   int cost) {
+        assertTrue(scratch.pathLength() <= maxHops);
+        int city = source;
+        for (int i = 0; i < scratch.pathLength(); i++) {
+            assertEquals(city, graph.source(scratch.pathEdge(i)));
+            assertNotEquals("Flight", graph.modeName(graph.mode(scratch.pathEdge(i))));
+            city = graph.target(scratch.pathEdge(i));
+        }
+        assertEquals(target, city);
+        assertEquals(cost, pathCost(graph, scratch));
+    }
+
+    private static int pathCost(TimetableGraph graph, SearchScratch scratch) {
+        int cost = 0;
+        for (int i = 0; i < scratch.pathLength(); i++) {
+            cost += graph.cost(scratch.pathEdge(i));
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,84 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Criteria;
+import com.nice.travel.model.Route;
+import com.nice.travel.service.TravelOptimizerService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParetoSearchTest {
+
+    @Test
+    void testFrontListsTradeOffsFastestFirst() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 20)
+            .addRoute("B", "C", "Bus", "09:30", "10:30", 20)
+            .addRoute("A", "C", "Flight", "08:30", "09:15", 200)
+            .addRoute("A", "C", "Train", "07:00", "12:00", 60)
+            .addRoute("A", "C", "Bus", "06:00", "12:00", 80)
+            .build();
+
+        ParetoFront front = ParetoSearch.search(graph, graph.cityId("A"), graph.cityId("C"), new SearchScratch(4));
+
+        assertEquals(3, front.size());
+        assertArrayEquals(new int[] {45, 200, 1}, option(front, 0));
+        assertArrayEquals(new int[] {150, 40, 2}, option(front, 1));
+        assertArrayEquals(new int[] {300, 60, 1}, option(front, 2));
+    }
+
+    @Test
+    void testFrontContainsEverySingleCriterionOptimum() {
+        TimetableGraph graph = RandomTimetables.generate(11, 50, 3);
+        TravelOptimizerService service = new TravelOptimizerService();
+        SearchScratch scratch = new SearchScratch(16);
+
+        for (int source = 0; source < 8; source++) {
+            for (int target = 0; target < graph.cityCount(); target += 3) {
+                if (target == source) {
+                    continue;
+                }
+                ParetoFront front = ParetoSearch.search(graph, source, target, scratch);
+                int time = ConnectionScanSearch.search(graph, source, target, scratch);
+                int cost = DijkstraSearch.search(graph, source, target, Criteria.COST, scratch);
+                int hops = DijkstraSearch.search(graph, source, target, Criteria.HOPS, scratch);
+                assertEquals(time < 0, front.size() == 0);
+                if (time < 0) {
+                    continue;
+                }
+
+                int minTime = Integer.MAX_VALUE, minCost = Integer.MAX_VALUE, minHops = Integer.MAX_VALUE;
+                for (int i = 0; i < front.size(); i++) {
+                    List<Route> path = new ArrayList<>();
+                    for (int edge : front.path(i)) {
+                        path.add(graph.route(edge));
+                    }
+                    assertEquals(front.time(i), service.calculateTotalTime(path));
+                    assertEquals(front.cost(i), service.calculateTotalCost(path));
+                    assertEquals(front.hops(i), path.size());
+                    for (int j = 0; j < front.size(); j++) {
+                        assertFalse(j != i && front.time(j) <= front.time(i) && front.cost(j) <= front.cost(i)
+                            && front.hops(j) <= front.hops(i), "dominated option");
+                    }
+                    minTime = Math.min(minTime, front.time(i));
+                    minCost = Math.min(minCost, front.cost(i));
+                    minHops = Math.min(minHops, front.hops(i));
+                }
+                assertEquals(time, minTime);
+                assertEquals(cost, minCost);
+                assertEquals(hops, minHops);
+                assertEquals(time, front.time(0));
+            }
+        }
+    }
+
+    private static int[] option(ParetoFront front, int i) {
+        return new int[] {front.time(i), front.cost(i), front.hops(i)};
+    }
+}
@@ -0,0 +1,157 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Route;
+import com.nice.travel.service.TravelOptimizerService;
+import com.nice.travel.util.TimeUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProfileSearchTest {
+    private final TravelOptimizerService service = new TravelOptimizerService();
+
+    @Test
+    void testLaterDeparturesMustArriveEarlier() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "06:00", "07:00", 20)
+            .addRoute("B", "C", "Bus", "07:30", "08:00", 20)
+            .addRoute("A", "C", "Train", "07:00", "09:00", 60)
+            .addRoute("A", "C", "Train", "08:00", "10:00", 60)
+            .addRoute("A", "B", "Bus", "10:00", "11:00", 20)
+            .addRoute("B", "C", "Bus", "11:30", "12:00", 20)
+            .addRoute("A", "C", "Train", "11:00", "13:00", 60)
+            .addRoute("A", "C", "Flight", "11:30", "12:30", 200)
+            .addRoute("A", "C", "Bus", "23:30", "00:30", 10)
+            .build();
+        int a = graph.cityId("A");
+        int c = graph.cityId("C");
+
+        Profile morning = ProfileSearch.search(graph, a, c, minutes("06:00"), minutes("11:30"), new SearchScratch(4));
+        assertArrayEquals(new String[] {"06:00-08:00", "07:00-09:00", "08:00-10:00", "10:00-12:00", "11:30-12:30"},
+            options(morning));
+        assertEquals(2, morning.path(0).length);
+
+        Profile beforeFlight = ProfileSearch.search(graph, a, c, minutes("06:00"), minutes("11:00"), new SearchScratch(4));
+        assertEquals("11:00-13:00", options(beforeFlight)[4]);
+
+        Profile overnight = ProfileSearch.search(graph, a, c, minutes("23:00"),
+            minutes("06:30") + TimeUtil.MINUTES_PER_DAY, new SearchScratch(4));
+        assertArrayEquals(new String[] {"23:30-00:30", "06:00-08:00"}, options(overnight));
+        assertEquals(TimeUtil.MINUTES_PER_DAY + minutes("08:00"), overnight.arrival(1));
+    }
+
+    @Test
+    void testMatchesPointQueryPerDeparture() {
+        TimetableGraph graph = RandomTimetables.generate(12, 30, 3);
+        SearchScratch scratch = new SearchScratch(16);
+        Random random = new Random(4);
+        for (int source = 0; source < graph.cityCount(); source += 3) {
+            for (int target = 1; target < graph.cityCount(); target += 4) {
+                if (source == target) {
+                    continue;
+                }
+                int earliest = random.nextInt(TimeUtil.MINUTES_PER_DAY);
+                int latest = earliest + random.nextInt(TimeUtil.MINUTES_PER_DAY);
+                List<int[]> expected = expected(graph, source, target, earliest, latest);
+
+                Profile profile = ProfileSearch.search(graph, source, target, earliest, latest, scratch);
+
+                assertEquals(expected.size(), profile.size());
+                for (int i = 0; i < profile.size(); i++) {
+                    assertEquals(expected.get(i)[0], profile.departure(i));
+                    assertEquals(expected.get(i)[1], profile.arrival(i));
+                    List<Route> path = new ArrayList<>();
+                    int city = source;
+                    for (int edge : profile.path(i)) {
+                        assertEquals(city, graph.source(edge));
+                        city = graph.target(edge);
+                        path.add(graph.route(edge));
+                    }
+                    assertEquals(target, city);
+                    assertEquals(profile.departure(i) % TimeUtil.MINUTES_PER_DAY, graph.departure(profile.path(i)[0]));
+                    assertEquals(profile.time(i), service.calculateTotalTime(path));
+                }
+            }
+        }
+    }
+
+    /**
+     * For each departure in the window, the earliest arrival by a time-dependent Dijkstra that
+     * leaves the source on a route departing then and never returns; then the options no later
+     * departure matches.
+     */
+    private static List<int[]> expected(TimetableGraph graph, int source, int target, int earliest, int latest) {
+        TreeSet<Integer> departures = new TreeSet<>();
+        for (int edge = graph.firstEdge(source); edge < graph.endEdge(source); edge++) {
+            for (int minute = graph.departure(edge); minute <= latest; minute += TimeUtil.MINUTES_PER_DAY) {
+                if (minute >= earliest) {
+                    departures.add(minute);
+                }
+            }
+        }
+        List<int[]> options = new ArrayList<>();
+        int best = Integer.MAX_VALUE;
+        for (int departure : departures.descendingSet()) {
+            int arrival = earliestArrival(graph, source, target, departure);
+            if (arrival < best) {
+                best = arrival;
+                options.add(0, new int[] {departure, arrival});
+            }
+        }
+        return options;
+    }
+
+    private static int earliestArrival(TimetableGraph graph, int source, int target, int departure) {
+        int[] labels = new int[graph.cityCount()];
+        boolean[] settled = new boolean[graph.cityCount()];
+        Arrays.fill(labels, Integer.MAX_VALUE);
+        for (int edge = graph.firstEdge(source); edge < graph.endEdge(source); edge++) {
+            if (graph.departure(edge) == departure % TimeUtil.MINUTES_PER_DAY && graph.target(edge) != source) {
+                labels[graph.target(edge)] = Math.min(labels[graph.target(edge)], departure + graph.duration(edge));
+            }
+        }
+        while (true) {
+            int current = -1;
+            for (int city = 0; city < labels.length; city++) {
+                if (!settled[city] && labels[city] != Integer.MAX_VALUE
+                        && (current < 0 || labels[city] < labels[current])) {
+                    current = city;
+                }
+            }
+            if (current < 0 || current == target) {
+                return current < 0 ? Integer.MAX_VALUE : labels[current];
+            }
+            settled[current] = true;
+            for (int edge = graph.firstEdge(current); edge < graph.endEdge(current); edge++) {
+                int next = graph.target(edge);
+                int arrival = labels[current] + TimeUtil.calculateWaitingTime(
+                    labels[current] % TimeUtil.MINUTES_PER_DAY, graph.departure(edge)) + graph.duration(edge);
+                if (next != source && arrival < labels[next]) {
+                    labels[next] = arrival;
+                }
+            }
+        }
+    }
+
+    private static String[] options(Profile profile) {
+        String[] options = new String[profile.size()];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = TimeUtil.minutesToTime(profile.departure(i) % TimeUtil.MINUTES_PER_DAY) + "-"
+                + TimeUtil.minutesToTime(profile.arrival(i) % TimeUtil.MINUTES_PER_DAY);
+        }
+        return options;
+    }
+
+    private static int minutes(String time) {
+        return TimeUtil.timeToMinutes(time);
+    }
+}
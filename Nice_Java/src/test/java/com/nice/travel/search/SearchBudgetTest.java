@@ -0,0 +1,79 @@
+package com.nice.travel.search;
+
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Criteria;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchBudgetTest {
+
+    @Test
+    void testSettledLimitStopsDijkstra() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 10)
+            .addRoute("B", "C", "Bus", "09:30", "10:30", 10)
+            .addRoute("C", "D", "Bus", "11:00", "12:00", 10)
+            .build();
+        SearchScratch scratch = new SearchScratch(4);
+
+        scratch.limit(new SearchBudget(0, 2, 0, null));
+        assertEquals(-1, DijkstraSearch.search(graph, graph.cityId("A"), graph.cityId("D"), Criteria.COST, scratch));
+        assertEquals(SearchStatus.SETTLED_LIMIT_EXCEEDED, scratch.status());
+
+        scratch.limit(null);
+        assertEquals(30, DijkstraSearch.search(graph, graph.cityId("A"), graph.cityId("D"), Criteria.COST, scratch));
+        assertNull(scratch.status());
+    }
+
+    @Test
+    void testHopLimitCutsDeeperJourneys() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 10)
+            .addRoute("B", "C", "Bus", "09:30", "10:30", 10)
+            .addRoute("C", "D", "Bus", "11:00", "12:00", 10)
+            .addRoute("A", "D", "Flight", "13:00", "18:00", 100)
+            .build();
+        int a = graph.cityId("A");
+        SearchScratch scratch = new SearchScratch(4);
+        assertEquals(240, ConnectionScanSearch.search(graph, a, graph.cityId("D"), scratch));
+
+        scratch.limit(new SearchBudget(0, 0, 2, null));
+        assertEquals(100, DijkstraSearch.search(graph, a, graph.cityId("D"), Criteria.COST, scratch));
+        assertEquals(300, ConnectionScanSearch.search(graph, a, graph.cityId("D"), scratch));
+        assertEquals(1, scratch.pathLength());
+
+        scratch.limit(new SearchBudget(0, 0, 1, null));
+        assertEquals(-1, DijkstraSearch.search(graph, a, graph.cityId("C"), Criteria.COST, scratch));
+        assertEquals(SearchStatus.HOP_LIMIT_EXCEEDED, scratch.status());
+        assertEquals(0, ParetoSearch.search(graph, a, graph.cityId("C"), scratch).size());
+    }
+
+    @Test
+    void testCancelledTokenStopsConnectionScan() {
+        TimetableGraph graph = RandomTimetables.generate(5, 2000, 3);
+        CancellationToken token = new CancellationToken();
+        SearchScratch scratch = new SearchScratch(16);
+        token.cancel();
+
+        scratch.limit(new SearchBudget(0, 0, 0, token));
+        ConnectionScanSearch.searchFrom(graph, 0, 0, scratch);
+
+        assertEquals(SearchStatus.CANCELLED, scratch.status());
+        assertTrue(scratch.relaxed <= 256);
+    }
+
+    @Test
+    void testDeadlineStopsSearch() throws InterruptedException {
+        TimetableGraph graph = RandomTimetables.generate(8, 2000, 3);
+        SearchScratch scratch = new SearchScratch(16);
+
+        scratch.limit(new SearchBudget(1, 0, 0, null));
+        Thread.sleep(5);
+
+        assertEquals(0, ParetoSearch.search(graph, 0, 1999, scratch).size());
+        assertEquals(SearchStatus.DEADLINE_EXCEEDED, scratch.status());
+    }
+}
@@ -0,0 +1,119 @@
+package com.nice.travel.server;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.nice.travel.Main;
+import com.nice.travel.api.HuggingFaceClient;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.service.TravelOptimizerService;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NdjsonRequestStreamTest {
+
+    private static final String[] REQUESTS = {
+        "{\"request_id\": \"cost\", \"source\": \"A\", \"destination\": \"C\", \"criteria\": \"Cost\"}",
+        "",
+        "{\"source\": \"A\", \"destination\": \"B\", \"criteria\": \"Time\"}",
+        "{not json",
+        "{\"request_id\": \"missing\", \"source\": \"A\", \"destination\": \"Z\", \"criteria\": \"Hops\"}"
+    };
+
+    private static TimetableGraph graph() {
+        return new TimetableGraphBuilder()
+            .addRoute("A", "B", "Train", "08:00", "09:00", 50)
+            .addRoute("B", "C", "Bus", "09:30", "10:00", 20)
+            .build();
+    }
+
+    private static List<JsonObject> run(int workers, int maxInFlight, boolean ordered, String input) throws IOException {
+        NdjsonRequestStream stream = new NdjsonRequestStream(
+            new Main(new TravelOptimizerService(null, new HuggingFaceClient(), null)),
+            graph(), false, workers, maxInFlight, ordered);
+        StringWriter out = new StringWriter();
+        long answered = stream.run(new BufferedReader(new StringReader(input)), out);
+        List<JsonObject> lines = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            lines.add(JsonParser.parseString(line).getAsJsonObject());
+        }
+        assertEquals(answered, lines.size());
+        return lines;
+    }
+
+    @Test
+    void testOrderedStreamTagsEveryLine() throws IOException {
+        List<JsonObject> lines = run(3, 2, true, String.join("\n", REQUESTS));
+
+        assertEquals(4, lines.size());
+        assertEquals("cost", lines.get(0).get("request_id").getAsString());
+        assertEquals(70, lines.get(0).get("value").getAsInt());
+        assertEquals("request_2", lines.get(1).get("request_id").getAsString());
+        assertEquals(60, lines.get(1).get("value").getAsInt());
+        assertEquals("request_3", lines.get(2).get("request_id").getAsString());
+        assertTrue(lines.get(2).has("error"));
+        assertEquals("missing", lines.get(3).get("request_id").getAsString());
+        assertEquals("no_route", lines.get(3).get("status").getAsString());
+    }
+
+    @Test
+    void testUnorderedStreamAnswersEveryRequest() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            input.append("{\"request_id\": \"r").append(i).append("\", \"source\": \"A\", \"destination\": \"")
+                .append(i % 2 == 0 ? "B" : "C").append("\", \"criteria\": \"Hops\"}\n");
+        }
+
+        List<JsonObject> lines = run(4, 8, false, input.toString());
+
+        Set<String> ids = new HashSet<>();
+        for (JsonObject line : lines) {
+            String id = line.get("request_id").getAsString();
+            assertTrue(ids.add(id));
+            int expected = Integer.parseInt(id.substring(1)) % 2 == 0 ? 1 : 2;
+            assertEquals(expected, line.getAsJsonArray("schedule").size(), id);
+        }
+        assertEquals(200, ids.size());
+    }
+
+    @Test
+    void testErrorInOneRequestStillWritesItsLine() {
+        Main failing = new Main(new TravelOptimizerService(null, new HuggingFaceClient(), null)) {
+            @Override
+            public void optimizeRequests(TimetableGraph graph, List<JsonElement> requests, int firstIndex,
+                                         boolean genSummary, BiConsumer<String, JsonObject> sink) throws IOException {
+                if (firstIndex == 1) {
+                    throw new StackOverflowError();
+                }
+                super.optimizeRequests(graph, requests, firstIndex, genSummary, sink);
+            }
+        };
+        NdjsonRequestStream stream = new NdjsonRequestStream(failing, graph(), false, 2, 1, true);
+        StringWriter out = new StringWriter();
+        String input = REQUESTS[0] + "\n" + REQUESTS[2] + "\n" + REQUESTS[0] + "\n";
+
+        long answered = assertTimeoutPreemptively(Duration.ofSeconds(10),
+            () -> stream.run(new BufferedReader(new StringReader(input)), out));
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(3, answered);
+        assertEquals(3, lines.length);
+        JsonObject failed = JsonParser.parseString(lines[1]).getAsJsonObject();
+        assertEquals("request_2", failed.get("request_id").getAsString());
+        assertTrue(failed.get("error").getAsString().contains("StackOverflowError"));
+        assertEquals(70, JsonParser.parseString(lines[2]).getAsJsonObject().get("value").getAsInt());
+    }
+}
@@ -0,0 +1,178 @@
+package com.nice.travel.server;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.nice.travel.Main;
+import com.nice.travel.api.HuggingFaceClient;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.service.TravelOptimizerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TravelQueryServerTest {
+
+    private TravelQueryServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.stop(1000);
+        }
+    }
+
+    private static TimetableGraph graph() {
+        return new TimetableGraphBuilder()
+            .addRoute("A", "B", "Train", "08:00", "09:00", 50)
+            .addRoute("B", "C", "Bus", "09:30", "10:00", 20)
+            .build();
+    }
+
+    private static Main main() {
+        return new Main(new TravelOptimizerService(null, new HuggingFaceClient(), null));
+    }
+
+    private int post(String path, String body, StringBuilder response) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+            "http://127.0.0.1:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                response.append(line);
+            }
+        }
+        return status;
+    }
+
+    @Test
+    void testSingleAndBatchRequests() throws IOException {
+        server = new TravelQueryServer(main(), graph(), false, 0, 2, 16);
+        server.start();
+
+        StringBuilder single = new StringBuilder();
+        assertEquals(200, post("/optimize",
+            "{\"request_id\": \"r1\", \"source\": \"A\", \"destination\": \"C\", \"criteria\": \"Cost\"}", single));
+        JsonObject result = JsonParser.parseString(single.toString()).getAsJsonObject().getAsJsonObject("r1");
+        assertEquals(70, result.get("value").getAsInt());
+        assertEquals(2, result.getAsJsonArray("schedule").size());
+
+        StringBuilder batch = new StringBuilder();
+        assertEquals(200, post("/optimize", "{\"requests\": ["
+            + "{\"request_id\": \"r1\", \"source\": \"A\", \"destination\": \"B\", \"criteria\": \"Time\"},"
+            + "{\"request_id\": \"r2\", \"source\": \"B\", \"destination\": \"C\", \"criteria\": \"Hops\"},"
+            + "{\"request_id\": \"r3\", \"source\": \"A\"}]}", batch));
+        JsonObject results = JsonParser.parseString(batch.toString()).getAsJsonObject();
+        assertEquals(60, results.getAsJsonObject("r1").get("value").getAsInt());
+        assertEquals(1, results.getAsJsonObject("r2").get("value").getAsInt());
+        assertTrue(results.getAsJsonObject("r3").has("error"));
+    }
+
+    @Test
+    void testRouteUpdateIsVisibleToLaterQueries() throws IOException {
+        server = new TravelQueryServer(main(), graph(), false, 0, 2, 16);
+        server.start();
+
+        StringBuilder update = new StringBuilder();
+        assertEquals(200, post("/routes", "{\"remove\": [{\"source\": \"B\", \"destination\": \"C\", "
+            + "\"mode\": \"Bus\", \"departureTime\": \"09:30\", \"arrivalTime\": \"10:00\", \"cost\": 20}], "
+            + "\"add\": [{\"source\": \"B\", \"destination\": \"C\", \"mode\": \"Bus\", "
+            + "\"departureTime\": \"09:30\", \"arrivalTime\": \"10:00\", \"cost\": 5}]}", update));
+        assertEquals(1, JsonParser.parseString(update.toString()).getAsJsonObject().get("version").getAsInt());
+
+        StringBuilder result = new StringBuilder();
+        assertEquals(200, post("/optimize",
+            "{\"request_id\": \"r1\", \"source\": \"A\", \"destination\": \"C\", \"criteria\": \"Cost\"}", result));
+        assertEquals(55, JsonParser.parseString(result.toString()).getAsJsonObject()
+            .getAsJsonObject("r1").get("value").getAsInt());
+
+        assertEquals(409, post("/routes", "{\"remove\": [{\"source\": \"B\", \"destination\": \"C\", "
+            + "\"mode\": \"Bus\", \"departureTime\": \"09:30\", \"arrivalTime\": \"10:00\", \"cost\": 20}]}",
+            new StringBuilder()));
+    }
+
+    @Test
+    void testMalformedBody() throws IOException {
+        server = new TravelQueryServer(main(), graph(), false, 0, 1, 1);
+        server.start();
+
+        StringBuilder response = new StringBuilder();
+        assertEquals(400, post("/optimize", "{\"requests\": [", response));
+        assertTrue(response.toString().contains("error"));
+
+        response.setLength(0);
+        assertEquals(400, post("/optimize", "{\"requests\": {\"source\": \"A\"}}", response));
+        assertTrue(response.toString().contains("must be an array"));
+
+        for (String body : new String[] {"", "null", "42"}) {
+            response.setLength(0);
+            assertEquals(400, post("/optimize", body, response), body);
+            assertTrue(response.toString().contains("error"), body);
+        }
+    }
+
+    @Test
+    void testFullQueueIsShed() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Main blocking = new Main(new TravelOptimizerService(null, new HuggingFaceClient(), null)) {
+            @Override
+            public void optimizeRequests(TimetableGraph graph, List<JsonElement> requests, boolean genSummary,
+                                         BiConsumer<String, JsonObject> sink) throws IOException {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.optimizeRequests(graph, requests, genSummary, sink);
+            }
+        };
+        server = new TravelQueryServer(blocking, graph(), false, 0, 1, 1);
+        server.start();
+
+        String request = "{\"source\": \"A\", \"destination\": \"B\", \"criteria\": \"Cost\"}";
+        Thread running = new Thread(() -> {
+            try {
+                post("/optimize", request, new StringBuilder());
+            } catch (IOException ignored) {
+            }
+        });
+        Thread queued = new Thread(() -> {
+            try {
+                post("/optimize", request, new StringBuilder());
+            } catch (IOException ignored) {
+            }
+        });
+        running.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        queued.start();
+        while (server.queuedRequests() == 0) {
+            Thread.sleep(5);
+        }
+
+        StringBuilder shed = new StringBuilder();
+        assertEquals(503, post("/optimize", request, shed));
+        release.countDown();
+        running.join(5000);
+        queued.join(5000);
+    }
+}
@@ -0,0 +1,257 @@
+package com.nice.travel.service;
+
+import com.nice.travel.cache.LruRouteResultCache;
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Route;
+import com.nice.travel.model.RouteConstraints;
+import com.nice.travel.model.TravelRequest;
+import com.nice.travel.search.Landmarks;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchQueryPlannerTest {
+
+    private final TravelOptimizerService service = new TravelOptimizerService();
+    private final BatchQueryPlanner planner = new BatchQueryPlanner(service);
+
+    @Test
+    void testGroupedSearchMatchesIndividualSearches() {
+        TimetableGraph graph = RandomTimetables.generate(42, 60, 3);
+        String[] criteria = {"Time", "Cost", "Hops"};
+        List<TravelRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            requests.add(new TravelRequest("r" + i, "C" + (i % 4), "C" + ((i * 7) % 60), criteria[(i / 4) % 3]));
+        }
+        requests.add(new TravelRequest("unknown", "C0", "Nowhere", "Cost"));
+
+        List<List<Route>> grouped = planner.plan(graph, requests, true);
+
+        for (int i = 0; i < requests.size(); i++) {
+            TravelRequest request = requests.get(i);
+            List<Route> single = service.findOptimalPath(graph, request.getSource(), request.getDestination(), request.getCriteria());
+            assertEquals(value(single, request.getCriteria()), value(grouped.get(i), request.getCriteria()), request.getRequestId());
+        }
+    }
+
+    @Test
+    void testOracleBackedPlanMatchesIndividualSearches() {
+        TimetableGraph graph = RandomTimetables.generate(21, 50, 3);
+        String[] criteria = {"Time", "Cost", "Hops"};
+        List<TravelRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            requests.add(new TravelRequest("r" + i, "C" + (i % 6), "C" + ((i * 11) % 50), criteria[i % 3]));
+        }
+
+        List<List<Route>> planned = new BatchQueryPlanner(new TravelOptimizerService().withOracle(50, 1 << 20))
+            .plan(graph, requests, true);
+
+        for (int i = 0; i < requests.size(); i++) {
+            TravelRequest request = requests.get(i);
+            List<Route> single = service.findOptimalPath(graph, request.getSource(), request.getDestination(), request.getCriteria());
+            assertEquals(value(single, request.getCriteria()), value(planned.get(i), request.getCriteria()), request.getRequestId());
+        }
+    }
+
+    @Test
+    void testParetoRequestAnswersSingleCriteriaForTheSamePair() {
+        TimetableGraph graph = RandomTimetables.generate(7, 40, 3);
+        String[] criteria = {"Time", "Pareto", "Cost", "Hops"};
+        List<TravelRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            requests.add(new TravelRequest("r" + i, "C" + (i % 5), "C" + (5 + (i / 4) % 20), criteria[i % 4]));
+        }
+
+        List<List<List<Route>>> schedules = planner.planSchedules(graph, requests, false);
+
+        for (int i = 0; i < requests.size(); i++) {
+            TravelRequest request = requests.get(i);
+            List<Route> fastest = service.findOptimalPath(graph, request.getSource(), request.getDestination(), "Time");
+            if (request.getCriteria().equals("Pareto")) {
+                assertEquals(fastest.isEmpty(), schedules.get(i).isEmpty(), request.getRequestId());
+                if (!fastest.isEmpty()) {
+                    assertEquals(value(fastest, "Time"), value(schedules.get(i).get(0), "Time"), request.getRequestId());
+                }
+            } else {
+                List<Route> single = service.findOptimalPath(graph, request.getSource(), request.getDestination(), request.getCriteria());
+                assertEquals(1, schedules.get(i).size());
+                assertEquals(value(single, request.getCriteria()), value(schedules.get(i).get(0), request.getCriteria()), request.getRequestId());
+            }
+        }
+    }
+
+    @Test
+    void testAlternativeRequestsShareOneRanking() {
+        TimetableGraph graph = RandomTimetables.generate(3, 40, 3);
+        String[] criteria = {"Time", "Cost", "Hops"};
+        List<TravelRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            requests.add(new TravelRequest("r" + i, "C" + (i % 3), "C" + (3 + (i / 3) % 10), criteria[i % 3], 1 + i % 5));
+        }
+
+        List<List<List<Route>>> schedules = planner.planSchedules(graph, requests, true);
+
+        for (int i = 0; i < requests.size(); i++) {
+            TravelRequest request = requests.get(i);
+            List<Route> best = service.findOptimalPath(graph, request.getSource(), request.getDestination(), request.getCriteria());
+            List<List<Route>> ranked = schedules.get(i);
+            assertTrue(ranked.size() <= request.getK(), request.getRequestId());
+            assertEquals(best.isEmpty(), ranked.isEmpty() || ranked.get(0).isEmpty(), request.getRequestId());
+            if (!best.isEmpty()) {
+                assertEquals(value(best, request.getCriteria()), value(ranked.get(0), request.getCriteria()), request.getRequestId());
+            }
+            for (int r = 1; r < ranked.size(); r++) {
+                assertTrue(value(ranked.get(r - 1), request.getCriteria()) <= value(ranked.get(r), request.getCriteria()));
+            }
+        }
+    }
+
+    @Test
+    void testDepartureWindowRequestsShareOneProfile() {
+        TimetableGraph graph = RandomTimetables.generate(6, 40, 3);
+        List<TravelRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            requests.add(new TravelRequest("r" + i, "C" + (i % 4), "C" + (4 + (i / 2) % 10), "Time", 1, 0, 1439));
+        }
+
+        List<List<List<Route>>> schedules = planner.planSchedules(graph, requests, true);
+
+        for (int i = 0; i < requests.size(); i++) {
+            TravelRequest request = requests.get(i);
+            List<Route> fastest = service.findOptimalPath(graph, request.getSource(), request.getDestination(), "Time");
+            List<List<Route>> profile = schedules.get(i);
+            assertEquals(fastest.isEmpty(), profile.isEmpty(), request.getRequestId());
+            int best = Integer.MAX_VALUE;
+            for (List<Route> schedule : profile) {
+                best = Math.min(best, value(schedule, "Time"));
+            }
+            if (!fastest.isEmpty()) {
+                assertEquals(value(fastest, "Time"), best, request.getRequestId());
+            }
+        }
+        assertSame(schedules.get(0), schedules.get(20));
+    }
+
+    @Test
+    void testConstrainedRequestsHonourModesAndLimits() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 10)
+            .addRoute("B", "C", "Bus", "09:10", "10:00", 10)
+            .addRoute("A", "C", "Flight", "08:30", "09:00", 500)
+            .addRoute("B", "C", "Train", "09:40", "10:10", 30)
+            .addRoute("A", "C", "Train", "07:00", "12:00", 50)
+            .build();
+        List<String> none = Collections.emptyList();
+        List<String> flights = Collections.singletonList("Flight");
+        List<TravelRequest> requests = Arrays.asList(
+            new TravelRequest("fastest", "A", "C", "Time"),
+            new TravelRequest("noFlight", "A", "C", "Time")
+                .withConstraints(new RouteConstraints(none, flights, 0, 0, 0)),
+            new TravelRequest("connection", "A", "C", "Time")
+                .withConstraints(new RouteConstraints(none, flights, 0, 0, 20)),
+            new TravelRequest("busOnly", "A", "C", "Time")
+                .withConstraints(new RouteConstraints(Collections.singletonList("Bus"), none, 0, 0, 20)),
+            new TravelRequest("direct", "A", "C", "Time")
+                .withConstraints(new RouteConstraints(none, flights, 1, 0, 0)),
+            new TravelRequest("cheap", "A", "C", "Time")
+                .withConstraints(new RouteConstraints(none, none, 0, 40, 0)),
+            new TravelRequest("directCost", "A", "C", "Cost")
+                .withConstraints(new RouteConstraints(none, none, 1, 0, 0)),
+            new TravelRequest("cheapHops", "A", "C", "Hops")
+                .withConstraints(new RouteConstraints(none, none, 0, 30, 0)),
+            new TravelRequest("tooCheap", "A", "C", "Cost")
+                .withConstraints(new RouteConstraints(none, none, 0, 15, 0)),
+            new TravelRequest("front", "A", "C", "Pareto")
+                .withConstraints(new RouteConstraints(none, flights, 0, 0, 20)));
+
+        List<List<List<Route>>> schedules = planner.planSchedules(graph, requests, false);
+
+        assertEquals(30, service.calculateTotalTime(schedules.get(0).get(0)));
+        assertEquals(120, service.calculateTotalTime(schedules.get(1).get(0)));
+        assertEquals(130, service.calculateTotalTime(schedules.get(2).get(0), 20));
+        assertEquals("Train", schedules.get(2).get(0).get(1).getMode());
+        assertEquals(1_560, service.calculateTotalTime(schedules.get(3).get(0), 20));
+        assertEquals(300, service.calculateTotalTime(schedules.get(4).get(0)));
+        assertEquals(120, service.calculateTotalTime(schedules.get(5).get(0)));
+        assertEquals(50, service.calculateTotalCost(schedules.get(6).get(0)));
+        assertEquals(2, schedules.get(7).get(0).size());
+        assertTrue(schedules.get(8).get(0).isEmpty());
+        assertEquals(3, schedules.get(9).size());
+        for (List<Route> schedule : schedules.get(9)) {
+            assertNotEquals("Flight", schedule.get(0).getMode());
+        }
+    }
+
+    @Test
+    void testHopLimitedRequestsBypassTheRouteCache() {
+        TimetableGraph graph = new TimetableGraphBuilder()
+            .addRoute("A", "B", "Bus", "08:00", "09:00", 10)
+            .addRoute("B", "C", "Bus", "09:30", "10:30", 10)
+            .addRoute("A", "C", "Flight", "13:00", "14:00", 100)
+            .build();
+        BatchQueryPlanner cached = new BatchQueryPlanner(new TravelOptimizerService(new LruRouteResultCache(16)));
+        List<TravelRequest> requests = Arrays.asList(
+            new TravelRequest("plain", "A", "C", "Cost"),
+            new TravelRequest("hop1", "A", "C", "Cost").withBudget(0, 0, 1),
+            new TravelRequest("again", "A", "C", "Cost"));
+
+        for (int run = 0; run < 2; run++) {
+            List<List<List<Route>>> schedules = cached.planSchedules(graph, requests, false);
+
+            assertEquals(20, service.calculateTotalCost(schedules.get(0).get(0)));
+            assertEquals(100, service.calculateTotalCost(schedules.get(1).get(0)));
+            assertEquals(1, schedules.get(1).get(0).size());
+            assertEquals(20, service.calculateTotalCost(schedules.get(2).get(0)));
+        }
+        List<List<List<Route>>> hopFirst = new BatchQueryPlanner(new TravelOptimizerService(new LruRouteResultCache(16)))
+            .planSchedules(graph, Arrays.asList(requests.get(1), requests.get(0)), false);
+        assertEquals(100, service.calculateTotalCost(hopFirst.get(0).get(0)));
+        assertEquals(20, service.calculateTotalCost(hopFirst.get(1).get(0)));
+    }
+
+    @Test
+    void testLandmarkGuidedServiceMatchesPlainSearch() {
+        TimetableGraph graph = RandomTimetables.generate(9, 80, 3);
+        TravelOptimizerService guided = new TravelOptimizerService()
+            .withLandmarks(6, Landmarks.Strategy.FARTHEST, true);
+        for (int i = 0; i < 200; i++) {
+            String criteria = i % 2 == 0 ? "Cost" : "Hops";
+            String source = "C" + (i % 80);
+            String destination = "C" + ((i * 13 + 5) % 80);
+            List<Route> expected = service.findOptimalPath(graph, source, destination, criteria);
+            assertEquals(value(expected, criteria), value(guided.findOptimalPath(graph, source, destination, criteria), criteria));
+            List<List<Route>> grouped = guided.findOptimalPaths(graph, source, Collections.singletonList(destination), criteria);
+            assertEquals(value(expected, criteria), value(grouped.get(0), criteria));
+        }
+    }
+
+    @Test
+    void testHierarchyBackedServiceMatchesPlainSearch() {
+        TimetableGraph graph = RandomTimetables.generate(13, 80, 3);
+        TravelOptimizerService contracted = new TravelOptimizerService().withHierarchies(true);
+        for (int i = 0; i < 200; i++) {
+            String criteria = i % 2 == 0 ? "Cost" : "Hops";
+            String source = "C" + (i % 80);
+            String destination = "C" + ((i * 17 + 3) % 80);
+            List<Route> expected = service.findOptimalPath(graph, source, destination, criteria);
+            assertEquals(value(expected, criteria), value(contracted.findOptimalPath(graph, source, destination, criteria), criteria));
+            List<List<Route>> grouped = contracted.findOptimalPaths(graph, source, Collections.singletonList(destination), criteria);
+            assertEquals(value(expected, criteria), value(grouped.get(0), criteria));
+        }
+    }
+
+    private int value(List<Route> path, String criteria) {
+        switch (criteria) {
+            case "Time": return path.isEmpty() ? 0 : service.calculateTotalTime(path);
+            case "Cost": return service.calculateTotalCost(path);
+            default: return path.size();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.nice.travel.shard;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.nice.travel.graph.RandomTimetables;
+import com.nice.travel.graph.TimetableGraph;
+import com.nice.travel.graph.TimetableGraphBuilder;
+import com.nice.travel.model.Route;
+import com.nice.travel.service.TravelOptimizerService;
+import com.nice.travel.util.TimeUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedRouterTest {
+    private static final String[] CRITERIA = {"Time", "Cost", "Hops"};
+    private final TravelOptimizerService service = new TravelOptimizerService();
+
+    @Test
+    void testPartitionerSeparatesClusters() {
+        Random random = new Random(3);
+        TimetableGraphBuilder builder = new TimetableGraphBuilder();
+        for (int cluster = 0; cluster < 4; cluster++) {
+            for (int i = 0; i < 10; i++) {
+                for (int r = 0; r < 3; r++) {
+                    int j = (i + 1 + random.nextInt(9)) % 10;
+                    builder.addRoute("K" + cluster + "_" + i, "K" + cluster + "_" + j, "Bus", 480, 540, 10);
+                }
+            }
+            builder.addRoute("K" + cluster + "_0", "K" + (cluster + 1) % 4 + "_5", "Train", 600, 700, 50);
+        }
+        TimetableGraph graph = builder.build();
+
+        int[] shardOf = GraphPartitioner.partition(graph, 4);
+
+        assertEquals(4, GraphPartitioner.cut(graph, shardOf));
+        int[] sizes = new int[4];
+        for (int shard : shardOf) {
+            sizes[shard]++;
+        }
+        for (int size : sizes) {
+            assertEquals(10, size);
+        }
+    }
+
+    @Test
+    void testInProcessShardsMatchSingleNode() throws IOException {
+        TimetableGraph graph = RandomTimetables.generate(31, 60, 3);
+        ShardPlan plan = ShardPlan.create(graph, 3);
+        List<Shard> shards = new ArrayList<>();
+        for (int s = 0; s < plan.shardCount(); s++) {
+            shards.add(LocalShard.of(graph, plan, s));
+        }
+        PartitionedRouter router = new PartitionedRouter(plan, overlay(graph, plan), shards);
+        assertTrue(router.boundaryCount() < graph.cityCount());
+
+        for (int i = 0; i < 240; i++) {
+            assertSameValue(graph, router, "C" + (i % 12), "C" + ((i * 7 + 3) % 60), CRITERIA[i % 3]);
+        }
+    }
+
+    @Test
+    void testWorkerProcessesMatchSingleNode(@TempDir Path dir) throws Exception {
+        TimetableGraph graph = RandomTimetables.generate(8, 40, 3);
+        Path input = dir.resolve("routes.json");
+        Files.write(input, document(graph).getBytes(StandardCharsets.UTF_8));
+        ShardPlan plan = ShardPlan.create(graph, 2);
+        Path planFile = dir.resolve("plan.json");
+        plan.write(planFile);
+
+        List<Process> workers = new ArrayList<>();
+        try {
+            List<Shard> shards = new ArrayList<>();
+            for (int s = 0; s < plan.shardCount(); s++) {
+                Process worker = new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin"
+                    + File.separator + "java", "-cp", System.getProperty("java.class.path"), "com.nice.travel.Main",
+                    "--shard_worker", "0", "--shard", String.valueOf(s), "--partition_file", planFile.toString(),
+                    "--input", input.toString(), "--serve_threads", "2").start();
+                workers.add(worker);
+                shards.add(new RemoteShard("http://127.0.0.1:" + port(worker), 10_000));
+            }
+            PartitionedRouter router = new PartitionedRouter(ShardPlan.read(planFile), overlay(graph, plan), shards);
+
+            for (int i = 0; i < 60; i++) {
+                assertSameValue(graph, router, "C" + (i % 6), "C" + ((i * 11 + 5) % 40), CRITERIA[i % 3]);
+            }
+        } finally {
+            for (Process worker : workers) {
+                worker.destroy();
+                worker.waitFor(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private void assertSameValue(TimetableGraph graph, PartitionedRouter router, String source, String target,
+                                 String criteria) throws IOException {
+        List<Route> expected = service.findOptimalPath(graph, source, target, criteria);
+        List<Route> actual = router.findOptimalPath(source, target, criteria);
+        String pair = source + "->" + target + " " + criteria;
+        assertEquals(expected.isEmpty(), actual.isEmpty(), pair);
+        assertEquals(service.calculateValue(expected, criteria), service.calculateValue(actual, criteria), pair);
+        for (int i = 1; i < actual.size(); i++) {
+            assertEquals(actual.get(i - 1).getDestination(), actual.get(i).getSource(), pair);
+        }
+    }
+
+    private static TimetableGraph overlay(TimetableGraph graph, ShardPlan plan) {
+        TimetableGraphBuilder builder = new TimetableGraphBuilder();
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            String source = graph.cityName(graph.source(edge));
+            String destination = graph.cityName(graph.target(edge));
+            if (plan.crosses(source, destination)) {
+                builder.addRoute(source, destination, graph.modeName(graph.mode(edge)), graph.departure(edge),
+                    graph.arrival(edge), graph.cost(edge));
+            }
+        }
+        return builder.build();
+    }
+
+    private static String document(TimetableGraph graph) {
+        JsonArray routes = new JsonArray();
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            JsonObject route = new JsonObject();
+            route.addProperty("source", graph.cityName(graph.source(edge)));
+            route.addProperty("destination", graph.cityName(graph.target(edge)));
+            route.addProperty("mode", graph.modeName(graph.mode(edge)));
+            route.addProperty("departureTime", TimeUtil.minutesToTime(graph.departure(edge)));
+            route.addProperty("arrivalTime", TimeUtil.minutesToTime(graph.arrival(edge)));
+            route.addProperty("cost", graph.cost(edge));
+            routes.add(route);
+        }
+        JsonObject document = new JsonObject();
+        document.add("routes", routes);
+        return document.toString();
+    }
+
+    /** Waits for the worker's start-up line and returns the port it bound. */
+    private static int port(Process worker) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(worker.getErrorStream(), StandardCharsets.UTF_8));
+        Pattern listening = Pattern.compile("on http://127\\.0\\.0\\.1:(\\d+)");
+        String line;
+        while ((line = reader.readLine()) != null) {
+            Matcher matcher = listening.matcher(line);
+            if (matcher.find()) {
+                return Integer.parseInt(matcher.group(1));
+            }
+        }
+        throw new IOException("Shard worker exited before listening");
+    }
+}